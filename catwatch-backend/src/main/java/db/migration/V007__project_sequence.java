@@ -0,0 +1,33 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Replaces the identity column of project by a sequence that hands out
+ * blocks of 50 ids, so that projects can be inserted in JDBC batches.
+ * <p>
+ * Written in Java as PostgreSQL 9.3 and H2 share no statement to start a
+ * sequence after the existing ids.
+ *
+ * @see org.zalando.catwatch.backend.model.Project
+ */
+public class V007__project_sequence implements JdbcMigration {
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        long start;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM project")) {
+            resultSet.next();
+            start = resultSet.getLong(1);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE SEQUENCE project_seq START WITH " + start + " INCREMENT BY 50");
+            statement.execute("ALTER TABLE project ALTER COLUMN id SET DEFAULT nextval('project_seq')");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Indexes for the statements of the read paths, see QueryPlanIT.
+ * <p>
+ * Written in Java as H2 cannot index the organization names, which are text
+ * columns there, the indexes on them are PostgreSQL only.
+ */
+public class V011__read_path_indexes implements JdbcMigration {
+
+    private static final String[] INDEXES = {
+            // projects of a date range of all organizations
+            "CREATE INDEX project_snapshot ON project (snapshot_date)",
+            // languages and maintainers of the projects
+            "CREATE INDEX language_list_project ON language_list (project_id)",
+            "CREATE INDEX maintainers_project ON maintainers (project_id)",
+            // top contributors of a snapshot and time series per organization id
+            "CREATE INDEX contributor_organization_snapshot_commits"
+                    + " ON contributor (organization_id, snapshot_date, organizational_commits_count)"
+    };
+
+    private static final String[] TEXT_INDEXES = {
+            // latest snapshot, projects of a snapshot and of a date range per organization,
+            // project of a snapshot by GitHub id
+            "CREATE INDEX project_organization_snapshot ON project (organization_name, snapshot_date)",
+            // organization id by name, contributors of a date range per organization,
+            // contributors of a resumed snapshot
+            "CREATE INDEX contributor_organization_name_snapshot ON contributor (organization_name, snapshot_date)",
+            // latest statistics and statistics of a date range per organization
+            "CREATE INDEX statistics_organization_snapshot ON statistics (organization_name, snapshot_date)"
+    };
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        boolean postgresql = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        try (Statement statement = connection.createStatement()) {
+            for (String index : INDEXES) {
+                statement.execute(index);
+            }
+            if (postgresql) {
+                for (String index : TEXT_INDEXES) {
+                    statement.execute(index);
+                }
+            }
+        }
+    }
+}
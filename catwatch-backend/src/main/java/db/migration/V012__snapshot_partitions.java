@@ -0,0 +1,95 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+
+/**
+ * Partitions project and contributor by month of the snapshot date, so that
+ * range queries only read the partitions of their months and old history is
+ * dropped with its partitions.
+ * <p>
+ * Declarative partitioning with primary keys needs PostgreSQL 11, older
+ * versions and H2 keep the plain tables. Rows outside of the monthly
+ * partitions end up in the default partition. The partitions of the next
+ * months are created by SnapshotPartitions.
+ * <p>
+ * Languages and maintainers lose their foreign key to project, a foreign key
+ * cannot reference a partitioned table before PostgreSQL 12.
+ */
+public class V012__snapshot_partitions implements JdbcMigration {
+
+    private static final int PARTITIONING_VERSION = 110000;
+
+    private static final int MONTHS_AHEAD = 3;
+
+    @Override
+    public void migrate(Connection connection) throws Exception {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            if (serverVersion(statement) < PARTITIONING_VERSION) {
+                return;
+            }
+
+            statement.execute("ALTER TABLE language_list DROP CONSTRAINT IF EXISTS language_list_project_id_fkey");
+            statement.execute("ALTER TABLE maintainers DROP CONSTRAINT IF EXISTS maintainers_project_id_fkey");
+
+            partition(statement, "project", "id, snapshot_date");
+            statement.execute("CREATE INDEX project_snapshot ON project (snapshot_date)");
+            statement.execute("CREATE INDEX project_organization_snapshot ON project (organization_name, snapshot_date)");
+
+            partition(statement, "contributor", "id, organization_id, snapshot_date");
+            statement.execute("CREATE INDEX contributor_organization_snapshot_commits"
+                    + " ON contributor (organization_id, snapshot_date, organizational_commits_count)");
+            statement.execute("CREATE INDEX contributor_organization_name_snapshot"
+                    + " ON contributor (organization_name, snapshot_date)");
+        }
+    }
+
+    /**
+     * Replaces the table by a partitioned one with the same columns and the
+     * given primary key. The indexes are dropped with the old table.
+     */
+    private void partition(Statement statement, String table, String primaryKey) throws Exception {
+        statement.execute("ALTER TABLE " + table + " RENAME TO " + table + "_unpartitioned");
+        statement.execute("CREATE TABLE " + table + " (LIKE " + table + "_unpartitioned INCLUDING DEFAULTS)"
+                + " PARTITION BY RANGE (snapshot_date)");
+        // partition keys of a primary key must not be null
+        statement.execute("ALTER TABLE " + table + " ALTER COLUMN snapshot_date SET NOT NULL");
+        statement.execute("CREATE TABLE " + table + "_default PARTITION OF " + table + " DEFAULT");
+
+        YearMonth first = YearMonth.now();
+        try (ResultSet resultSet = statement.executeQuery("SELECT min(snapshot_date) FROM " + table
+                + "_unpartitioned")) {
+            resultSet.next();
+            Timestamp earliest = resultSet.getTimestamp(1);
+            if (earliest != null) {
+                first = YearMonth.from(earliest.toLocalDateTime());
+            }
+        }
+        YearMonth last = YearMonth.now().plusMonths(MONTHS_AHEAD);
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            statement.execute(String.format("CREATE TABLE %1$s_y%2$04dm%3$02d PARTITION OF %1$s"
+                            + " FOR VALUES FROM ('%4$s-01') TO ('%5$s-01')", table, month.getYear(),
+                    month.getMonthValue(), month, month.plusMonths(1)));
+        }
+
+        statement.execute("INSERT INTO " + table + " SELECT * FROM " + table + "_unpartitioned");
+        statement.execute("DROP TABLE " + table + "_unpartitioned");
+        // after the old table, whose primary key has the same name
+        statement.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (" + primaryKey + ")");
+    }
+
+    private static int serverVersion(Statement statement) throws Exception {
+        try (ResultSet resultSet = statement.executeQuery("SHOW server_version_num")) {
+            resultSet.next();
+            return Integer.parseInt(resultSet.getString(1));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.zalando.catwatch.backend.github;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.zalando.catwatch.backend.github.RateLimitBudget.HEADER_RESPONSE_SOURCE;
+
+/**
+ * Counts the GitHub API requests of a single snapshot.
+ */
+public class ApiCallCounter implements ResponseListener {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger cacheHits = new AtomicInteger();
+
+    @Override
+    public void onResponse(HttpURLConnection connection) {
+        calls.incrementAndGet();
+
+        String source = connection.getHeaderField(HEADER_RESPONSE_SOURCE);
+        if (source != null && source.startsWith("CACHE")) {
+            cacheHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of all requests including those served by the http cache
+     */
+    public int getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return number of requests served by the http cache without contacting GitHub
+     */
+    public int getCacheHits() {
+        return cacheHits.get();
+    }
+}
@@ -0,0 +1,118 @@
+package org.zalando.catwatch.backend.github;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the commits of a repository with a single request.
+ * <p>
+ * Kohsuke GitHub API only offers to page through all commits, which costs
+ * one request per 30 commits and keeps a GHCommit object for each of them.
+ * Instead this class asks for one commit per page and reads the number of
+ * the last page from the Link header of the response.
+ *
+ * @see <a href="https://developer.github.com/v3/#pagination">API documentation from GitHub</a>
+ */
+public class CommitCounter {
+
+    private static final Pattern LAST_PAGE = Pattern.compile("<[^>]*[?&]page=(\\d+)[^>]*>;\\s*rel=\"last\"");
+
+    /**
+     * Returned by GitHub for repositories without any commit.
+     */
+    private static final int HTTP_CONFLICT = 409;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpConnector connector;
+    private final String authorization;
+
+    /**
+     * @param gitHub        provides the connector, so that these requests share
+     *                      http cache and listeners with all other requests
+     * @param authorization value of the Authorization header or null for
+     *                      anonymous requests
+     * @see #authorization(String, String, String)
+     */
+    public CommitCounter(GitHub gitHub, String authorization) {
+        this(gitHub.getConnector(), authorization);
+    }
+
+    /**
+     * @param connector connector of the GitHub instance or wrapping it
+     */
+    public CommitCounter(HttpConnector connector, String authorization) {
+        this.connector = connector;
+        this.authorization = authorization;
+    }
+
+    public int countCommits(GHRepository repository) throws IOException {
+        return countCommits(repository.getUrl().toString(), repository.getFullName());
+    }
+
+    /**
+     * @param repositoryUrl API URL of the repository
+     * @param fullName      owner and name of the repository, for the error message
+     */
+    public int countCommits(String repositoryUrl, String fullName) throws IOException {
+        HttpURLConnection connection = connector.connect(new URL(repositoryUrl + "/commits?per_page=1"));
+        connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            if (status == HTTP_CONFLICT) {
+                return 0;
+            }
+            throw new FileNotFoundException("Failed to count commits of " + fullName
+                    + ", status " + status);
+        }
+
+        try (InputStream body = connection.getInputStream()) {
+            Integer lastPage = lastPage(connection.getHeaderField("Link"));
+            // without Link header all commits fit on the first page
+            return lastPage != null ? lastPage : mapper.readTree(body).size();
+        }
+    }
+
+    static Integer lastPage(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        Matcher matcher = LAST_PAGE.matcher(linkHeader);
+        return matcher.find() ? Integer.valueOf(matcher.group(1)) : null;
+    }
+
+    /**
+     * @return the Authorization header Kohsuke GitHub API sends for the given
+     * credentials, or null if there are none
+     */
+    public static String authorization(String token, String login, String password) {
+        if (token != null && !token.isEmpty()) {
+            return "token " + token;
+        }
+        if (login != null && !login.isEmpty() && password != null && !password.isEmpty()) {
+            return "Basic " + Base64.getEncoder().encodeToString(
+                    (login + ":" + password).getBytes(StandardCharsets.UTF_8));
+        }
+        return null;
+    }
+}
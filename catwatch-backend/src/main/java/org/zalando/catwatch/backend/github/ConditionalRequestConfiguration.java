@@ -0,0 +1,37 @@
+package org.zalando.catwatch.backend.github;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Selects the {@link ConditionalRequestStore} by github.conditional.store:
+ * "filesystem" keeps the responses under github.conditional.path up to
+ * github.conditional.size megabytes, "jdbc" in the application database, any
+ * other value disables conditional requests (apart from the ones OkHttp sends
+ * for its http cache).
+ */
+@Configuration
+public class ConditionalRequestConfiguration {
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    @Bean
+    @ConditionalOnProperty(name = "github.conditional.store", havingValue = "filesystem")
+    public ConditionalRequestStore fileConditionalRequestStore(@Value("${github.conditional.path}") String path,
+                                                               @Value("${github.conditional.size}") long size)
+            throws IOException {
+        return new FileConditionalRequestStore(Paths.get(path), size * MEGABYTE);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "github.conditional.store", havingValue = "jdbc")
+    public ConditionalRequestStore jdbcConditionalRequestStore(JdbcTemplate jdbcTemplate) {
+        return new JdbcConditionalRequestStore(jdbcTemplate);
+    }
+}
@@ -0,0 +1,311 @@
+package org.zalando.catwatch.backend.github;
+
+import com.google.common.hash.Hashing;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * HttpConnector that sends GET requests as conditional requests if the
+ * {@link ConditionalRequestStore} knows the previous response of the URL.
+ * <p>
+ * Kohsuke GitHub API treats 304 Not Modified as an empty response, hence a
+ * 304 is answered with the stored response as 200 OK. Other headers (e.g.
+ * the rate limit) are taken from the actual response. Responses with an
+ * ETag or Last-Modified header are stored once their body has been read
+ * completely.
+ * <p>
+ * Responses are stored by URL and credential, the {@link CredentialPool}
+ * sends requests with different credentials and a response may depend on
+ * them (Vary: Authorization). The key contains the SHA-256 of the
+ * Authorization header, never the header itself.
+ */
+public class ConditionalRequestConnector implements HttpConnector {
+
+    /**
+     * Larger responses are not stored.
+     */
+    static final int MAX_BODY_SIZE = 1024 * 1024;
+
+    private final HttpConnector connector;
+    private final ConditionalRequestStore store;
+    private final ConditionalRequestCounters counters;
+
+    public ConditionalRequestConnector(HttpConnector connector, ConditionalRequestStore store,
+                                       ConditionalRequestCounters counters) {
+        this.connector = connector;
+        this.store = store;
+        this.counters = counters;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new ConditionalConnection(connector.connect(url));
+    }
+
+    /**
+     * @return the URL, followed by the hash of the Authorization header
+     * unless the request is anonymous
+     */
+    static String key(URL url, String authorization) {
+        if (authorization == null) {
+            return url.toString();
+        }
+        return url + " " + Hashing.sha256().hashString(authorization, StandardCharsets.UTF_8);
+    }
+
+    class ConditionalConnection extends DelegatingHttpURLConnection {
+
+        private boolean prepared;
+        private String key;
+        private StoredResponse stored;
+        private Boolean notModified;
+
+        ConditionalConnection(HttpURLConnection connection) {
+            super(connection);
+        }
+
+        /**
+         * Adds the validators of the stored response before the request is
+         * sent.
+         */
+        private void prepare() {
+            if (prepared) {
+                return;
+            }
+            prepared = true;
+            if (!"GET".equals(connection.getRequestMethod())) {
+                return;
+            }
+            key = key(url, connection.getRequestProperty("Authorization"));
+            Optional<StoredResponse> found = store.find(key);
+            if (!found.isPresent()) {
+                counters.miss();
+                return;
+            }
+            counters.hit();
+            stored = found.get();
+            if (stored.getEtag() != null) {
+                connection.setRequestProperty("If-None-Match", stored.getEtag());
+            }
+            if (stored.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", stored.getLastModified());
+            }
+        }
+
+        private boolean isNotModified() throws IOException {
+            prepare();
+            if (notModified == null) {
+                notModified = stored != null && connection.getResponseCode() == HTTP_NOT_MODIFIED;
+                if (notModified) {
+                    counters.notModified();
+                }
+            }
+            return notModified;
+        }
+
+        /**
+         * Header fields must not throw, a failed request surfaces on the
+         * next call of getResponseCode or getInputStream.
+         */
+        private boolean isNotModifiedQuietly() {
+            try {
+                return isNotModified();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void connect() throws IOException {
+            prepare();
+            connection.connect();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            prepare();
+            return connection.getOutputStream();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return isNotModified() ? HTTP_OK : connection.getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return isNotModified() ? "OK" : connection.getResponseMessage();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (isNotModified()) {
+                connection.getInputStream().close();
+                return new ByteArrayInputStream(stored.getBody());
+            }
+
+            InputStream in = connection.getInputStream();
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            boolean storable = "GET".equals(connection.getRequestMethod())
+                    && connection.getResponseCode() == HTTP_OK
+                    && (etag != null || lastModified != null);
+            boolean known = stored != null
+                    && Objects.equals(etag, stored.getEtag())
+                    && Objects.equals(lastModified, stored.getLastModified());
+
+            if (!storable || known) {
+                return in;
+            }
+            return new RecordingInputStream(in, body -> store.save(key, new StoredResponse(etag,
+                    lastModified, connection.getHeaderField("Link"), connection.getContentType(), body)));
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            prepare();
+            return connection.getErrorStream();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            if (name != null && isNotModifiedQuietly()) {
+                switch (name.toLowerCase()) {
+                    case "etag":
+                        return stored.getEtag();
+                    case "last-modified":
+                        return stored.getLastModified();
+                    case "link":
+                        return stored.getLink();
+                    case "content-type":
+                        return stored.getContentType();
+                    case "content-length":
+                        return String.valueOf(stored.getBody().length);
+                }
+            }
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            Map<String, List<String>> headers = connection.getHeaderFields();
+            if (!isNotModifiedQuietly()) {
+                return headers;
+            }
+            Map<String, List<String>> merged = new HashMap<>(headers);
+            merged.put(null, singletonList("HTTP/1.1 200 OK"));
+            putIfNotNull(merged, "ETag", stored.getEtag());
+            putIfNotNull(merged, "Last-Modified", stored.getLastModified());
+            putIfNotNull(merged, "Link", stored.getLink());
+            putIfNotNull(merged, "Content-Type", stored.getContentType());
+            merged.put("Content-Length", singletonList(String.valueOf(stored.getBody().length)));
+            return merged;
+        }
+
+        @Override
+        public String getContentType() {
+            return getHeaderField("Content-Type");
+        }
+
+        @Override
+        public int getContentLength() {
+            return isNotModifiedQuietly() ? stored.getBody().length : connection.getContentLength();
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return isNotModifiedQuietly() ? stored.getBody().length : connection.getContentLengthLong();
+        }
+
+        private void putIfNotNull(Map<String, List<String>> headers, String name, String value) {
+            if (value != null) {
+                headers.put(name, singletonList(value));
+            }
+        }
+    }
+
+    /**
+     * Copies the body while it is read and hands it over once the end of the
+     * stream is reached. Bodies that are not read completely or exceed
+     * {@link #MAX_BODY_SIZE} are dropped.
+     */
+    static class RecordingInputStream extends FilterInputStream {
+
+        private final Consumer<byte[]> consumer;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        RecordingInputStream(InputStream in, Consumer<byte[]> consumer) {
+            super(in);
+            this.consumer = consumer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else {
+                record(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count == -1) {
+                complete();
+            } else {
+                record(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            copy = null; // skipped bytes are missing in the copy
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void record(byte[] buffer, int offset, int count) {
+            if (copy == null) {
+                return;
+            }
+            if (copy.size() + count > MAX_BODY_SIZE) {
+                copy = null;
+                return;
+            }
+            copy.write(buffer, offset, count);
+        }
+
+        private void complete() {
+            if (copy != null) {
+                byte[] body = copy.toByteArray();
+                copy = null;
+                consumer.accept(body);
+            }
+        }
+    }
+}
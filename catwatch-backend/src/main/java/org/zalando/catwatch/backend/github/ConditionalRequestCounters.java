@@ -0,0 +1,54 @@
+package org.zalando.catwatch.backend.github;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often the {@link ConditionalRequestConnector} could send a
+ * conditional request (hit) or not (miss), and how often GitHub answered
+ * with 304 Not Modified. Published by the metrics endpoint.
+ */
+@Component
+public class ConditionalRequestCounters implements PublicMetrics {
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void notModified() {
+        notModified.incrementAndGet();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        return Arrays.asList(
+                new Metric<>("github.conditional.hits", getHits()),
+                new Metric<>("github.conditional.misses", getMisses()),
+                new Metric<>("github.conditional.not_modified", getNotModified()));
+    }
+}
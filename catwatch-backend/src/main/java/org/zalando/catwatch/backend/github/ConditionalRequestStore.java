@@ -0,0 +1,22 @@
+package org.zalando.catwatch.backend.github;
+
+import java.util.Optional;
+
+/**
+ * Keeps the last response of GET requests by key (URL and credential, see
+ * {@link ConditionalRequestConnector}), so that the next request can be sent
+ * with If-None-Match / If-Modified-Since. GitHub does not count the resulting
+ * 304 responses against the rate limit.
+ * <p>
+ * Unlike the http cache of OkHttp, implementations may be shared by several
+ * nodes.
+ *
+ * @see ConditionalRequestConnector
+ * @see <a href="https://developer.github.com/v3/#conditional-requests">API documentation from GitHub</a>
+ */
+public interface ConditionalRequestStore {
+
+    Optional<StoredResponse> find(String key);
+
+    void save(String key, StoredResponse response);
+}
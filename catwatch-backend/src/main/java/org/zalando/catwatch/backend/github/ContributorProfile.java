@@ -0,0 +1,38 @@
+package org.zalando.catwatch.backend.github;
+
+import java.util.Date;
+
+/**
+ * The fields of a contributor that are only returned by GET /users/{login},
+ * kept by the {@link ContributorProfileCache}.
+ */
+public class ContributorProfile {
+
+    private final long id;
+    private final String name;
+    private final int publicRepoCount;
+    private final Date fetched;
+
+    public ContributorProfile(long id, String name, int publicRepoCount, Date fetched) {
+        this.id = id;
+        this.name = name;
+        this.publicRepoCount = publicRepoCount;
+        this.fetched = fetched;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getPublicRepoCount() {
+        return publicRepoCount;
+    }
+
+    public Date getFetched() {
+        return fetched;
+    }
+}
@@ -0,0 +1,107 @@
+package org.zalando.catwatch.backend.github;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the profiles of contributors in the contributor_profile table, so
+ * that GET /users/{login} is sent once per github.profiles.ttl.days instead
+ * of on every snapshot. A ttl of 0 disables the cache.
+ * <p>
+ * Depending on the contributor id a profile expires up to a quarter of the
+ * ttl later, so that the profiles fetched by one run are not all refreshed
+ * by the same later run. Refreshes are conditional requests if a
+ * {@link ConditionalRequestStore} is configured.
+ */
+@Component
+public class ContributorProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContributorProfileCache.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+
+    @Autowired
+    public ContributorProfileCache(JdbcTemplate jdbcTemplate, @Value("${github.profiles.ttl.days}") int ttlDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = TimeUnit.DAYS.toMillis(ttlDays);
+    }
+
+    /**
+     * @return a cache that keeps nothing
+     */
+    public static ContributorProfileCache disabled() {
+        return new ContributorProfileCache(null, 0);
+    }
+
+    /**
+     * @return the profile if it is cached and not expired
+     */
+    public Optional<ContributorProfile> find(long id) {
+        if (ttlMillis <= 0) {
+            return Optional.empty();
+        }
+        try {
+            List<ContributorProfile> profiles = jdbcTemplate.query(
+                    "select id, name, public_repo_count, fetched from contributor_profile where id = ?",
+                    (rs, rowNum) -> new ContributorProfile(rs.getLong(1), rs.getString(2), rs.getInt(3),
+                            rs.getTimestamp(4)),
+                    id);
+            long now = System.currentTimeMillis();
+            return profiles.stream().filter(profile -> expires(profile) > now).findFirst();
+        } catch (DataAccessException e) {
+            logger.warn("Failed to read profile of contributor {}.", id, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Requests the profile from GitHub and caches it.
+     */
+    public ContributorProfile fetch(String login, StreamingGitHubClient client) throws IOException {
+        ContributorProfile profile = client.getProfile(login);
+        if (ttlMillis > 0) {
+            save(profile);
+        }
+        return profile;
+    }
+
+    long expires(ContributorProfile profile) {
+        return profile.getFetched().getTime() + ttlMillis + Math.floorMod(profile.getId(), ttlMillis / 4 + 1);
+    }
+
+    private void save(ContributorProfile profile) {
+        Timestamp fetched = new Timestamp(profile.getFetched().getTime());
+        try {
+            if (update(profile, fetched) == 0) {
+                try {
+                    jdbcTemplate.update("insert into contributor_profile (id, name, public_repo_count, fetched)"
+                                    + " values (?, ?, ?, ?)",
+                            profile.getId(), profile.getName(), profile.getPublicRepoCount(), fetched);
+                } catch (DuplicateKeyException e) {
+                    // inserted concurrently by another node
+                    update(profile, fetched);
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to store profile of contributor {}.", profile.getId(), e);
+        }
+    }
+
+    private int update(ContributorProfile profile, Timestamp fetched) {
+        return jdbcTemplate.update("update contributor_profile set name = ?, public_repo_count = ?, fetched = ?"
+                + " where id = ?", profile.getName(), profile.getPublicRepoCount(), fetched, profile.getId());
+    }
+}
@@ -0,0 +1,39 @@
+package org.zalando.catwatch.backend.github;
+
+/**
+ * The fields of a contributors listing entry the crawler reads, see
+ * {@link StreamingGitHubClient#listContributors(RepositoryRecord)}.
+ */
+public class ContributorRecord {
+
+    private final int id;
+    private final String login;
+    private final String htmlUrl;
+    private final int contributions;
+
+    public ContributorRecord(int id, String login, String htmlUrl, int contributions) {
+        this.id = id;
+        this.login = login;
+        this.htmlUrl = htmlUrl;
+        this.contributions = contributions;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public String getHtmlUrl() {
+        return htmlUrl;
+    }
+
+    /**
+     * @return number of commits to the repository
+     */
+    public int getContributions() {
+        return contributions;
+    }
+}
@@ -0,0 +1,139 @@
+package org.zalando.catwatch.backend.github;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+/**
+ * Dispatches the repositories of an organization to the crawler pool in the
+ * order of their priority.
+ * <p>
+ * Before a repository is dispatched its estimated requests are reserved at
+ * the {@link RateLimitBudget}. If the budget is exhausted the scheduler
+ * pauses until the rate limit is reset and resumes with the most valuable
+ * repository that is still outstanding. Only the dispatching thread waits,
+ * the crawler threads are never parked by the rate limit.
+ */
+public class CrawlScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlScheduler.class);
+
+    private final ExecutorService pool;
+    private final RateLimitBudget budget;
+
+    public CrawlScheduler(ExecutorService pool, RateLimitBudget budget) {
+        this.pool = pool;
+        this.budget = budget;
+    }
+
+    /**
+     * @param priority orders the repositories, the first one is crawled first
+     * @param cost     estimated number of requests of a repository
+     * @return results in the order of the given repositories
+     */
+    public <T> List<T> run(String organizationName, List<RepositoryWrapper> repositories,
+                           Comparator<RepositoryWrapper> priority, ToIntFunction<RepositoryWrapper> cost,
+                           RepositoryFunction<T> function) throws IOException {
+        List<RepositoryWrapper> queue = new ArrayList<>(repositories);
+        queue.sort(priority);
+
+        int outstandingCost = queue.stream().mapToInt(cost).sum();
+        logger.info("Crawling {} repositories of organization '{}' with an estimated {} requests, {} requests left.",
+                queue.size(), organizationName, outstandingCost, budget.getRemaining());
+
+        Map<RepositoryWrapper, Future<T>> futures = new IdentityHashMap<>();
+        List<Reservation> reservations = new ArrayList<>();
+        try {
+            for (int i = 0; i < queue.size(); i++) {
+                RepositoryWrapper repository = queue.get(i);
+                int repositoryCost = cost.applyAsInt(repository);
+
+                if (!budget.tryReserve(repositoryCost)) {
+                    logger.info("Paused crawling organization '{}': {} repositories with an estimated {} requests "
+                                    + "outstanding, {} requests left until {}.", organizationName, queue.size() - i,
+                            outstandingCost, budget.getRemaining(), new Date(budget.getResetMillis()));
+                    do {
+                        budget.awaitChange();
+                    } while (!budget.tryReserve(repositoryCost));
+                    logger.info("Resumed crawling organization '{}'.", organizationName);
+                }
+
+                Reservation reservation = new Reservation(repositoryCost);
+                reservations.add(reservation);
+                futures.put(repository, pool.submit(() -> {
+                    try {
+                        return function.apply(repository);
+                    } finally {
+                        reservation.release();
+                    }
+                }));
+                outstandingCost -= repositoryCost;
+            }
+
+            List<T> results = new ArrayList<>(repositories.size());
+            for (RepositoryWrapper repository : repositories) {
+                results.add(futures.get(repository).get());
+            }
+            return results;
+
+        } catch (InterruptedException e) {
+            cancel(futures, reservations);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while collecting repositories of " + organizationName);
+        } catch (ExecutionException e) {
+            cancel(futures, reservations);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Cancelled tasks that have not started yet never release their
+     * reservation themselves.
+     */
+    private <T> void cancel(Map<RepositoryWrapper, Future<T>> futures, List<Reservation> reservations) {
+        futures.values().forEach(future -> future.cancel(true));
+        reservations.forEach(Reservation::release);
+    }
+
+    private class Reservation {
+
+        private final int cost;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Reservation(int cost) {
+            this.cost = cost;
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                budget.release(cost);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface RepositoryFunction<T> {
+        T apply(RepositoryWrapper repository) throws Exception;
+    }
+}
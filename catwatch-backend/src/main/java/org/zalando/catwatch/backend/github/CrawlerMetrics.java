@@ -0,0 +1,250 @@
+package org.zalando.catwatch.backend.github;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the requests sent by the crawler per endpoint, see
+ * {@link #endpoint(URL)}, together with their latency, the bytes received
+ * from the network and where OkHttp took the responses from. Also publishes
+ * the rate limit of every credential. Published by the metrics endpoint.
+ * <p>
+ * The numbers are recorded by the {@link MeteredHttpConnector}, so every
+ * attempt of a retried or hedged request counts on its own.
+ */
+@Component
+public class CrawlerMetrics implements PublicMetrics {
+
+    /**
+     * Upper bounds of the latency buckets in milliseconds.
+     */
+    static final long[] LATENCY_BUCKETS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /**
+     * Path segments followed by an identifier and how many segments the
+     * identifier has, e.g. owner and name of a repository.
+     */
+    private static final Map<String, Integer> COLLECTIONS = new HashMap<>();
+
+    static {
+        COLLECTIONS.put("repos", 2);
+        COLLECTIONS.put("orgs", 1);
+        COLLECTIONS.put("users", 1);
+        COLLECTIONS.put("teams", 1);
+    }
+
+    private static final Set<String> RESOURCES = new HashSet<>(Arrays.asList("user", "rate_limit", "graphql"));
+
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentSkipListMap<>();
+
+    private final LongAdder cacheResponses = new LongAdder();
+    private final LongAdder revalidatedResponses = new LongAdder();
+    private final LongAdder notModifiedResponses = new LongAdder();
+    private final LongAdder networkResponses = new LongAdder();
+
+    private final List<GitHubCredential> credentials = new CopyOnWriteArrayList<>();
+
+    /**
+     * Publishes the rate limits of the given credentials from now on.
+     */
+    public void register(Collection<GitHubCredential> credentials) {
+        this.credentials.addAll(credentials);
+    }
+
+    /**
+     * @param source value of the OkHttp-Response-Source header, null if the
+     *               response did not pass OkHttp
+     */
+    void response(String endpoint, long millis, int status, String source) {
+        EndpointMetrics metrics = endpoint(endpoint);
+        metrics.requests.increment();
+        metrics.latency(millis);
+
+        if (source != null && source.startsWith("CACHE")) {
+            cacheResponses.increment();
+        } else if (source != null && source.startsWith("CONDITIONAL_CACHE")) {
+            revalidatedResponses.increment();
+        } else if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            notModifiedResponses.increment();
+        } else {
+            networkResponses.increment();
+        }
+    }
+
+    /**
+     * A request that failed without a response, e.g. a timeout.
+     */
+    void failure(String endpoint, long millis) {
+        EndpointMetrics metrics = endpoint(endpoint);
+        metrics.requests.increment();
+        metrics.failures.increment();
+        metrics.latency(millis);
+    }
+
+    void bytes(String endpoint, long bytes) {
+        endpoint(endpoint).bytes.add(bytes);
+    }
+
+    private EndpointMetrics endpoint(String endpoint) {
+        return endpoints.computeIfAbsent(endpoint, e -> new EndpointMetrics());
+    }
+
+    /**
+     * Maps the URL of a request to its endpoint, i.e. the path without
+     * identifiers and below the sub resource of an identifier, separated by
+     * dots: /repos/zalando/catwatch/contents/README.md becomes
+     * "repos.contents", /orgs/zalando becomes "orgs". Everything else, e.g.
+     * a raw file download, becomes "other".
+     */
+    static String endpoint(URL url) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : url.getPath().split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        if (segments.isEmpty()) {
+            return "other";
+        }
+
+        String first = segments.get(0);
+        if (segments.size() == 1 && RESOURCES.contains(first)) {
+            return first;
+        }
+        Integer identifierSegments = COLLECTIONS.get(first);
+        if (identifierSegments == null || segments.size() <= identifierSegments) {
+            return "other";
+        }
+        int subResource = identifierSegments + 1;
+        return segments.size() > subResource ? first + "." + segments.get(subResource) : first;
+    }
+
+    /**
+     * @return requests to all endpoints
+     */
+    public long getRequests() {
+        return endpoints.values().stream().mapToLong(metrics -> metrics.requests.sum()).sum();
+    }
+
+    public long getRequests(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.requests.sum();
+    }
+
+    public long getBytes(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.bytes.sum();
+    }
+
+    public long getCacheResponses() {
+        return cacheResponses.sum();
+    }
+
+    public long getRevalidatedResponses() {
+        return revalidatedResponses.sum();
+    }
+
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.sum();
+    }
+
+    public long getNetworkResponses() {
+        return networkResponses.sum();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        for (Map.Entry<String, EndpointMetrics> endpoint : endpoints.entrySet()) {
+            endpoint.getValue().addTo(metrics, "github.endpoint." + endpoint.getKey());
+        }
+
+        long cache = getCacheResponses();
+        long revalidated = getRevalidatedResponses();
+        long notModified = getNotModifiedResponses();
+        long network = getNetworkResponses();
+        metrics.add(new Metric<>("github.responses.cache", cache));
+        metrics.add(new Metric<>("github.responses.revalidated", revalidated));
+        metrics.add(new Metric<>("github.responses.not_modified", notModified));
+        metrics.add(new Metric<>("github.responses.network", network));
+        long all = cache + revalidated + notModified + network;
+        if (all > 0) {
+            // revalidated and not modified responses did not count against the rate limit
+            metrics.add(new Metric<>("github.responses.saved.percent", 100.0 * (all - network) / all));
+        }
+
+        for (GitHubCredential credential : credentials) {
+            String prefix = "github.ratelimit." + credential.toString().replaceAll("[^A-Za-z0-9_-]+", "_");
+            RateLimitBudget budget = credential.getBudget();
+            metrics.add(new Metric<>(prefix + ".remaining", budget.getRemaining()));
+            metrics.add(new Metric<>(prefix + ".reserved", budget.getReserved()));
+            metrics.add(new Metric<>(prefix + ".reset", budget.getResetMillis()));
+        }
+        return Collections.unmodifiableList(metrics);
+    }
+
+    private static class EndpointMetrics {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder latencySum = new LongAdder();
+        private final AtomicLong latencyMax = new AtomicLong();
+
+        /**
+         * Requests per latency bucket, the last one counts the requests
+         * slower than all buckets.
+         */
+        private final LongAdder[] latencyBuckets = new LongAdder[LATENCY_BUCKETS.length + 1];
+
+        EndpointMetrics() {
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                latencyBuckets[i] = new LongAdder();
+            }
+        }
+
+        void latency(long millis) {
+            latencySum.add(millis);
+            latencyMax.accumulateAndGet(millis, Math::max);
+            int bucket = 0;
+            while (bucket < LATENCY_BUCKETS.length && millis > LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+            latencyBuckets[bucket].increment();
+        }
+
+        void addTo(List<Metric<?>> metrics, String prefix) {
+            long count = requests.sum();
+            metrics.add(new Metric<>(prefix + ".requests", count));
+            metrics.add(new Metric<>(prefix + ".failures", failures.sum()));
+            metrics.add(new Metric<>(prefix + ".bytes", bytes.sum()));
+            metrics.add(new Metric<>(prefix + ".latency.max", latencyMax.get()));
+            if (count > 0) {
+                metrics.add(new Metric<>(prefix + ".latency.mean", (double) latencySum.sum() / count));
+            }
+            // cumulative like a Prometheus histogram
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += latencyBuckets[i].sum();
+                metrics.add(new Metric<>(prefix + ".latency.le_" + LATENCY_BUCKETS[i], cumulative));
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.zalando.catwatch.backend.github;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spreads the snapshots over several GitHub credentials.
+ * <p>
+ * Every snapshot is taken with the credential that has the most requests left
+ * after the reservations of the running snapshots, so the organizations
+ * crawled at the same time draw from different rate limits. Credentials
+ * without a response yet come first, ties are taken in turns.
+ */
+public class CredentialPool {
+
+    private final List<GitHubCredential> credentials;
+
+    private int next;
+
+    public CredentialPool(List<GitHubCredential> credentials) {
+        if (credentials.isEmpty()) {
+            throw new IllegalArgumentException("At least one credential is required.");
+        }
+        this.credentials = new ArrayList<>(credentials);
+    }
+
+    public synchronized GitHubCredential select() {
+        int selected = next;
+        int mostHeadroom = credentials.get(selected).getBudget().getHeadroom();
+        for (int i = 1; i < credentials.size(); i++) {
+            int index = (next + i) % credentials.size();
+            int headroom = credentials.get(index).getBudget().getHeadroom();
+            if (headroom > mostHeadroom) {
+                selected = index;
+                mostHeadroom = headroom;
+            }
+        }
+        next = (selected + 1) % credentials.size();
+        return credentials.get(selected);
+    }
+
+    public List<GitHubCredential> getCredentials() {
+        return credentials;
+    }
+}
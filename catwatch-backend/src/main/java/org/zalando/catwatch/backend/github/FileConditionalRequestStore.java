@@ -0,0 +1,201 @@
+package org.zalando.catwatch.backend.github;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparing;
+
+/**
+ * Keeps every response in a file of its own, named by the SHA-256 of the key.
+ * Files are replaced atomically, so the directory may be shared by several
+ * processes (e.g. on a network volume).
+ * <p>
+ * Once the files exceed the maximum size, the least recently used ones are
+ * deleted until a tenth of the maximum is free again. A response is used when
+ * it is stored or found, its file then gets the current modification time.
+ */
+public class FileConditionalRequestStore implements ConditionalRequestStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileConditionalRequestStore.class);
+
+    private final Path directory;
+    private final long maxSize;
+
+    /**
+     * Bytes of the files, an estimate as other processes may share the
+     * directory. Corrected by every eviction.
+     */
+    private final AtomicLong size = new AtomicLong();
+
+    public FileConditionalRequestStore(Path directory, long maxSize) throws IOException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("The maximum size must be positive.");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxSize = maxSize;
+        size.set(files().stream().mapToLong(file -> file.size).sum());
+        evictIfFull();
+    }
+
+    @Override
+    public Optional<StoredResponse> find(String key) {
+        try {
+            Path file = file(key);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(file)));
+            if (!key.equals(in.readUTF())) {
+                return Optional.empty(); // hash collision
+            }
+            String etag = readNullable(in);
+            String lastModified = readNullable(in);
+            String link = readNullable(in);
+            String contentType = readNullable(in);
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            touch(file);
+            return Optional.of(new StoredResponse(etag, lastModified, link, contentType, body));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            logger.warn("Failed to read stored response of '{}'.", key, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(String key, StoredResponse response) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(response.getBody().length + 512);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(key);
+            writeNullable(out, response.getEtag());
+            writeNullable(out, response.getLastModified());
+            writeNullable(out, response.getLink());
+            writeNullable(out, response.getContentType());
+            out.writeInt(response.getBody().length);
+            out.write(response.getBody());
+            out.flush();
+
+            Path file = file(key);
+            long replaced = Files.exists(file) ? Files.size(file) : 0;
+            Path temp = Files.createTempFile(directory, "response", ".tmp");
+            try {
+                Files.write(temp, bytes.toByteArray());
+                Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            size.addAndGet(bytes.size() - replaced);
+            evictIfFull();
+        } catch (IOException e) {
+            logger.warn("Failed to store response of '{}'.", key, e);
+        }
+    }
+
+    long getSize() {
+        return size.get();
+    }
+
+    private void evictIfFull() throws IOException {
+        if (size.get() <= maxSize) {
+            return;
+        }
+        synchronized (this) {
+            if (size.get() <= maxSize) {
+                return; // evicted concurrently
+            }
+            List<StoredFile> files = files();
+            files.sort(comparing(file -> file.lastModified));
+            long remaining = files.stream().mapToLong(file -> file.size).sum();
+            int evicted = 0;
+            for (StoredFile file : files) {
+                if (remaining <= maxSize - maxSize / 10) {
+                    break;
+                }
+                if (Files.deleteIfExists(file.path)) {
+                    evicted++;
+                }
+                remaining -= file.size;
+            }
+            size.set(remaining);
+            logger.info("Evicted {} stored responses, {} bytes left.", evicted, remaining);
+        }
+    }
+
+    /**
+     * @return the stored responses, without the temporary files of
+     * responses still being written
+     */
+    private List<StoredFile> files() throws IOException {
+        List<StoredFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (path.getFileName().toString().endsWith(".tmp")) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                    files.add(new StoredFile(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                } catch (NoSuchFileException e) {
+                    // evicted by another process
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // evicted in the meantime, the response is still valid
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString());
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static class StoredFile {
+
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+
+        StoredFile(Path path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.zalando.catwatch.backend.github;
+
+import org.apache.commons.lang.StringUtils;
+import org.kohsuke.github.GitHubBuilder;
+
+/**
+ * OAuth token or login and password of GitHub requests together with the
+ * {@link RateLimitBudget} of these credentials. GitHub counts the requests
+ * of every credential separately.
+ */
+public class GitHubCredential {
+
+    private final String token;
+    private final String login;
+    private final String password;
+    private final RateLimitBudget budget;
+
+    private GitHubCredential(String token, String login, String password, RateLimitBudget budget) {
+        this.token = token;
+        this.login = login;
+        this.password = password;
+        this.budget = budget;
+    }
+
+    public static GitHubCredential token(String token, RateLimitBudget budget) {
+        return new GitHubCredential(token, null, null, budget);
+    }
+
+    public static GitHubCredential password(String login, String password, RateLimitBudget budget) {
+        return new GitHubCredential(null, login, password, budget);
+    }
+
+    public static GitHubCredential anonymous(RateLimitBudget budget) {
+        return new GitHubCredential(null, null, null, budget);
+    }
+
+    public GitHubBuilder configure(GitHubBuilder builder) {
+        if (StringUtils.isNotEmpty(token)) {
+            builder.withOAuthToken(token);
+        } else if (!isAnonymous()) {
+            builder.withPassword(login, password);
+        }
+        return builder;
+    }
+
+    /**
+     * @return value of the Authorization header, null for anonymous requests
+     */
+    public String getAuthorization() {
+        return CommitCounter.authorization(token, login, password);
+    }
+
+    public boolean isAnonymous() {
+        return getAuthorization() == null;
+    }
+
+    public RateLimitBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return login or the last characters of the token, never the secret
+     */
+    @Override
+    public String toString() {
+        if (StringUtils.isNotEmpty(token)) {
+            return "token ..." + StringUtils.right(token, 4);
+        }
+        return isAnonymous() ? "anonymous" : login;
+    }
+}
@@ -0,0 +1,93 @@
+package org.zalando.catwatch.backend.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Sends queries to the GitHub GraphQL API.
+ * <p>
+ * Kohsuke GitHub API only knows the REST API, so the queries are posted with
+ * the connector of the REST requests and the same Authorization header.
+ *
+ * @see <a href="https://developer.github.com/v4/">API documentation from GitHub</a>
+ */
+public class GraphQlClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphQlClient.class);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final HttpConnector connector;
+    private final String url;
+    private final String authorization;
+
+    /**
+     * @param authorization value of the Authorization header, GitHub does not
+     *                      answer anonymous GraphQL requests
+     * @see CommitCounter#authorization(String, String, String)
+     */
+    public GraphQlClient(HttpConnector connector, String url, String authorization) {
+        this.connector = connector;
+        this.url = url;
+        this.authorization = authorization;
+    }
+
+    /**
+     * @return the data of the response. Fields that failed to resolve are
+     * null and their errors are logged.
+     */
+    public JsonNode query(String query) throws IOException {
+        HttpURLConnection connection = connector.connect(new URL(url));
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+
+        ObjectNode request = mapper.createObjectNode().put("query", query);
+        try (OutputStream body = connection.getOutputStream()) {
+            mapper.writeValue(body, request);
+        }
+
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            throw new IOException("GraphQL query to " + url + " failed with status " + status);
+        }
+
+        JsonNode response;
+        try (InputStream body = connection.getInputStream()) {
+            response = mapper.readTree(body);
+        }
+
+        for (JsonNode error : response.path("errors")) {
+            logger.warn("GraphQL query failed for {}: {}", error.path("path"), error.path("message").asText());
+        }
+        if (!response.hasNonNull("data")) {
+            throw new IOException("GraphQL query to " + url + " returned no data");
+        }
+        return response.get("data");
+    }
+
+    /**
+     * @return the value as GraphQL string literal
+     */
+    String literal(String value) throws IOException {
+        // JSON string literals are valid GraphQL string literals
+        return mapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,150 @@
+package org.zalando.catwatch.backend.github;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Lists;
+import org.kohsuke.github.GitHub;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zalando.catwatch.backend.model.CatwatchYaml;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Task to get organisation snapshot from GitHub that fetches the data of up
+ * to {@value #BATCH_SIZE} repositories with a single GraphQL query.
+ * <p>
+ * Languages, commit and tag counts, MAINTAINERS and .catwatch.yaml are
+ * requested in batches, only the contributors are requested per repository
+ * from the REST API as GraphQL does not offer them. Repositories missing in
+ * the response are crawled like {@link TakeSnapshotTask} does.
+ * <p>
+ * The repository listing still comes from the REST API, it already contains
+ * the metadata and star and fork counts of up to 100 repositories per page.
+ *
+ * @see <a href="https://developer.github.com/v4/">API documentation from GitHub</a>
+ */
+public class GraphQlSnapshotTask extends TakeSnapshotTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphQlSnapshotTask.class);
+
+    /**
+     * Maximum number of nodes GitHub returns for a connection.
+     */
+    static final int BATCH_SIZE = 100;
+
+    static final String REPOSITORY_FRAGMENT = "fragment repository on Repository {"
+            + " languages(first: 100) { edges { size node { name } } }"
+            + " defaultBranchRef { target { ... on Commit { history(first: 0) { totalCount } } } }"
+            + " refs(refPrefix: \"refs/tags/\", first: 0) { totalCount }"
+            + " maintainers: object(expression: \"HEAD:MAINTAINERS\") { ... on Blob { text } }"
+            + " catwatchYaml: object(expression: \"HEAD:.catwatch.yaml\") { ... on Blob { text } }"
+            + " }";
+
+    private final GraphQlClient graphQlClient;
+
+    public GraphQlSnapshotTask(GitHub gitHub, String organisationName, Scorer scorer, Date snapshotDate,
+                               ExecutorService repositoryPool, RateLimitBudget rateLimitBudget,
+                               ApiCallCounter apiCallCounter, StreamingGitHubClient client,
+                               Collection<Project> previousProjects, SnapshotWriter writer,
+                               ContributorProfileCache profileCache, GraphQlClient graphQlClient) {
+        super(gitHub, organisationName, scorer, snapshotDate, repositoryPool, rateLimitBudget, apiCallCounter,
+                client, previousProjects, writer, profileCache);
+        this.graphQlClient = graphQlClient;
+    }
+
+    @Override
+    void collectRepositories(OrganizationWrapper organization, RepositoryDataConsumer consumer) throws IOException {
+        logger.info("Started collecting repositories for organization '{}' in batches.", organization.getLogin());
+
+        Map<Integer, JsonNode> nodes = new HashMap<>();
+        for (List<RepositoryWrapper> batch : Lists.partition(organization.listRepositories(), BATCH_SIZE)) {
+            nodes.putAll(queryBatch(organization.getLogin(), batch));
+        }
+
+        List<Void> repositories = crawl(organization,
+                repository -> nodes.containsKey(repository.getId()) ? 1 : estimateCost(repository),
+                repository -> {
+                    JsonNode node = nodes.get(repository.getId());
+                    consumer.accept(node != null
+                            ? collectRepository(repository, node)
+                            : collectRepository(repository));
+                    return null;
+                });
+
+        logger.info("Finished collecting {} repositories for organization '{}', {} of them in batches.",
+                repositories.size(), organization.getLogin(), nodes.size());
+    }
+
+    /**
+     * @return the repository nodes of the response by repository id, without
+     * the repositories GitHub could not resolve
+     */
+    Map<Integer, JsonNode> queryBatch(String organizationName, List<RepositoryWrapper> batch) throws IOException {
+        StringBuilder query = new StringBuilder("query {");
+        for (int i = 0; i < batch.size(); i++) {
+            query.append(" r").append(i).append(": repository(owner: ")
+                    .append(graphQlClient.literal(organizationName))
+                    .append(", name: ")
+                    .append(graphQlClient.literal(batch.get(i).getName()))
+                    .append(") { ...repository }");
+        }
+        query.append(" } ").append(REPOSITORY_FRAGMENT);
+
+        JsonNode data = graphQlClient.query(query.toString());
+
+        Map<Integer, JsonNode> nodes = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            JsonNode node = data.get("r" + i);
+            if (node != null && !node.isNull()) {
+                nodes.put(batch.get(i).getId(), node);
+            }
+        }
+        return nodes;
+    }
+
+    RepositoryData collectRepository(RepositoryWrapper repository, JsonNode node) {
+        Map<String, Long> languages = new LinkedHashMap<>();
+        for (JsonNode edge : node.path("languages").path("edges")) {
+            languages.put(edge.path("node").path("name").asText(), edge.path("size").asLong());
+        }
+
+        // empty repositories have no default branch
+        int commitsCount = node.path("defaultBranchRef").path("target").path("history").path("totalCount").asInt();
+
+        String maintainers = node.path("maintainers").path("text").textValue();
+
+        return new RepositoryData(repository,
+                repository.listContributors(),
+                node.path("refs").path("totalCount").asInt(),
+                languages,
+                commitsCount,
+                maintainers != null
+                        ? Lists.newArrayList(maintainers.split("\n"))
+                        : Collections.emptyList(),
+                parseCatwatchYaml(repository, node.path("catwatchYaml").path("text").textValue()));
+    }
+
+    private CatwatchYaml parseCatwatchYaml(RepositoryWrapper repository, String text) {
+        if (text == null) {
+            return null;
+        }
+        try {
+            return parseCatwatchYaml(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException ioe) {
+            logger.warn("Failed to read .catwatch.yaml for '{}'", repository.getName(), ioe);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.zalando.catwatch.backend.github;
+
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps the responses in the conditional_request table of the application
+ * database, so that all nodes share them. The rows are looked up by the
+ * SHA-256 hash of the key, as the URL in the key has no length limit.
+ */
+public class JdbcConditionalRequestStore implements ConditionalRequestStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcConditionalRequestStore.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcConditionalRequestStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<StoredResponse> find(String key) {
+        try {
+            List<StoredResponse> responses = jdbcTemplate.query(
+                    "select etag, last_modified, link, content_type, body from conditional_request"
+                            + " where key_hash = ? and request_key = ?",
+                    (rs, rowNum) -> new StoredResponse(rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getBytes(5)),
+                    hash(key), key);
+            return responses.stream().findFirst();
+        } catch (DataAccessException e) {
+            logger.warn("Failed to read stored response of '{}'.", key, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void save(String key, StoredResponse response) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        String hash = hash(key);
+        try {
+            if (update(hash, key, response, now) == 0) {
+                try {
+                    jdbcTemplate.update("insert into conditional_request"
+                                    + " (key_hash, request_key, etag, last_modified, link, content_type, body, updated)"
+                                    + " values (?, ?, ?, ?, ?, ?, ?, ?)",
+                            hash, key, response.getEtag(), response.getLastModified(), response.getLink(),
+                            response.getContentType(), response.getBody(), now);
+                } catch (DuplicateKeyException e) {
+                    // inserted concurrently by another node
+                    update(hash, key, response, now);
+                }
+            }
+        } catch (DataAccessException e) {
+            logger.warn("Failed to store response of '{}'.", key, e);
+        }
+    }
+
+    /**
+     * Also replaces the response of another key with the same hash.
+     */
+    private int update(String hash, String key, StoredResponse response, Timestamp now) {
+        return jdbcTemplate.update("update conditional_request"
+                        + " set request_key = ?, etag = ?, last_modified = ?, link = ?, content_type = ?, body = ?,"
+                        + " updated = ? where key_hash = ?",
+                key, response.getEtag(), response.getLastModified(), response.getLink(), response.getContentType(),
+                response.getBody(), now, hash);
+    }
+
+    private static String hash(String key) {
+        return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,90 @@
+package org.zalando.catwatch.backend.github;
+
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * HttpConnector that notifies {@link ResponseListener}s about the responses
+ * of the connections created by the wrapped connector.
+ * <p>
+ * OkHttp does not run network interceptors for connections created by
+ * OkUrlFactory, so the connection itself has to be wrapped to look at the
+ * response headers (e.g. the rate limit headers).
+ */
+public class ListeningHttpConnector implements HttpConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListeningHttpConnector.class);
+
+    private final HttpConnector connector;
+    private final List<ResponseListener> listeners;
+
+    public ListeningHttpConnector(HttpConnector connector, ResponseListener... listeners) {
+        this.connector = connector;
+        this.listeners = Arrays.asList(listeners);
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new ListenedConnection(connector.connect(url), listeners);
+    }
+
+    /**
+     * The listeners are notified as soon as the response is requested for
+     * the first time.
+     */
+    static class ListenedConnection extends DelegatingHttpURLConnection {
+
+        private final List<ResponseListener> listeners;
+        private boolean notified;
+
+        ListenedConnection(HttpURLConnection connection, List<ResponseListener> listeners) {
+            super(connection);
+            this.listeners = listeners;
+        }
+
+        private void notifyListeners() {
+            if (notified) {
+                return;
+            }
+            notified = true;
+            for (ResponseListener listener : listeners) {
+                try {
+                    listener.onResponse(connection);
+                } catch (RuntimeException e) {
+                    logger.warn("Response listener failed for '{}'.", connection.getURL(), e);
+                }
+            }
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            int responseCode = connection.getResponseCode();
+            notifyListeners();
+            return responseCode;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return connection.getInputStream();
+            } finally {
+                notifyListeners();
+            }
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            InputStream errorStream = connection.getErrorStream();
+            notifyListeners();
+            return errorStream;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.zalando.catwatch.backend.github;
+
+import org.kohsuke.github.HttpConnector;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.zalando.catwatch.backend.github.RateLimitBudget.HEADER_RESPONSE_SOURCE;
+
+/**
+ * HttpConnector that records every request of the wrapped connector in the
+ * {@link CrawlerMetrics}: the time until the response headers arrived, or
+ * until the request failed, and the bytes of the body read from the
+ * network. Bodies served by the http cache are not counted.
+ */
+public class MeteredHttpConnector implements HttpConnector {
+
+    private final HttpConnector connector;
+    private final CrawlerMetrics metrics;
+
+    public MeteredHttpConnector(HttpConnector connector, CrawlerMetrics metrics) {
+        this.connector = connector;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new MeteredConnection(connector.connect(url), CrawlerMetrics.endpoint(url));
+    }
+
+    class MeteredConnection extends DelegatingHttpURLConnection {
+
+        private final String endpoint;
+        private final long started = System.nanoTime();
+        private boolean recorded;
+        private boolean fromNetwork;
+
+        MeteredConnection(HttpURLConnection connection, String endpoint) {
+            super(connection);
+            this.endpoint = endpoint;
+        }
+
+        private long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        }
+
+        /**
+         * Sends the request if that has not happened yet and records it once.
+         */
+        private void record() throws IOException {
+            if (recorded) {
+                return;
+            }
+            recorded = true;
+            int status;
+            try {
+                status = connection.getResponseCode();
+            } catch (IOException e) {
+                metrics.failure(endpoint, elapsedMillis());
+                throw e;
+            }
+            String source = connection.getHeaderField(HEADER_RESPONSE_SOURCE);
+            fromNetwork = source == null || source.startsWith("NETWORK");
+            metrics.response(endpoint, elapsedMillis(), status, source);
+        }
+
+        private InputStream count(InputStream body) {
+            if (body == null || !fromNetwork) {
+                return body;
+            }
+            return new FilterInputStream(body) {
+
+                @Override
+                public int read() throws IOException {
+                    int read = super.read();
+                    if (read >= 0) {
+                        metrics.bytes(endpoint, 1);
+                    }
+                    return read;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        metrics.bytes(endpoint, read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            record();
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            record();
+            return count(connection.getInputStream());
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            try {
+                record();
+            } catch (IOException e) {
+                return null;
+            }
+            return count(connection.getErrorStream());
+        }
+    }
+}
@@ -30,14 +30,17 @@ public class OrganizationWrapper {
     private final GHOrganization organization;
     private final List<RepositoryWrapper> repositories;
 
-    OrganizationWrapper(GHOrganization organization) {
+    /**
+     * @param client lists the repositories and requests their endpoints
+     */
+    OrganizationWrapper(GHOrganization organization, StreamingGitHubClient client) {
         this.organization = organization;
         List<RepositoryWrapper> repositories;
         try {
-            repositories = organization.listRepositories().asList().stream()
+            repositories = client.listRepositories(organization.getLogin()).stream()
                     .filter(r -> !r.isPrivate()) // deal with public repos only
                     .filter(r -> !r.isFork())    // skip forks as they change statistics significantly
-                    .map(repository -> new RepositoryWrapper(repository, organization))
+                    .map(repository -> new RepositoryWrapper(repository, organization.getLogin(), client))
                     .collect(Collectors.toList());
         } catch (Throwable t) {
             logger.warn("No repositories found for organization '{}'.", organization.getLogin());
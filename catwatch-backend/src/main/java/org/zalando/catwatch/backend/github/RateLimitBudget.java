@@ -0,0 +1,171 @@
+package org.zalando.catwatch.backend.github;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Keeps track of the GitHub API rate limit of a single credential.
+ * <p>
+ * Registered as {@link ResponseListener}, it reads the X-RateLimit-Limit,
+ * X-RateLimit-Remaining and X-RateLimit-Reset headers of every response that
+ * is not served from the local http cache. The {@link CrawlScheduler}
+ * reserves the estimated requests of a repository before the repository is
+ * crawled and releases them afterwards, so that the crawler threads do not
+ * run into the limit.
+ *
+ * @see <a href="https://developer.github.com/v3/#rate-limiting">API documentation from GitHub</a>
+ */
+public class RateLimitBudget implements ResponseListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitBudget.class);
+
+    static final String HEADER_LIMIT = "X-RateLimit-Limit";
+    static final String HEADER_REMAINING = "X-RateLimit-Remaining";
+    static final String HEADER_RESET = "X-RateLimit-Reset";
+
+    /**
+     * Added by OkHttp, e.g. "CACHE 200", "CONDITIONAL_CACHE 304" or "NETWORK 200".
+     */
+    static final String HEADER_RESPONSE_SOURCE = "OkHttp-Response-Source";
+
+    private static final int UNKNOWN = -1;
+
+    /**
+     * Shortest wait for a change, so that waiting threads do not spin.
+     */
+    static final long MIN_WAIT_MILLIS = 1000;
+
+    /**
+     * Largest share of the limit of the credential that is kept as reserve,
+     * e.g. 15 of the 60 requests per hour of anonymous access.
+     */
+    static final int MAX_RESERVE_PERCENT = 25;
+
+    private final int reserve;
+
+    private volatile int limit = UNKNOWN;
+    private volatile int remaining = UNKNOWN;
+    private volatile long resetMillis;
+
+    /**
+     * Estimated requests of the repositories that are being crawled.
+     */
+    private int reserved;
+
+    /**
+     * @param reserve number of requests that must be left after all
+     *                reservations, e.g. for the organization level requests,
+     *                at most {@link #MAX_RESERVE_PERCENT} of the limit
+     */
+    public RateLimitBudget(int reserve) {
+        this.reserve = reserve;
+    }
+
+    @Override
+    public void onResponse(HttpURLConnection connection) {
+        String source = connection.getHeaderField(HEADER_RESPONSE_SOURCE);
+        if (source != null && source.startsWith("CACHE")) {
+            return; // headers of a cached response are outdated
+        }
+        update(connection.getHeaderField(HEADER_LIMIT), connection.getHeaderField(HEADER_REMAINING),
+                connection.getHeaderField(HEADER_RESET));
+    }
+
+    void update(String limitHeader, String remainingHeader, String resetHeader) {
+        if (remainingHeader == null || resetHeader == null) {
+            return;
+        }
+        try {
+            long reset = Long.parseLong(resetHeader.trim()) * 1000;
+            int remaining = Integer.parseInt(remainingHeader.trim());
+            int limit = limitHeader == null ? UNKNOWN : Integer.parseInt(limitHeader.trim());
+            synchronized (this) {
+                this.resetMillis = reset;
+                this.remaining = remaining;
+                this.limit = limit;
+                notifyAll();
+            }
+        } catch (NumberFormatException e) {
+            logger.debug("Ignoring malformed rate limit headers '{}' / '{}'.", remainingHeader, resetHeader);
+        }
+    }
+
+    /**
+     * Reserves the given number of requests if they are left after all other
+     * reservations and the reserve.
+     *
+     * @return false if the requests have to wait for the rate limit reset
+     */
+    public synchronized boolean tryReserve(int cost) {
+        int available = getAvailable();
+        // a fresh window admits at least one reservation, even if it is larger than the limit
+        if (available == UNKNOWN || available - reserved - cost >= getReserve()
+                || (reserved == 0 && available == limit)) {
+            reserved += cost;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases a reservation once the requests have been sent, from then on
+     * they are part of the remaining requests reported by GitHub.
+     */
+    public synchronized void release(int cost) {
+        reserved -= cost;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the rate limit is reset or until a reservation is released
+     * or new rate limit headers arrived, whatever happens first. Once the
+     * reset time has passed, it waits at least {@link #MIN_WAIT_MILLIS}, the
+     * full limit assumed then may still be used up by the reservations.
+     */
+    public synchronized void awaitChange() throws InterruptedException {
+        wait(Math.max(resetMillis - System.currentTimeMillis(), MIN_WAIT_MILLIS));
+    }
+
+    /**
+     * @return the reserve, capped to {@link #MAX_RESERVE_PERCENT} of the limit
+     * once GitHub reported it
+     */
+    private int getReserve() {
+        return limit == UNKNOWN ? reserve : Math.min(reserve, limit * MAX_RESERVE_PERCENT / 100);
+    }
+
+    /**
+     * @return requests left in the current window. After the reset time the
+     * full limit is assumed until GitHub reports the new window.
+     */
+    private int getAvailable() {
+        return System.currentTimeMillis() >= resetMillis ? limit : remaining;
+    }
+
+    /**
+     * @return requests left after all reservations, {@link Integer#MAX_VALUE}
+     * as long as no response has been seen
+     */
+    public synchronized int getHeadroom() {
+        int available = getAvailable();
+        return available == UNKNOWN ? Integer.MAX_VALUE : available - reserved;
+    }
+
+    /**
+     * @return remaining requests as reported by GitHub, or -1 if no response
+     * has been seen yet.
+     */
+    public int getRemaining() {
+        return remaining;
+    }
+
+    public long getResetMillis() {
+        return resetMillis;
+    }
+
+    public synchronized int getReserved() {
+        return reserved;
+    }
+}
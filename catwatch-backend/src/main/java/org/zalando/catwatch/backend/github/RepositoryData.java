@@ -0,0 +1,99 @@
+package org.zalando.catwatch.backend.github;
+
+import org.zalando.catwatch.backend.model.CatwatchYaml;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything fetched from GitHub for a single repository during a snapshot.
+ * <p>
+ * Each endpoint of the repository is requested exactly once per snapshot.
+ * All collect* methods of TakeSnapshotTask share these instances instead of
+ * asking the RepositoryWrapper again.
+ * <p>
+ * Repositories that did not change since the previous snapshot are not
+ * crawled completely, their commits count, languages, maintainers and
+ * .catwatch.yaml are taken from the previous project. Byte counts of their
+ * languages are unknown and set to zero.
+ *
+ * @see TakeSnapshotTask#collectRepository(RepositoryWrapper)
+ */
+public class RepositoryData {
+
+    private final RepositoryWrapper repository;
+    private final List<ContributorRecord> contributors;
+    private final int tagsCount;
+    private final Map<String, Long> languages;
+    private final int commitsCount;
+    private final List<String> maintainers;
+    private final CatwatchYaml catwatchYaml;
+    private final boolean unchanged;
+
+    public RepositoryData(RepositoryWrapper repository,
+                          List<ContributorRecord> contributors,
+                          int tagsCount,
+                          Map<String, Long> languages,
+                          int commitsCount,
+                          List<String> maintainers,
+                          CatwatchYaml catwatchYaml) {
+        this(repository, contributors, tagsCount, languages, commitsCount, maintainers, catwatchYaml, false);
+    }
+
+    public RepositoryData(RepositoryWrapper repository,
+                          List<ContributorRecord> contributors,
+                          int tagsCount,
+                          Map<String, Long> languages,
+                          int commitsCount,
+                          List<String> maintainers,
+                          CatwatchYaml catwatchYaml,
+                          boolean unchanged) {
+        this.repository = repository;
+        this.contributors = contributors;
+        this.tagsCount = tagsCount;
+        this.languages = languages;
+        this.commitsCount = commitsCount;
+        this.maintainers = maintainers;
+        this.catwatchYaml = catwatchYaml;
+        this.unchanged = unchanged;
+    }
+
+    public RepositoryWrapper getRepository() {
+        return repository;
+    }
+
+    public List<ContributorRecord> getContributors() {
+        return contributors;
+    }
+
+    public int getTagsCount() {
+        return tagsCount;
+    }
+
+    public Map<String, Long> getLanguages() {
+        return languages;
+    }
+
+    public int getCommitsCount() {
+        return commitsCount;
+    }
+
+    public List<String> getMaintainers() {
+        return maintainers;
+    }
+
+    /**
+     * @return content of the .catwatch.yaml file or null if the repository has none
+     */
+    public CatwatchYaml getCatwatchYaml() {
+        return catwatchYaml;
+    }
+
+    /**
+     * @return true if parts of the data were carried forward from the
+     * previous snapshot instead of being requested from GitHub
+     */
+    public boolean isUnchanged() {
+        return unchanged;
+    }
+}
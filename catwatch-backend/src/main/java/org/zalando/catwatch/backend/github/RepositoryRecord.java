@@ -0,0 +1,97 @@
+package org.zalando.catwatch.backend.github;
+
+import java.util.Date;
+
+/**
+ * The fields of a repository listing entry the crawler reads, see
+ * {@link StreamingGitHubClient#listRepositories(String)}.
+ */
+public class RepositoryRecord {
+
+    private final int id;
+    private final String name;
+    private final String fullName;
+    private final String url;
+    private final String htmlUrl;
+    private final String description;
+    private final int watchers;
+    private final int forks;
+    private final int size;
+    private final Date pushedAt;
+    private final String language;
+    private final boolean isPrivate;
+    private final boolean fork;
+
+    /**
+     * @param url API URL of the repository, the base of its endpoints
+     */
+    public RepositoryRecord(int id, String name, String fullName, String url, String htmlUrl, String description,
+                            int watchers, int forks, int size, Date pushedAt, String language, boolean isPrivate,
+                            boolean fork) {
+        this.id = id;
+        this.name = name;
+        this.fullName = fullName;
+        this.url = url;
+        this.htmlUrl = htmlUrl;
+        this.description = description;
+        this.watchers = watchers;
+        this.forks = forks;
+        this.size = size;
+        this.pushedAt = pushedAt;
+        this.language = language;
+        this.isPrivate = isPrivate;
+        this.fork = fork;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHtmlUrl() {
+        return htmlUrl;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getWatchers() {
+        return watchers;
+    }
+
+    public int getForks() {
+        return forks;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Date getPushedAt() {
+        return pushedAt;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public boolean isPrivate() {
+        return isPrivate;
+    }
+
+    public boolean isFork() {
+        return fork;
+    }
+}
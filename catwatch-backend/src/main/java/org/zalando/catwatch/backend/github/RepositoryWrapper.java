@@ -1,14 +1,14 @@
 package org.zalando.catwatch.backend.github;
 
-import org.kohsuke.github.GHCommit;
-import org.kohsuke.github.GHOrganization;
-import org.kohsuke.github.GHRepository;
-import org.kohsuke.github.GHTag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.util.Collections;
 import java.util.Date;
@@ -16,27 +16,31 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * Wrapper for GHRepository object.
+ * Wrapper for a repository of the repository listing.
  * <p>
  * The objective of this class is to deal with exceptions during fetching
- * data via Kohsuke GitHub API so that TakeSnapshotTask is kept free from
- * try/catch clutter. For some reason the library throws Error on empty
- * responses (e.g. no contributors for project). Another scenario for
- * throwing an exception is having not enough rights to see private
- * details (e.g. teams of organization).
+ * data via the {@link StreamingGitHubClient} so that TakeSnapshotTask is kept
+ * free from try/catch clutter. GitHub answers some endpoints of empty
+ * repositories with errors (e.g. no contributors for project).
+ * <p>
+ * Interruptions are not taken for such errors: a cancelled snapshot
+ * interrupts its crawler threads, and a project saved with 0 commits and no
+ * languages would be carried forward when the snapshot is resumed.
  *
- * @see GHRepository
+ * @see RepositoryRecord
  */
 public class RepositoryWrapper {
 
     private static final Logger logger = LoggerFactory.getLogger(RepositoryWrapper.class);
 
-    private final GHRepository repository;
-    private final GHOrganization organization;
+    private final RepositoryRecord repository;
+    private final String organizationName;
+    private final StreamingGitHubClient client;
 
-    RepositoryWrapper(GHRepository repository, GHOrganization organization) {
+    RepositoryWrapper(RepositoryRecord repository, String organizationName, StreamingGitHubClient client) {
         this.repository = repository;
-        this.organization = organization;
+        this.organizationName = organizationName;
+        this.client = client;
     }
 
     public int getId() {
@@ -48,7 +52,11 @@ public class RepositoryWrapper {
     }
 
     public URL getUrl() {
-        return repository.getHtmlUrl();
+        try {
+            return repository.getHtmlUrl() == null ? null : new URL(repository.getHtmlUrl());
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public String getDescription() {
@@ -77,46 +85,93 @@ public class RepositoryWrapper {
 
     public Map<String, Long> listLanguages() {
         try {
-            return repository.listLanguages();
+            return client.listLanguages(repository);
         } catch (IOException e) {
-            logger.warn("No languages found for project '{}' of organization '{}'.", repository.getName(), organization.getLogin());
+            rethrowIfInterrupted(e);
+            logger.warn("No languages found for project '{}' of organization '{}'.", repository.getName(), organizationName);
             return Collections.<String, Long>emptyMap();
         }
     }
 
     public String getOrganizationName() {
-        return organization.getLogin();
+        return organizationName;
     }
 
-    public List<GHCommit> listCommits() {
+    public int countCommits() {
         try {
-            return repository.listCommits().asList();
-        } catch (Error e) {
-            logger.warn("No commits found for project '{}' of organization '{}'.", repository.getName(), organization.getLogin());
-            return Collections.<GHCommit>emptyList();
+            return client.countCommits(repository);
+        } catch (IOException e) {
+            rethrowIfInterrupted(e);
+            logger.warn("No commits found for project '{}' of organization '{}'.", repository.getName(), organizationName);
+            return 0;
         }
     }
 
-    public List<GHRepository.Contributor> listContributors() {
+    public List<ContributorRecord> listContributors() {
         try {
-            return repository.listContributors().asList();
+            return client.listContributors(repository);
         } catch (Throwable t) {
-            logger.warn("No contributors found for project '{}' of organization '{}'.", repository.getName(), organization.getLogin());
-            return Collections.<GHRepository.Contributor>emptyList();
+            rethrowIfInterrupted(t);
+            logger.warn("No contributors found for project '{}' of organization '{}'.", repository.getName(), organizationName);
+            return Collections.<ContributorRecord>emptyList();
         }
     }
 
-    public List<GHTag> listTags() {
+    public int countTags() {
         try {
-            return repository.listTags().asList();
+            return client.countTags(repository);
         } catch (Throwable t) {
-            logger.warn("No tags found for project '{}' of organization '{}'.", repository.getName(), organization.getLogin());
-            return Collections.<GHTag>emptyList();
+            rethrowIfInterrupted(t);
+            logger.warn("No tags found for project '{}' of organization '{}'.", repository.getName(), organizationName);
+            return 0;
         }
     }
 
+    /**
+     * @return download URLs of the files in the root directory of the default
+     * branch by name, empty for an empty repository. Files can be downloaded
+     * without requesting their metadata again.
+     */
+    public Map<String, String> listRootFiles() throws IOException {
+        return client.listRootFiles(repository);
+    }
+
+    public InputStream download(String downloadUrl) throws IOException {
+        return client.download(downloadUrl);
+    }
+
     public InputStream getFileContent(String path) throws IOException {
-        return repository.getFileContent(path).read();
+        return client.getFileContent(repository, path);
+    }
+
+    /**
+     * @throws UncheckedIOException with an InterruptedIOException if the
+     *                              current thread was interrupted
+     */
+    static void rethrowIfInterrupted(Throwable t) {
+        if (isInterruption(t)) {
+            // Okio clears the flag when it throws
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Interrupted while crawling repository.");
+            interrupted.initCause(t);
+            throw new UncheckedIOException(interrupted);
+        }
     }
 
+    /**
+     * @return true if the current thread was interrupted or the exception,
+     * or one of its causes, reports an interruption. A read timeout is an
+     * InterruptedIOException as well, but no interruption.
+     */
+    static boolean isInterruption(Throwable t) {
+        if (Thread.currentThread().isInterrupted()) {
+            return true;
+        }
+        for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
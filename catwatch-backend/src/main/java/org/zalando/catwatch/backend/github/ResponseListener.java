@@ -0,0 +1,17 @@
+package org.zalando.catwatch.backend.github;
+
+import java.net.HttpURLConnection;
+
+/**
+ * Gets notified about every response received from the GitHub API.
+ *
+ * @see ListeningHttpConnector
+ */
+public interface ResponseListener {
+
+    /**
+     * @param connection the connection of the request. The response code and
+     *                   headers are available, the body must not be consumed.
+     */
+    void onResponse(HttpURLConnection connection);
+}
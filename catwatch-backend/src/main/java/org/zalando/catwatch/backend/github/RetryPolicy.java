@@ -0,0 +1,70 @@
+package org.zalando.catwatch.backend.github;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How often and how long the {@link RetryingHttpConnector} repeats a GET
+ * request, and when it sends a hedged request.
+ */
+@Component
+public class RetryPolicy {
+
+    private final int retries;
+    private final long backoffMillis;
+    private final long deadlineMillis;
+    private final long hedgeDelayMillis;
+
+    /**
+     * @param retries          number of retries after the first attempt
+     * @param backoffMillis    upper bound of the random wait before the first
+     *                         retry, doubled for every further retry
+     * @param deadlineMillis   no retry is started later than this after the
+     *                         first attempt
+     * @param hedgeDelayMillis a second request is sent if the first has not
+     *                         been answered after this time, 0 disables
+     *                         hedging
+     */
+    @Autowired
+    public RetryPolicy(@Value("${github.http.retries}") int retries,
+                       @Value("${github.http.retry.backoff.ms}") long backoffMillis,
+                       @Value("${github.http.deadline.ms}") long deadlineMillis,
+                       @Value("${github.http.hedge.delay.ms}") long hedgeDelayMillis) {
+        this.retries = retries;
+        this.backoffMillis = backoffMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * @return a policy that sends every request once
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy(0, 0, 0, 0);
+    }
+
+    /**
+     * @param retry number of the retry, starting with 0
+     * @return random wait before the retry ("full jitter"), so that the
+     * crawler threads do not retry in lockstep
+     */
+    long backoff(int retry) {
+        long maxMillis = backoffMillis << Math.min(retry, 16);
+        return maxMillis <= 0 ? 0 : ThreadLocalRandom.current().nextLong(maxMillis + 1);
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+}
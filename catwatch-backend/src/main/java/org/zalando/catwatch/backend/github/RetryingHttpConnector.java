@@ -0,0 +1,342 @@
+package org.zalando.catwatch.backend.github;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.kohsuke.github.HttpConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * HttpConnector that repeats GET requests failing with an I/O error (e.g. a
+ * read timeout or a reset connection) or with 500, 502, 503 or 504, so that
+ * a transient failure does not fail the snapshot of a whole organization.
+ * <p>
+ * Before a retry the connector waits a random time bounded by the
+ * {@link RetryPolicy}. No retry is started after the deadline of the
+ * request, the last response or failure is returned instead.
+ * <p>
+ * With a hedge delay a second GET is sent if the first one has not been
+ * answered in time, the first response wins and the other request is
+ * cancelled. Hedged requests count against the rate limit.
+ * <p>
+ * Other methods are sent once as they are not idempotent.
+ */
+public class RetryingHttpConnector implements HttpConnector {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetryingHttpConnector.class);
+
+    private static final ExecutorService HEDGE_POOL = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("github-hedge-%d").setDaemon(true).build());
+
+    private final HttpConnector connector;
+    private final RetryPolicy policy;
+
+    public RetryingHttpConnector(HttpConnector connector, RetryPolicy policy) {
+        this.connector = connector;
+        this.policy = policy;
+    }
+
+    @Override
+    public HttpURLConnection connect(URL url) throws IOException {
+        return new RetryingConnection(connector.connect(url));
+    }
+
+    static boolean isRetryable(int status) {
+        return status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * The wrapped connection collects the request. It is sent as the first
+     * attempt as soon as the response is requested, later attempts are
+     * copies of it.
+     */
+    class RetryingConnection extends DelegatingHttpURLConnection {
+
+        private HttpURLConnection response;
+        private IOException failure;
+
+        RetryingConnection(HttpURLConnection connection) {
+            super(connection);
+        }
+
+        private HttpURLConnection response() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (response == null) {
+                try {
+                    boolean idempotent = "GET".equals(connection.getRequestMethod()) && !connection.getDoOutput();
+                    response = idempotent ? send() : connection;
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                }
+            }
+            return response;
+        }
+
+        /**
+         * Header fields must not throw, a failed request surfaces on the
+         * next call of getResponseCode or getInputStream.
+         */
+        private HttpURLConnection responseQuietly() {
+            try {
+                return response();
+            } catch (IOException e) {
+                return connection;
+            }
+        }
+
+        private HttpURLConnection send() throws IOException {
+            // the request properties cannot be read once the request has been sent
+            Map<String, List<String>> properties = connection.getRequestProperties();
+            long deadline = System.currentTimeMillis() + policy.getDeadlineMillis();
+
+            HttpURLConnection attempt = connection;
+            for (int retry = 0; ; retry++) {
+                HttpURLConnection answered = null;
+                IOException error = null;
+                try {
+                    answered = hedge(attempt, properties);
+                } catch (IOException e) {
+                    // a read timeout is an InterruptedIOException as well, but it does not stop the crawler
+                    if (RepositoryWrapper.isInterruption(e)) {
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                    error = e;
+                }
+
+                boolean failed = error != null || isRetryable(answered.getResponseCode());
+                long backoff = policy.backoff(retry);
+                if (!failed || retry >= policy.getRetries() || System.currentTimeMillis() + backoff > deadline) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return answered;
+                }
+
+                logger.info("Retrying '{}' in {} ms after {}.", url, backoff,
+                        error != null ? error.toString() : "status " + answered.getResponseCode());
+                if (answered != null) {
+                    discard(answered);
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to retry " + url);
+                }
+                attempt = copy(properties);
+            }
+        }
+
+        /**
+         * @return the first attempt or a hedged copy, whichever is answered
+         * first
+         */
+        private HttpURLConnection hedge(HttpURLConnection first, Map<String, List<String>> properties)
+                throws IOException {
+            if (policy.getHedgeDelayMillis() <= 0) {
+                first.getResponseCode();
+                return first;
+            }
+
+            CompletionService<HttpURLConnection> answers = new ExecutorCompletionService<>(HEDGE_POOL);
+            List<HttpURLConnection> sent = new ArrayList<>();
+            submit(answers, sent, first);
+            try {
+                Future<HttpURLConnection> answer = answers.poll(policy.getHedgeDelayMillis(), MILLISECONDS);
+                if (answer == null) {
+                    logger.debug("Hedging '{}' after {} ms.", url, policy.getHedgeDelayMillis());
+                    submit(answers, sent, copy(properties));
+                }
+
+                IOException error = null;
+                for (int pending = sent.size(); pending > 0; pending--) {
+                    if (answer == null) {
+                        answer = answers.take();
+                    }
+                    try {
+                        HttpURLConnection winner = answer.get();
+                        sent.stream().filter(attempt -> attempt != winner).forEach(HttpURLConnection::disconnect);
+                        return winner;
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            error = e.getCause() instanceof IOException
+                                    ? (IOException) e.getCause() : new IOException(e.getCause());
+                        }
+                    }
+                    answer = null;
+                }
+                throw error;
+            } catch (InterruptedException e) {
+                sent.forEach(HttpURLConnection::disconnect);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + url);
+            }
+        }
+
+        private void submit(CompletionService<HttpURLConnection> answers, List<HttpURLConnection> sent,
+                            HttpURLConnection attempt) {
+            sent.add(attempt);
+            answers.submit(() -> {
+                attempt.getResponseCode();
+                return attempt;
+            });
+        }
+
+        private HttpURLConnection copy(Map<String, List<String>> properties) throws IOException {
+            HttpURLConnection copy = connector.connect(url);
+            copy.setRequestMethod(connection.getRequestMethod());
+            copy.setConnectTimeout(connection.getConnectTimeout());
+            copy.setReadTimeout(connection.getReadTimeout());
+            copy.setInstanceFollowRedirects(connection.getInstanceFollowRedirects());
+            copy.setUseCaches(connection.getUseCaches());
+            for (Map.Entry<String, List<String>> property : properties.entrySet()) {
+                if (property.getKey() != null) {
+                    property.getValue().forEach(value -> copy.addRequestProperty(property.getKey(), value));
+                }
+            }
+            return copy;
+        }
+
+        private void discard(HttpURLConnection attempt) {
+            try (InputStream error = attempt.getErrorStream()) {
+                // closing the body returns the connection to the pool
+            } catch (IOException e) {
+                attempt.disconnect();
+            }
+        }
+
+        @Override
+        public void connect() throws IOException {
+            response();
+        }
+
+        @Override
+        public void disconnect() {
+            if (response != null) {
+                response.disconnect();
+            }
+            connection.disconnect();
+        }
+
+        @Override
+        public int getResponseCode() throws IOException {
+            return response().getResponseCode();
+        }
+
+        @Override
+        public String getResponseMessage() throws IOException {
+            return response().getResponseMessage();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return response().getInputStream();
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return responseQuietly().getErrorStream();
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            return responseQuietly().getHeaderField(name);
+        }
+
+        @Override
+        public String getHeaderField(int n) {
+            return responseQuietly().getHeaderField(n);
+        }
+
+        @Override
+        public String getHeaderFieldKey(int n) {
+            return responseQuietly().getHeaderFieldKey(n);
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return responseQuietly().getHeaderFields();
+        }
+
+        @Override
+        public int getHeaderFieldInt(String name, int defaultValue) {
+            return responseQuietly().getHeaderFieldInt(name, defaultValue);
+        }
+
+        @Override
+        public long getHeaderFieldLong(String name, long defaultValue) {
+            return responseQuietly().getHeaderFieldLong(name, defaultValue);
+        }
+
+        @Override
+        public long getHeaderFieldDate(String name, long defaultValue) {
+            return responseQuietly().getHeaderFieldDate(name, defaultValue);
+        }
+
+        @Override
+        public String getContentType() {
+            return responseQuietly().getContentType();
+        }
+
+        @Override
+        public String getContentEncoding() {
+            return responseQuietly().getContentEncoding();
+        }
+
+        @Override
+        public int getContentLength() {
+            return responseQuietly().getContentLength();
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return responseQuietly().getContentLengthLong();
+        }
+
+        @Override
+        public long getDate() {
+            return responseQuietly().getDate();
+        }
+
+        @Override
+        public long getExpiration() {
+            return responseQuietly().getExpiration();
+        }
+
+        @Override
+        public long getLastModified() {
+            return responseQuietly().getLastModified();
+        }
+
+        @Override
+        public Object getContent() throws IOException {
+            return response().getContent();
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Object getContent(Class[] classes) throws IOException {
+            return response().getContent(classes);
+        }
+    }
+}
@@ -1,42 +1,90 @@
 package org.zalando.catwatch.backend.github;
 
-import org.zalando.catwatch.backend.model.Contributor;
 import org.zalando.catwatch.backend.model.Language;
-import org.zalando.catwatch.backend.model.Project;
 import org.zalando.catwatch.backend.model.Statistics;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
+/**
+ * Result of a TakeSnapshotTask. The projects and contributors are not part of
+ * it, they are handed to the {@link SnapshotWriter} of the task while the
+ * organization is crawled.
+ */
 public class Snapshot {
 
     private final Statistics statistics;
-    private final Collection<Project> projects;
-    private final Collection<Contributor> contributors;
     private final Collection<Language> languages;
+    private final int projectsCount;
+    private final int contributorsCount;
+    private final int unchangedProjectsCount;
+    private final int cachedProfilesCount;
+    private final Map<String, Long> phaseMillis;
 
     public Snapshot(Statistics statistics,
-                    Collection<Project> projects,
-                    Collection<Contributor> contributors,
-                    Collection<Language> languages) {
+                    Collection<Language> languages,
+                    int projectsCount,
+                    int contributorsCount,
+                    int unchangedProjectsCount,
+                    int cachedProfilesCount) {
+        this(statistics, languages, projectsCount, contributorsCount, unchangedProjectsCount, cachedProfilesCount,
+                Collections.emptyMap());
+    }
+
+    public Snapshot(Statistics statistics,
+                    Collection<Language> languages,
+                    int projectsCount,
+                    int contributorsCount,
+                    int unchangedProjectsCount,
+                    int cachedProfilesCount,
+                    Map<String, Long> phaseMillis) {
         this.statistics = statistics;
-        this.projects = projects;
-        this.contributors = contributors;
         this.languages = languages;
+        this.projectsCount = projectsCount;
+        this.contributorsCount = contributorsCount;
+        this.unchangedProjectsCount = unchangedProjectsCount;
+        this.cachedProfilesCount = cachedProfilesCount;
+        this.phaseMillis = phaseMillis;
     }
 
     public Statistics getStatistics() {
         return statistics;
     }
 
-    public Collection<Project> getProjects() {
-        return projects;
+    public Collection<Language> getLanguages() {
+        return languages;
     }
 
-    public Collection<Contributor> getContributors() {
-        return contributors;
+    public int getProjectsCount() {
+        return projectsCount;
     }
 
-    public Collection<Language> getLanguages() {
-        return languages;
+    public int getContributorsCount() {
+        return contributorsCount;
+    }
+
+    /**
+     * @return number of projects carried forward from the previous snapshot
+     * because their repositories did not change
+     */
+    public int getUnchangedProjectsCount() {
+        return unchangedProjectsCount;
+    }
+
+    /**
+     * @return number of contributor profiles taken from the cache, each of
+     * them saved a request to GitHub
+     */
+    public int getCachedProfilesCount() {
+        return cachedProfilesCount;
+    }
+
+    /**
+     * @return duration of the phases of the snapshot in milliseconds by
+     * phase, e.g. "repositories" or "contributors", in the order they ran
+     */
+    public Map<String, Long> getPhaseMillis() {
+        return phaseMillis;
     }
 }
@@ -0,0 +1,80 @@
+package org.zalando.catwatch.backend.github;
+
+
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Organization wide sums of the repositories collected so far.
+ * <p>
+ * The data of a repository is added as soon as it is fetched and dropped
+ * afterwards, only one entry per distinct contributor and language is kept.
+ */
+class SnapshotAggregate {
+
+    /**
+     * Per contributor id the first contributor object seen and the number of
+     * contributions per repository.
+     */
+    private final Map<Integer, ContributorStatistics> contributors = new TreeMap<>();
+
+    /**
+     * Per language the number of bytes per repository.
+     */
+    private final Map<String, LongSummaryStatistics> languages = new TreeMap<>();
+
+    private int repositoriesCount;
+    private int unchangedCount;
+    private int tagsCount;
+
+    synchronized void add(RepositoryData data) {
+        repositoriesCount++;
+        if (data.isUnchanged()) {
+            unchangedCount++;
+        }
+        tagsCount += data.getTagsCount();
+
+        for (ContributorRecord contributor : data.getContributors()) {
+            contributors.computeIfAbsent(contributor.getId(), id -> new ContributorStatistics(contributor))
+                    .contributions.accept(contributor.getContributions());
+        }
+        for (Map.Entry<String, ? extends Number> language : data.getLanguages().entrySet()) {
+            languages.computeIfAbsent(language.getKey(), name -> new LongSummaryStatistics())
+                    .accept(language.getValue().longValue());
+        }
+    }
+
+    /**
+     * @return statistics ordered by contributor id
+     */
+    synchronized Map<Integer, ContributorStatistics> getContributors() {
+        return contributors;
+    }
+
+    synchronized Map<String, LongSummaryStatistics> getLanguages() {
+        return languages;
+    }
+
+    synchronized int getRepositoriesCount() {
+        return repositoriesCount;
+    }
+
+    synchronized int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    synchronized int getTagsCount() {
+        return tagsCount;
+    }
+
+    static class ContributorStatistics {
+
+        final ContributorRecord contributor;
+        final LongSummaryStatistics contributions = new LongSummaryStatistics();
+
+        ContributorStatistics(ContributorRecord contributor) {
+            this.contributor = contributor;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.zalando.catwatch.backend.github;
+
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the projects and contributors of a snapshot in memory.
+ */
+public class SnapshotCollector implements SnapshotWriter {
+
+    private final List<Project> projects = Collections.synchronizedList(new ArrayList<>());
+    private final List<Contributor> contributors = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void writeProject(Project project) {
+        projects.add(project);
+    }
+
+    @Override
+    public void writeContributor(Contributor contributor) {
+        contributors.add(contributor);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    public List<Project> getProjects() {
+        return projects;
+    }
+
+    public List<Contributor> getContributors() {
+        return contributors;
+    }
+}
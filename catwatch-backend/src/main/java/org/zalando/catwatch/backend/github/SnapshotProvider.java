@@ -1,35 +1,62 @@
 package org.zalando.catwatch.backend.github;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.squareup.okhttp.Cache;
 import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.OkUrlFactory;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.HttpConnector;
 import org.kohsuke.github.extras.OkHttpConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.zalando.catwatch.backend.model.Project;
 import org.zalando.catwatch.backend.model.util.Scorer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Initializes http cache directory and http client. Submits TakeSnapshotTasks
  * and returns futures of Snapshots with organization data.
+ * <p>
+ * All tasks share a bounded pool of crawler threads (github.crawler.threads)
+ * that fetch the data of single repositories concurrently.
+ * <p>
+ * With github.snapshot.source=graphql the repositories are fetched in batches
+ * by {@link GraphQlSnapshotTask} instead.
+ * <p>
+ * Requests time out after github.http.connect.timeout.ms and
+ * github.http.read.timeout.ms, failed GET requests are repeated by the
+ * {@link RetryingHttpConnector}. All requests are recorded in the
+ * {@link CrawlerMetrics}.
+ * <p>
+ * The repository listing and the endpoints requested for every repository
+ * are parsed by the {@link StreamingGitHubClient}, Kohsuke GitHub API is left
+ * with organization, teams and members.
  */
 @Component
 public class SnapshotProvider {
@@ -38,14 +65,36 @@ public class SnapshotProvider {
 
     private static final int MEGABYTE = 1024 * 1024;
 
+    static final String SOURCE_GRAPHQL = "graphql";
+
     private final Scorer scorer;
     private final String cachePath;
     private final Integer cacheSize;
     private final String login;
     private final String password;
     private final String token;
+    private final String tokens;
+    private final int crawlerThreads;
+    private final String snapshotSource;
+    private final String apiUrl;
+    private final String graphQlUrl;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final RetryPolicy retryPolicy;
     private final ExecutorService pool = Executors.newCachedThreadPool();
 
+    /**
+     * Fetches the data of single repositories. Shared by all TakeSnapshotTasks
+     * so that the number of concurrent GitHub requests stays bounded.
+     */
+    private ExecutorService repositoryPool;
+
+    /**
+     * Every credential has its own budget, a snapshot uses the credential with
+     * the most requests left.
+     */
+    private CredentialPool credentialPool;
+
     /**
      * OkHttpClient has to be shared between threads.
      *
@@ -53,19 +102,53 @@ public class SnapshotProvider {
      */
     private OkHttpClient httpClient;
 
+    private final Optional<ConditionalRequestStore> conditionalRequestStore;
+    private final ConditionalRequestCounters conditionalRequestCounters;
+    private final ContributorProfileCache profileCache;
+    private final CrawlerMetrics crawlerMetrics;
+
+    /**
+     * Sends the requests of all tasks, conditional ones if a store is configured.
+     */
+    private HttpConnector connector;
+
     @Autowired
     public SnapshotProvider(Scorer scorer,
                             @Value("${cache.path}") String cachePath,
                             @Value("${cache.size}") Integer cacheSize,
                             @Value("${github.login:#{null}}") String login,
                             @Value("${github.password:#{null}}") String password,
-                            @Value("${github.oauth.token:#{null}}") String token) {
+                            @Value("${github.oauth.token:#{null}}") String token,
+                            @Value("${github.oauth.tokens:}") String tokens,
+                            @Value("${github.crawler.threads}") int crawlerThreads,
+                            @Value("${github.snapshot.source}") String snapshotSource,
+                            @Value("${github.api.url}") String apiUrl,
+                            @Value("${github.graphql.url}") String graphQlUrl,
+                            @Value("${github.http.connect.timeout.ms}") int connectTimeoutMillis,
+                            @Value("${github.http.read.timeout.ms}") int readTimeoutMillis,
+                            RetryPolicy retryPolicy,
+                            Optional<ConditionalRequestStore> conditionalRequestStore,
+                            ConditionalRequestCounters conditionalRequestCounters,
+                            ContributorProfileCache profileCache,
+                            CrawlerMetrics crawlerMetrics) {
         this.scorer = scorer;
         this.cachePath = cachePath;
         this.cacheSize = cacheSize;
         this.login = login;
         this.password = password;
         this.token = token;
+        this.tokens = tokens;
+        this.crawlerThreads = crawlerThreads;
+        this.snapshotSource = snapshotSource;
+        this.apiUrl = apiUrl;
+        this.graphQlUrl = graphQlUrl;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.retryPolicy = retryPolicy;
+        this.conditionalRequestStore = conditionalRequestStore;
+        this.conditionalRequestCounters = conditionalRequestCounters;
+        this.profileCache = profileCache;
+        this.crawlerMetrics = crawlerMetrics;
     }
 
     /**
@@ -82,24 +165,133 @@ public class SnapshotProvider {
             this.httpClient = new OkHttpClient();
             logger.warn("Initialized http client without cache.");
         }
-    }
+        // a hanging request must not stall the snapshot, it fails and is retried instead
+        httpClient.setConnectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        httpClient.setReadTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
 
-    public Future<Snapshot> takeSnapshot(String organizationName, Date snapshotDate) throws IOException {
-        GitHubBuilder builder = new GitHubBuilder();
-
-        if (StringUtils.isNotEmpty(token)) {
-            builder.withOAuthToken(token);
-        } else if (StringUtils.isNotEmpty(login) && StringUtils.isNotEmpty(password)) {
-            builder.withPassword(login, password);
+        // every attempt of a retried request is metered
+        HttpConnector okHttpConnector = new RetryingHttpConnector(
+                new MeteredHttpConnector(new OkHttpConnector(new OkUrlFactory(httpClient)), crawlerMetrics),
+                retryPolicy);
+        if (conditionalRequestStore.isPresent()) {
+            this.connector = new ConditionalRequestConnector(okHttpConnector, conditionalRequestStore.get(),
+                    conditionalRequestCounters);
+            logger.info("Initialized conditional requests with {}.",
+                    conditionalRequestStore.get().getClass().getSimpleName());
         } else {
+            this.connector = okHttpConnector;
+        }
+
+        this.credentialPool = new CredentialPool(getCredentials());
+        crawlerMetrics.register(credentialPool.getCredentials());
+        if (credentialPool.getCredentials().get(0).isAnonymous()) {
             logger.error("GitHub credentials not found, proceeding unauthenticated. That will enforce 60 requests per hour limit.");
+        } else {
+            logger.info("Initialized {} GitHub credentials.", credentialPool.getCredentials().size());
+        }
+
+        this.repositoryPool = Executors.newFixedThreadPool(crawlerThreads,
+                new ThreadFactoryBuilder().setNameFormat("github-crawler-%d").setDaemon(true).build());
+        logger.info("Initialized {} crawler threads.", crawlerThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        repositoryPool.shutdownNow();
+    }
+
+    /**
+     * @param previousProjects projects of the previous snapshot of the
+     *                         organization, empty to crawl all repositories
+     * @param writer           receives the projects and contributors while
+     *                         the organization is crawled
+     */
+    public Future<Snapshot> takeSnapshot(String organizationName, Date snapshotDate,
+                                         Collection<Project> previousProjects, SnapshotWriter writer)
+            throws IOException {
+        GitHubCredential credential = credentialPool.select();
+        RateLimitBudget rateLimitBudget = credential.getBudget();
+        logger.info("Taking snapshot of organization '{}' with {}, {} requests left.", organizationName, credential,
+                rateLimitBudget.getRemaining());
+
+        ApiCallCounter apiCallCounter = new ApiCallCounter();
+        HttpConnector listeningConnector = new ListeningHttpConnector(connector, rateLimitBudget, apiCallCounter);
+        GitHub gitHub = credential.configure(new GitHubBuilder())
+                .withEndpoint(apiUrl)
+                .withConnector(listeningConnector)
+                .build();
+
+        String authorization = credential.getAuthorization();
+        StreamingGitHubClient client = new StreamingGitHubClient(listeningConnector, apiUrl, authorization);
+
+        if (SOURCE_GRAPHQL.equals(snapshotSource)) {
+            // GraphQL queries are limited by points instead of requests, so they bypass the rate limit budget
+            GraphQlClient graphQlClient = new GraphQlClient(new ListeningHttpConnector(connector, apiCallCounter),
+                    graphQlUrl, authorization);
+            return pool.submit(new GraphQlSnapshotTask(gitHub, organizationName, scorer, snapshotDate,
+                    repositoryPool, rateLimitBudget, apiCallCounter, client, previousProjects, writer,
+                    profileCache, graphQlClient));
         }
 
-        GitHub gitHub = builder.withConnector(new OkHttpConnector(new OkUrlFactory(httpClient))).build();
+        return pool.submit(new TakeSnapshotTask(gitHub, organizationName, scorer, snapshotDate, repositoryPool,
+                rateLimitBudget, apiCallCounter, client, previousProjects, writer, profileCache));
+    }
+
+    /**
+     * Fetches a single repository with the credential that has the most
+     * requests left, without previous projects so that it is crawled
+     * completely.
+     *
+     * @return project of the repository with the given snapshot date, nothing
+     * if the repository is private or a fork
+     * @see TakeSnapshotTask#refreshProject(String)
+     */
+    public Optional<Project> refreshProject(String organizationName, String repositoryName, Date snapshotDate)
+            throws IOException, URISyntaxException {
+        GitHubCredential credential = credentialPool.select();
+        HttpConnector listeningConnector = new ListeningHttpConnector(connector, credential.getBudget(),
+                new ApiCallCounter());
+        StreamingGitHubClient client = new StreamingGitHubClient(listeningConnector, apiUrl,
+                credential.getAuthorization());
 
-        return pool.submit(new TakeSnapshotTask(gitHub, organizationName, scorer, snapshotDate));
+        // the Kohsuke client is only needed for organization, teams and members
+        TakeSnapshotTask task = new TakeSnapshotTask(null, organizationName, scorer, snapshotDate, repositoryPool,
+                credential.getBudget(), new ApiCallCounter(), client, Collections.emptyList(),
+                new SnapshotCollector(), profileCache);
+        return task.refreshProject(repositoryName);
     }
-    
+
+    /**
+     * @return the tokens of github.oauth.tokens and github.oauth.token, or
+     * login and password, or anonymous access
+     */
+    private List<GitHubCredential> getCredentials() {
+        Set<String> allTokens = new LinkedHashSet<>();
+        if (StringUtils.isNotEmpty(token)) {
+            allTokens.add(token.trim());
+        }
+        for (String pooledToken : StringUtils.split(StringUtils.defaultString(tokens), ',')) {
+            if (StringUtils.isNotBlank(pooledToken)) {
+                allTokens.add(pooledToken.trim());
+            }
+        }
+
+        // the reserve covers the requests of the other threads that are still working on a repository,
+        // the budget caps it to a share of the limit of each credential, e.g. of anonymous access
+        int reserve = crawlerThreads * 10;
+        List<GitHubCredential> credentials = new ArrayList<>();
+        for (String pooledToken : allTokens) {
+            credentials.add(GitHubCredential.token(pooledToken, new RateLimitBudget(reserve)));
+        }
+        if (credentials.isEmpty() && StringUtils.isNotEmpty(login) && StringUtils.isNotEmpty(password)) {
+            credentials.add(GitHubCredential.password(login, password, new RateLimitBudget(reserve)));
+        }
+        if (credentials.isEmpty()) {
+            credentials.add(GitHubCredential.anonymous(new RateLimitBudget(reserve)));
+        }
+        return credentials;
+    }
+
     private Optional<File> getCacheDirectory() {
         Path path = Paths.get(cachePath);
 
@@ -0,0 +1,24 @@
+package org.zalando.catwatch.backend.github;
+
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+
+/**
+ * Receives the projects and contributors of a snapshot as soon as they are
+ * collected, so that a TakeSnapshotTask does not have to keep them until the
+ * whole organization is crawled.
+ * <p>
+ * Projects are written by the crawler threads concurrently, implementations
+ * have to be thread safe.
+ */
+public interface SnapshotWriter {
+
+    void writeProject(Project project);
+
+    void writeContributor(Contributor contributor);
+
+    /**
+     * Called once after all projects and contributors are written.
+     */
+    void flush();
+}
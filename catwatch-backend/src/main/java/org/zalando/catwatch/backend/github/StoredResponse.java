@@ -0,0 +1,44 @@
+package org.zalando.catwatch.backend.github;
+
+/**
+ * Response of a GET request kept by a {@link ConditionalRequestStore}.
+ * <p>
+ * Besides the validators (ETag, Last-Modified) only the headers needed by
+ * Kohsuke GitHub API are kept: Link for pagination and Content-Type.
+ */
+public class StoredResponse {
+
+    private final String etag;
+    private final String lastModified;
+    private final String link;
+    private final String contentType;
+    private final byte[] body;
+
+    public StoredResponse(String etag, String lastModified, String link, String contentType, byte[] body) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.link = link;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getLink() {
+        return link;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
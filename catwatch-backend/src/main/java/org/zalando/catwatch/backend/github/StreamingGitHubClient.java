@@ -0,0 +1,431 @@
+package org.zalando.catwatch.backend.github;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.kohsuke.github.HttpConnector;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client for the GitHub endpoints the crawler requests for every repository.
+ * <p>
+ * Kohsuke GitHub API binds every response to complete GHRepository, GHUser
+ * or GHTag objects, although the crawler reads only a few of their fields.
+ * This client parses the responses with Jackson's streaming API, keeps the
+ * needed fields in {@link RepositoryRecord}s and {@link ContributorRecord}s
+ * and skips everything else. Tags are only counted.
+ * <p>
+ * The requests are sent with the connector of the Kohsuke GitHub instance, so
+ * that they share http cache, conditional requests, retries and listeners
+ * with all other requests. Listings are requested with 100 entries per page.
+ *
+ * @see <a href="https://developer.github.com/v3/repos/">API documentation from GitHub</a>
+ */
+public class StreamingGitHubClient {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private static final Pattern NEXT_PAGE = Pattern.compile("<([^>]*)>;\\s*rel=\"next\"");
+
+    public static final String GITHUB_API_URL = "https://api.github.com";
+
+    static final int PAGE_SIZE = 100;
+
+    private final HttpConnector connector;
+    private final String apiUrl;
+    private final String authorization;
+    private final CommitCounter commitCounter;
+
+    /**
+     * @param apiUrl        e.g. https://api.github.com
+     * @param authorization value of the Authorization header or null for
+     *                      anonymous requests
+     */
+    public StreamingGitHubClient(HttpConnector connector, String apiUrl, String authorization) {
+        this.connector = connector;
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.authorization = authorization;
+        this.commitCounter = new CommitCounter(connector, authorization);
+    }
+
+    public List<RepositoryRecord> listRepositories(String organization) throws IOException {
+        return list(apiUrl + "/orgs/" + organization + "/repos?per_page=" + PAGE_SIZE,
+                StreamingGitHubClient::readRepository);
+    }
+
+    /**
+     * @throws FileNotFoundException if the repository does not exist or is
+     *                               not visible with the credentials
+     */
+    public RepositoryRecord getRepository(String owner, String name) throws IOException {
+        return get(apiUrl + "/repos/" + owner + "/" + name, parser -> {
+            expect(parser, JsonToken.START_OBJECT);
+            return readRepository(parser);
+        }, null);
+    }
+
+    public List<ContributorRecord> listContributors(RepositoryRecord repository) throws IOException {
+        return list(repository.getUrl() + "/contributors?per_page=" + PAGE_SIZE,
+                StreamingGitHubClient::readContributor);
+    }
+
+    public int countTags(RepositoryRecord repository) throws IOException {
+        return list(repository.getUrl() + "/tags?per_page=" + PAGE_SIZE, parser -> {
+            parser.skipChildren();
+            return Boolean.TRUE;
+        }).size();
+    }
+
+    public int countCommits(RepositoryRecord repository) throws IOException {
+        return commitCounter.countCommits(repository.getUrl(), repository.getFullName());
+    }
+
+    /**
+     * @return bytes of code by language
+     */
+    public Map<String, Long> listLanguages(RepositoryRecord repository) throws IOException {
+        return get(repository.getUrl() + "/languages", parser -> {
+            Map<String, Long> languages = new LinkedHashMap<>();
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String language = parser.getCurrentName();
+                parser.nextToken();
+                languages.put(language, parser.getLongValue());
+            }
+            return languages;
+        }, Collections.emptyMap());
+    }
+
+    /**
+     * @return download URLs of the files in the root directory of the default
+     * branch by name, empty for an empty repository
+     */
+    public Map<String, String> listRootFiles(RepositoryRecord repository) throws IOException {
+        Map<String, String> files = new LinkedHashMap<>();
+        try {
+            for (String[] file : list(repository.getUrl() + "/contents/", StreamingGitHubClient::readContent)) {
+                if (file[1] != null) {
+                    files.put(file[0], file[1]);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            // empty repository
+        }
+        return files;
+    }
+
+    /**
+     * @return content of the file, requested without its metadata
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public InputStream getFileContent(RepositoryRecord repository, String path) throws IOException {
+        HttpURLConnection connection = open(repository.getUrl() + "/contents/" + path,
+                "application/vnd.github.v3.raw");
+        return body(connection);
+    }
+
+    /**
+     * @param downloadUrl download URL of a file of {@link #listRootFiles}
+     */
+    public InputStream download(String downloadUrl) throws IOException {
+        return body(open(downloadUrl, "*/*"));
+    }
+
+    /**
+     * Requests the profile of a user, the contributors listing lacks name and
+     * public repository count.
+     */
+    public ContributorProfile getProfile(String login) throws IOException {
+        return get(apiUrl + "/users/" + login, parser -> {
+            expect(parser, JsonToken.START_OBJECT);
+            long id = 0;
+            String name = null;
+            int publicRepoCount = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        id = parser.getLongValue();
+                        break;
+                    case "name":
+                        name = text(parser);
+                        break;
+                    case "public_repos":
+                        publicRepoCount = parser.getIntValue();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+            return new ContributorProfile(id, name, publicRepoCount, new Date());
+        }, null);
+    }
+
+    /**
+     * Reads an entry of the repository listing or the repository of a webhook
+     * payload, whose pushed_at is given in seconds since the epoch.
+     *
+     * @param parser positioned at the start of the repository object
+     */
+    public static RepositoryRecord readRepository(JsonParser parser) throws IOException {
+        int id = 0;
+        String name = null;
+        String fullName = null;
+        String url = null;
+        String htmlUrl = null;
+        String description = null;
+        int watchers = 0;
+        int forks = 0;
+        int size = 0;
+        Date pushedAt = null;
+        String language = null;
+        boolean isPrivate = false;
+        boolean fork = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getIntValue();
+                    break;
+                case "name":
+                    name = text(parser);
+                    break;
+                case "full_name":
+                    fullName = text(parser);
+                    break;
+                case "url":
+                    url = text(parser);
+                    break;
+                case "html_url":
+                    htmlUrl = text(parser);
+                    break;
+                case "description":
+                    description = text(parser);
+                    break;
+                case "watchers":
+                    watchers = parser.getIntValue();
+                    break;
+                case "forks":
+                    forks = parser.getIntValue();
+                    break;
+                case "size":
+                    size = parser.getIntValue();
+                    break;
+                case "pushed_at":
+                    pushedAt = parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT
+                            ? new Date(parser.getLongValue() * 1000)
+                            : date(text(parser));
+                    break;
+                case "language":
+                    language = text(parser);
+                    break;
+                case "private":
+                    isPrivate = parser.getBooleanValue();
+                    break;
+                case "fork":
+                    fork = parser.getBooleanValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new RepositoryRecord(id, name, fullName, url, htmlUrl, description, watchers, forks, size, pushedAt,
+                language, isPrivate, fork);
+    }
+
+    static ContributorRecord readContributor(JsonParser parser) throws IOException {
+        int id = 0;
+        String login = null;
+        String htmlUrl = null;
+        int contributions = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getIntValue();
+                    break;
+                case "login":
+                    login = text(parser);
+                    break;
+                case "html_url":
+                    htmlUrl = text(parser);
+                    break;
+                case "contributions":
+                    contributions = parser.getIntValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new ContributorRecord(id, login, htmlUrl, contributions);
+    }
+
+    /**
+     * @return name and download URL, the latter is null for directories
+     */
+    private static String[] readContent(JsonParser parser) throws IOException {
+        String[] file = new String[2];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("name".equals(field)) {
+                file[0] = text(parser);
+            } else if ("download_url".equals(field)) {
+                file[1] = text(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Reads the array of every page of a listing.
+     */
+    <T> List<T> list(String url, EntryReader<T> reader) throws IOException {
+        List<T> entries = new ArrayList<>();
+        String next = url;
+        while (next != null) {
+            HttpURLConnection connection = open(next, "application/vnd.github.v3+json");
+            if (connection.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+                // e.g. contributors of an empty repository
+                connection.getInputStream().close();
+                return entries;
+            }
+            try (JsonParser parser = JSON.createParser(body(connection))) {
+                readEntries(parser, reader, entries);
+            }
+            next = nextPage(connection.getHeaderField("Link"));
+        }
+        return entries;
+    }
+
+    static <T> void readEntries(JsonParser parser, EntryReader<T> reader, List<T> entries) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            entries.add(reader.read(parser));
+        }
+    }
+
+    private <T> T get(String url, EntryReader<T> reader, T noContent) throws IOException {
+        HttpURLConnection connection = open(url, "application/vnd.github.v3+json");
+        if (connection.getResponseCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+            connection.getInputStream().close();
+            return noContent;
+        }
+        try (JsonParser parser = JSON.createParser(body(connection))) {
+            return reader.read(parser);
+        }
+    }
+
+    private HttpURLConnection open(String url, String accept) throws IOException {
+        HttpURLConnection connection = connector.connect(new URL(url));
+        connection.setRequestProperty("Accept", accept);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        return connection;
+    }
+
+    /**
+     * @throws FileNotFoundException for 404, like Kohsuke GitHub API
+     */
+    private static InputStream body(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            InputStream error = connection.getErrorStream();
+            if (error != null) {
+                error.close();
+            }
+            String message = "Status " + status + " for " + connection.getURL();
+            throw status == HttpURLConnection.HTTP_NOT_FOUND
+                    ? new FileNotFoundException(message)
+                    : new IOException(message);
+        }
+        return connection.getInputStream();
+    }
+
+    static String nextPage(String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        Matcher matcher = NEXT_PAGE.matcher(linkHeader);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        JsonToken actual = parser.nextToken();
+        if (actual != token) {
+            throw new IOException("Expected " + token + " but got " + actual);
+        }
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        return parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getText();
+    }
+
+    /**
+     * @return the date of an ISO 8601 timestamp like 2016-01-01T00:00:00Z.
+     * GitHub's format is read digit by digit, Instant.parse allocates more
+     * than the rest of a repository entry.
+     */
+    static Date date(String timestamp) throws IOException {
+        if (timestamp == null) {
+            return null;
+        }
+        if (timestamp.length() == 20 && timestamp.charAt(10) == 'T' && timestamp.charAt(19) == 'Z') {
+            long epochDay = LocalDate.of(digits(timestamp, 0, 4), digits(timestamp, 5, 7), digits(timestamp, 8, 10))
+                    .toEpochDay();
+            long seconds = epochDay * 86400 + digits(timestamp, 11, 13) * 3600 + digits(timestamp, 14, 16) * 60
+                    + digits(timestamp, 17, 19);
+            return new Date(seconds * 1000);
+        }
+        try {
+            return Date.from(Instant.parse(timestamp));
+        } catch (DateTimeParseException e) {
+            throw new IOException("Malformed timestamp " + timestamp, e);
+        }
+    }
+
+    private static int digits(String text, int begin, int end) throws IOException {
+        int value = 0;
+        for (int i = begin; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Malformed timestamp " + text);
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    @FunctionalInterface
+    interface EntryReader<T> {
+
+        /**
+         * @param parser positioned at the start of the entry
+         */
+        T read(JsonParser parser) throws IOException;
+    }
+}
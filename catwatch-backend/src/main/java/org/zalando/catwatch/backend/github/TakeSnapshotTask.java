@@ -3,9 +3,8 @@ package org.zalando.catwatch.backend.github;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.tomcat.util.http.fileupload.util.Streams;
-import org.kohsuke.github.GHObject;
-import org.kohsuke.github.GHRepository;
 import org.kohsuke.github.GitHub;
 import org.kohsuke.github.RateLimitHandler;
 import org.slf4j.Logger;
@@ -19,29 +18,50 @@ import org.zalando.catwatch.backend.model.util.Scorer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.IntSummaryStatistics;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.LongSummaryStatistics;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.Callable;
-
+import java.util.concurrent.ExecutorService;
+import java.util.function.ToIntFunction;
+
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.nullsLast;
+import static java.util.Comparator.reverseOrder;
+import static java.util.function.Function.identity;
+import static org.zalando.catwatch.backend.github.StreamingGitHubClient.GITHUB_API_URL;
 import static java.util.stream.Collectors.*;
 
 /**
- * Task to get organisation snapshot from GitHub using Kohsuke GitHub API.
+ * Task to get organisation snapshot from GitHub using Kohsuke GitHub API and
+ * the {@link StreamingGitHubClient} for the repositories.
+ * <p>
+ * Every endpoint of a repository is requested once per snapshot, the results
+ * are kept in {@link RepositoryData} and shared by the collect* methods.
  * <p>
- * The code of this class is not optimised in terms of number of API requests
- * in favour of code simplicity and readability. However, this should not affect
- * API rate limit if http cache is used. If rate limit is reached the task
- * is blocked until the limit is reset.
+ * Requests for different repositories are sent concurrently by the threads of
+ * the given repository pool. The {@link CrawlScheduler} starts with the
+ * repositories with the highest score in the previous snapshot and the most
+ * recent pushes, and pauses when the {@link RateLimitBudget} is exhausted.
+ * Requests outside of repositories are blocked by the RateLimitHandler if the
+ * rate limit is reached anyway.
+ * <p>
+ * Each project is handed to the {@link SnapshotWriter} as soon as its
+ * repository is fetched, the contributors follow when all repositories are
+ * done. Only the organization wide sums are kept until then, see
+ * {@link SnapshotAggregate}.
  *
  * @see RateLimitHandler
  * @see <a href="http://github-api.kohsuke.org">Kohsuke GitHub API</a>
@@ -51,37 +71,279 @@ public class TakeSnapshotTask implements Callable<Snapshot> {
 
     private static final Logger logger = LoggerFactory.getLogger(TakeSnapshotTask.class);
 
+    /**
+     * Contributors, tags, languages, commits and the root directory listing,
+     * MAINTAINERS and .catwatch.yaml are rare.
+     */
+    static final int REPOSITORY_COST = 5;
+
+    static final String MAINTAINERS = "MAINTAINERS";
+    static final String CATWATCH_YAML = ".catwatch.yaml";
+
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory());
+
+    /**
+     * Contributors and tags.
+     */
+    static final int UNCHANGED_REPOSITORY_COST = 2;
+
     private final GitHub gitHub;
     private final String organisationName;
     private final Date snapshotDate;
+    private final CrawlScheduler crawlScheduler;
+    private final ApiCallCounter apiCallCounter;
+    private final StreamingGitHubClient client;
+    private final SnapshotWriter writer;
+    private final ContributorProfileCache profileCache;
+
+    /**
+     * Projects of the previous snapshot by GitHub project id.
+     */
+    private final Map<Long, Project> previousProjects;
 
     private Scorer scorer;
 
+    /**
+     * Number of contributor profiles taken from the profile cache instead of
+     * GitHub by {@link #collectContributors}.
+     */
+    private int cachedProfilesCount;
+
     public TakeSnapshotTask(final GitHub gitHub, final String organisationName, Scorer scorer, Date snapshotDate) {
+        this(gitHub, organisationName, scorer, snapshotDate, MoreExecutors.newDirectExecutorService(),
+                new RateLimitBudget(0), new ApiCallCounter(),
+                gitHub == null ? null : new StreamingGitHubClient(gitHub.getConnector(), GITHUB_API_URL, null),
+                Collections.emptyList(), new SnapshotCollector(), ContributorProfileCache.disabled());
+    }
+
+    /**
+     * @param apiCallCounter   has to be registered at the connector of the given
+     *                         GitHub instance to count the requests of this task
+     * @param client           requests the repositories of the organization
+     *                         and their endpoints
+     * @param previousProjects projects of the previous snapshot of the
+     *                         organization. Unchanged repositories are not
+     *                         crawled again. Empty to crawl everything.
+     * @param writer           receives the projects and contributors
+     * @param profileCache     provides the names and public repository counts
+     *                         of the contributors
+     */
+    public TakeSnapshotTask(final GitHub gitHub, final String organisationName, Scorer scorer, Date snapshotDate,
+                            ExecutorService repositoryPool, RateLimitBudget rateLimitBudget,
+                            ApiCallCounter apiCallCounter, StreamingGitHubClient client,
+                            Collection<Project> previousProjects, SnapshotWriter writer,
+                            ContributorProfileCache profileCache) {
         this.gitHub = gitHub;
         this.organisationName = organisationName;
         this.scorer = scorer;
         this.snapshotDate = snapshotDate;
+        this.crawlScheduler = new CrawlScheduler(repositoryPool, rateLimitBudget);
+        this.apiCallCounter = apiCallCounter;
+        this.client = client;
+        this.writer = writer;
+        this.profileCache = profileCache;
+        this.previousProjects = previousProjects.stream()
+                .collect(toMap(Project::getGitHubProjectId, identity(), (p1, p2) -> p1));
     }
 
     @Override
     public Snapshot call() throws Exception {
         logger.info("Taking snapshot of organization '{}'.", organisationName);
 
-        final OrganizationWrapper organization = new OrganizationWrapper(gitHub.getOrganization(organisationName));
+        final OrganizationWrapper organization = new OrganizationWrapper(gitHub.getOrganization(organisationName),
+                client);
+        final SnapshotAggregate aggregate = new SnapshotAggregate();
 
-        Snapshot snapshot = new Snapshot(
-                collectStatistics(organization),
-                collectProjects(organization),
-                collectContributors(organization),
-                collectLanguages(organization));
+        final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+        final int contributorsCount;
+        try {
+            long started = System.currentTimeMillis();
+            collectRepositories(organization, data -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Snapshot of organization " + organisationName
+                            + " was cancelled.");
+                }
+                writer.writeProject(collectProject(organization, data));
+                aggregate.add(data);
+            });
+            started = phase(phaseMillis, "repositories", started);
+            contributorsCount = collectContributors(organization, aggregate);
+            phase(phaseMillis, "contributors", started);
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // cancelled, e.g. after a timeout or because another node took over the lease
+                logger.warn("Snapshot of organization '{}' was cancelled, unsaved projects are discarded.",
+                        organisationName);
+                throw e;
+            }
+            // keep the projects collected so far, a retry resumes after them
+            try {
+                writer.flush();
+            } catch (Exception flushException) {
+                e.addSuppressed(flushException);
+            }
+            throw e;
+        }
+        long started = System.currentTimeMillis();
+        writer.flush();
+        started = phase(phaseMillis, "flush", started);
 
-        logger.info("Successfully taken snapshot of organization '{}'.", organisationName);
+        Statistics statistics = collectStatistics(organization, aggregate);
+        started = phase(phaseMillis, "statistics", started);
+        Collection<Language> languages = collectLanguages(aggregate);
+        phase(phaseMillis, "languages", started);
+
+        Snapshot snapshot = new Snapshot(
+                statistics,
+                languages,
+                aggregate.getRepositoriesCount(),
+                contributorsCount,
+                aggregate.getUnchangedCount(),
+                cachedProfilesCount,
+                phaseMillis);
+
+        logger.info("Successfully taken snapshot of organization '{}' with {} API requests ({} served by the cache), "
+                        + "{} of {} repositories unchanged.", organisationName, apiCallCounter.getCalls(),
+                apiCallCounter.getCacheHits(), aggregate.getUnchangedCount(), aggregate.getRepositoriesCount());
 
         return snapshot;
     }
 
-    Statistics collectStatistics(final OrganizationWrapper organization) throws IOException {
+    /**
+     * Records the duration of a phase of the snapshot.
+     *
+     * @return the end of the phase, the start of the next one
+     */
+    private static long phase(Map<String, Long> phaseMillis, String phase, long started) {
+        long finished = System.currentTimeMillis();
+        phaseMillis.put(phase, finished - started);
+        return finished;
+    }
+
+    /**
+     * @param consumer called by the crawler threads for every repository
+     */
+    void collectRepositories(OrganizationWrapper organization, RepositoryDataConsumer consumer) throws IOException {
+        logger.info("Started collecting repositories for organization '{}'.", organisationName);
+
+        List<Void> repositories = crawl(organization, this::estimateCost, repository -> {
+            consumer.accept(collectRepository(repository));
+            return null;
+        });
+
+        logger.info("Finished collecting {} repositories for organization '{}'.", repositories.size(),
+                organisationName);
+    }
+
+    /**
+     * Repositories with a high score in the previous snapshot come first,
+     * followed by the ones pushed most recently.
+     */
+    Comparator<RepositoryWrapper> priority() {
+        Comparator<RepositoryWrapper> byScore = comparing(
+                repository -> Optional.ofNullable(previousProjects.get((long) repository.getId()))
+                        .map(Project::getScore)
+                        .orElse(null),
+                nullsLast(reverseOrder()));
+        return byScore.thenComparing(RepositoryWrapper::getLastPushed, nullsLast(reverseOrder()));
+    }
+
+    /**
+     * @return number of requests {@link #collectRepository(RepositoryWrapper)}
+     * needs without pagination
+     */
+    int estimateCost(RepositoryWrapper repository) {
+        return isUnchanged(previousProjects.get((long) repository.getId()), repository)
+                ? UNCHANGED_REPOSITORY_COST
+                : REPOSITORY_COST;
+    }
+
+    /**
+     * Requests every endpoint needed for the snapshot exactly once. If the
+     * repository did not change since the previous snapshot only contributors
+     * and tags are requested, as they are aggregated for the whole
+     * organization.
+     */
+    RepositoryData collectRepository(RepositoryWrapper repository) {
+        Project previous = previousProjects.get((long) repository.getId());
+        if (isUnchanged(previous, repository)) {
+            CatwatchYaml catwatchYaml = new CatwatchYaml();
+            catwatchYaml.setTitle(previous.getTitle());
+            catwatchYaml.setImage(previous.getImage());
+
+            // snapshots from before the bytes were stored only have the names
+            Map<String, Long> languages = previous.getLanguageBytes().keySet().containsAll(previous.getLanguageList())
+                    ? new HashMap<>(previous.getLanguageBytes())
+                    : repository.listLanguages();
+
+            return new RepositoryData(repository,
+                    repository.listContributors(),
+                    repository.countTags(),
+                    languages,
+                    previous.getCommitsCount(),
+                    new ArrayList<>(previous.getMaintainers()),
+                    catwatchYaml,
+                    true);
+        }
+
+        // most repositories have neither MAINTAINERS nor .catwatch.yaml
+        Optional<Map<String, String>> rootFiles = listRootFiles(repository);
+
+        return new RepositoryData(repository,
+                repository.listContributors(),
+                repository.countTags(),
+                repository.listLanguages(),
+                repository.countCommits(),
+                getProjectMaintainers(repository, rootFiles),
+                readCatwatchYaml(repository, rootFiles));
+    }
+
+    /**
+     * @return download URLs of the files in the root directory of the
+     * repository by name, nothing
+     * if the listing failed
+     */
+    Optional<Map<String, String>> listRootFiles(RepositoryWrapper repository) {
+        try {
+            return Optional.of(repository.listRootFiles());
+        } catch (IOException ioe) {
+            RepositoryWrapper.rethrowIfInterrupted(ioe);
+            logger.warn("Failed to list root directory of '{}'", repository.getName(), ioe);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads a file of the root directory listing. Only without a listing its
+     * metadata is requested first.
+     *
+     * @throws FileNotFoundException if the file does not exist
+     */
+    private static InputStream readRootFile(RepositoryWrapper repository, Optional<Map<String, String>> rootFiles,
+                                            String name) throws IOException {
+        if (!rootFiles.isPresent()) {
+            return repository.getFileContent(name);
+        }
+        String downloadUrl = rootFiles.get().get(name);
+        if (downloadUrl == null) {
+            throw new FileNotFoundException(name);
+        }
+        return repository.download(downloadUrl);
+    }
+
+    /**
+     * Compares the fields of the repository listing, a push or a new star or
+     * fork marks the repository as changed.
+     */
+    static boolean isUnchanged(Project previous, RepositoryWrapper repository) {
+        return previous != null
+                && previous.getCommitsCount() != null
+                && Objects.equals(previous.getLastPushed(), String.valueOf(repository.getLastPushed()))
+                && Objects.equals(previous.getStarsCount(), repository.getStarsCount())
+                && Objects.equals(previous.getForksCount(), repository.getForksCount());
+    }
+
+    Statistics collectStatistics(final OrganizationWrapper organization, SnapshotAggregate aggregate) {
         logger.info("Started collecting statistics for organization '{}'.", organisationName);
 
         Statistics statistics = new Statistics(organization.getId(), snapshotDate);
@@ -89,12 +351,7 @@ public class TakeSnapshotTask implements Callable<Snapshot> {
         statistics.setPublicProjectCount(organization.listRepositories().size());
         statistics.setMembersCount(organization.listMembers().size());
         statistics.setTeamsCount(organization.listTeams().size());
-        statistics.setAllContributorsCount((int) organization.listRepositories().stream()
-                .map(RepositoryWrapper::listContributors)
-                .flatMap(List::stream)
-                .map(GHRepository.Contributor::getId)
-                .distinct()
-                .count());
+        statistics.setAllContributorsCount(aggregate.getContributors().size());
         statistics.setAllStarsCount(organization.listRepositories().stream()
                 .map(RepositoryWrapper::getStarsCount)
                 .reduce(0, Integer::sum));
@@ -108,10 +365,7 @@ public class TakeSnapshotTask implements Callable<Snapshot> {
                 .map(RepositoryWrapper::getPrimaryLanguage)
                 .distinct()
                 .count());
-        statistics.setTagsCount((int) organization.listRepositories().stream()
-                .map(RepositoryWrapper::listTags)
-                .flatMap(List::stream)
-                .count());
+        statistics.setTagsCount(aggregate.getTagsCount());
         statistics.setOrganizationName(organization.getLogin());
 
         logger.info("Finished collecting statistics for organization '{}'.", organisationName);
@@ -119,123 +373,149 @@ public class TakeSnapshotTask implements Callable<Snapshot> {
         return statistics;
     }
 
-    Collection<Project> collectProjects(OrganizationWrapper organization) throws IOException, URISyntaxException {
-        logger.info("Started collecting projects for organization '{}'.", organisationName);
-
-        List<Project> projects = new ArrayList<>();
-
-        for (RepositoryWrapper repository : organization.listRepositories()) {
-            Project project = new Project();
-
-            project.setGitHubProjectId(repository.getId());
-            project.setSnapshotDate(snapshotDate);
-            project.setName(repository.getName());
-            project.setUrl(repository.getUrl().toURI().toString());
-            project.setDescription(repository.getDescription());
-            project.setStarsCount(repository.getStarsCount());
-            project.setForksCount(repository.getForksCount());
-            project.setLastPushed(repository.getLastPushed().toString());
-            project.setPrimaryLanguage(repository.getPrimaryLanguage());
-            project.setLanguageList(new ArrayList<>(repository.listLanguages().keySet()));
-            project.setOrganizationName(organization.getLogin());
-            project.setCommitsCount(repository.listCommits().size());
-            project.setContributorsCount(repository.listContributors().size());
-            project.setScore(scorer.score(project));
-
-            project.setMaintainers(getProjectMaintainers(repository));
-
-            readCatwatchYaml(repository, project);
+    Project collectProject(OrganizationWrapper organization, RepositoryData data) throws URISyntaxException {
+        return collectProject(organization.getLogin(), data);
+    }
 
-            projects.add(project);
+    private Project collectProject(String organizationName, RepositoryData data) throws URISyntaxException {
+        RepositoryWrapper repository = data.getRepository();
+        Project project = new Project();
+
+        project.setGitHubProjectId(repository.getId());
+        project.setSnapshotDate(snapshotDate);
+        project.setName(repository.getName());
+        project.setUrl(repository.getUrl().toURI().toString());
+        project.setDescription(repository.getDescription());
+        project.setStarsCount(repository.getStarsCount());
+        project.setForksCount(repository.getForksCount());
+        project.setLastPushed(repository.getLastPushed().toString());
+        project.setPrimaryLanguage(repository.getPrimaryLanguage());
+        project.setLanguageList(new ArrayList<>(data.getLanguages().keySet()));
+        project.setLanguageBytes(new HashMap<>(data.getLanguages()));
+        project.setOrganizationName(organizationName);
+        project.setCommitsCount(data.getCommitsCount());
+        project.setContributorsCount(data.getContributors().size());
+        project.setScore(scorer.score(project));
+
+        project.setMaintainers(data.getMaintainers());
+
+        if (null != data.getCatwatchYaml()) {
+            project.setTitle(data.getCatwatchYaml().getTitle());
+            project.setImage(data.getCatwatchYaml().getImage());
         }
 
-        logger.info("Finished collecting projects for organization '{}'.", organisationName);
+        return project;
+    }
 
-        return projects;
+    /**
+     * Fetches a single repository of the organization like a snapshot does,
+     * e.g. after a webhook reported a push. Its contributors are only counted
+     * for the project, the organization wide sums are left to the next
+     * snapshot.
+     *
+     * @return nothing if the repository is private or a fork, which are not
+     * part of snapshots
+     * @throws FileNotFoundException if the repository does not exist
+     */
+    public Optional<Project> refreshProject(String repositoryName) throws IOException, URISyntaxException {
+        RepositoryRecord record = client.getRepository(organisationName, repositoryName);
+        if (record.isPrivate() || record.isFork()) {
+            return Optional.empty();
+        }
+        RepositoryWrapper repository = new RepositoryWrapper(record, organisationName, client);
+        return Optional.of(collectProject(organisationName, collectRepository(repository)));
     }
 
-    List<String> getProjectMaintainers(RepositoryWrapper repository) {
+    List<String> getProjectMaintainers(RepositoryWrapper repository, Optional<Map<String, String>> rootFiles) {
         try {
-            return Lists.newArrayList(Streams.asString(repository.getFileContent("MAINTAINERS")).split("\n"));
+            return Lists.newArrayList(Streams.asString(readRootFile(repository, rootFiles, MAINTAINERS)).split("\n"));
         } catch (IOException ioe) {
+            RepositoryWrapper.rethrowIfInterrupted(ioe);
             return Collections.emptyList();
         }
     }
 
-    void readCatwatchYaml(RepositoryWrapper repository, Project project) {
-        CatwatchYaml data;
+    CatwatchYaml readCatwatchYaml(RepositoryWrapper repository, Optional<Map<String, String>> rootFiles) {
         try {
-            final ObjectMapper mapper = new ObjectMapper(new YAMLFactory()); // jackson databind
-
-            data = mapper.readValue(repository.getFileContent(".catwatch.yaml"), CatwatchYaml.class);
-
+            return parseCatwatchYaml(readRootFile(repository, rootFiles, CATWATCH_YAML));
         } catch (FileNotFoundException fnfe) {
             // ignore 404 for .catwatch.yaml
-            data = null;
+            return null;
         } catch (IOException ioe) {
+            RepositoryWrapper.rethrowIfInterrupted(ioe);
             logger.warn("Failed to read .catwatch.yaml for '{}'", repository.getName(), ioe);
-            data = null;
-        }
-        if (null != data) {
-            project.setTitle(data.getTitle());
-            project.setImage(data.getImage());
+            return null;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    Collection<Contributor> collectContributors(OrganizationWrapper organization) throws IOException, URISyntaxException {
-        logger.info("Started collecting contributors for organization '{}'.", organisationName);
-
-        Collection<Contributor> contributors = new ArrayList<>();
-
-        // Get a list of all contributors of all repositories
-        Collection<GHRepository.Contributor> ghContributors = organization.listRepositories().stream()
-                .map(RepositoryWrapper::listContributors)
-                .flatMap(List::stream)
-                .collect(toList());
+    static CatwatchYaml parseCatwatchYaml(InputStream content) throws IOException {
+        return YAML_MAPPER.readValue(content, CatwatchYaml.class);
+    }
 
-        // Get a map of <Contributor ID> - <Contributions statistics>
-        Map<Integer, IntSummaryStatistics> idStatisticsMap = ghContributors.stream()
-                .collect(groupingBy(GHObject::getId, summarizingInt(GHRepository.Contributor::getContributions)));
+    @FunctionalInterface
+    interface RepositoryDataConsumer {
+        void accept(RepositoryData data) throws Exception;
+    }
 
-        // Eliminate duplicates in contributors list
-        ghContributors = ghContributors.stream()
-                .collect(collectingAndThen(toCollection(() ->
-                        new TreeSet<>(Comparator.comparingInt(GHObject::getId))), ArrayList::new));
+    /**
+     * Applies the function to all repositories of the organization using the
+     * repository pool and waits for the results.
+     *
+     * @param cost estimated number of requests of a repository
+     * @return results in the order of {@link OrganizationWrapper#listRepositories()}
+     */
+    <T> List<T> crawl(OrganizationWrapper organization, ToIntFunction<RepositoryWrapper> cost,
+                      CrawlScheduler.RepositoryFunction<T> function) throws IOException {
+        return crawlScheduler.run(organisationName, organization.listRepositories(), priority(), cost, function);
+    }
 
-        // Build a list of contributors
-        for (GHRepository.Contributor ghContributor : ghContributors) {
-            Contributor contributor = new Contributor(ghContributor.getId(), organization.getId(), snapshotDate);
+    /**
+     * Writes the contributors of all repositories with their organization
+     * wide contributions.
+     *
+     * @return number of contributors written
+     */
+    int collectContributors(OrganizationWrapper organization, SnapshotAggregate aggregate)
+            throws IOException, URISyntaxException {
+        logger.info("Started collecting contributors for organization '{}'.", organisationName);
 
-            contributor.setName(ghContributor.getName());
-            contributor.setUrl(ghContributor.getHtmlUrl().toURI().toString());
-            contributor.setOrganizationalCommitsCount((int) idStatisticsMap.get(ghContributor.getId()).getSum());
-            contributor.setOrganizationalProjectsCount((int) idStatisticsMap.get(ghContributor.getId()).getCount());
-            contributor.setPersonalProjectsCount(ghContributor.getPublicRepoCount());
+        for (SnapshotAggregate.ContributorStatistics statistics : aggregate.getContributors().values()) {
+            ContributorRecord record = statistics.contributor;
+            Contributor contributor = new Contributor(record.getId(), organization.getId(), snapshotDate);
+
+            // name and public repository count are not part of the contributors listing
+            Optional<ContributorProfile> cachedProfile = profileCache.find(record.getId());
+            ContributorProfile profile = cachedProfile.isPresent()
+                    ? cachedProfile.get()
+                    : profileCache.fetch(record.getLogin(), client);
+            if (cachedProfile.isPresent()) {
+                cachedProfilesCount++;
+            }
+
+            contributor.setName(profile.getName());
+            contributor.setUrl(record.getHtmlUrl());
+            contributor.setOrganizationalCommitsCount((int) statistics.contributions.getSum());
+            contributor.setOrganizationalProjectsCount((int) statistics.contributions.getCount());
+            contributor.setPersonalProjectsCount(profile.getPublicRepoCount());
             contributor.setOrganizationName(organisationName);
 
-            contributors.add(contributor);
+            writer.writeContributor(contributor);
         }
 
         // TODO contributor.setPersonalCommitsCount()
 
-        logger.info("Finished collecting contributors for organization '{}'.", organisationName);
+        logger.info("Finished collecting {} contributors for organization '{}', {} profiles served by the cache.",
+                aggregate.getContributors().size(), organisationName, cachedProfilesCount);
 
-        return contributors;
+        return aggregate.getContributors().size();
     }
 
-    @SuppressWarnings("rawtypes")
-    Collection<Language> collectLanguages(OrganizationWrapper organization) {
+    Collection<Language> collectLanguages(SnapshotAggregate aggregate) {
         logger.info("Started collecting languages for organization '{}'.", organisationName);
 
         Collection<Language> languages = new ArrayList<>();
 
-        Map<String, LongSummaryStatistics> stat = organization.listRepositories().stream()
-                .map(RepositoryWrapper::listLanguages)
-                .map(Map::entrySet)
-                .flatMap(Set::stream)
-                .collect(groupingBy(Map.Entry::getKey,
-                        summarizingLong(entry -> ((Number) ((Map.Entry) entry).getValue()).longValue())));
+        Map<String, LongSummaryStatistics> stat = aggregate.getLanguages();
 
         final long allLanguageSize = stat.entrySet().stream()
                 .map(entry -> entry.getValue().getSum())
@@ -246,7 +526,8 @@ public class TakeSnapshotTask implements Callable<Snapshot> {
 
             language.setName(entry.getKey());
             language.setProjectsCount((int) entry.getValue().getCount());
-            language.setPercentage((int) (entry.getValue().getSum() * 100 / allLanguageSize));
+            // e.g. only empty repositories
+            language.setPercentage(allLanguageSize == 0 ? 0 : (int) (entry.getValue().getSum() * 100 / allLanguageSize));
 
             languages.add(language);
         }
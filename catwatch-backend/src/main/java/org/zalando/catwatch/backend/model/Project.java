@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.zalando.catwatch.backend.model.util.JsonDateDeserializer;
 import org.zalando.catwatch.backend.model.util.JsonDateSerializer;
 
@@ -13,21 +15,32 @@ import javax.persistence.Column;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.JoinColumn;
+import javax.persistence.MapKeyColumn;
 import javax.persistence.Table;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Table(name = "project")
 @ApiModel(description = "Represents a GitHub repository. See https://developer.github.com/v3/repos/")
 public class Project {
 
+    /**
+     * Ids are taken in blocks from project_seq, so that Hibernate can batch
+     * inserts. The SnapshotBulkWriter takes its blocks from the same sequence.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GenericGenerator(name = "project_id", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator",
+            parameters = {
+                    @Parameter(name = "sequence_name", value = "project_seq"),
+                    @Parameter(name = "increment_size", value = "50"),
+                    @Parameter(name = "optimizer", value = "pooled-lo")})
+    @GeneratedValue(generator = "project_id")
     @Column(name = "id")
     private int id;
 
@@ -36,6 +49,16 @@ public class Project {
     @Column(name = "language")
     private List<String> languageList = new ArrayList<>();
 
+    /**
+     * Bytes of code by language as reported by GitHub, kept so that the
+     * languages of an unchanged repository need not be requested again.
+     */
+    @ElementCollection
+    @CollectionTable(name = "language_bytes", joinColumns = @JoinColumn(name = "project_id"))
+    @MapKeyColumn(name = "language")
+    @Column(name = "bytes")
+    private Map<String, Long> languageBytes = new HashMap<>();
+
     @Column(name = "git_hub_project_id")
     private long gitHubProjectId;
 
@@ -106,6 +129,15 @@ public class Project {
         this.languageList = languageList;
     }
 
+    @JsonIgnore
+    public Map<String, Long> getLanguageBytes() {
+        return languageBytes;
+    }
+
+    public void setLanguageBytes(final Map<String, Long> languageBytes) {
+        this.languageBytes = languageBytes;
+    }
+
     @ApiModelProperty(
         value = "the GitHub ID of the repository. Part of the primary key. See official GitHub REST API guide."
     )
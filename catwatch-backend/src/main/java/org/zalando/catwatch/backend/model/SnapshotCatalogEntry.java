@@ -0,0 +1,31 @@
+package org.zalando.catwatch.backend.model;
+
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+/**
+ * Read-only mapping of a row of the snapshot_catalog table, so that the
+ * queries of the repositories can check whether a snapshot is published.
+ * The rows are written by the SnapshotCatalog.
+ */
+@Entity
+@Immutable
+@Table(name = "snapshot_catalog")
+public class SnapshotCatalogEntry {
+
+    @EmbeddedId
+    private SnapshotCatalogKey key;
+
+    private String status;
+
+    public SnapshotCatalogKey getKey() {
+        return key;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,22 @@
+package org.zalando.catwatch.backend.model;
+
+import javax.persistence.Embeddable;
+import java.io.Serializable;
+import java.util.Date;
+
+@SuppressWarnings("serial")
+@Embeddable
+public class SnapshotCatalogKey implements Serializable {
+
+    private String organizationName;
+
+    private Date snapshotDate;
+
+    public String getOrganizationName() {
+        return organizationName;
+    }
+
+    public Date getSnapshotDate() {
+        return snapshotDate;
+    }
+}
@@ -4,26 +4,37 @@ package org.zalando.catwatch.backend.model.util;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.zalando.catwatch.backend.model.Project;
-
-import static org.zalando.catwatch.backend.util.JavaScriptExecutor.newExecutor;
-
+import org.zalando.catwatch.backend.util.JavaScriptFunction;
+
+/**
+ * Scores projects with the JavaScript function of <code>scoring.project</code>.
+ * <p>
+ * The function is compiled once per thread and compiled again only after
+ * {@link #setScoringProject(String)} changed it.
+ */
 @Component
 public class Scorer {
 
     @Value("${scoring.project}")
-    private String scoringProject;
+    private volatile String scoringProject;
+
+    private final ThreadLocal<JavaScriptFunction> scoringFunction = new ThreadLocal<>();
 
     public int score(Project project) {
-        
-        String jsCode = "";
-        jsCode += "var scoring = " + scoringProject + ";\n";
-        jsCode += "result.value = scoring(project);";
-        
-        return ((Number) newExecutor(jsCode).bind("project", project).execute()).intValue();
+        return ((Number) getScoringFunction().call(project)).intValue();
     }
 
     public void setScoringProject(String scoringProject) {
         this.scoringProject = scoringProject;
     }
 
+    private JavaScriptFunction getScoringFunction() {
+        String source = scoringProject;
+        JavaScriptFunction function = scoringFunction.get();
+        if (function == null || !function.getSource().equals(source)) {
+            function = new JavaScriptFunction(source);
+            scoringFunction.set(function);
+        }
+        return function;
+    }
 }
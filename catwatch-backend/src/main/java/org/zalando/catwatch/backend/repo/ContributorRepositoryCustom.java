@@ -3,6 +3,7 @@ package org.zalando.catwatch.backend.repo;
 import org.zalando.catwatch.backend.model.Contributor;
 import org.zalando.catwatch.backend.model.ContributorKey;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
@@ -21,10 +22,23 @@ public interface ContributorRepositoryCustom {
 	 *            must not be null
 	 * @return Returns the snapshot data is that before the given date. If there
 	 *         are more than one, the latest is chosen. Returns null if there is
-	 *         none.
+	 *         none. Only published snapshots are considered of the
+	 *         organizations in the {@link SnapshotCatalog}.
 	 */
 	Date findPreviousSnapShotDate(Date date);
 
+	/**
+	 * @param organizationName
+	 *            must not be null EXAMPLE: "zalando"
+	 * @param date
+	 *            null for the latest snapshot
+	 * @return Returns the date of the latest snapshot of the organization
+	 *         taken at or before the given date, only published ones if the
+	 *         organization is in the {@link SnapshotCatalog}. Returns null if
+	 *         there is none.
+	 */
+	Date findPreviousSnapShotDate(String organizationName, Date date);
+
 	/**
 	 * Used to find the top contributors (always sorted by all-time number of
 	 * commits).
@@ -75,4 +89,19 @@ public interface ContributorRepositoryCustom {
 	 */
 	List<Contributor> findContributorsTimeSeries(Long organizationId, Date startDate, Date endDate, String namePrefix);
 
+	/**
+	 * Returns the contributor data of the given organizations for each
+	 * snapshot date in the time span (including both dates), sorted by time
+	 * ascendingly.
+	 * 
+	 * @param orgs
+	 *            EXAMPLE: "zalando"
+	 * @param startDate
+	 *            must not be null
+	 * @param endDate
+	 *            must not be null
+	 * @return Returns the contributors.
+	 */
+	List<Contributor> findContributorsByOrganizationAndDate(Collection<String> orgs, Date startDate, Date endDate);
+
 }
@@ -1,7 +1,9 @@
 package org.zalando.catwatch.backend.repo;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.zalando.catwatch.backend.model.Contributor;
 import org.zalando.catwatch.backend.model.ContributorKey;
+import org.zalando.catwatch.backend.model.SnapshotCatalogEntry;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -10,9 +12,13 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.time.Instant.now;
@@ -27,11 +33,25 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 	@PersistenceContext
 	private EntityManager em;
 
+	@Autowired
+	private SnapshotCatalog catalog;
+
+	/**
+	 * Present if the contributors are stored as versions instead of a row per
+	 * snapshot.
+	 */
+	@Autowired
+	private Optional<ContributorVersions> versions;
+
 	@Override
 	public Long findOrganizationId(String organizationName) {
 
 		checkNotNull(organizationName, "organizationName must not be null but was");
 
+		if (versions.isPresent()) {
+			return versions.get().findOrganizationId(organizationName);
+		}
+
 		@SuppressWarnings("unchecked")
 		List<Long> results = em
 				.createQuery("select c.key.organizationId from Contributor c " //
@@ -44,28 +64,78 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 	@Override
 	public Date findPreviousSnapShotDate(Date snapshotDate) {
 
-		if (snapshotDate == null) {
-			// choose some date far away in the future
-			snapshotDate = from(ofInstant(now(), systemDefault()).plus(10, YEARS).toInstant(UTC));
+		snapshotDate = orFarFuture(snapshotDate);
+
+		Date published = catalog.findLatestPublishedBefore(snapshotDate).orElse(null);
+
+		// organizations without snapshots in the catalog
+		Date uncataloged;
+		if (versions.isPresent()) {
+			uncataloged = versions.get().findPreviousUncatalogedSnapShotDate(snapshotDate);
+		} else {
+			@SuppressWarnings("unchecked")
+			List<Date> results = em
+					.createNativeQuery("select c.snapshot_date from contributor c " //
+							+ " where c.snapshot_date <= ?1 and not exists (select 1 from snapshot_catalog s " //
+							+ " where s.organization_name = c.organization_name) " //
+							+ " order by c.snapshot_date desc") //
+					.setParameter(1, new Timestamp(snapshotDate.getTime())).setMaxResults(1) //
+					.getResultList();
+			uncataloged = results.size() > 0 ? results.get(0) : null;
+		}
+
+		if (published == null || (uncataloged != null && uncataloged.after(published))) {
+			return uncataloged;
+		}
+		return published;
+	}
+
+	@Override
+	public Date findPreviousSnapShotDate(String organizationName, Date snapshotDate) {
+
+		checkNotNull(organizationName, "organizationName must not be null but was");
+
+		snapshotDate = orFarFuture(snapshotDate);
+
+		if (catalog.contains(organizationName)) {
+			return catalog.findLatestPublishedBefore(organizationName, snapshotDate).orElse(null);
+		}
+
+		if (versions.isPresent()) {
+			return versions.get().findPreviousSnapShotDate(organizationName, snapshotDate);
 		}
 
 		@SuppressWarnings("unchecked")
 		List<Date> results = em
 				.createQuery("select c.key.snapshotDate from Contributor c " //
-						+ " where c.key.snapshotDate <= :date " //
+						+ " where c.organizationName = :organizationName and c.key.snapshotDate <= :date " //
 						+ " order by c.key.snapshotDate desc") //
+				.setParameter("organizationName", organizationName) //
 				.setParameter("date", snapshotDate).setMaxResults(1) //
 				.getResultList();
 
 		return results.size() > 0 ? results.get(0) : null;
 	}
 
+	private static Date orFarFuture(Date snapshotDate) {
+		if (snapshotDate == null) {
+			// choose some date far away in the future
+			return from(ofInstant(now(), systemDefault()).plus(10, YEARS).toInstant(UTC));
+		}
+		return snapshotDate;
+	}
+
 	@Override
 	public List<Contributor> findAllTimeTopContributors(Long organizationId, Date snapshotDate, String namePrefix,
 			Integer offset, Integer limit) {
 
 		checkNotNull(snapshotDate, "snapshot date must not be null but was");
 
+		if (versions.isPresent()) {
+			return versions.get().findAllTimeTopContributors(organizationId, snapshotDate, namePrefix, offset,
+					limit);
+		}
+
 		CriteriaBuilder cb = em.getCriteriaBuilder();
 		CriteriaQuery<Contributor> cq = cb.createQuery(Contributor.class);
 
@@ -85,6 +155,9 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 			if (namePrefix != null) {
 				andPredicates.add(cb.like(contributor.get("name"), namePrefix.replace("%", "[%]") + "%"));
 			}
+
+			// before the page is cut
+			andPredicates.add(published(cb, cq, contributor));
 		}
 
 		return em
@@ -101,6 +174,10 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 	public List<Contributor> findContributorsTimeSeries(Long organizationId, Date startDate, Date endDate,
 			String namePrefix) {
 
+		if (versions.isPresent()) {
+			return versions.get().findContributorsTimeSeries(organizationId, startDate, endDate, namePrefix);
+		}
+
 		CriteriaBuilder cb = em.getCriteriaBuilder();
 		CriteriaQuery<Contributor> cq = cb.createQuery(Contributor.class);
 
@@ -124,6 +201,7 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 			if (namePrefix != null) {
 				andPredicates.add(cb.like(contributor.get("name"), namePrefix.replace("%", "[%]") + "%"));
 			}
+			andPredicates.add(published(cb, cq, contributor));
 		}
 
 		return em.createQuery(cq //
@@ -131,4 +209,45 @@ public class ContributorRepositoryImpl implements ContributorRepositoryCustom {
 				.where(andPredicates.toArray(new Predicate[andPredicates.size()])) //
 				.orderBy(cb.desc(key.get("snapshotDate")), cb.desc(key.get("id")))).getResultList();
 	}
+
+	@Override
+	public List<Contributor> findContributorsByOrganizationAndDate(Collection<String> orgs, Date startDate,
+			Date endDate) {
+
+		if (versions.isPresent()) {
+			return versions.get().findContributorsByOrganizationAndDate(orgs, startDate, endDate);
+		}
+
+		return em
+				.createQuery("select c from Contributor c " //
+						+ " where c.key.snapshotDate between :startDate and :endDate " //
+						+ " and c.organizationName in :orgs " //
+						+ " and " + SnapshotCatalog.publishedJpqlCondition("c.organizationName", "c.key.snapshotDate") //
+						+ " order by c.key.snapshotDate", Contributor.class) //
+				.setParameter("orgs", orgs).setParameter("startDate", startDate) //
+				.setParameter("endDate", endDate) //
+				.getResultList();
+	}
+
+	/**
+	 * @return condition that skips the contributors of the snapshots that are
+	 *         not published yet, see {@link SnapshotCatalog#publishedCondition}
+	 */
+	private static Predicate published(CriteriaBuilder cb, CriteriaQuery<?> cq, Root<Contributor> contributor) {
+		Path<Date> snapshotDate = contributor.get("key").<Date> get("snapshotDate");
+
+		Subquery<String> cataloged = cq.subquery(String.class);
+		Root<SnapshotCatalogEntry> any = cataloged.from(SnapshotCatalogEntry.class);
+		cataloged.select(any.get("status")) //
+				.where(cb.equal(any.get("key").get("organizationName"), contributor.get("organizationName")));
+
+		Subquery<String> published = cq.subquery(String.class);
+		Root<SnapshotCatalogEntry> entry = published.from(SnapshotCatalogEntry.class);
+		published.select(entry.get("status")) //
+				.where(cb.equal(entry.get("key").get("organizationName"), contributor.get("organizationName")),
+						cb.equal(entry.get("key").get("snapshotDate"), snapshotDate),
+						cb.equal(entry.get("status"), SnapshotCatalog.PUBLISHED));
+
+		return cb.or(cb.not(cb.exists(cataloged)), cb.exists(published));
+	}
 }
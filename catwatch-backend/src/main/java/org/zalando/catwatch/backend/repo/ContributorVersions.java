@@ -0,0 +1,395 @@
+package org.zalando.catwatch.backend.repo;
+
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.zalando.catwatch.backend.model.Contributor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.time.Instant.now;
+import static java.time.LocalDateTime.ofInstant;
+import static java.time.ZoneId.systemDefault;
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.YEARS;
+import static java.util.Arrays.asList;
+import static java.util.Date.from;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Delta storage of the contributors, enabled by contributor.storage.delta.
+ * <p>
+ * Most contributors have the same counts from one snapshot to the next.
+ * Instead of a row per contributor and snapshot in the table contributor, a
+ * row of contributor_version holds the values of a contributor from the first
+ * to the last snapshot of its organization with these values (valid_from and
+ * valid_to). A snapshot with unchanged values only moves valid_to. The
+ * snapshots themselves are listed in contributor_snapshot.
+ * <p>
+ * The queries rebuild the contributors of a snapshot from the versions whose
+ * interval contains the snapshot date, the results are the same as those of
+ * the contributor table. A snapshot older than the latest one of its
+ * organization, e.g. an imported one, splits the versions that reach over
+ * it. The snapshots of the contributor table are moved here by
+ * {@link #importContributors()}.
+ */
+@Component
+@ConditionalOnProperty(name = "contributor.storage.delta", havingValue = "true")
+public class ContributorVersions implements ContributorRepositoryCustom {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContributorVersions.class);
+
+    /**
+     * Maximum number of ids in the in list of a query.
+     */
+    private static final int IDS_PER_QUERY = 500;
+
+    private static final String COLUMNS = "v.id, v.organization_id, v.name, v.organization_name,"
+            + " v.organizational_commits_count, v.organizational_projects_count, v.personal_commits_count,"
+            + " v.personal_projects_count, v.url";
+
+    private static final String SNAPSHOT_VERSIONS = "select " + COLUMNS + ", s.snapshot_date"
+            + " from contributor_snapshot s join contributor_version v on v.organization_id = s.organization_id"
+            + " and v.valid_from <= s.snapshot_date and v.valid_to >= s.snapshot_date";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public ContributorVersions(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Moves the snapshots of the contributor table to the versions, e.g. the
+     * history from before the delta storage was enabled, which is imported
+     * once with POST /versions/import, or contributors saved through the
+     * repository. Each snapshot is stored and deleted from the contributor
+     * table in one transaction.
+     *
+     * @return number of snapshots imported
+     */
+    public int importContributors() {
+        int imported = 0;
+        for (Map<String, Object> snapshot : jdbcTemplate.queryForList("select organization_id, snapshot_date"
+                + " from contributor group by organization_id, snapshot_date order by snapshot_date")) {
+            long organizationId = ((Number) snapshot.get("organization_id")).longValue();
+            Timestamp snapshotDate = timestamp((Date) snapshot.get("snapshot_date"));
+            transactionTemplate.execute(status -> {
+                insertSnapshot(jdbcTemplate.query("select id, organization_id, name, organization_name,"
+                                + " organizational_commits_count, organizational_projects_count,"
+                                + " personal_commits_count, personal_projects_count, url, snapshot_date"
+                                + " from contributor where organization_id = ? and snapshot_date = ?",
+                        (resultSet, row) -> contributor(resultSet), organizationId, snapshotDate));
+                jdbcTemplate.update("delete from contributor where organization_id = ? and snapshot_date = ?",
+                        organizationId, snapshotDate);
+                return null;
+            });
+            imported++;
+        }
+        if (imported > 0) {
+            logger.info("Moved {} snapshots of the contributor table to the versions.", imported);
+        }
+        return imported;
+    }
+
+    /**
+     * Stores the contributors of a snapshot, in one or more calls per
+     * snapshot. A contributor whose values are unchanged since the previous
+     * snapshot of the organization extends its version, any other gets a new
+     * one.
+     */
+    public void insertContributors(List<Contributor> contributors) {
+        Map<List<Long>, List<Contributor>> snapshots = contributors.stream().collect(groupingBy(
+                contributor -> asList(contributor.getOrganizationId(), contributor.getSnapshotDate().getTime()),
+                LinkedHashMap::new, toList()));
+        snapshots.values().forEach(snapshot -> transactionTemplate.execute(status -> {
+            insertSnapshot(snapshot);
+            return null;
+        }));
+    }
+
+    private void insertSnapshot(List<Contributor> contributors) {
+        Contributor first = contributors.get(0);
+        long organizationId = first.getOrganizationId();
+        Timestamp snapshotDate = timestamp(first.getSnapshotDate());
+
+        if (jdbcTemplate.queryForObject("select count(*) from contributor_snapshot where organization_id = ?"
+                + " and snapshot_date = ?", Integer.class, organizationId, snapshotDate) == 0) {
+            jdbcTemplate.update("insert into contributor_snapshot (organization_id, snapshot_date, organization_name)"
+                    + " values (?, ?, ?)", organizationId, snapshotDate, first.getOrganizationName());
+        }
+        Timestamp previous = jdbcTemplate.queryForObject("select max(snapshot_date) from contributor_snapshot"
+                + " where organization_id = ? and snapshot_date < ?", Timestamp.class, organizationId, snapshotDate);
+        Timestamp next = jdbcTemplate.queryForObject("select min(snapshot_date) from contributor_snapshot"
+                + " where organization_id = ? and snapshot_date > ?", Timestamp.class, organizationId, snapshotDate);
+
+        if (next != null) {
+            // the versions that reach over the snapshot end at the previous one and continue from the next one
+            jdbcTemplate.update("insert into contributor_version (id, organization_id, valid_from, valid_to, name,"
+                    + " organization_name, organizational_commits_count, organizational_projects_count,"
+                    + " personal_commits_count, personal_projects_count, url)"
+                    + " select id, organization_id, ?, valid_to, name, organization_name,"
+                    + " organizational_commits_count, organizational_projects_count, personal_commits_count,"
+                    + " personal_projects_count, url from contributor_version"
+                    + " where organization_id = ? and valid_from < ? and valid_to > ?",
+                    next, organizationId, snapshotDate, snapshotDate);
+            jdbcTemplate.update("update contributor_version set valid_to = ? where organization_id = ?"
+                    + " and valid_from < ? and valid_to > ?", previous, organizationId, snapshotDate, snapshotDate);
+        }
+
+        // versions that are valid until the previous snapshot
+        Map<Long, Contributor> current = new HashMap<>();
+        if (previous != null) {
+            for (List<Contributor> chunk : Lists.partition(contributors, IDS_PER_QUERY)) {
+                List<Object> args = new ArrayList<>(asList(organizationId, previous));
+                chunk.forEach(contributor -> args.add(contributor.getId()));
+                jdbcTemplate.query("select " + COLUMNS + ", v.valid_to as snapshot_date from contributor_version v"
+                                + " where v.organization_id = ? and v.valid_to = ? and v.id in ("
+                                + placeholders(chunk.size()) + ")", args.toArray(),
+                        (resultSet, row) -> contributor(resultSet))
+                        .forEach(version -> current.put(version.getId(), version));
+            }
+        }
+
+        List<Object[]> extended = new ArrayList<>();
+        List<Object[]> inserted = new ArrayList<>();
+        for (Contributor contributor : contributors) {
+            Contributor version = current.get(contributor.getId());
+            if (version != null && hasSameValues(version, contributor)) {
+                extended.add(new Object[]{snapshotDate, contributor.getId(), organizationId, previous});
+            } else {
+                inserted.add(new Object[]{contributor.getId(), organizationId, snapshotDate, snapshotDate,
+                        contributor.getName(), contributor.getOrganizationName(),
+                        contributor.getOrganizationalCommitsCount(), contributor.getOrganizationalProjectsCount(),
+                        contributor.getPersonalCommitsCount(), contributor.getPersonalProjectsCount(),
+                        contributor.getUrl()});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("update contributor_version set valid_to = ? where id = ? and organization_id = ?"
+                + " and valid_to = ?", extended);
+        jdbcTemplate.batchUpdate("insert into contributor_version (id, organization_id, valid_from, valid_to, name,"
+                + " organization_name, organizational_commits_count, organizational_projects_count,"
+                + " personal_commits_count, personal_projects_count, url)"
+                + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", inserted);
+    }
+
+    /**
+     * Removes a snapshot, e.g. the contributors saved by an interrupted run
+     * or an expired snapshot. The contributors of the snapshots before and
+     * after it stay the same.
+     *
+     * @return number of contributors of the snapshot
+     */
+    public int deleteSnapshot(String organizationName, Date snapshotDate) {
+        Timestamp date = timestamp(snapshotDate);
+        return transactionTemplate.execute(status -> {
+            int contributors = 0;
+            for (Long organizationId : jdbcTemplate.queryForList("select organization_id from contributor_snapshot"
+                    + " where organization_name = ? and snapshot_date = ?", Long.class, organizationName, date)) {
+                contributors += jdbcTemplate.queryForObject("select count(*) from contributor_version"
+                        + " where organization_id = ? and valid_from <= ? and valid_to >= ?", Integer.class,
+                        organizationId, date, date);
+                Timestamp previous = jdbcTemplate.queryForObject("select max(snapshot_date) from contributor_snapshot"
+                        + " where organization_id = ? and snapshot_date < ?", Timestamp.class, organizationId, date);
+                Timestamp next = jdbcTemplate.queryForObject("select min(snapshot_date) from contributor_snapshot"
+                        + " where organization_id = ? and snapshot_date > ?", Timestamp.class, organizationId, date);
+
+                jdbcTemplate.update("delete from contributor_version where organization_id = ? and valid_from = ?"
+                        + " and valid_to = ?", organizationId, date, date);
+                // the remaining versions reach into the next or the previous snapshot
+                if (next != null) {
+                    jdbcTemplate.update("update contributor_version set valid_from = ? where organization_id = ?"
+                            + " and valid_from = ?", next, organizationId, date);
+                }
+                if (previous != null) {
+                    jdbcTemplate.update("update contributor_version set valid_to = ? where organization_id = ?"
+                            + " and valid_to = ?", previous, organizationId, date);
+                }
+                jdbcTemplate.update("delete from contributor_snapshot where organization_id = ? and snapshot_date = ?",
+                        organizationId, date);
+            }
+            return contributors;
+        });
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("delete from contributor_version");
+        jdbcTemplate.update("delete from contributor_snapshot");
+    }
+
+    @Override
+    public Long findOrganizationId(String organizationName) {
+        checkNotNull(organizationName, "organizationName must not be null but was");
+
+        List<Long> results = jdbcTemplate.queryForList("select organization_id from contributor_snapshot"
+                + " where organization_name = ? limit 1", Long.class, organizationName);
+        return results.size() > 0 ? results.get(0) : -1L;
+    }
+
+    @Override
+    public Date findPreviousSnapShotDate(Date snapshotDate) {
+        if (snapshotDate == null) {
+            // choose some date far away in the future
+            snapshotDate = from(ofInstant(now(), systemDefault()).plus(10, YEARS).toInstant(UTC));
+        }
+        return jdbcTemplate.queryForObject("select max(snapshot_date) from contributor_snapshot"
+                + " where snapshot_date <= ?", Timestamp.class, timestamp(snapshotDate));
+    }
+
+    @Override
+    public Date findPreviousSnapShotDate(String organizationName, Date snapshotDate) {
+        checkNotNull(organizationName, "organizationName must not be null but was");
+        if (snapshotDate == null) {
+            // choose some date far away in the future
+            snapshotDate = from(ofInstant(now(), systemDefault()).plus(10, YEARS).toInstant(UTC));
+        }
+        return jdbcTemplate.queryForObject("select max(snapshot_date) from contributor_snapshot"
+                + " where organization_name = ? and snapshot_date <= ?", Timestamp.class, organizationName,
+                timestamp(snapshotDate));
+    }
+
+    /**
+     * @return date of the latest snapshot taken at or before the given date
+     * of the organizations without snapshots in the {@link SnapshotCatalog}
+     */
+    Date findPreviousUncatalogedSnapShotDate(Date snapshotDate) {
+        return jdbcTemplate.queryForList("select s.snapshot_date from contributor_snapshot s"
+                + " where s.snapshot_date <= ? and not exists (select 1 from snapshot_catalog c"
+                + " where c.organization_name = s.organization_name) order by s.snapshot_date desc limit 1",
+                Timestamp.class, timestamp(snapshotDate)).stream().findFirst().orElse(null);
+    }
+
+    @Override
+    public List<Contributor> findAllTimeTopContributors(Long organizationId, Date snapshotDate, String namePrefix,
+                                                        Integer offset, Integer limit) {
+        checkNotNull(snapshotDate, "snapshot date must not be null but was");
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (organizationId != null) {
+            conditions.add("s.organization_id = ?");
+            args.add(organizationId);
+        }
+        conditions.add("s.snapshot_date = ?");
+        args.add(timestamp(snapshotDate));
+        addNamePrefix(namePrefix, conditions, args);
+        args.add(limit == null ? 10000000 : limit);
+        args.add(offset == null ? 0 : offset);
+
+        return query(conditions, "v.organizational_commits_count desc limit ? offset ?", args);
+    }
+
+    @Override
+    public List<Contributor> findContributorsTimeSeries(Long organizationId, Date startDate, Date endDate,
+                                                        String namePrefix) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        if (organizationId != null) {
+            conditions.add("s.organization_id = ?");
+            args.add(organizationId);
+        }
+        if (startDate != null) {
+            conditions.add("s.snapshot_date >= ?");
+            args.add(timestamp(startDate));
+        }
+        if (endDate != null) {
+            conditions.add("s.snapshot_date <= ?");
+            args.add(timestamp(endDate));
+        }
+        addNamePrefix(namePrefix, conditions, args);
+
+        return query(conditions, "s.snapshot_date desc, v.id desc", args);
+    }
+
+    @Override
+    public List<Contributor> findContributorsByOrganizationAndDate(Collection<String> orgs, Date startDate,
+                                                                   Date endDate) {
+        if (orgs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Object> args = new ArrayList<>(orgs);
+        args.add(timestamp(startDate));
+        args.add(timestamp(endDate));
+
+        return query(asList("s.organization_name in (" + placeholders(orgs.size()) + ")",
+                "s.snapshot_date between ? and ?"), "s.snapshot_date", args);
+    }
+
+    /**
+     * Skips the snapshots that are not published yet, before a page is cut.
+     */
+    private List<Contributor> query(List<String> conditions, String orderBy, List<Object> args) {
+        List<String> published = new ArrayList<>(conditions);
+        published.add(SnapshotCatalog.publishedCondition("s.organization_name", "s.snapshot_date"));
+        return jdbcTemplate.query(SNAPSHOT_VERSIONS + " where " + String.join(" and ", published)
+                + " order by " + orderBy, args.toArray(),
+                (resultSet, row) -> contributor(resultSet));
+    }
+
+    private static void addNamePrefix(String namePrefix, List<String> conditions, List<Object> args) {
+        if (namePrefix != null) {
+            conditions.add("v.name like ?");
+            args.add(namePrefix.replace("%", "[%]") + "%");
+        }
+    }
+
+    private static boolean hasSameValues(Contributor version, Contributor contributor) {
+        return Objects.equals(version.getName(), contributor.getName())
+                && Objects.equals(version.getOrganizationName(), contributor.getOrganizationName())
+                && Objects.equals(version.getUrl(), contributor.getUrl())
+                && Objects.equals(version.getOrganizationalCommitsCount(), contributor.getOrganizationalCommitsCount())
+                && Objects.equals(version.getOrganizationalProjectsCount(),
+                contributor.getOrganizationalProjectsCount())
+                && Objects.equals(version.getPersonalCommitsCount(), contributor.getPersonalCommitsCount())
+                && Objects.equals(version.getPersonalProjectsCount(), contributor.getPersonalProjectsCount());
+    }
+
+    private static Contributor contributor(ResultSet resultSet) throws SQLException {
+        Contributor contributor = new Contributor(resultSet.getLong("id"), resultSet.getLong("organization_id"),
+                resultSet.getTimestamp("snapshot_date"));
+        contributor.setName(resultSet.getString("name"));
+        contributor.setOrganizationName(resultSet.getString("organization_name"));
+        contributor.setOrganizationalCommitsCount(integer(resultSet, "organizational_commits_count"));
+        contributor.setOrganizationalProjectsCount(integer(resultSet, "organizational_projects_count"));
+        contributor.setPersonalCommitsCount(integer(resultSet, "personal_commits_count"));
+        contributor.setPersonalProjectsCount(integer(resultSet, "personal_projects_count"));
+        contributor.setUrl(resultSet.getString("url"));
+        return contributor;
+    }
+
+    private static Integer integer(ResultSet resultSet, String column) throws SQLException {
+        int value = resultSet.getInt(column);
+        return resultSet.wasNull() ? null : value;
+    }
+
+    private static String placeholders(int count) {
+        return Collections.nCopies(count, "?").stream().collect(joining(", "));
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
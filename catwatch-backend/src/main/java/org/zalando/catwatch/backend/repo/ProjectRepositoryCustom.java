@@ -2,13 +2,55 @@ package org.zalando.catwatch.backend.repo;
 
 import org.zalando.catwatch.backend.model.Project;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 interface ProjectRepositoryCustom {
 
+    /**
+     * @return projects of the latest published snapshot of the organization,
+     * see {@link SnapshotCatalog}
+     */
     List<Project> findProjects(String organization, Optional<String> query, Optional<String> language);
 
+    /**
+     * @return projects of the latest published snapshot of the organization
+     * taken at or before the given date
+     */
     List<Project> findProjects(String organization, Date snapshotDate, Optional<String> query, Optional<String> language);
+
+    /**
+     * @return projects of the published snapshots taken in the period,
+     * latest first
+     */
+    List<Project> findProjectsByDateRange(Date startDate, Date endDate);
+
+    /**
+     * @return projects of the published snapshots of the organizations taken
+     * in the period, latest first
+     */
+    List<Project> findProjectsByOrganizationNameAndDateRange(Collection<String> orgs, Date startDate, Date endDate);
+
+    /**
+     * @return projects of the latest published snapshot of the organization
+     * with initialized language lists and maintainers, so that they can be
+     * used outside of a transaction
+     */
+    List<Project> findProjectsOfLatestSnapshot(String organization);
+
+    /**
+     * @return projects of the latest snapshot of the organization taken at or
+     * before the given date, initialized like
+     * {@link #findProjectsOfLatestSnapshot(String)}
+     */
+    List<Project> findProjectsOfSnapshot(String organization, Date snapshotDate);
+
+    /**
+     * @return projects saved so far of the snapshot of the organization that
+     * is being written, e.g. an interrupted one that is resumed, initialized
+     * like {@link #findProjectsOfLatestSnapshot(String)}
+     */
+    List<Project> findProjectsOfUnpublishedSnapshot(String organization, Date snapshotDate);
 }
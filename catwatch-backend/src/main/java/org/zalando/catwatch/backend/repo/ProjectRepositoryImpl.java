@@ -3,12 +3,19 @@ package org.zalando.catwatch.backend.repo;
 import com.mysema.query.BooleanBuilder;
 import com.mysema.query.jpa.JPASubQuery;
 import com.mysema.query.jpa.impl.JPAQuery;
+import com.mysema.query.types.Predicate;
+import com.mysema.query.types.expr.BooleanExpression;
 import com.mysema.query.types.query.DateTimeSubQuery;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
 import org.zalando.catwatch.backend.model.Project;
 import org.zalando.catwatch.backend.model.QProject;
+import org.zalando.catwatch.backend.model.QSnapshotCatalogEntry;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -19,39 +26,40 @@ class ProjectRepositoryImpl implements ProjectRepositoryCustom {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private SnapshotCatalog catalog;
+
     private final QProject project = QProject.project;
 
     @Override
     public List<Project> findProjects(String organization, Optional<String> query, Optional<String> language) {
-        DateTimeSubQuery<Date> lastSnapshot = new JPASubQuery().from(project)
-            .where(project.organizationName.eq(organization))
-            .unique(project.snapshotDate.max());
-
-        BooleanBuilder q = new BooleanBuilder()
-            .and(project.organizationName.eq(organization))
-            .and(project.snapshotDate.eq(lastSnapshot));
-
-        if (query.isPresent()) {
-            q.and(project.name.startsWith(query.get()));
+        Optional<Date> latestSnapshot = catalog.findLatestPublished(organization);
+        if (latestSnapshot.isPresent()) {
+            return findProjects(organization, project.snapshotDate.eq(latestSnapshot.get()), query, language);
         }
-
-        if (language.isPresent()) {
-            q.and(project.primaryLanguage.eq(language.get()));
+        if (catalog.contains(organization)) {
+            // the first snapshot of the organization is not published yet
+            return Collections.emptyList();
         }
-
-        return queryProject().where(q).list(project);
+        return findProjects(organization, project.snapshotDate.eq(lastSnapshot(organization)), query, language);
     }
 
     @Override
     public List<Project> findProjects(String organization, Date snapshotDate, Optional<String> query, Optional<String> language) {
-        BooleanBuilder q = new BooleanBuilder(project.organizationName.eq(organization));
-
         Optional<Date> snapshotDateMatch = getSnapshotDateMatch(snapshotDate, organization);
         if (!snapshotDateMatch.isPresent()) {
             return Collections.emptyList();
         }
 
-        q.and(project.snapshotDate.eq(snapshotDateMatch.get()));
+        return findProjects(organization, project.snapshotDate.eq(snapshotDateMatch.get()), query, language);
+    }
+
+    private List<Project> findProjects(String organization, Predicate snapshot, Optional<String> query,
+                                       Optional<String> language) {
+        BooleanBuilder q = new BooleanBuilder()
+            .and(project.organizationName.eq(organization))
+            .and(snapshot);
+
         if (query.isPresent()) {
             q.and(project.name.startsWith(query.get()));
         }
@@ -63,13 +71,88 @@ class ProjectRepositoryImpl implements ProjectRepositoryCustom {
         return queryProject().where(q).list(project);
     }
 
+    @Override
+    public List<Project> findProjectsByDateRange(Date startDate, Date endDate) {
+        return queryProject()
+            .where(project.snapshotDate.between(startDate, endDate).and(published()))
+            .orderBy(project.snapshotDate.desc())
+            .list(project);
+    }
+
+    @Override
+    public List<Project> findProjectsByOrganizationNameAndDateRange(Collection<String> orgs, Date startDate,
+                                                                    Date endDate) {
+        return queryProject()
+            .where(project.organizationName.in(orgs).and(project.snapshotDate.between(startDate, endDate))
+                .and(published()))
+            .orderBy(project.snapshotDate.desc())
+            .list(project);
+    }
+
+    /**
+     * @return condition that skips the projects of the snapshots that are not
+     * published yet, see {@link SnapshotCatalog#publishedCondition}
+     */
+    private BooleanExpression published() {
+        QSnapshotCatalogEntry entry = QSnapshotCatalogEntry.snapshotCatalogEntry;
+        return new JPASubQuery().from(entry)
+            .where(entry.key.organizationName.eq(project.organizationName))
+            .notExists()
+            .or(new JPASubQuery().from(entry)
+                .where(entry.key.organizationName.eq(project.organizationName)
+                    .and(entry.key.snapshotDate.eq(project.snapshotDate))
+                    .and(entry.status.eq(SnapshotCatalog.PUBLISHED)))
+                .exists());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Project> findProjectsOfLatestSnapshot(String organization) {
+        return initialize(findProjects(organization, Optional.empty(), Optional.empty()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Project> findProjectsOfSnapshot(String organization, Date snapshotDate) {
+        return initialize(findProjects(organization, snapshotDate, Optional.empty(), Optional.empty()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Project> findProjectsOfUnpublishedSnapshot(String organization, Date snapshotDate) {
+        return initialize(findProjects(organization, project.snapshotDate.eq(snapshotDate), Optional.empty(),
+            Optional.empty()));
+    }
+
+    private List<Project> initialize(List<Project> projects) {
+        projects.forEach(p -> {
+            Hibernate.initialize(p.getLanguageList());
+            Hibernate.initialize(p.getLanguageBytes());
+            Hibernate.initialize(p.getMaintainers());
+        });
+        return projects;
+    }
+
+    /**
+     * @return latest snapshot of an organization without snapshots in the
+     * catalog, whose projects were saved through the repository directly
+     */
+    private DateTimeSubQuery<Date> lastSnapshot(String organization) {
+        return new JPASubQuery().from(project)
+            .where(project.organizationName.eq(organization))
+            .unique(project.snapshotDate.max());
+    }
+
     /**
      * @param snapshot
      *
-     * @return date that is closest in the past. If there is no earlier date in
-     * the past, nothing is returned
+     * @return date of the published snapshot that is closest in the past. If
+     * there is no earlier date in the past, nothing is returned
      */
     private Optional<Date> getSnapshotDateMatch(Date snapshot, String organization) {
+        if (catalog.contains(organization)) {
+            return catalog.findLatestPublishedBefore(organization, snapshot);
+        }
         return queryProject()
             .where(
                 project.organizationName.eq(organization)
@@ -0,0 +1,149 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Inserts the projects and contributors of a snapshot with JDBC batches.
+ * <p>
+ * Saving through the repositories costs a statement per project, language
+ * and maintainer. Here every table gets a single batch per call, the project
+ * ids are taken in blocks from project_seq like Hibernate does. The
+ * contributors go to the {@link ContributorVersions} if they are enabled.
+ *
+ * @see Project#getId()
+ */
+@Component
+public class SnapshotBulkWriter {
+
+    /**
+     * Increment of project_seq, every value of the sequence reserves the
+     * following ids.
+     */
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Optional<ContributorVersions> contributorVersions;
+
+    private long nextId;
+    private long lastId = -1;
+
+    @Autowired
+    public SnapshotBulkWriter(JdbcTemplate jdbcTemplate, Optional<ContributorVersions> contributorVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.contributorVersions = contributorVersions;
+    }
+
+    /**
+     * Inserts the projects with their languages, language bytes and
+     * maintainers and sets their ids.
+     */
+    @Transactional
+    public void insertProjects(List<Project> projects) {
+        List<Object[]> projectRows = new ArrayList<>(projects.size());
+        List<Object[]> languageRows = new ArrayList<>();
+        List<Object[]> languageBytesRows = new ArrayList<>();
+        List<Object[]> maintainerRows = new ArrayList<>();
+
+        for (Project project : projects) {
+            int id = nextId();
+            project.setId(id);
+            projectRows.add(new Object[]{id, project.getGitHubProjectId(), timestamp(project.getSnapshotDate()),
+                    project.getName(), project.getTitle(), project.getImage(), project.getOrganizationName(),
+                    project.getUrl(), project.getDescription(), project.getStarsCount(), project.getCommitsCount(),
+                    project.getForksCount(), project.getContributorsCount(), project.getScore(),
+                    project.getLastPushed(), project.getPrimaryLanguage()});
+            for (String language : project.getLanguageList()) {
+                languageRows.add(new Object[]{id, language});
+            }
+            project.getLanguageBytes().forEach((language, bytes) ->
+                    languageBytesRows.add(new Object[]{id, language, bytes}));
+            for (String maintainer : project.getMaintainers()) {
+                maintainerRows.add(new Object[]{id, maintainer});
+            }
+        }
+
+        jdbcTemplate.batchUpdate("insert into project (id, git_hub_project_id, snapshot_date, name, title, image,"
+                + " organization_name, url, description, stars_count, commits_count, forks_count,"
+                + " contributors_count, score, last_pushed, primary_language)"
+                + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", projectRows);
+        jdbcTemplate.batchUpdate("insert into language_list (project_id, language) values (?, ?)", languageRows);
+        jdbcTemplate.batchUpdate("insert into language_bytes (project_id, language, bytes) values (?, ?, ?)",
+                languageBytesRows);
+        jdbcTemplate.batchUpdate("insert into maintainers (project_id, maintainer) values (?, ?)", maintainerRows);
+    }
+
+    public void insertContributors(List<Contributor> contributors) {
+        if (contributorVersions.isPresent()) {
+            contributorVersions.get().insertContributors(contributors);
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(contributors.size());
+        for (Contributor contributor : contributors) {
+            rows.add(new Object[]{contributor.getId(), contributor.getOrganizationId(),
+                    timestamp(contributor.getSnapshotDate()), contributor.getName(),
+                    contributor.getOrganizationName(), contributor.getOrganizationalCommitsCount(),
+                    contributor.getOrganizationalProjectsCount(), contributor.getPersonalCommitsCount(),
+                    contributor.getPersonalProjectsCount(), contributor.getUrl()});
+        }
+
+        jdbcTemplate.batchUpdate("insert into contributor (id, organization_id, snapshot_date, name,"
+                + " organization_name, organizational_commits_count, organizational_projects_count,"
+                + " personal_commits_count, personal_projects_count, url)"
+                + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Removes the contributors an interrupted run inserted, they are
+     * inserted again when the snapshot is resumed.
+     *
+     * @return number of contributors removed
+     */
+    public int deleteContributors(String organizationName, Date snapshotDate) {
+        if (contributorVersions.isPresent()) {
+            return contributorVersions.get().deleteSnapshot(organizationName, snapshotDate);
+        }
+        return jdbcTemplate.update("delete from contributor where organization_name = ? and snapshot_date = ?",
+                organizationName, timestamp(snapshotDate));
+    }
+
+    /**
+     * Removes the projects of a snapshot that was never published, together
+     * with their languages and maintainers.
+     *
+     * @return number of projects removed
+     */
+    @Transactional
+    public int deleteProjects(String organizationName, Date snapshotDate) {
+        String projects = "select id from project where organization_name = ? and snapshot_date = ?";
+        for (String table : new String[]{"language_list", "language_bytes", "maintainers"}) {
+            jdbcTemplate.update("delete from " + table + " where project_id in (" + projects + ")",
+                    organizationName, timestamp(snapshotDate));
+        }
+        return jdbcTemplate.update("delete from project where organization_name = ? and snapshot_date = ?",
+                organizationName, timestamp(snapshotDate));
+    }
+
+    private synchronized int nextId() {
+        if (nextId > lastId) {
+            nextId = jdbcTemplate.queryForObject("select nextval('project_seq')", Long.class);
+            lastId = nextId + ID_BLOCK_SIZE - 1;
+        }
+        return (int) nextId++;
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
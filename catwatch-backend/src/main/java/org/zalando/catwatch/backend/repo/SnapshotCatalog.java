@@ -0,0 +1,178 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.zalando.catwatch.backend.model.Statistics;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Snapshots of the organizations, one row per organization and snapshot
+ * date in the table snapshot_catalog.
+ * <p>
+ * A snapshot is WRITING while the fetcher saves its projects and
+ * contributors and becomes PUBLISHED together with its statistics. The
+ * readers of the repositories only see published snapshots of an
+ * organization. The latest and as-of lookups read a single entry of the
+ * primary key instead of the project or contributor table, the queries of a
+ * period and the pages of contributors skip the rows of other snapshots with
+ * an exists condition on the catalog, see {@link #publishedCondition}.
+ * <p>
+ * Organizations without any row, e.g. data saved through the repositories
+ * directly, are looked up in the project and contributor table like before.
+ */
+@Component
+public class SnapshotCatalog {
+
+    static final String WRITING = "WRITING";
+    static final String PUBLISHED = "PUBLISHED";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StatisticsRepository statisticsRepository;
+
+    @Autowired
+    public SnapshotCatalog(JdbcTemplate jdbcTemplate, StatisticsRepository statisticsRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.statisticsRepository = statisticsRepository;
+    }
+
+    /**
+     * Registers the snapshot before its first project is saved. A resumed
+     * snapshot is registered already.
+     */
+    public void begin(String organizationName, Date snapshotDate) {
+        List<String> existing = jdbcTemplate.queryForList("select status from snapshot_catalog"
+                + " where organization_name = ? and snapshot_date = ?", String.class, organizationName,
+                timestamp(snapshotDate));
+        if (!existing.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("insert into snapshot_catalog (organization_name, snapshot_date, status)"
+                    + " values (?, ?, ?)", organizationName, timestamp(snapshotDate), WRITING);
+        } catch (DuplicateKeyException e) {
+            // registered concurrently by another node
+        }
+    }
+
+    /**
+     * Saves the statistics of the snapshot and publishes it in one
+     * transaction, readers see either none or all of its rows.
+     */
+    @Transactional
+    public void publish(Statistics statistics, int projectsCount, int contributorsCount) {
+        statisticsRepository.save(statistics);
+
+        String organizationName = statistics.getOrganizationName();
+        if (organizationName == null) {
+            // not found by any lookup of an organization
+            return;
+        }
+        Timestamp snapshotDate = timestamp(statistics.getSnapshotDate());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int updated = jdbcTemplate.update("update snapshot_catalog set status = ?, projects_count = ?,"
+                + " contributors_count = ?, published = ? where organization_name = ? and snapshot_date = ?",
+                PUBLISHED, projectsCount, contributorsCount, now, organizationName, snapshotDate);
+        if (updated == 0) {
+            jdbcTemplate.update("insert into snapshot_catalog (organization_name, snapshot_date, status,"
+                    + " projects_count, contributors_count, published) values (?, ?, ?, ?, ?, ?)",
+                    organizationName, snapshotDate, PUBLISHED, projectsCount, contributorsCount, now);
+        }
+    }
+
+    /**
+     * Unregisters a snapshot that is still being written, e.g. an
+     * interrupted one that is too old to be resumed.
+     */
+    public void discard(String organizationName, Date snapshotDate) {
+        jdbcTemplate.update("delete from snapshot_catalog where organization_name = ? and snapshot_date = ?"
+                + " and status = ?", organizationName, timestamp(snapshotDate), WRITING);
+    }
+
+    /**
+     * @return date of the latest published snapshot of the organization
+     */
+    public Optional<Date> findLatestPublished(String organizationName) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("select max(snapshot_date) from snapshot_catalog"
+                + " where organization_name = ? and status = ?", Date.class, organizationName, PUBLISHED));
+    }
+
+    /**
+     * @return date of the latest snapshot of the organization that is being
+     * written, e.g. an interrupted one
+     */
+    public Optional<Date> findLatestWriting(String organizationName) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("select max(snapshot_date) from snapshot_catalog"
+                + " where organization_name = ? and status = ?", Date.class, organizationName, WRITING));
+    }
+
+    /**
+     * @return date of the latest snapshot of the organization that was
+     * published and taken at or before the given date
+     */
+    public Optional<Date> findLatestPublishedBefore(String organizationName, Date date) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("select max(snapshot_date) from snapshot_catalog"
+                        + " where organization_name = ? and snapshot_date <= ? and status = ?", Date.class,
+                organizationName, timestamp(date), PUBLISHED));
+    }
+
+    /**
+     * @return date of the latest snapshot of any organization that was
+     * published and taken at or before the given date
+     */
+    public Optional<Date> findLatestPublishedBefore(Date date) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject("select max(snapshot_date) from snapshot_catalog"
+                + " where status = ? and snapshot_date <= ?", Date.class, PUBLISHED, timestamp(date)));
+    }
+
+    /**
+     * @return SQL condition on the given columns of a project or contributor
+     * row, true for the rows of published snapshots and the rows of
+     * organizations without any snapshot in the catalog
+     */
+    static String publishedCondition(String organizationName, String snapshotDate) {
+        return "(not exists (select 1 from snapshot_catalog sc where sc.organization_name = " + organizationName
+                + ") or exists (select 1 from snapshot_catalog sc where sc.organization_name = " + organizationName
+                + " and sc.snapshot_date = " + snapshotDate + " and sc.status = '" + PUBLISHED + "'))";
+    }
+
+    /**
+     * @return JPQL condition like {@link #publishedCondition(String, String)}
+     * on the given properties
+     */
+    static String publishedJpqlCondition(String organizationName, String snapshotDate) {
+        return "(not exists (select sc.status from SnapshotCatalogEntry sc"
+                + " where sc.key.organizationName = " + organizationName + ")"
+                + " or exists (select sc.status from SnapshotCatalogEntry sc"
+                + " where sc.key.organizationName = " + organizationName
+                + " and sc.key.snapshotDate = " + snapshotDate + " and sc.status = '" + PUBLISHED + "'))";
+    }
+
+    /**
+     * @return true if a snapshot of the organization was registered,
+     * published or not
+     */
+    public boolean contains(String organizationName) {
+        return !jdbcTemplate.queryForList("select snapshot_date from snapshot_catalog where organization_name = ?"
+                + " limit 1", Date.class, organizationName).isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("select snapshot_date from snapshot_catalog limit 1", Date.class)
+                .isEmpty();
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("delete from snapshot_catalog");
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
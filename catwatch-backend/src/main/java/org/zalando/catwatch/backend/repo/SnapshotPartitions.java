@@ -0,0 +1,227 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Monthly partitions of the project and contributor table, see
+ * db.migration.V012__snapshot_partitions. Does nothing when the tables are
+ * not partitioned, e.g. on H2 or PostgreSQL before 11.
+ * <p>
+ * The partitions of the current and the next snapshot.partitions.months.ahead
+ * months are created at startup and every day. Rows of such a month that
+ * ended up in the default partition are moved to the new partition. Old
+ * history is removed by dropping or detaching whole partitions instead of
+ * deleting its rows.
+ */
+@Component
+public class SnapshotPartitions {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotPartitions.class);
+
+    static final String[] TABLES = {"project", "contributor"};
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("(\\w+)_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+
+    private Boolean enabled;
+
+    @Autowired
+    public SnapshotPartitions(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${snapshot.partitions.months.ahead}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+    }
+
+    /**
+     * @return true if the tables are partitioned
+     */
+    public synchronized boolean isEnabled() {
+        if (enabled == null) {
+            enabled = "PostgreSQL".equals(jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName()))
+                    && jdbcTemplate.queryForObject("select count(*) from pg_partitioned_table p"
+                    + " join pg_class c on c.oid = p.partrelid where c.relname = ?", Integer.class, TABLES[0]) > 0;
+        }
+        return enabled;
+    }
+
+    /**
+     * Creates the partitions of the next months. A failure is thrown, at
+     * startup it stops the application.
+     */
+    @PostConstruct
+    @Scheduled(cron = "${snapshot.partitions.schedule}")
+    public void createFuturePartitions() {
+        if (!isEnabled()) {
+            return;
+        }
+        YearMonth now = YearMonth.now();
+        createPartitions(now, now.plusMonths(monthsAhead));
+    }
+
+    /**
+     * Creates the missing partitions of the months from first to last in one
+     * transaction.
+     */
+    public void createPartitions(YearMonth first, YearMonth last) {
+        transactionTemplate.execute(status -> {
+            for (String table : TABLES) {
+                for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                    createPartition(table, month);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * A partition cannot be created while the default partition holds rows
+     * of its month. The default partition is detached meanwhile and its rows
+     * of the month are moved to the new partition.
+     */
+    private void createPartition(String table, YearMonth month) {
+        String partition = partitionName(table, month);
+        if (exists(partition)) {
+            return;
+        }
+        String createPartition = String.format("create table %s partition of %s for values from ('%s-01')"
+                + " to ('%s-01')", partition, table, month, month.plusMonths(1));
+        String defaultPartition = table + "_default";
+        Timestamp from = start(month);
+        Timestamp to = start(month.plusMonths(1));
+        if (!exists(defaultPartition) || jdbcTemplate.queryForObject("select count(*) from " + defaultPartition
+                + " where snapshot_date >= ? and snapshot_date < ?", Integer.class, from, to) == 0) {
+            jdbcTemplate.execute(createPartition);
+            return;
+        }
+
+        jdbcTemplate.execute("alter table " + table + " detach partition " + defaultPartition);
+        jdbcTemplate.execute(createPartition);
+        int moved = jdbcTemplate.update("with moved as (delete from " + defaultPartition
+                + " where snapshot_date >= ? and snapshot_date < ? returning *)"
+                + " insert into " + partition + " select * from moved", from, to);
+        jdbcTemplate.execute("alter table " + table + " attach partition " + defaultPartition + " default");
+        logger.info("Moved {} rows of the default partition to {}.", moved, partition);
+    }
+
+    /**
+     * @return months with a partition of the table, in ascending order
+     */
+    public List<YearMonth> findMonths(String table) {
+        List<YearMonth> months = new ArrayList<>();
+        for (String partition : jdbcTemplate.queryForList("select c.relname from pg_inherits i"
+                + " join pg_class c on c.oid = i.inhrelid join pg_class p on p.oid = i.inhparent"
+                + " where p.relname = ? order by c.relname", String.class, table)) {
+            month(table, partition).ifPresent(months::add);
+        }
+        return months;
+    }
+
+    /**
+     * Drops the partitions of the months before the given one, with the
+     * languages and maintainers of their projects. The rows of these months
+     * in the default partition, their statistics and their entries of the
+     * {@link SnapshotCatalog} are deleted in the same transaction.
+     *
+     * @return number of partitions dropped
+     */
+    public int dropBefore(YearMonth month) {
+        Timestamp before = start(month);
+        return transactionTemplate.execute(status -> {
+            for (String table : new String[]{"language_list", "language_bytes", "maintainers"}) {
+                jdbcTemplate.update("delete from " + table + " where project_id in (select id from project"
+                        + " where snapshot_date < ?)", before);
+            }
+            int dropped = 0;
+            for (String table : TABLES) {
+                for (YearMonth partitionMonth : findMonths(table)) {
+                    if (partitionMonth.isBefore(month)) {
+                        String partition = partitionName(table, partitionMonth);
+                        jdbcTemplate.execute("drop table " + partition);
+                        logger.info("Dropped partition {}.", partition);
+                        dropped++;
+                    }
+                }
+                // rows of these months in the default partition
+                jdbcTemplate.update("delete from " + table + " where snapshot_date < ?", before);
+            }
+            jdbcTemplate.update("delete from statistics where snapshot_date < ?", before);
+            jdbcTemplate.update("delete from snapshot_catalog where snapshot_date < ?", before);
+            return dropped;
+        });
+    }
+
+    /**
+     * Detaches the partitions of the months before the given one, they stay
+     * as tables of their own, e.g. to be archived, and can be attached again.
+     *
+     * @return names of the detached partitions
+     */
+    public List<String> detachBefore(YearMonth month) {
+        return transactionTemplate.execute(status -> {
+            List<String> detached = new ArrayList<>();
+            for (String table : TABLES) {
+                for (YearMonth partitionMonth : findMonths(table)) {
+                    if (partitionMonth.isBefore(month)) {
+                        String partition = partitionName(table, partitionMonth);
+                        jdbcTemplate.execute("alter table " + table + " detach partition " + partition);
+                        logger.info("Detached partition {}.", partition);
+                        detached.add(partition);
+                    }
+                }
+            }
+            return detached;
+        });
+    }
+
+    private boolean exists(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from pg_class where relname = ?", Integer.class,
+                table) > 0;
+    }
+
+    private static Timestamp start(YearMonth month) {
+        return Timestamp.valueOf(month.atDay(1).atStartOfDay());
+    }
+
+    /**
+     * @return e.g. project_y2015m07
+     */
+    static String partitionName(String table, YearMonth month) {
+        return String.format("%s_y%04dm%02d", table, month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * @return month of the partition of the table, nothing for the default
+     * partition
+     */
+    static Optional<YearMonth> month(String table, String partition) {
+        Matcher matcher = PARTITION_NAME.matcher(partition);
+        if (!matcher.matches() || !matcher.group(1).equals(table)) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3))));
+    }
+}
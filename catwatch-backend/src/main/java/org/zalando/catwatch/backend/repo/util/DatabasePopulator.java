@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.repo.ContributorVersions;
 import org.zalando.catwatch.backend.repo.ProjectRepository;
 import org.zalando.catwatch.backend.repo.StatisticsRepository;
 import org.zalando.catwatch.backend.repo.builder.BuilderUtil;
@@ -13,6 +14,7 @@ import org.zalando.catwatch.backend.repo.builder.StatisticsBuilder;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -25,16 +27,19 @@ public class DatabasePopulator {
     private final StatisticsRepository statisticsRepository;
     private final ProjectRepository projectRepository;
     private final ContributorRepository contributorRepository;
+    private final Optional<ContributorVersions> contributorVersions;
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
     public DatabasePopulator(StatisticsRepository statisticsRepository,
                              ProjectRepository projectRepository,
                              ContributorRepository contributorRepository,
+                             Optional<ContributorVersions> contributorVersions,
                              JdbcTemplate jdbcTemplate) {
         this.statisticsRepository = statisticsRepository;
         this.projectRepository = projectRepository;
         this.contributorRepository = contributorRepository;
+        this.contributorVersions = contributorVersions;
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -94,5 +99,6 @@ public class DatabasePopulator {
                 .organizationName("galanto")
                 .save();
         }
+        contributorVersions.ifPresent(ContributorVersions::importContributors);
     }
 }
@@ -0,0 +1,94 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zalando.catwatch.backend.github.SnapshotWriter;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.repo.SnapshotBulkWriter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Saves projects and contributors in batches of a fixed size while an
+ * organization is crawled, so that at most one batch per organization is
+ * kept in memory.
+ * <p>
+ * Every saved batch survives a crash of the crawler. Projects already saved
+ * by an interrupted run of the same snapshot are skipped when the snapshot
+ * is resumed.
+ *
+ * @see SnapshotBulkWriter
+ */
+class BatchingSnapshotWriter implements SnapshotWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingSnapshotWriter.class);
+
+    private final SnapshotBulkWriter bulkWriter;
+    private final int batchSize;
+
+    /**
+     * GitHub project ids of the projects saved by an interrupted run.
+     */
+    private final Set<Long> savedProjectIds;
+
+    private final List<Project> projects;
+    private final List<Contributor> contributors;
+
+    /**
+     * @param savedProjects projects of the snapshot that are already saved,
+     *                      empty for a new snapshot
+     */
+    BatchingSnapshotWriter(SnapshotBulkWriter bulkWriter, int batchSize, Collection<Project> savedProjects) {
+        this.bulkWriter = bulkWriter;
+        this.batchSize = batchSize;
+        this.savedProjectIds = savedProjects.stream().map(Project::getGitHubProjectId).collect(toSet());
+        this.projects = new ArrayList<>(batchSize);
+        this.contributors = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public synchronized void writeProject(Project project) {
+        if (savedProjectIds.contains(project.getGitHubProjectId())) {
+            logger.debug("Project '{}' is already saved.", project.getName());
+            return;
+        }
+        projects.add(project);
+        if (projects.size() >= batchSize) {
+            saveProjects();
+        }
+    }
+
+    @Override
+    public synchronized void writeContributor(Contributor contributor) {
+        contributors.add(contributor);
+        if (contributors.size() >= batchSize) {
+            saveContributors();
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        saveProjects();
+        saveContributors();
+    }
+
+    private void saveProjects() {
+        if (!projects.isEmpty()) {
+            bulkWriter.insertProjects(projects);
+            projects.clear();
+        }
+    }
+
+    private void saveContributors() {
+        if (!contributors.isEmpty()) {
+            bulkWriter.insertContributors(contributors);
+            contributors.clear();
+        }
+    }
+}
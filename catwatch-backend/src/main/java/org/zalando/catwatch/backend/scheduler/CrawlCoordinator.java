@@ -0,0 +1,106 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.zalando.catwatch.backend.github.CrawlerMetrics;
+
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs at most one crawl per node at a time, whether it was started by the
+ * schedule or by /fetch. Starting a crawl while another one is running
+ * returns the running one.
+ * <p>
+ * Across nodes, the crawls started at about the same time share one run,
+ * see {@link CrawlLeases}.
+ */
+@Component
+public class CrawlCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCoordinator.class);
+
+    /**
+     * Number of jobs whose status can be requested.
+     */
+    private static final int KEPT_JOBS = 20;
+
+    private final RetryableFetcher fetcher;
+    private final CrawlerMetrics crawlerMetrics;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("crawl-coordinator-%d").setDaemon(true).build());
+
+    private final Map<String, CrawlJob> jobs = new LinkedHashMap<String, CrawlJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CrawlJob> eldest) {
+            return size() > KEPT_JOBS;
+        }
+    };
+
+    private CrawlJob running;
+
+    @Autowired
+    public CrawlCoordinator(RetryableFetcher fetcher, CrawlerMetrics crawlerMetrics) {
+        this.fetcher = fetcher;
+        this.crawlerMetrics = crawlerMetrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts a crawl in the background unless one is running.
+     *
+     * @param trigger e.g. "schedule" or "fetch"
+     * @return the new job or the running one
+     */
+    public synchronized CrawlJob start(String trigger) {
+        if (running != null) {
+            logger.info("Crawl {} is running, not starting another one for '{}'.", running.getId(), trigger);
+            return running;
+        }
+
+        CrawlJob job = new CrawlJob(UUID.randomUUID().toString(), trigger, crawlerMetrics);
+        jobs.put(job.getId(), job);
+        running = job;
+        executor.execute(() -> run(job));
+        logger.info("Started crawl {} for '{}'.", job.getId(), trigger);
+        return job;
+    }
+
+    public synchronized Optional<CrawlJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    private void run(CrawlJob job) {
+        CrawlJob.State state = CrawlJob.State.FAILED;
+        String error = "All attempts failed, see log.";
+        try {
+            if (fetcher.tryFetchData(job.progress())) {
+                state = CrawlJob.State.SUCCEEDED;
+                error = null;
+            }
+        } catch (RuntimeException e) {
+            logger.error("Crawl {} failed.", job.getId(), e);
+            error = e.toString();
+        } finally {
+            // a crawl started as soon as this one is finished is a new one
+            synchronized (this) {
+                running = null;
+                job.finish(state, error);
+            }
+        }
+        logger.info("Crawl {} finished: {}.", job.getId(), job.getState());
+    }
+}
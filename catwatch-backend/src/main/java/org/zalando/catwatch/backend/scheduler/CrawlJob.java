@@ -0,0 +1,111 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.zalando.catwatch.backend.github.CrawlerMetrics;
+
+import java.util.Date;
+
+/**
+ * A crawl started by the {@link CrawlCoordinator}, including all retries of
+ * the {@link RetryableFetcher}.
+ */
+public class CrawlJob {
+
+    public enum State {
+        RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String id;
+    private final String trigger;
+    private final Date started = new Date();
+    private final CrawlProgress progress = new CrawlProgress();
+    private final CrawlerMetrics crawlerMetrics;
+    private final long requestsAtStart;
+
+    private volatile State state = State.RUNNING;
+    private volatile Date finished;
+    private volatile String error;
+    private volatile long requests = -1;
+
+    CrawlJob(String id, String trigger, CrawlerMetrics crawlerMetrics) {
+        this.id = id;
+        this.trigger = trigger;
+        this.crawlerMetrics = crawlerMetrics;
+        this.requestsAtStart = crawlerMetrics.getRequests();
+    }
+
+    CrawlProgress progress() {
+        return progress;
+    }
+
+    void finish(State state, String error) {
+        this.requests = crawlerMetrics.getRequests() - requestsAtStart;
+        this.error = error;
+        this.finished = new Date();
+        this.state = state;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return "schedule" or "fetch"
+     */
+    public String getTrigger() {
+        return trigger;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public Date getFinished() {
+        return finished;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public int getOrganizationsDone() {
+        return progress.getOrganizationsDone();
+    }
+
+    public int getOrganizationsTotal() {
+        return progress.getOrganizationsTotal();
+    }
+
+    public int getRepositoriesDone() {
+        return progress.getRepositoriesDone();
+    }
+
+    public int getRepositoriesExpected() {
+        return progress.getRepositoriesExpected();
+    }
+
+    /**
+     * @return GitHub requests sent by this node since the job started,
+     * including retries and the requests served by the http cache
+     */
+    public long getApiCalls() {
+        return state == State.RUNNING ? crawlerMetrics.getRequests() - requestsAtStart : requests;
+    }
+
+    /**
+     * @return seconds until the expected repositories are done at the speed
+     * so far, null if there is no estimate yet
+     */
+    public Long getEtaSeconds() {
+        int done = getRepositoriesDone();
+        int expected = getRepositoriesExpected();
+        if (state != State.RUNNING || done == 0 || expected <= done) {
+            return null;
+        }
+        long elapsedMillis = System.currentTimeMillis() - started.getTime();
+        return elapsedMillis * (expected - done) / done / 1000;
+    }
+}
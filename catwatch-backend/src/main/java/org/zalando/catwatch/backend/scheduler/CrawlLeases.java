@@ -0,0 +1,182 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Shards of a crawl, one per organization, claimed by the nodes through the
+ * crawl_lease table of the application database.
+ * <p>
+ * A run is started by inserting it into crawl_run as the active run, the
+ * unique constraint on the active flag lets a single node win if several
+ * start at the same time. All nodes that start a crawl within
+ * github.crawler.lease.join.minutes after the active run join it, whether
+ * its organizations are finished or not. A later crawl replaces it.
+ * <p>
+ * A node claims an organization of the run for github.crawler.lease.seconds
+ * and renews the lease while it crawls. A lease that is not renewed expires
+ * and can be claimed by another node, which resumes the snapshot of the
+ * organization.
+ * <p>
+ * Expiry is based on the clocks of the nodes, they have to be synchronized.
+ */
+@Component
+public class CrawlLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger(CrawlLeases.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String owner;
+    private final long leaseMillis;
+    private final long joinMillis;
+
+    @Autowired
+    public CrawlLeases(JdbcTemplate jdbcTemplate,
+                       @Value("${github.crawler.node.id:}") String owner,
+                       @Value("#{${github.crawler.lease.seconds} * 1000}") long leaseMillis,
+                       @Value("#{${github.crawler.lease.join.minutes} * 60000}") long joinMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        // pid@host plus a random part, so that a restarted node does not take over its old leases
+        this.owner = StringUtils.isNotBlank(owner) ? owner
+                : ManagementFactory.getRuntimeMXBean().getName() + "#" + UUID.randomUUID().toString().substring(0, 8);
+        this.leaseMillis = leaseMillis;
+        this.joinMillis = joinMillis;
+    }
+
+    /**
+     * Joins the active run if it was started at most the join interval
+     * before the given date, or later, e.g. while the run of a retry was
+     * replaced. Otherwise starts a new run with the given date.
+     *
+     * @return snapshot date of the run
+     */
+    public Date join(Collection<String> organizations, Date snapshotDate) {
+        Date runDate = startOrJoin(snapshotDate);
+        insertMissing(organizations, runDate);
+        logger.info("Node '{}' joined crawl of {}.", owner, runDate);
+        return runDate;
+    }
+
+    private Date startOrJoin(Date snapshotDate) {
+        while (true) {
+            Optional<Date> active = findActiveRun();
+            if (active.isPresent()) {
+                if (active.get().getTime() >= snapshotDate.getTime() - joinMillis) {
+                    return active.get();
+                }
+                jdbcTemplate.update("update crawl_run set active = null where snapshot_date = ? and active = ?",
+                        timestamp(active.get()), true);
+            }
+            try {
+                jdbcTemplate.update("insert into crawl_run (snapshot_date, active, started_by) values (?, ?, ?)",
+                        timestamp(snapshotDate), true, owner);
+                return snapshotDate;
+            } catch (DuplicateKeyException e) {
+                // another node started a run at the same time, it is joined
+            }
+        }
+    }
+
+    /**
+     * @return true if the organization was not finished and not leased by
+     * another node, it is leased by this node now
+     */
+    public boolean claim(String organizationName, Date snapshotDate) {
+        Timestamp now = now();
+        return jdbcTemplate.update("update crawl_lease set owner = ?, expires = ?"
+                        + " where organization_name = ? and snapshot_date = ? and finished is null"
+                        + " and (owner is null or expires < ? or owner = ?)",
+                owner, expires(now), organizationName, timestamp(snapshotDate), now, owner) == 1;
+    }
+
+    /**
+     * @return false if the lease expired and another node took over
+     */
+    public boolean renew(String organizationName, Date snapshotDate) {
+        return jdbcTemplate.update("update crawl_lease set expires = ?"
+                        + " where organization_name = ? and snapshot_date = ? and owner = ? and finished is null",
+                expires(now()), organizationName, timestamp(snapshotDate), owner) == 1;
+    }
+
+    /**
+     * Gives up the lease, e.g. after a failure, so that any node can claim
+     * the organization right away.
+     */
+    public void release(String organizationName, Date snapshotDate) {
+        jdbcTemplate.update("update crawl_lease set owner = null, expires = null"
+                        + " where organization_name = ? and snapshot_date = ? and owner = ? and finished is null",
+                organizationName, timestamp(snapshotDate), owner);
+    }
+
+    public void finish(String organizationName, Date snapshotDate) {
+        jdbcTemplate.update("update crawl_lease set finished = ?"
+                        + " where organization_name = ? and snapshot_date = ? and owner = ?",
+                now(), organizationName, timestamp(snapshotDate), owner);
+    }
+
+    /**
+     * @return organizations of the run that are not finished yet, leased or
+     * not
+     */
+    public List<String> findUnfinished(Date snapshotDate) {
+        return jdbcTemplate.queryForList("select organization_name from crawl_lease"
+                        + " where snapshot_date = ? and finished is null order by organization_name",
+                String.class, timestamp(snapshotDate));
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getLeaseMillis() {
+        return leaseMillis;
+    }
+
+    private Optional<Date> findActiveRun() {
+        return jdbcTemplate.queryForList("select snapshot_date from crawl_run where active = ?", Timestamp.class,
+                true).stream().findFirst().map(t -> new Date(t.getTime()));
+    }
+
+    private void insertMissing(Collection<String> organizations, Date snapshotDate) {
+        List<String> existing = jdbcTemplate.queryForList(
+                "select organization_name from crawl_lease where snapshot_date = ?", String.class,
+                timestamp(snapshotDate));
+        for (String organizationName : organizations) {
+            if (existing.contains(organizationName)) {
+                continue;
+            }
+            try {
+                jdbcTemplate.update("insert into crawl_lease (organization_name, snapshot_date) values (?, ?)",
+                        organizationName, timestamp(snapshotDate));
+            } catch (DuplicateKeyException e) {
+                // inserted concurrently by another node
+            }
+        }
+    }
+
+    private Timestamp expires(Timestamp now) {
+        return new Timestamp(now.getTime() + leaseMillis);
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(System.currentTimeMillis());
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return new Timestamp(date.getTime());
+    }
+}
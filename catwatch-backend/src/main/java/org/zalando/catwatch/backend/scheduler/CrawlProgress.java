@@ -0,0 +1,90 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.zalando.catwatch.backend.github.SnapshotWriter;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Organizations and repositories done by the {@link Fetcher} so far.
+ * <p>
+ * The number of repositories of an organization is not known before its
+ * repositories are listed, the projects of its latest snapshot are expected
+ * instead. A retry starts the counts of the unfinished organizations again.
+ */
+public class CrawlProgress {
+
+    private final Set<String> organizations = ConcurrentHashMap.newKeySet();
+    private final Set<String> finishedOrganizations = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> expectedRepositories = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> doneRepositories = new ConcurrentHashMap<>();
+
+    void organizations(Collection<String> organizationNames) {
+        organizations.addAll(organizationNames);
+    }
+
+    /**
+     * @param expectedRepositories number of projects of the latest snapshot
+     *                             of the organization
+     * @return writer that counts the projects written to the given writer
+     */
+    SnapshotWriter start(String organizationName, int expectedRepositories, SnapshotWriter writer) {
+        AtomicInteger done = new AtomicInteger();
+        this.expectedRepositories.put(organizationName, expectedRepositories);
+        this.doneRepositories.put(organizationName, done);
+
+        return new SnapshotWriter() {
+
+            @Override
+            public void writeProject(Project project) {
+                writer.writeProject(project);
+                done.incrementAndGet();
+            }
+
+            @Override
+            public void writeContributor(Contributor contributor) {
+                writer.writeContributor(contributor);
+            }
+
+            @Override
+            public void flush() {
+                writer.flush();
+            }
+        };
+    }
+
+    /**
+     * The snapshot of the organization is finished, by this node or another one.
+     */
+    void finish(String organizationName) {
+        organizations.add(organizationName);
+        finishedOrganizations.add(organizationName);
+    }
+
+    public int getOrganizationsTotal() {
+        return organizations.size();
+    }
+
+    public int getOrganizationsDone() {
+        return finishedOrganizations.size();
+    }
+
+    public int getRepositoriesDone() {
+        return doneRepositories.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    /**
+     * @return expected repositories of the organizations started so far, at
+     * least the ones that are done
+     */
+    public int getRepositoriesExpected() {
+        return doneRepositories.entrySet().stream()
+                .mapToInt(done -> Math.max(done.getValue().get(), expectedRepositories.get(done.getKey())))
+                .sum();
+    }
+}
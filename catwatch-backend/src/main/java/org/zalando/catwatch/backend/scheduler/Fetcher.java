@@ -1,33 +1,71 @@
 package org.zalando.catwatch.backend.scheduler;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.GaugeService;
 import org.springframework.stereotype.Component;
 import org.zalando.catwatch.backend.github.Snapshot;
 import org.zalando.catwatch.backend.github.SnapshotProvider;
-import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.model.Project;
 import org.zalando.catwatch.backend.repo.ProjectRepository;
-import org.zalando.catwatch.backend.repo.StatisticsRepository;
+import org.zalando.catwatch.backend.repo.SnapshotBulkWriter;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.primitives.Bytes.asList;
 import static java.lang.String.format;
 import static java.net.NetworkInterface.getByInetAddress;
 import static java.time.Instant.now;
 import static java.util.Date.from;
+import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 /**
  * Fetches organizations data from GitHub and saves it to the database.
+ * <p>
+ * Projects and contributors are saved in batches while an organization is
+ * crawled, the statistics are saved last and publish the snapshot of the
+ * organization in the {@link SnapshotCatalog}. A snapshot that is still
+ * being written when the next run starts was interrupted. The next run
+ * resumes it with its original snapshot date. A snapshot older than
+ * github.snapshot.resume.hours is discarded instead and a new snapshot is
+ * taken.
+ * <p>
+ * A retry with the same snapshot date skips the organizations whose
+ * snapshot is finished, see {@link RetryableFetcher}. Snapshots that are not
+ * finished after github.snapshot.timeout.minutes are cancelled and resumed
+ * by the retry.
+ * <p>
+ * The nodes share the run of a crawl through the {@link CrawlLeases}, an
+ * organization is crawled by the node that leased it. By default a node
+ * crawls all organizations of the run that are not leased by another node
+ * at once, so a crawl started by several nodes at the same time is taken
+ * once. With github.crawler.sharding.enabled=true the nodes split the
+ * organizations between them and take them over if a node fails.
  */
 @Component
 public class Fetcher {
@@ -35,66 +73,392 @@ public class Fetcher {
     private static final Logger logger = LoggerFactory.getLogger(Fetcher.class);
 
     private final ProjectRepository projectRepository;
-    private final StatisticsRepository statisticsRepository;
-    private final ContributorRepository contributorRepository;
+    private final SnapshotBulkWriter bulkWriter;
+    private final SnapshotCatalog catalog;
     private final SnapshotProvider snapshotProvider;
     private final String[] organizations;
+    private final boolean incremental;
+    private final GaugeService gaugeService;
+    private final int batchSize;
+    private final long snapshotTimeoutMillis;
+    private final long resumeMillis;
+    private final CrawlLeases leases;
+    private final boolean sharding;
+
+    /**
+     * Renews the leases of the organizations crawled by this node.
+     */
+    private final ScheduledExecutorService leaseRenewal = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("crawl-lease-%d").setDaemon(true).build());
 
     @Autowired
     public Fetcher(ProjectRepository projectRepository,
-                   StatisticsRepository statisticsRepository,
-                   ContributorRepository contributorRepository,
+                   SnapshotBulkWriter bulkWriter,
+                   SnapshotCatalog catalog,
                    SnapshotProvider snapshotProvider,
-                   @Value("#{'${organization.list}'.split(',')}") String[] organizations) {
+                   @Value("#{'${organization.list}'.split(',')}") String[] organizations,
+                   @Value("${github.crawler.incremental}") boolean incremental,
+                   GaugeService gaugeService,
+                   @Value("${snapshot.batch.size}") int batchSize,
+                   @Value("#{${github.snapshot.timeout.minutes} * 60000}") long snapshotTimeoutMillis,
+                   @Value("#{${github.snapshot.resume.hours} * 3600000}") long resumeMillis,
+                   CrawlLeases leases,
+                   @Value("${github.crawler.sharding.enabled}") boolean sharding) {
         this.projectRepository = projectRepository;
-        this.statisticsRepository = statisticsRepository;
-        this.contributorRepository = contributorRepository;
+        this.bulkWriter = bulkWriter;
+        this.catalog = catalog;
         this.snapshotProvider = snapshotProvider;
         this.organizations = organizations;
+        this.incremental = incremental;
+        this.gaugeService = gaugeService;
+        this.batchSize = batchSize;
+        this.snapshotTimeoutMillis = snapshotTimeoutMillis;
+        this.resumeMillis = resumeMillis;
+        this.leases = leases;
+        this.sharding = sharding;
     }
 
     /**
      * This is used to fetch data from GitHub.
      */
     public boolean fetchData() {
-        Date snapshotDate = from(now());
+        return fetchData(from(now()));
+    }
+
+    /**
+     * Fetches the organizations that have no finished snapshot of the date
+     * yet, so that a retry with the same date only crawls the organizations
+     * that failed.
+     * <p>
+     * The snapshots of all organizations are saved before the first failure
+     * is thrown.
+     */
+    public boolean fetchData(Date snapshotDate) {
+        return fetchData(snapshotDate, new CrawlProgress());
+    }
 
+    /**
+     * @param progress counts the organizations and repositories done
+     * @see #fetchData(Date)
+     */
+    public boolean fetchData(Date snapshotDate, CrawlProgress progress) {
         logger.info("Starting fetching data. Snapshot date: {} {}, IP and MAC Address: {}.",
                 snapshotDate, snapshotDate.getTime(), getIpAndMacAddress());
 
-        List<Future<Snapshot>> futures = new ArrayList<>();
+        progress.organizations(Arrays.asList(organizations));
+        if (sharding) {
+            return fetchShards(snapshotDate, progress);
+        }
+
+        Date runDate = leases.join(Arrays.asList(organizations), snapshotDate);
+        Map<String, Future<Snapshot>> futures = new LinkedHashMap<>();
 
         try {
             for (String organizationName : organizations) {
-                futures.add(snapshotProvider.takeSnapshot(organizationName, snapshotDate));
-                logger.info("Enqueued task TakeSnapshotTask for organization '{}'.", organizationName);
+                if (!leases.claim(organizationName, runDate)) {
+                    logger.info("Organization '{}' is finished or crawled by another node.", organizationName);
+                    progress.finish(organizationName);
+                    continue;
+                }
+                Optional<Future<Snapshot>> future = takeSnapshot(organizationName, runDate, progress);
+                if (future.isPresent()) {
+                    futures.put(organizationName, future.get());
+                    logger.info("Enqueued task TakeSnapshotTask for organization '{}'.", organizationName);
+                } else {
+                    logger.info("Snapshot of organization '{}' is already finished.", organizationName);
+                    leases.finish(organizationName, runDate);
+                    progress.finish(organizationName);
+                }
             }
         } catch (IOException e) {
             logger.error("Unable to fetch data from GitHub API. Missing GitHub API credentials?.", e);
+            futures.values().forEach(future -> future.cancel(true));
+            futures.keySet().forEach(organizationName -> leases.release(organizationName, runDate));
             throw new CrawlerRetryException(e);
         }
         logger.info("Submitted {} TakeSnapshotTasks.", futures.size());
 
-        for (Future<Snapshot> future : futures) {
-            try {
-                Snapshot snapshot = future.get();
-
-                statisticsRepository.save(snapshot.getStatistics());
-                projectRepository.save(snapshot.getProjects());
-                contributorRepository.save(snapshot.getContributors());
-                // TODO languagesRepository.save(snapshot.getLanguages());
-
-                logger.info("Successfully saved data for organization '{}'.", snapshot.getStatistics()
-                        .getOrganizationName());
-            } catch (InterruptedException | ExecutionException e) {
-                logger.error("Error occurred while processing organization.", e);
-                throw new CrawlerRetryException(e);
+        // all snapshots are taken at the same time, so they share the deadline
+        long deadline = System.currentTimeMillis() + snapshotTimeoutMillis;
+        Exception failure = null;
+        ScheduledFuture<?> renewal = renewLeases(futures, runDate);
+        try {
+            for (Map.Entry<String, Future<Snapshot>> future : futures.entrySet()) {
+                String organizationName = future.getKey();
+                try {
+                    saveLeased(organizationName, getBefore(organizationName, future.getValue(), deadline), runDate);
+                    leases.finish(organizationName, runDate);
+                    progress.finish(organizationName);
+                } catch (InterruptedException | ExecutionException | TimeoutException | CancellationException e) {
+                    logger.error("Error occurred while processing organization '{}'.", organizationName, e);
+                    leases.release(organizationName, runDate);
+                    failure = addFailure(failure, e);
+                }
             }
+        } finally {
+            renewal.cancel(false);
+        }
+
+        if (failure != null) {
+            throw new CrawlerRetryException(failure);
         }
         logger.info("Finished fetching data.");
         return true;
     }
 
+    /**
+     * Saves the statistics of the snapshot, which mark it as finished,
+     * publishes it and submits its gauges.
+     */
+    private void save(Snapshot snapshot) {
+        // projects and contributors are saved by the task
+        catalog.publish(snapshot.getStatistics(), snapshot.getProjectsCount(), snapshot.getContributorsCount());
+        // TODO languagesRepository.save(snapshot.getLanguages());
+
+        String organizationName = snapshot.getStatistics().getOrganizationName();
+        if (snapshot.getProjectsCount() > 0) {
+            gaugeService.submit("crawler.unchanged.percent." + organizationName,
+                    100.0 * snapshot.getUnchangedProjectsCount() / snapshot.getProjectsCount());
+        }
+
+        gaugeService.submit("crawler.profiles.cached." + organizationName,
+                snapshot.getCachedProfilesCount());
+        snapshot.getPhaseMillis().forEach((phase, millis) ->
+                gaugeService.submit("crawler.phase." + phase + ".millis." + organizationName, millis));
+
+        logger.info("Successfully saved data for organization '{}': {} projects, {} contributors, "
+                        + "{} profile requests saved by the cache.", organizationName,
+                snapshot.getProjectsCount(), snapshot.getContributorsCount(),
+                snapshot.getCachedProfilesCount());
+    }
+
+    private static Exception addFailure(Exception failure, Exception e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    /**
+     * Crawls the organizations of the run shared with the other nodes, see
+     * {@link CrawlLeases}, one after the other as long as there are
+     * organizations that are neither finished nor leased by another node.
+     * Then waits until the other nodes finished their organizations, so
+     * that their leases are taken over if a node fails.
+     * <p>
+     * An organization that failed is released for the other nodes and
+     * skipped by this node until the retry.
+     */
+    private boolean fetchShards(Date snapshotDate, CrawlProgress progress) {
+        Date runDate = leases.join(Arrays.asList(organizations), snapshotDate);
+        long deadline = System.currentTimeMillis() + snapshotTimeoutMillis;
+        long pollMillis = Math.max(100, leases.getLeaseMillis() / 4);
+
+        Set<String> failed = new HashSet<>();
+        Exception failure = null;
+        int crawled = 0;
+        while (true) {
+            List<String> allUnfinished = leases.findUnfinished(runDate);
+            Arrays.stream(organizations)
+                    .filter(organizationName -> !allUnfinished.contains(organizationName))
+                    .forEach(progress::finish);
+            List<String> unfinished = allUnfinished.stream()
+                    .filter(organizationName -> !failed.contains(organizationName))
+                    .collect(toList());
+            if (unfinished.isEmpty()) {
+                break;
+            }
+
+            Optional<String> claimed = unfinished.stream()
+                    .filter(organizationName -> leases.claim(organizationName, runDate))
+                    .findFirst();
+            if (claimed.isPresent()) {
+                String organizationName = claimed.get();
+                try {
+                    fetchShard(organizationName, runDate, deadline, progress);
+                    leases.finish(organizationName, runDate);
+                    crawled++;
+                } catch (Exception e) {
+                    logger.error("Error occurred while processing organization '{}'.", organizationName, e);
+                    leases.release(organizationName, runDate);
+                    failed.add(organizationName);
+                    failure = addFailure(failure, e);
+                }
+            } else if (System.currentTimeMillis() >= deadline) {
+                failure = addFailure(failure, new TimeoutException("Organizations " + unfinished
+                        + " were not finished by the other nodes."));
+                break;
+            } else {
+                try {
+                    Thread.sleep(pollMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CrawlerRetryException(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new CrawlerRetryException(failure);
+        }
+        logger.info("Finished crawl of {}, {} organizations crawled by node '{}'.", runDate, crawled,
+                leases.getOwner());
+        return true;
+    }
+
+    /**
+     * Takes the snapshot of a leased organization. The lease is renewed
+     * while the snapshot is taken, the snapshot is cancelled as soon as
+     * another node took over.
+     */
+    private void fetchShard(String organizationName, Date snapshotDate, long deadline, CrawlProgress progress)
+            throws Exception {
+        Optional<Future<Snapshot>> future = takeSnapshot(organizationName, snapshotDate, progress);
+        if (!future.isPresent()) {
+            logger.info("Snapshot of organization '{}' is already finished.", organizationName);
+            return;
+        }
+
+        ScheduledFuture<?> renewal = renewLeases(Collections.singletonMap(organizationName, future.get()),
+                snapshotDate);
+        try {
+            saveLeased(organizationName, getBefore(organizationName, future.get(), deadline), snapshotDate);
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    /**
+     * Renews the leases of the organizations while their snapshots are
+     * taken, a snapshot is cancelled as soon as another node took over.
+     */
+    private ScheduledFuture<?> renewLeases(Map<String, Future<Snapshot>> futures, Date snapshotDate) {
+        long renewMillis = Math.max(1, leases.getLeaseMillis() / 3);
+        return leaseRenewal.scheduleWithFixedDelay(() -> futures.forEach((organizationName, future) -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                if (!leases.renew(organizationName, snapshotDate)) {
+                    logger.warn("Lease of organization '{}' was taken over, cancelling its snapshot.",
+                            organizationName);
+                    future.cancel(true);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to renew lease of organization '{}'.", organizationName, e);
+            }
+        }), renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves the snapshot unless another node took over the lease of its
+     * organization in the meantime.
+     */
+    private void saveLeased(String organizationName, Snapshot snapshot, Date snapshotDate) {
+        if (!leases.renew(organizationName, snapshotDate)) {
+            throw new CancellationException("Lease of organization '" + organizationName + "' was taken over.");
+        }
+        save(snapshot);
+    }
+
+    /**
+     * Cancels the snapshot if it is not finished before the deadline. The
+     * projects collected until then are saved, the retry resumes the
+     * snapshot.
+     */
+    private Snapshot getBefore(String organizationName, Future<Snapshot> future, long deadline)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("Cancelled snapshot of organization '{}' after {} ms.", organizationName,
+                    snapshotTimeoutMillis);
+            throw e;
+        }
+    }
+
+    /**
+     * Resumes the interrupted snapshot of the organization, if there is one.
+     * Its saved projects are carried forward like unchanged projects, only
+     * their contributors and tags are fetched again.
+     *
+     * @return nothing if the snapshot of the organization with the given date
+     * is already finished
+     */
+    Optional<Future<Snapshot>> takeSnapshot(String organizationName, Date snapshotDate) throws IOException {
+        return takeSnapshot(organizationName, snapshotDate, new CrawlProgress());
+    }
+
+    private Optional<Future<Snapshot>> takeSnapshot(String organizationName, Date snapshotDate,
+                                                    CrawlProgress progress) throws IOException {
+        Optional<Date> finishedSnapshotDate = catalog.findLatestPublished(organizationName);
+
+        if (finishedSnapshotDate.isPresent() && finishedSnapshotDate.get().getTime() == snapshotDate.getTime()) {
+            return Optional.empty();
+        }
+
+        Optional<Date> interruptedSnapshotDate = catalog.findLatestWriting(organizationName)
+                .filter(date -> !finishedSnapshotDate.isPresent() || finishedSnapshotDate.get().before(date));
+        List<Project> finishedProjects = finishedSnapshotDate
+                .map(date -> projectRepository.findProjectsOfSnapshot(organizationName, date))
+                .orElse(Collections.emptyList());
+
+        if (interruptedSnapshotDate.isPresent()
+                && interruptedSnapshotDate.get().getTime() < snapshotDate.getTime() - resumeMillis) {
+            discard(organizationName, interruptedSnapshotDate.get());
+            interruptedSnapshotDate = Optional.empty();
+        }
+
+        if (!interruptedSnapshotDate.isPresent()) {
+            catalog.begin(organizationName, snapshotDate);
+            return Optional.of(snapshotProvider.takeSnapshot(organizationName, snapshotDate,
+                    getPreviousProjects(finishedProjects), progress.start(organizationName, finishedProjects.size(),
+                            new BatchingSnapshotWriter(bulkWriter, batchSize, Collections.emptyList()))));
+        }
+
+        Date latestSnapshotDate = interruptedSnapshotDate.get();
+        List<Project> latestProjects = projectRepository.findProjectsOfUnpublishedSnapshot(organizationName,
+                latestSnapshotDate);
+
+        // contributors are collected after all projects, the saved ones are incomplete
+        int deletedContributors = bulkWriter.deleteContributors(organizationName, latestSnapshotDate);
+
+        logger.info("Resuming snapshot of organization '{}' from {} with {} saved projects, {} saved contributors "
+                + "discarded.", organizationName, latestSnapshotDate, latestProjects.size(), deletedContributors);
+
+        Map<Long, Project> previousProjects = getPreviousProjects(finishedProjects).stream()
+                .collect(toMap(Project::getGitHubProjectId, identity(), (p1, p2) -> p1));
+        latestProjects.forEach(project -> previousProjects.put(project.getGitHubProjectId(), project));
+
+        return Optional.of(snapshotProvider.takeSnapshot(organizationName, latestSnapshotDate,
+                previousProjects.values(), progress.start(organizationName, previousProjects.size(),
+                        new BatchingSnapshotWriter(bulkWriter, batchSize, latestProjects))));
+    }
+
+    /**
+     * Removes an interrupted snapshot that is too old to be resumed, its
+     * projects would be carried forward under the outdated date.
+     */
+    private void discard(String organizationName, Date snapshotDate) {
+        int deletedProjects = bulkWriter.deleteProjects(organizationName, snapshotDate);
+        int deletedContributors = bulkWriter.deleteContributors(organizationName, snapshotDate);
+        catalog.discard(organizationName, snapshotDate);
+        logger.warn("Discarded interrupted snapshot of organization '{}' from {} with {} projects and {} "
+                + "contributors, it is older than {} hours.", organizationName, snapshotDate, deletedProjects,
+                deletedContributors, resumeMillis / 3600000);
+    }
+
+    /**
+     * @return projects of the previous snapshot of the organization in
+     * incremental mode, otherwise nothing so that all repositories are
+     * crawled again.
+     */
+    private List<Project> getPreviousProjects(List<Project> previousProjects) {
+        return incremental ? previousProjects : Collections.emptyList();
+    }
+
     private String getIpAndMacAddress() {
         try {
             InetAddress ip = InetAddress.getLocalHost();
@@ -0,0 +1,76 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolution of the snapshots of an organization by their age: every
+ * snapshot of the last daily days, the latest snapshot of every week until
+ * weekly days and the latest snapshot of every month before. Weeks and
+ * months are those of UTC.
+ * <p>
+ * The kept snapshots are full snapshots, so the statistics over a date range
+ * just get fewer points.
+ */
+public class RetentionPolicy {
+
+    private final long dailyDays;
+    private final long weeklyDays;
+
+    public RetentionPolicy(long dailyDays, long weeklyDays) {
+        if (dailyDays < 0 || weeklyDays < dailyDays) {
+            throw new IllegalArgumentException("Expected 0 <= daily days <= weekly days but got " + dailyDays
+                    + " and " + weeklyDays + ".");
+        }
+        this.dailyDays = dailyDays;
+        this.weeklyDays = weeklyDays;
+    }
+
+    /**
+     * @return snapshot dates that are not kept at the given time
+     */
+    public List<Date> findExpired(Collection<Date> snapshotDates, Date now) {
+        LocalDate today = utc(now);
+        Map<Date, String> periods = new LinkedHashMap<>();
+        Map<String, Date> latestOfPeriod = new HashMap<>();
+        for (Date snapshotDate : snapshotDates) {
+            LocalDate day = utc(snapshotDate);
+            long age = ChronoUnit.DAYS.between(day, today);
+            if (age < dailyDays) {
+                continue;
+            }
+            String period = period(day, age);
+            periods.put(snapshotDate, period);
+            latestOfPeriod.merge(period, snapshotDate, (d1, d2) -> d1.after(d2) ? d1 : d2);
+        }
+
+        List<Date> expired = new ArrayList<>();
+        periods.forEach((snapshotDate, period) -> {
+            if (latestOfPeriod.get(period).getTime() != snapshotDate.getTime()) {
+                expired.add(snapshotDate);
+            }
+        });
+        return expired;
+    }
+
+    private String period(LocalDate day, long age) {
+        if (age < weeklyDays) {
+            return "week " + day.get(IsoFields.WEEK_BASED_YEAR) + "-" + day.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+        }
+        return "month " + YearMonth.from(day);
+    }
+
+    private static LocalDate utc(Date date) {
+        return date.toInstant().atZone(ZoneOffset.UTC).toLocalDate();
+    }
+}
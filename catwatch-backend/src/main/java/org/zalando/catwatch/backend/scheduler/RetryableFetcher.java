@@ -10,11 +10,18 @@ import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Component;
 import org.zalando.catwatch.backend.mail.MailSender;
 
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+import static java.time.Instant.now;
+import static java.util.Date.from;
+
 /**
  * Tries to fetch organizations data from GitHub and saves it to the database.
+ * <p>
+ * All attempts of a run take the snapshot of the same date, so that a retry
+ * continues the organizations that were not finished by the previous attempt.
  */
 @Component
 public class RetryableFetcher {
@@ -41,10 +48,17 @@ public class RetryableFetcher {
         this.mailSender = mailSender;
     }
 
-    public void tryFetchData() {
-        RetryCallback<Boolean, RuntimeException> retryCallback = context -> fetcher.fetchData();
-        RecoveryCallback<Boolean> recoveryCallback = retryContext -> mailSender.send(retryContext.getLastThrowable());
-        retryTemplate().execute(retryCallback, recoveryCallback);
+    /**
+     * @return false if all attempts failed, the last failure is mailed
+     */
+    public boolean tryFetchData(CrawlProgress progress) {
+        Date snapshotDate = from(now());
+        RetryCallback<Boolean, RuntimeException> retryCallback = context -> fetcher.fetchData(snapshotDate, progress);
+        RecoveryCallback<Boolean> recoveryCallback = retryContext -> {
+            mailSender.send(retryContext.getLastThrowable());
+            return false;
+        };
+        return retryTemplate().execute(retryCallback, recoveryCallback);
     }
 
     private RetryTemplate retryTemplate() {
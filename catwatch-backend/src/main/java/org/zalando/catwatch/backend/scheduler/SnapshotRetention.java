@@ -0,0 +1,134 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.zalando.catwatch.backend.repo.ContributorVersions;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Removes the snapshots that are not kept by the {@link RetentionPolicy}
+ * of snapshot.retention.daily.days and snapshot.retention.weekly.days.
+ * <p>
+ * A snapshot is unpublished first, i.e. its statistics and its row in the
+ * snapshot catalog are deleted in one transaction, so that the lookups find
+ * the kept snapshot before it. Then its projects with their languages and
+ * maintainers and its contributors are deleted in transactions of at most
+ * snapshot.retention.batch.size rows each. Contributors stored as
+ * {@link ContributorVersions} are removed from their versions at once.
+ * <p>
+ * Only finished snapshots, the ones with statistics, are considered.
+ */
+@Component
+@ConditionalOnProperty(name = "snapshot.retention.enabled", havingValue = "true")
+public class SnapshotRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotRetention.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Optional<ContributorVersions> contributorVersions;
+    private final RetentionPolicy policy;
+    private final int batchSize;
+
+    @Autowired
+    public SnapshotRetention(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             Optional<ContributorVersions> contributorVersions,
+                             @Value("${snapshot.retention.daily.days}") long dailyDays,
+                             @Value("${snapshot.retention.weekly.days}") long weeklyDays,
+                             @Value("${snapshot.retention.batch.size}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.contributorVersions = contributorVersions;
+        this.policy = new RetentionPolicy(dailyDays, weeklyDays);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${snapshot.retention.schedule}")
+    public void removeExpiredSnapshots() {
+        removeExpiredSnapshots(new Date());
+    }
+
+    /**
+     * @return number of snapshots removed
+     */
+    int removeExpiredSnapshots(Date now) {
+        int removed = 0;
+        for (String organizationName : jdbcTemplate.queryForList("select distinct organization_name"
+                + " from statistics where organization_name is not null", String.class)) {
+            List<Date> snapshotDates = jdbcTemplate.queryForList("select distinct snapshot_date from statistics"
+                    + " where organization_name = ?", Timestamp.class, organizationName).stream()
+                    .map(timestamp -> new Date(timestamp.getTime()))
+                    .collect(toList());
+            for (Date snapshotDate : policy.findExpired(snapshotDates, now)) {
+                removeSnapshot(organizationName, snapshotDate);
+                removed++;
+            }
+        }
+        logger.info("Removed {} expired snapshots.", removed);
+        return removed;
+    }
+
+    private void removeSnapshot(String organizationName, Date snapshotDate) {
+        Timestamp date = new Timestamp(snapshotDate.getTime());
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.update("delete from statistics where organization_name = ? and snapshot_date = ?",
+                    organizationName, date);
+            jdbcTemplate.update("delete from snapshot_catalog where organization_name = ? and snapshot_date = ?",
+                    organizationName, date);
+            return null;
+        });
+
+        int projects = 0;
+        List<Long> projectIds;
+        do {
+            projectIds = jdbcTemplate.queryForList("select id from project where organization_name = ?"
+                    + " and snapshot_date = ? order by id limit ?", Long.class, organizationName, date, batchSize);
+            List<Object[]> ids = projectIds.stream().map(id -> new Object[]{id}).collect(toList());
+            // with the snapshot date only the partition of the snapshot is read
+            List<Object[]> keys = projectIds.stream().map(id -> new Object[]{id, date}).collect(toList());
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate("delete from language_list where project_id = ?", ids);
+                jdbcTemplate.batchUpdate("delete from language_bytes where project_id = ?", ids);
+                jdbcTemplate.batchUpdate("delete from maintainers where project_id = ?", ids);
+                jdbcTemplate.batchUpdate("delete from project where id = ? and snapshot_date = ?", keys);
+                return null;
+            });
+            projects += projectIds.size();
+        } while (projectIds.size() == batchSize);
+
+        int contributors = 0;
+        if (contributorVersions.isPresent()) {
+            contributors = contributorVersions.get().deleteSnapshot(organizationName, snapshotDate);
+        }
+        // rows of the contributor table that were not moved to the versions yet
+        List<Object[]> keys;
+        do {
+            keys = jdbcTemplate.query("select id, organization_id from contributor where organization_name = ?"
+                            + " and snapshot_date = ? order by id limit ?",
+                    (resultSet, row) -> new Object[]{resultSet.getLong(1), resultSet.getLong(2), date},
+                    organizationName, date, batchSize);
+            List<Object[]> batch = keys;
+            transactionTemplate.execute(status -> jdbcTemplate.batchUpdate("delete from contributor"
+                    + " where id = ? and organization_id = ? and snapshot_date = ?", batch));
+            contributors += keys.size();
+        } while (keys.size() == batchSize);
+
+        logger.info("Removed snapshot of organization '{}' from {}: {} projects, {} contributors.",
+                organizationName, snapshotDate, projects, contributors);
+    }
+}
@@ -9,11 +9,11 @@ import org.springframework.stereotype.Component;
 @Profile("!test")
 public class TaskScheduler {
 
-    private final RetryableFetcher fetcher;
+    private final CrawlCoordinator coordinator;
 
     @Autowired
-    public TaskScheduler(RetryableFetcher fetcher) {
-        this.fetcher = fetcher;
+    public TaskScheduler(CrawlCoordinator coordinator) {
+        this.coordinator = coordinator;
     }
 
     /**
@@ -21,7 +21,7 @@ public class TaskScheduler {
      */
     @Scheduled(cron = "${schedule}")
     public void fetchData() {
-        fetcher.tryFetchData();
+        coordinator.start("schedule");
     }
 
 }
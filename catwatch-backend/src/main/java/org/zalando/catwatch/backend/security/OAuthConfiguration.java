@@ -35,7 +35,13 @@ public class OAuthConfiguration extends ResourceServerConfigurerAdapter {
                 .antMatchers(HttpMethod.GET, "/delete/**").access("#oauth2.hasScope('uid')")
                 .and()
                 .authorizeRequests()
-                .antMatchers(HttpMethod.GET, "/init/**").access("#oauth2.hasScope('uid')");
+                .antMatchers(HttpMethod.GET, "/init/**").access("#oauth2.hasScope('uid')")
+                .and()
+                .authorizeRequests()
+                .antMatchers(HttpMethod.POST, "/partitions/drop/**").access("#oauth2.hasScope('uid')")
+                .and()
+                .authorizeRequests()
+                .antMatchers(HttpMethod.POST, "/versions/import/**").access("#oauth2.hasScope('uid')");
         //J+
     }
 
@@ -0,0 +1,54 @@
+package org.zalando.catwatch.backend.util;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+/**
+ * A JavaScript function that is compiled once and can be called many times.
+ * <p>
+ * Unlike {@link JavaScriptExecutor} the engine is created and the source is
+ * parsed only once. Script engines must not be used by several threads at
+ * the same time, so each thread needs its own instance.
+ */
+public class JavaScriptFunction {
+
+    private static final String FUNCTION_NAME = "__function";
+
+    private final String source;
+
+    private final Invocable invocable;
+
+    /**
+     * @param source
+     *            JavaScript function expression, e.g. <code>function(a) { return a + 1; }</code>
+     */
+    public JavaScriptFunction(String source) {
+        this.source = source;
+
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("JavaScript");
+        try {
+            engine.eval("var " + FUNCTION_NAME + " = " + source + ";");
+        } catch (ScriptException e) {
+            throw new RuntimeException(e);
+        }
+        invocable = (Invocable) engine;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return Returns the return value of the function.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(Object... args) {
+        try {
+            return (T) invocable.invokeFunction(FUNCTION_NAME, args);
+        } catch (ScriptException | NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
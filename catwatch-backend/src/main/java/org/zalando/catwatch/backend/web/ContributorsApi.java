@@ -32,7 +32,6 @@ import java.util.Map;
 
 import static com.google.common.base.Joiner.on;
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.Sets.intersection;
 import static java.time.Instant.now;
@@ -135,11 +134,16 @@ public class ContributorsApi {
                                                          String endDate, String sortBy, String q) {
 
         Date endDateDate = endDate != null ? iso8601(endDate) : new Date();
-        Date endDateInDb = repository.findPreviousSnapShotDate(endDateDate);
 
         ArrayListMultimap<Long, Contributor> multiMap = ArrayListMultimap.create();
 
-        orgs(organizations).values().stream().forEach(organizationId -> {
+        orgs(organizations).forEach((organizationName, organizationId) -> {
+
+            // the latest published snapshot of each organization
+            Date endDateInDb = repository.findPreviousSnapShotDate(organizationName, endDateDate);
+            if (endDateInDb == null) {
+                return;
+            }
 
             List<Contributor> contributors = repository.findAllTimeTopContributors(organizationId, endDateInDb, q, null,
                     null);
@@ -156,15 +160,15 @@ public class ContributorsApi {
     private List<Contributor> contributorsGet_timeSpan(String organizations, Integer limit, Integer offset,
                                                        String startDate, String endDate, String sortBy, String q) {
 
-        Date startDateInDb = repository.findPreviousSnapShotDate(iso8601(startDate));
-        Date endDateInDb = repository.findPreviousSnapShotDate(iso8601(endDate));
-
-        checkNotNull(startDateInDb);
-        checkNotNull(endDateInDb);
-
         ArrayListMultimap<Long, Contributor> multiMap = ArrayListMultimap.create();
 
-        orgs(organizations).values().stream().forEach(organizationId -> {
+        orgs(organizations).forEach((organizationName, organizationId) -> {
+
+            Date startDateInDb = repository.findPreviousSnapShotDate(organizationName, iso8601(startDate));
+            Date endDateInDb = repository.findPreviousSnapShotDate(organizationName, iso8601(endDate));
+            if (startDateInDb == null || endDateInDb == null) {
+                return;
+            }
 
             List<Contributor> startData = repository.findAllTimeTopContributors(organizationId, startDateInDb, q, null,
                     null);
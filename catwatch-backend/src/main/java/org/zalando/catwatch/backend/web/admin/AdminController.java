@@ -2,19 +2,31 @@ package org.zalando.catwatch.backend.web.admin;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.zalando.catwatch.backend.model.Statistics;
 import org.zalando.catwatch.backend.model.util.Scorer;
 import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.repo.ContributorVersions;
 import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
+import org.zalando.catwatch.backend.repo.SnapshotPartitions;
 import org.zalando.catwatch.backend.repo.StatisticsRepository;
 import org.zalando.catwatch.backend.repo.util.DatabasePopulator;
 
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.collect.Lists.newArrayList;
@@ -28,8 +40,11 @@ import static org.springframework.web.bind.annotation.RequestMethod.POST;
 public class AdminController {
 
     private final ContributorRepository contributorRepository;
+    private final Optional<ContributorVersions> contributorVersions;
     private final StatisticsRepository statisticsRepository;
     private final ProjectRepository projectRepository;
+    private final SnapshotCatalog catalog;
+    private final SnapshotPartitions partitions;
     private final DatabasePopulator databasePopulator;
     private final Scorer scorer;
     private final String organizations;
@@ -37,15 +52,21 @@ public class AdminController {
 
     @Autowired
     public AdminController(ContributorRepository contributorRepository,
+                           Optional<ContributorVersions> contributorVersions,
                            StatisticsRepository statisticsRepository,
                            ProjectRepository projectRepository,
+                           SnapshotCatalog catalog,
+                           SnapshotPartitions partitions,
                            DatabasePopulator databasePopulator,
                            Scorer scorer,
                            @Value("${organization.list}") String organizations,
                            @Value("${scoring.project}") String scoringProject) {
         this.contributorRepository = contributorRepository;
+        this.contributorVersions = contributorVersions;
         this.statisticsRepository = statisticsRepository;
         this.projectRepository = projectRepository;
+        this.catalog = catalog;
+        this.partitions = partitions;
         this.databasePopulator = databasePopulator;
         this.scorer = scorer;
         this.organizations = organizations;
@@ -117,25 +138,73 @@ public class AdminController {
     @ResponseBody
     public String deleteAll() {
         contributorRepository.deleteAll();
+        contributorVersions.ifPresent(ContributorVersions::deleteAll);
         projectRepository.deleteAll();
         statisticsRepository.deleteAll();
+        catalog.deleteAll();
         return "OK";
     }
 
+    /**
+     * Drops the history before the given month, e.g. 2015-05, with its
+     * partitions, see {@link SnapshotPartitions#dropBefore(YearMonth)}. Requires
+     * the uid scope, see OAuthConfiguration.
+     */
+    @RequestMapping(value = "/partitions/drop", method = POST, produces = "application/json; charset=utf-8")
+    @ResponseBody
+    public ResponseEntity<String> dropPartitions(@RequestParam("before") String before) {
+        YearMonth month;
+        try {
+            month = YearMonth.parse(before);
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<>("\"malformed month, expected e.g. 2015-05\"", HttpStatus.BAD_REQUEST);
+        }
+        if (!partitions.isEnabled()) {
+            return new ResponseEntity<>("the tables are not partitioned", HttpStatus.OK);
+        }
+        return new ResponseEntity<>(partitions.dropBefore(month) + " partition(s) dropped", HttpStatus.OK);
+    }
+
+    /**
+     * Moves the contributor table to the {@link ContributorVersions}, once
+     * after contributor.storage.delta was enabled. Requires the uid scope, see
+     * OAuthConfiguration.
+     */
+    @RequestMapping(value = "/versions/import", method = POST, produces = "application/json; charset=utf-8")
+    @ResponseBody
+    public String importVersions() {
+        if (!contributorVersions.isPresent()) {
+            return "the delta storage of the contributors is not enabled";
+        }
+        return contributorVersions.get().importContributors() + " snapshot(s) imported";
+    }
+
     @RequestMapping(value = "/import", method = POST, produces = "application/json; charset=utf-8")
     @ResponseBody
     public String importJson(@RequestBody DatabaseDto dto) {
         contributorRepository.save(dto.contributors);
+        contributorVersions.ifPresent(ContributorVersions::importContributors);
         projectRepository.save(dto.projects); // erroneous as the ID of projects is generated by the database
-        statisticsRepository.save(dto.statistics);
+        // the imported snapshots are finished
+        dto.statistics.forEach(statistics -> catalog.publish(statistics,
+                (int) dto.projects.stream().filter(project -> isOfSnapshot(statistics,
+                        project.getOrganizationName(), project.getSnapshotDate())).count(),
+                (int) dto.contributors.stream().filter(contributor -> isOfSnapshot(statistics,
+                        contributor.getOrganizationName(), contributor.getSnapshotDate())).count()));
         return "OK";
     }
 
+    private static boolean isOfSnapshot(Statistics statistics, String organizationName, Date snapshotDate) {
+        return Objects.equals(statistics.getOrganizationName(), organizationName)
+                && snapshotDate != null && statistics.getSnapshotDate().getTime() == snapshotDate.getTime();
+    }
+
     @RequestMapping(value = "/export", method = GET, produces = "application/json; charset=utf-8")
     @ResponseBody
     public DatabaseDto exportJson() {
         DatabaseDto dto = new DatabaseDto();
-        dto.contributors.addAll(newArrayList(contributorRepository.findAll()));
+        // all snapshots, also of contributors stored as versions
+        dto.contributors.addAll(contributorRepository.findContributorsTimeSeries(null, null, null, null));
         dto.projects.addAll(newArrayList(projectRepository.findAll()));
         dto.statistics.addAll(newArrayList(statisticsRepository.findAll()));
         return dto;
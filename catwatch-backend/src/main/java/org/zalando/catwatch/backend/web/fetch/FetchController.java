@@ -1,27 +1,45 @@
 package org.zalando.catwatch.backend.web.fetch;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.ResponseBody;
-import org.zalando.catwatch.backend.scheduler.RetryableFetcher;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.zalando.catwatch.backend.scheduler.CrawlCoordinator;
+import org.zalando.catwatch.backend.scheduler.CrawlJob;
 
 @Controller
 public class FetchController {
 
-	private final RetryableFetcher fetcher;
+	private final CrawlCoordinator coordinator;
 
 	@Autowired
-	public FetchController(RetryableFetcher fetcher) {
-		this.fetcher = fetcher;
+	public FetchController(CrawlCoordinator coordinator) {
+		this.coordinator = coordinator;
 	}
 
+	/**
+	 * Starts a crawl in the background, or returns the running one.
+	 */
 	@RequestMapping(value = "/fetch", method = RequestMethod.GET, produces = "application/json; charset=utf-8")
-	@ResponseBody
-	public String fetch() throws Exception {
-		fetcher.tryFetchData();
-		return "OK";
+	public ResponseEntity<CrawlJob> fetch() {
+		CrawlJob job = coordinator.start("fetch");
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setLocation(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
+				.buildAndExpand(job.getId()).toUri());
+		return new ResponseEntity<>(job, headers, HttpStatus.ACCEPTED);
+	}
+
+	@RequestMapping(value = "/fetch/{id}", method = RequestMethod.GET, produces = "application/json; charset=utf-8")
+	public ResponseEntity<CrawlJob> status(@PathVariable("id") String id) {
+		return coordinator.find(id)
+				.map(job -> new ResponseEntity<>(job, HttpStatus.OK))
+				.orElse(new ResponseEntity<>(HttpStatus.NOT_FOUND));
 	}
 
 }
@@ -0,0 +1,82 @@
+package org.zalando.catwatch.backend.web.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.zalando.catwatch.backend.webhook.WebhookEvent;
+import org.zalando.catwatch.backend.webhook.WebhookEventHandler;
+import org.zalando.catwatch.backend.webhook.WebhookQueue;
+import org.zalando.catwatch.backend.webhook.WebhookSignature;
+
+import java.io.IOException;
+
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+/**
+ * Receives the webhook deliveries of GitHub. Only deliveries signed with
+ * github.webhook.secret are accepted, without a secret the endpoint is
+ * disabled.
+ * <p>
+ * Events are queued and applied to the latest snapshot in the background,
+ * see {@link WebhookEventHandler}. The daily snapshot remains the
+ * reconciliation for events that were rejected or lost.
+ */
+@Controller
+public class WebhookController {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookController.class);
+
+    private final WebhookQueue queue;
+    private final WebhookEventHandler handler;
+    private final String secret;
+
+    @Autowired
+    public WebhookController(WebhookQueue queue,
+                             WebhookEventHandler handler,
+                             @Value("${github.webhook.secret:}") String secret) {
+        this.queue = queue;
+        this.handler = handler;
+        this.secret = secret;
+    }
+
+    @RequestMapping(value = "/webhook", method = POST, produces = "application/json; charset=utf-8")
+    public ResponseEntity<String> receive(@RequestHeader("X-GitHub-Event") String type,
+                                          @RequestHeader(value = "X-GitHub-Delivery", required = false) String delivery,
+                                          @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature256,
+                                          @RequestHeader(value = "X-Hub-Signature", required = false) String signature,
+                                          @RequestBody byte[] payload) {
+        if (secret.isEmpty()) {
+            return new ResponseEntity<>("\"webhook disabled\"", HttpStatus.NOT_FOUND);
+        }
+        if (!WebhookSignature.isValid(secret, payload, signature256 != null ? signature256 : signature)) {
+            logger.warn("Rejected webhook delivery {} with invalid signature.", delivery);
+            return new ResponseEntity<>("\"invalid signature\"", HttpStatus.FORBIDDEN);
+        }
+        if ("ping".equals(type)) {
+            return new ResponseEntity<>("\"pong\"", HttpStatus.OK);
+        }
+
+        WebhookEvent event;
+        try {
+            event = WebhookEvent.parse(type, delivery, payload);
+        } catch (IOException e) {
+            logger.warn("Rejected malformed webhook delivery {}.", delivery, e);
+            return new ResponseEntity<>("\"malformed payload\"", HttpStatus.BAD_REQUEST);
+        }
+
+        if (!handler.accepts(event)) {
+            return new ResponseEntity<>("\"ignored\"", HttpStatus.OK);
+        }
+        if (!queue.offer(event)) {
+            return new ResponseEntity<>("\"queue full\"", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>("\"queued\"", HttpStatus.ACCEPTED);
+    }
+}
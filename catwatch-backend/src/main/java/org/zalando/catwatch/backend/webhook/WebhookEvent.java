@@ -0,0 +1,116 @@
+package org.zalando.catwatch.backend.webhook;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.zalando.catwatch.backend.github.RepositoryRecord;
+import org.zalando.catwatch.backend.github.StreamingGitHubClient;
+
+import java.io.IOException;
+
+/**
+ * The parts of a webhook delivery the {@link WebhookEventHandler} needs. The
+ * payload is read with the parser of the {@link StreamingGitHubClient}, the
+ * repository of an event has the same fields as in the repository listing.
+ *
+ * @see <a href="https://developer.github.com/v3/activity/events/types/">API documentation from GitHub</a>
+ */
+public class WebhookEvent {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String type;
+    private final String delivery;
+    private final String action;
+    private final String organization;
+    private final RepositoryRecord repository;
+
+    public WebhookEvent(String type, String delivery, String action, String organization,
+                        RepositoryRecord repository) {
+        this.type = type;
+        this.delivery = delivery;
+        this.action = action;
+        this.organization = organization;
+        this.repository = repository;
+    }
+
+    /**
+     * @param type     value of the X-GitHub-Event header, e.g. push
+     * @param delivery value of the X-GitHub-Delivery header
+     */
+    public static WebhookEvent parse(String type, String delivery, byte[] payload) throws IOException {
+        String action = null;
+        String organization = null;
+        RepositoryRecord repository = null;
+
+        try (JsonParser parser = JSON.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Payload is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("action".equals(field) && value == JsonToken.VALUE_STRING) {
+                    action = parser.getText();
+                } else if ("repository".equals(field) && value == JsonToken.START_OBJECT) {
+                    repository = StreamingGitHubClient.readRepository(parser);
+                } else if ("organization".equals(field) && value == JsonToken.START_OBJECT) {
+                    organization = readLogin(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        // user accounts send no organization, their login prefixes the repository name
+        if (organization == null && repository != null && repository.getFullName() != null) {
+            organization = repository.getFullName().split("/")[0];
+        }
+        return new WebhookEvent(type, delivery, action, organization, repository);
+    }
+
+    private static String readLogin(JsonParser parser) throws IOException {
+        String login = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("login".equals(field)) {
+                login = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return login;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * @return e.g. created, deleted, member_added or null for push and fork
+     */
+    public String getAction() {
+        return action;
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    /**
+     * @return null for organization events
+     */
+    public RepositoryRecord getRepository() {
+        return repository;
+    }
+
+    @Override
+    public String toString() {
+        return type + (action == null ? "" : "." + action) + " " + delivery;
+    }
+}
@@ -0,0 +1,288 @@
+package org.zalando.catwatch.backend.webhook;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.zalando.catwatch.backend.github.RepositoryRecord;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.Statistics;
+import org.zalando.catwatch.backend.model.util.Scorer;
+import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
+import org.zalando.catwatch.backend.repo.StatisticsRepository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies webhook events to the latest published snapshot of an
+ * organization, see {@link SnapshotCatalog}.
+ * <p>
+ * Stars, forks and renames are written to the project of the repository and
+ * its sums to the statistics. Deleted and privatized repositories are removed
+ * from the snapshot. Commits, languages, contributors and metadata files are
+ * not part of the payloads, a push or a new repository requests a refresh of
+ * the repository instead.
+ * <p>
+ * The push date of a project is only taken from a refresh, never from a
+ * payload. A project whose refresh failed or was dropped thus still counts
+ * as changed for the next incremental snapshot, which crawls it again.
+ * Contributors and languages of the organization are only updated by the
+ * next snapshot, which also corrects any event that was lost.
+ * <p>
+ * Every delivery is applied once, GitHub keeps the X-GitHub-Delivery id when
+ * an event is redelivered. The ids are kept for {@link #DELIVERY_DAYS} days.
+ */
+@Component
+public class WebhookEventHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookEventHandler.class);
+
+    static final int DELIVERY_DAYS = 7;
+
+    static final Set<String> REPOSITORY_EVENTS = new HashSet<>(Arrays.asList("push", "star", "watch", "fork",
+            "repository"));
+
+    private final ProjectRepository projectRepository;
+    private final StatisticsRepository statisticsRepository;
+    private final SnapshotCatalog catalog;
+    private final JdbcTemplate jdbcTemplate;
+    private final Scorer scorer;
+    private final Set<String> organizations;
+
+    @Autowired
+    public WebhookEventHandler(ProjectRepository projectRepository,
+                               StatisticsRepository statisticsRepository,
+                               SnapshotCatalog catalog,
+                               JdbcTemplate jdbcTemplate,
+                               Scorer scorer,
+                               @Value("#{'${organization.list}'.split(',')}") String[] organizations) {
+        this.projectRepository = projectRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.catalog = catalog;
+        this.jdbcTemplate = jdbcTemplate;
+        this.scorer = scorer;
+        this.organizations = new HashSet<>(Arrays.asList(organizations));
+    }
+
+    /**
+     * @return true if events of this type and organization are applied
+     */
+    public boolean accepts(WebhookEvent event) {
+        return organizations.contains(event.getOrganization())
+                && (REPOSITORY_EVENTS.contains(event.getType()) || "organization".equals(event.getType()));
+    }
+
+    /**
+     * @return true if the repository of the event has to be fetched, because
+     * the payload lacks data of the project
+     */
+    @Transactional
+    public boolean apply(WebhookEvent event) {
+        if (!accepts(event)) {
+            return false;
+        }
+        if (!recordDelivery(event)) {
+            logger.info("Ignored webhook event {}, it was applied before.", event);
+            return false;
+        }
+        Optional<Statistics> statistics = findLatestStatistics(event.getOrganization());
+        if (!statistics.isPresent()) {
+            // the first snapshot of the organization is not finished yet and will include the event
+            return false;
+        }
+
+        if ("organization".equals(event.getType())) {
+            applyMembership(event, statistics.get());
+            return false;
+        }
+
+        RepositoryRecord repository = event.getRepository();
+        if (repository == null || repository.isFork()) {
+            return false;
+        }
+
+        Optional<Project> project = findProject(event.getOrganization(), statistics.get().getSnapshotDate(),
+                repository.getId());
+        boolean removed = "repository".equals(event.getType())
+                && ("deleted".equals(event.getAction()) || "privatized".equals(event.getAction()));
+        if (removed || repository.isPrivate()) {
+            project.ifPresent(p -> remove(p, statistics.get()));
+            return false;
+        }
+        if (!project.isPresent()) {
+            // e.g. created or publicized
+            return true;
+        }
+
+        update(project.get(), repository, "fork".equals(event.getType()), statistics.get());
+        return "push".equals(event.getType());
+    }
+
+    /**
+     * @return snapshot date of the latest published snapshot of the
+     * organization, nothing if there is none
+     */
+    public Optional<Date> findLatestSnapshotDate(String organization) {
+        return findLatestStatistics(organization).map(Statistics::getSnapshotDate);
+    }
+
+    /**
+     * Replaces the project of the refreshed repository in the snapshot of the
+     * same date or adds it.
+     *
+     * @param refreshed project of a refreshed repository, with the snapshot
+     *                  date of the latest published snapshot
+     */
+    @Transactional
+    public void save(Project refreshed) {
+        Optional<Statistics> statistics = findLatestStatistics(refreshed.getOrganizationName())
+                .filter(s -> s.getSnapshotDate().getTime() == refreshed.getSnapshotDate().getTime());
+        if (!statistics.isPresent()) {
+            // a newer snapshot was finished in the meantime
+            return;
+        }
+
+        Optional<Project> existing = findProject(refreshed.getOrganizationName(), refreshed.getSnapshotDate(),
+                refreshed.getGitHubProjectId());
+        Project project = existing.orElse(refreshed);
+        if (existing.isPresent()) {
+            addSums(statistics.get(), project, -1);
+            project.setName(refreshed.getName());
+            project.setUrl(refreshed.getUrl());
+            project.setDescription(refreshed.getDescription());
+            project.setStarsCount(refreshed.getStarsCount());
+            project.setForksCount(refreshed.getForksCount());
+            project.setLastPushed(refreshed.getLastPushed());
+            project.setPrimaryLanguage(refreshed.getPrimaryLanguage());
+            project.setLanguageList(new ArrayList<>(refreshed.getLanguageList()));
+            project.setLanguageBytes(new HashMap<>(refreshed.getLanguageBytes()));
+            project.setCommitsCount(refreshed.getCommitsCount());
+            project.setContributorsCount(refreshed.getContributorsCount());
+            project.setMaintainers(new ArrayList<>(refreshed.getMaintainers()));
+            project.setTitle(refreshed.getTitle());
+            project.setImage(refreshed.getImage());
+            project.setScore(refreshed.getScore());
+        } else {
+            statistics.get().setPublicProjectCount(sum(statistics.get().getPublicProjectCount(), 1));
+        }
+        addSums(statistics.get(), project, 1);
+
+        projectRepository.save(project);
+        statisticsRepository.save(statistics.get());
+        logger.info("Refreshed project '{}' of organization '{}'.", project.getName(), project.getOrganizationName());
+    }
+
+    /**
+     * Records the delivery id of the event in the transaction that applies
+     * it, so that a failed event is applied by its redelivery.
+     *
+     * @return false if the delivery was recorded before
+     */
+    private boolean recordDelivery(WebhookEvent event) {
+        if (event.getDelivery() == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update("delete from webhook_delivery where received < ?",
+                new Timestamp(now - TimeUnit.DAYS.toMillis(DELIVERY_DAYS)));
+        if (!jdbcTemplate.queryForList("select delivery from webhook_delivery where delivery = ?", String.class,
+                event.getDelivery()).isEmpty()) {
+            return false;
+        }
+        try {
+            jdbcTemplate.update("insert into webhook_delivery (delivery, received) values (?, ?)",
+                    event.getDelivery(), new Timestamp(now));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // delivered concurrently to another node
+            return false;
+        }
+    }
+
+    private void applyMembership(WebhookEvent event, Statistics statistics) {
+        if ("member_added".equals(event.getAction())) {
+            statistics.setMembersCount(sum(statistics.getMembersCount(), 1));
+        } else if ("member_removed".equals(event.getAction())) {
+            statistics.setMembersCount(sum(statistics.getMembersCount(), -1));
+        } else {
+            return;
+        }
+        statisticsRepository.save(statistics);
+    }
+
+    private void update(Project project, RepositoryRecord repository, boolean forked, Statistics statistics) {
+        addSums(statistics, project, -1);
+
+        project.setName(repository.getName());
+        if (repository.getHtmlUrl() != null) {
+            project.setUrl(repository.getHtmlUrl());
+        }
+        project.setDescription(repository.getDescription());
+        project.setStarsCount(repository.getWatchers());
+        // the payload of a fork event may still count the forks before the new one
+        int forks = repository.getForks();
+        if (forked && project.getForksCount() != null) {
+            forks = Math.max(forks, project.getForksCount() + 1);
+        }
+        project.setForksCount(forks);
+        project.setScore(scorer.score(project));
+
+        addSums(statistics, project, 1);
+        projectRepository.save(project);
+        statisticsRepository.save(statistics);
+    }
+
+    private void remove(Project project, Statistics statistics) {
+        addSums(statistics, project, -1);
+        statistics.setPublicProjectCount(sum(statistics.getPublicProjectCount(), -1));
+        projectRepository.delete(project);
+        statisticsRepository.save(statistics);
+        logger.info("Removed project '{}' of organization '{}'.", project.getName(), project.getOrganizationName());
+    }
+
+    /**
+     * Adds the stars and forks of the project to the sums of the statistics,
+     * or subtracts them with sign -1.
+     */
+    private static void addSums(Statistics statistics, Project project, int sign) {
+        statistics.setAllStarsCount(sum(statistics.getAllStarsCount(), sign * value(project.getStarsCount())));
+        statistics.setAllForksCount(sum(statistics.getAllForksCount(), sign * value(project.getForksCount())));
+    }
+
+    private static int sum(Integer value, int delta) {
+        return Math.max(0, value(value) + delta);
+    }
+
+    private static int value(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private Optional<Statistics> findLatestStatistics(String organization) {
+        if (catalog.contains(organization)) {
+            return catalog.findLatestPublished(organization).flatMap(date -> statisticsRepository
+                    .findStatisticsByOrganizationAndDate(organization, date, date).stream().findFirst());
+        }
+        return statisticsRepository
+                .findByOrganizationNameOrderByKeySnapshotDateDesc(organization, new PageRequest(0, 1)).stream()
+                .findFirst();
+    }
+
+    private Optional<Project> findProject(String organization, Date snapshotDate, long gitHubProjectId) {
+        return projectRepository.findProjectOfSnapshot(organization, snapshotDate, gitHubProjectId).stream()
+                .findFirst();
+    }
+}
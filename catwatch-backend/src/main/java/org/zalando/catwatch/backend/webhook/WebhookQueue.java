@@ -0,0 +1,114 @@
+package org.zalando.catwatch.backend.webhook;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.zalando.catwatch.backend.github.SnapshotProvider;
+import org.zalando.catwatch.backend.model.Project;
+
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies webhook events one after the other in a single thread, so that the
+ * webhook is answered right away and events of the same project never race.
+ * <p>
+ * At most github.webhook.queue.size events and refreshes wait, further events
+ * are rejected. A repository is refreshed only once for all pushes that
+ * arrive before its refresh starts.
+ */
+@Component
+public class WebhookQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebhookQueue.class);
+
+    private final WebhookEventHandler handler;
+    private final SnapshotProvider snapshotProvider;
+    private final ThreadPoolExecutor worker;
+
+    /**
+     * Organization and name of the repositories whose refresh is queued.
+     */
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public WebhookQueue(WebhookEventHandler handler,
+                        SnapshotProvider snapshotProvider,
+                        @Value("${github.webhook.queue.size}") int capacity) {
+        this.handler = handler;
+        this.snapshotProvider = snapshotProvider;
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(capacity),
+                new ThreadFactoryBuilder().setNameFormat("github-webhook-%d").setDaemon(true).build());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    public boolean offer(WebhookEvent event) {
+        try {
+            worker.execute(() -> process(event));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("Rejected webhook event {}, {} events are waiting.", event, worker.getQueue().size());
+            return false;
+        }
+    }
+
+    private void process(WebhookEvent event) {
+        try {
+            if (handler.apply(event)) {
+                scheduleRefresh(event.getOrganization(), event.getRepository().getName());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to apply webhook event {}.", event, e);
+        }
+    }
+
+    private void scheduleRefresh(String organization, String repository) {
+        String key = organization + "/" + repository;
+        if (!pendingRefreshes.add(key)) {
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                // pushes from now on need another refresh
+                pendingRefreshes.remove(key);
+                refresh(organization, repository);
+            });
+        } catch (RejectedExecutionException e) {
+            pendingRefreshes.remove(key);
+            logger.warn("Rejected refresh of repository '{}', it is crawled again by the next snapshot.", key);
+        }
+    }
+
+    private void refresh(String organization, String repository) {
+        try {
+            Optional<Date> snapshotDate = handler.findLatestSnapshotDate(organization);
+            if (!snapshotDate.isPresent()) {
+                return;
+            }
+            Optional<Project> project = snapshotProvider.refreshProject(organization, repository, snapshotDate.get());
+            if (project.isPresent()) {
+                handler.save(project.get());
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to refresh repository '{}/{}', it is updated by the next snapshot.", organization,
+                    repository, e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package org.zalando.catwatch.backend.webhook;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * Verifies the signature GitHub sends with every webhook delivery, an HMAC of
+ * the payload keyed with the secret of the webhook.
+ *
+ * @see <a href="https://developer.github.com/webhooks/securing/">API documentation from GitHub</a>
+ */
+public class WebhookSignature {
+
+    private static final String SHA256 = "sha256=";
+    private static final String SHA1 = "sha1=";
+
+    private WebhookSignature() {
+    }
+
+    /**
+     * @param signature value of the X-Hub-Signature-256 or X-Hub-Signature
+     *                  header, e.g. sha256=4f3a...
+     * @return false if there is no signature or it does not match
+     */
+    public static boolean isValid(String secret, byte[] payload, String signature) {
+        if (secret == null || secret.isEmpty() || signature == null) {
+            return false;
+        }
+        if (signature.startsWith(SHA256)) {
+            return matches("HmacSHA256", secret, payload, signature.substring(SHA256.length()));
+        }
+        if (signature.startsWith(SHA1)) {
+            return matches("HmacSHA1", secret, payload, signature.substring(SHA1.length()));
+        }
+        return false;
+    }
+
+    static String sign(String algorithm, String secret, byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : mac.doFinal(payload)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean matches(String algorithm, String secret, byte[] payload, String hex) {
+        // constant time comparison, so that the signature cannot be guessed byte by byte
+        return MessageDigest.isEqual(sign(algorithm, secret, payload).getBytes(StandardCharsets.US_ASCII),
+                hex.toLowerCase().getBytes(StandardCharsets.US_ASCII));
+    }
+}
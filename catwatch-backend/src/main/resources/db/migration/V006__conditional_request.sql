@@ -0,0 +1,9 @@
+CREATE TABLE conditional_request (
+    url character varying(2048) PRIMARY KEY,
+    etag character varying(255),
+    last_modified character varying(255),
+    link character varying(2048),
+    content_type character varying(255),
+    body bytea NOT NULL,
+    updated timestamp NOT NULL
+);
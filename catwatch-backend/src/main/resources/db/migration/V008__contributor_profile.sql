@@ -0,0 +1,6 @@
+CREATE TABLE contributor_profile (
+    id bigint PRIMARY KEY,
+    name text,
+    public_repo_count integer NOT NULL,
+    fetched timestamp NOT NULL
+);
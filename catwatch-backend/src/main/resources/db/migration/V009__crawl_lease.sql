@@ -0,0 +1,8 @@
+CREATE TABLE crawl_lease (
+    organization_name character varying(255) NOT NULL,
+    snapshot_date timestamp NOT NULL,
+    owner character varying(255),
+    expires timestamp,
+    finished timestamp,
+    PRIMARY KEY (organization_name, snapshot_date)
+);
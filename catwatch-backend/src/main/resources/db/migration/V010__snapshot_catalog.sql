@@ -0,0 +1,23 @@
+CREATE TABLE snapshot_catalog (
+    organization_name character varying(255) NOT NULL,
+    snapshot_date timestamp NOT NULL,
+    status character varying(16) NOT NULL,
+    projects_count integer,
+    contributors_count integer,
+    published timestamp,
+    PRIMARY KEY (organization_name, snapshot_date)
+);
+
+CREATE INDEX snapshot_catalog_status_date ON snapshot_catalog (status, snapshot_date);
+
+-- snapshots with statistics are finished
+INSERT INTO snapshot_catalog (organization_name, snapshot_date, status, projects_count, contributors_count, published)
+    SELECT s.organization_name, s.snapshot_date, 'PUBLISHED',
+        (SELECT count(*) FROM project p
+            WHERE p.organization_name = s.organization_name AND p.snapshot_date = s.snapshot_date),
+        (SELECT count(*) FROM contributor c
+            WHERE c.organization_name = s.organization_name AND c.snapshot_date = s.snapshot_date),
+        s.snapshot_date
+    FROM statistics s
+    WHERE s.organization_name IS NOT NULL
+    GROUP BY s.organization_name, s.snapshot_date;
@@ -0,0 +1,27 @@
+-- values of a contributor from its first to its last snapshot with the same values, see ContributorVersions
+CREATE TABLE contributor_version (
+    id bigint NOT NULL,
+    organization_id bigint NOT NULL,
+    valid_from timestamp NOT NULL,
+    valid_to timestamp NOT NULL,
+    name character varying(255),
+    organization_name character varying(255),
+    organizational_commits_count integer,
+    organizational_projects_count integer,
+    personal_commits_count integer,
+    personal_projects_count integer,
+    url character varying(255),
+    PRIMARY KEY (id, organization_id, valid_from)
+);
+
+CREATE INDEX contributor_version_organization_valid_to ON contributor_version (organization_id, valid_to);
+
+-- snapshots whose contributors are stored as versions
+CREATE TABLE contributor_snapshot (
+    organization_id bigint NOT NULL,
+    snapshot_date timestamp NOT NULL,
+    organization_name character varying(255),
+    PRIMARY KEY (organization_id, snapshot_date)
+);
+
+CREATE INDEX contributor_snapshot_date ON contributor_snapshot (snapshot_date);
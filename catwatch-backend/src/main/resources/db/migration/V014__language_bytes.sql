@@ -0,0 +1,8 @@
+-- bytes of the languages of a project, carried forward for unchanged repositories
+-- no foreign key, project may be partitioned, see V012__snapshot_partitions
+CREATE TABLE language_bytes (
+    project_id integer NOT NULL,
+    language character varying(255) NOT NULL,
+    bytes bigint NOT NULL,
+    PRIMARY KEY (project_id, language)
+);
@@ -0,0 +1,7 @@
+-- X-GitHub-Delivery of the applied webhook events, a redelivery keeps the id, see WebhookEventHandler
+CREATE TABLE webhook_delivery (
+    delivery character varying(64) PRIMARY KEY,
+    received timestamp NOT NULL
+);
+
+CREATE INDEX webhook_delivery_received ON webhook_delivery (received);
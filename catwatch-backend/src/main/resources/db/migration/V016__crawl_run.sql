@@ -0,0 +1,7 @@
+-- runs of the crawl, nodes join the active one, see CrawlLeases
+-- active is true for a single run (unique), null for the runs before it
+CREATE TABLE crawl_run (
+    snapshot_date timestamp PRIMARY KEY,
+    active boolean UNIQUE,
+    started_by character varying(255)
+);
@@ -0,0 +1,15 @@
+-- the key of a stored response is the URL followed by the hash of the Authorization header and
+-- may exceed any length limit, so the primary key is its SHA-256 hash, see JdbcConditionalRequestStore;
+-- the stored responses are only a cache and are dropped
+DROP TABLE conditional_request;
+
+CREATE TABLE conditional_request (
+    key_hash character(64) PRIMARY KEY,
+    request_key text NOT NULL,
+    etag character varying(255),
+    last_modified character varying(255),
+    link text,
+    content_type character varying(255),
+    body bytea NOT NULL,
+    updated timestamp NOT NULL
+);
@@ -0,0 +1,7 @@
+-- indexes for the statements of the read paths that came after V011__read_path_indexes, see QueryPlanIT
+
+-- latest snapshot of the contributors of organizations without snapshots in the catalog
+CREATE INDEX contributor_date ON contributor (snapshot_date);
+
+-- organization id by name and snapshots of an organization stored as versions
+CREATE INDEX contributor_snapshot_organization ON contributor_snapshot (organization_name, snapshot_date);
@@ -7,6 +7,8 @@ import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 import org.zalando.catwatch.backend.repo.ContributorRepositoryIT;
 import org.zalando.catwatch.backend.repo.ProjectRepositoryIT;
+import org.zalando.catwatch.backend.repo.QueryPlanIT;
+import org.zalando.catwatch.backend.repo.SnapshotPartitionsIT;
 import org.zalando.catwatch.backend.repo.StatisticsRepositoryIT;
 import org.zalando.catwatch.backend.web.ContributorsApiIT;
 import org.zalando.catwatch.backend.web.ProjectsApiIT;
@@ -22,6 +24,8 @@ import org.zalando.catwatch.backend.web.StatisticsApiIT;
         ContributorRepositoryIT.class, //
         ProjectRepositoryIT.class, //
         StatisticsRepositoryIT.class, //
+        QueryPlanIT.class, //
+        SnapshotPartitionsIT.class, //
         ContributorsApiIT.class, //
         ProjectsApiIT.class, //
         StatisticsApiIT.class})
@@ -0,0 +1,81 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class CommitCounterTest {
+
+    private final GitHubStub stub = new GitHubStub("stuborg", 3) {
+        @Override
+        protected int commitCount(String repository) {
+            switch (repository) {
+                case "repo0":
+                    return 52345;
+                case "repo1":
+                    return 1;
+                default:
+                    return 0;
+            }
+        }
+    };
+
+    private GitHub gitHub;
+
+    @Before
+    public void setUp() throws Exception {
+        gitHub = stub.start().gitHub(new OkHttpClient());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stub.shutdown();
+    }
+
+    @Test
+    public void testCountCommitsWithSingleRequest() throws Exception {
+
+        // when
+        int commits = new CommitCounter(gitHub, null).countCommits(gitHub.getRepository("stuborg/repo0"));
+
+        // then
+        assertThat(commits, equalTo(52345));
+        assertThat(commitRequests(), equalTo(1L));
+    }
+
+    @Test
+    public void testCountCommitsWithoutLinkHeader() throws Exception {
+        assertThat(new CommitCounter(gitHub, null).countCommits(gitHub.getRepository("stuborg/repo1")), equalTo(1));
+    }
+
+    @Test
+    public void testCountCommitsOfEmptyRepository() throws Exception {
+        assertThat(new CommitCounter(gitHub, null).countCommits(gitHub.getRepository("stuborg/repo2")), equalTo(0));
+    }
+
+    @Test
+    public void testLastPage() throws Exception {
+        assertThat(CommitCounter.lastPage("<https://api.github.com/repositories/1/commits?per_page=1&page=2>; rel=\"next\", "
+                + "<https://api.github.com/repositories/1/commits?per_page=1&page=713>; rel=\"last\""), equalTo(713));
+        assertThat(CommitCounter.lastPage("<https://api.github.com/repositories/1/commits?page=1>; rel=\"first\""),
+                nullValue());
+        assertThat(CommitCounter.lastPage(null), nullValue());
+    }
+
+    @Test
+    public void testAuthorization() throws Exception {
+        assertThat(CommitCounter.authorization("abc", "login", "secret"), equalTo("token abc"));
+        assertThat(CommitCounter.authorization(null, "login", "secret"), equalTo("Basic bG9naW46c2VjcmV0"));
+        assertThat(CommitCounter.authorization("", null, null), nullValue());
+    }
+
+    private long commitRequests() {
+        return stub.requests().stream().filter(path -> path.contains("/commits")).count();
+    }
+}
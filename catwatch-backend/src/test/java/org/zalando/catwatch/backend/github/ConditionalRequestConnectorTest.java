@@ -0,0 +1,175 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.extras.OkHttpConnector;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class ConditionalRequestConnectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final ConditionalRequestCounters counters = new ConditionalRequestCounters();
+
+    private URL url;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        url = server.getUrl("/orgs/zalando/repos");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testNotModifiedIsAnsweredFromStore() throws Exception {
+
+        // given
+        server.enqueue(new MockResponse()
+                .setHeader("ETag", "\"abc\"")
+                .setHeader("Link", "<next>; rel=\"next\"")
+                .setHeader("Content-Type", "application/json")
+                .setBody("[1,2,3]"));
+        server.enqueue(new MockResponse()
+                .setResponseCode(304)
+                .setHeader("ETag", "\"abc\"")
+                .setHeader(RateLimitBudget.HEADER_REMAINING, "4999"));
+
+        // when
+        HttpURLConnection first = connector().connect(url);
+        String firstBody = read(first);
+
+        // a new store on the same directory, e.g. after a restart
+        HttpURLConnection second = connector().connect(url);
+        int secondResponseCode = second.getResponseCode();
+        String secondBody = read(second);
+
+        // then
+        assertThat(firstBody, equalTo("[1,2,3]"));
+        assertThat(server.takeRequest().getHeader("If-None-Match"), nullValue());
+
+        RecordedRequest conditional = server.takeRequest();
+        assertThat(conditional.getHeader("If-None-Match"), equalTo("\"abc\""));
+        assertThat(secondResponseCode, equalTo(200));
+        assertThat(secondBody, equalTo("[1,2,3]"));
+        assertThat(second.getHeaderField("Link"), equalTo("<next>; rel=\"next\""));
+        assertThat(second.getContentType(), equalTo("application/json"));
+        assertThat(second.getHeaderField(RateLimitBudget.HEADER_REMAINING), equalTo("4999"));
+
+        assertThat(counters.getMisses(), equalTo(1L));
+        assertThat(counters.getHits(), equalTo(1L));
+        assertThat(counters.getNotModified(), equalTo(1L));
+    }
+
+    @Test
+    public void testModifiedResponseReplacesStoredOne() throws Exception {
+
+        // given
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody("old"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\"").setBody("new"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        // when
+        read(connector().connect(url));
+        read(connector().connect(url));
+        String body = read(connector().connect(url));
+
+        // then
+        server.takeRequest();
+        assertThat(server.takeRequest().getHeader("If-None-Match"), equalTo("\"v1\""));
+        assertThat(server.takeRequest().getHeader("If-None-Match"), equalTo("\"v2\""));
+        assertThat(body, equalTo("new"));
+        assertThat(counters.getNotModified(), equalTo(1L));
+    }
+
+    @Test
+    public void testResponsesWithoutValidatorsAreNotStored() throws Exception {
+
+        // given
+        server.enqueue(new MockResponse().setBody("no etag"));
+        server.enqueue(new MockResponse().setBody("no etag"));
+
+        // when
+        read(connector().connect(url));
+        read(connector().connect(url));
+
+        // then
+        server.takeRequest();
+        assertThat(server.takeRequest().getHeader("If-None-Match"), nullValue());
+        assertThat(counters.getMisses(), equalTo(2L));
+    }
+
+    @Test
+    public void testResponsesAreStoredPerCredential() throws Exception {
+
+        // given
+        server.enqueue(new MockResponse().setHeader("ETag", "\"a\"").setBody("of a"));
+        server.enqueue(new MockResponse().setHeader("ETag", "\"b\"").setBody("of b"));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        // when
+        read(connect("token a"));
+        read(connect("token b"));
+        String body = read(connect("token a"));
+
+        // then
+        server.takeRequest();
+        assertThat(server.takeRequest().getHeader("If-None-Match"), nullValue());
+        assertThat(server.takeRequest().getHeader("If-None-Match"), equalTo("\"a\""));
+        assertThat(body, equalTo("of a"));
+    }
+
+    @Test
+    public void testKeyDoesNotContainAuthorization() throws Exception {
+
+        // when
+        String anonymous = ConditionalRequestConnector.key(url, null);
+        String authorized = ConditionalRequestConnector.key(url, "token secret");
+
+        // then
+        assertThat(anonymous, equalTo(url.toString()));
+        assertThat(authorized, startsWith(url.toString()));
+        assertThat(authorized, not(containsString("secret")));
+    }
+
+    private HttpURLConnection connect(String authorization) throws Exception {
+        HttpURLConnection connection = connector().connect(url);
+        connection.setRequestProperty("Authorization", authorization);
+        return connection;
+    }
+
+    private ConditionalRequestConnector connector() throws Exception {
+        return new ConditionalRequestConnector(new OkHttpConnector(new OkUrlFactory(new OkHttpClient())),
+                new FileConditionalRequestStore(folder.getRoot().toPath(), 1024 * 1024), counters);
+    }
+
+    private String read(HttpURLConnection connection) throws Exception {
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.toString(in, "UTF-8");
+        }
+    }
+}
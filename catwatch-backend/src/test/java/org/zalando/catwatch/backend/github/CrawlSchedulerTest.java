@@ -0,0 +1,133 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CrawlSchedulerTest {
+
+    private static final int REPOSITORIES = 6;
+    private static final int LIMIT = 20;
+
+    private final GitHubStub stub = new GitHubStub("limited", REPOSITORIES).rateLimit(LIMIT, 1000);
+    private final Scorer scorer = mock(Scorer.class);
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        stub.start();
+        when(scorer.score(any(Project.class))).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        stub.shutdown();
+    }
+
+    @Test
+    public void testPausesInsteadOfExceedingRateLimit() throws Exception {
+
+        // given
+        RateLimitBudget budget = new RateLimitBudget(4);
+        GitHub gitHub = stub.gitHub(new OkHttpClient(), budget);
+        TakeSnapshotTask task = new TakeSnapshotTask(gitHub, "limited", scorer, new Date(), pool, budget,
+                new ApiCallCounter(), stub.client(gitHub, null), asList(project(103, 90), project(105, 80)),
+                new SnapshotCollector(), ContributorProfileCache.disabled());
+
+        // when
+        Snapshot snapshot = task.call();
+
+        // then all repositories are crawled in several rate limit windows without hitting the limit
+        assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+        assertThat(stub.requests().size(), greaterThan(2 * LIMIT));
+        assertThat(stub.rateLimitedRequests(), equalTo(0));
+        assertThat(budget.getReserved(), equalTo(0));
+
+        // and repositories with the highest score come first
+        List<String> requests = stub.requests();
+        assertThat(firstRequestOf("repo3", requests), lessThan(firstRequestOf("repo5", requests)));
+        assertThat(firstRequestOf("repo5", requests), lessThan(firstRequestOf("repo0", requests)));
+        assertThat(firstRequestOf("repo0", requests), lessThan(firstRequestOf("repo1", requests)));
+    }
+
+    @Test
+    public void testEstimateCost() throws Exception {
+
+        // given
+        Project unchanged = project(100, 10);
+        unchanged.setCommitsCount(1);
+        unchanged.setLastPushed("whenever");
+        unchanged.setStarsCount(0);
+        unchanged.setForksCount(0);
+
+        Date pushed = new Date();
+        RepositoryWrapper repository = mock(RepositoryWrapper.class);
+        when(repository.getId()).thenReturn(100);
+        when(repository.getLastPushed()).thenReturn(pushed);
+
+        TakeSnapshotTask task = new TakeSnapshotTask(null, "limited", scorer, new Date(), pool,
+                new RateLimitBudget(0), new ApiCallCounter(), null, asList(unchanged), new SnapshotCollector(),
+                ContributorProfileCache.disabled());
+
+        // when then
+        assertThat(task.estimateCost(repository), equalTo(TakeSnapshotTask.REPOSITORY_COST));
+
+        unchanged.setLastPushed(pushed.toString());
+        assertThat(task.estimateCost(repository), equalTo(TakeSnapshotTask.UNCHANGED_REPOSITORY_COST));
+    }
+
+    @Test
+    public void testBudgetReservations() throws Exception {
+
+        // given
+        RateLimitBudget budget = new RateLimitBudget(2);
+        long reset = System.currentTimeMillis() / 1000 + 3600;
+        budget.update("10", "10", String.valueOf(reset));
+
+        // when then
+        assertThat(budget.tryReserve(6), equalTo(true));
+        assertThat(budget.tryReserve(6), equalTo(false));
+
+        budget.release(6);
+        assertThat(budget.tryReserve(6), equalTo(true));
+
+        // after the reset the full limit is available again
+        budget.update("10", "0", String.valueOf(System.currentTimeMillis() / 1000 - 1));
+        assertThat(budget.tryReserve(2), equalTo(true));
+    }
+
+    private int firstRequestOf(String repository, List<String> requests) {
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i).startsWith("/repos/limited/" + repository + "/")) {
+                return i;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private Project project(long gitHubProjectId, int score) {
+        Project project = new Project();
+        project.setGitHubProjectId(gitHubProjectId);
+        project.setScore(score);
+        return project;
+    }
+}
@@ -0,0 +1,139 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.OkHttpConnector;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CredentialPoolTest {
+
+    private static final int REPOSITORIES = 4;
+
+    private final GitHubStub stub = new GitHubStub("stuborg", REPOSITORIES);
+    private final Scorer scorer = mock(Scorer.class);
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+    private final ExecutorService tasks = Executors.newCachedThreadPool();
+
+    @Before
+    public void setUp() throws Exception {
+        stub.start();
+        when(scorer.score(any(Project.class))).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        tasks.shutdownNow();
+        pool.shutdownNow();
+        stub.shutdown();
+    }
+
+    @Test
+    public void testSelectsCredentialWithMostHeadroom() throws Exception {
+
+        // given
+        long reset = System.currentTimeMillis() / 1000 + 3600;
+        GitHubCredential first = credential("first");
+        first.getBudget().update("5000", "100", String.valueOf(reset));
+        GitHubCredential second = credential("second");
+        second.getBudget().update("5000", "4000", String.valueOf(reset));
+        CredentialPool credentialPool = new CredentialPool(asList(first, second));
+
+        // when
+        GitHubCredential selected = credentialPool.select();
+
+        // then
+        assertThat(selected, sameInstance(second));
+
+        // when most of the second budget is reserved
+        second.getBudget().tryReserve(3950);
+
+        // then
+        assertThat(credentialPool.select(), sameInstance(first));
+    }
+
+    @Test
+    public void testCredentialsWithoutResponseAreTakenInTurns() throws Exception {
+
+        // given
+        GitHubCredential first = credential("first");
+        GitHubCredential second = credential("second");
+        GitHubCredential third = credential("third");
+        CredentialPool credentialPool = new CredentialPool(asList(first, second, third));
+
+        // when
+        List<GitHubCredential> selected = asList(credentialPool.select(), credentialPool.select(),
+                credentialPool.select(), credentialPool.select());
+
+        // then
+        assertThat(selected, equalTo(asList(first, second, third, first)));
+    }
+
+    @Test
+    public void testSnapshotsStayWithinTheLimitOfEveryToken() throws Exception {
+
+        // given the stub allows each token the requests of a single snapshot
+        GitHubCredential measure = credential("measure");
+        takeSnapshot(measure).get();
+        int requestsPerSnapshot = stub.requestsWith(measure.getAuthorization());
+        stub.rateLimit(requestsPerSnapshot, 60000);
+
+        GitHubCredential first = credential("first");
+        GitHubCredential second = credential("second");
+        CredentialPool credentialPool = new CredentialPool(asList(first, second));
+
+        // when
+        List<Future<Snapshot>> snapshots = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            snapshots.add(takeSnapshot(credentialPool.select()));
+        }
+        for (Future<Snapshot> snapshot : snapshots) {
+            assertThat(snapshot.get().getProjectsCount(), equalTo(REPOSITORIES));
+        }
+
+        // then
+        assertThat(stub.rateLimitedRequests(), equalTo(0));
+        assertThat(stub.requestsWith(first.getAuthorization()), equalTo(requestsPerSnapshot));
+        assertThat(stub.requestsWith(second.getAuthorization()), equalTo(requestsPerSnapshot));
+        assertThat(first.getBudget().getRemaining(), equalTo(0));
+        assertThat(second.getBudget().getRemaining(), equalTo(0));
+    }
+
+    private GitHubCredential credential(String token) {
+        return GitHubCredential.token(token, new RateLimitBudget(0));
+    }
+
+    private Future<Snapshot> takeSnapshot(GitHubCredential credential) throws Exception {
+        ApiCallCounter apiCallCounter = new ApiCallCounter();
+        OkHttpConnector connector = new OkHttpConnector(new OkUrlFactory(new OkHttpClient()));
+        GitHub gitHub = credential.configure(new GitHubBuilder())
+                .withEndpoint(stub.endpoint())
+                .withConnector(new ListeningHttpConnector(connector, credential.getBudget(), apiCallCounter))
+                .build();
+        return tasks.submit(new TakeSnapshotTask(gitHub, "stuborg", scorer, new Date(),
+                pool, credential.getBudget(), apiCallCounter,
+                stub.client(gitHub, credential.getAuthorization()), emptyList(), new SnapshotCollector(),
+                ContributorProfileCache.disabled()));
+    }
+}
@@ -0,0 +1,76 @@
+package org.zalando.catwatch.backend.github;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+public class FileConditionalRequestStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLeastRecentlyUsedResponsesAreEvicted() throws Exception {
+
+        // given room for about three responses
+        FileConditionalRequestStore store = new FileConditionalRequestStore(folder.getRoot().toPath(), 3500);
+        store.save("a", response());
+        age();
+        store.save("b", response());
+        age();
+        store.save("c", response());
+        age();
+        store.find("a");
+
+        // when
+        store.save("d", response());
+
+        // then
+        assertThat(store.find("a").isPresent(), equalTo(true));
+        assertThat(store.find("b"), equalTo(Optional.empty()));
+        assertThat(store.find("c").isPresent(), equalTo(true));
+        assertThat(store.find("d").isPresent(), equalTo(true));
+        assertThat(store.getSize(), lessThanOrEqualTo(3500L));
+    }
+
+    @Test
+    public void testSizeOfExistingFilesIsCounted() throws Exception {
+
+        // given
+        FileConditionalRequestStore store = new FileConditionalRequestStore(folder.getRoot().toPath(), 3500);
+        store.save("a", response());
+        store.save("b", response());
+        store.save("c", response());
+
+        // when e.g. restarted with a smaller maximum
+        FileConditionalRequestStore restarted = new FileConditionalRequestStore(folder.getRoot().toPath(), 1500);
+
+        // then
+        assertThat(restarted.getSize(), lessThanOrEqualTo(1500L));
+        assertThat(Files.list(folder.getRoot().toPath()).count(), equalTo(1L));
+    }
+
+    private static StoredResponse response() {
+        return new StoredResponse("\"etag\"", null, null, "application/json", new byte[1000]);
+    }
+
+    /**
+     * Moves the modification time of all files a minute into the past, the
+     * file system may not resolve milliseconds.
+     */
+    private void age() throws Exception {
+        for (Path file : (Iterable<Path>) Files.list(folder.getRoot().toPath())::iterator) {
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            Files.setLastModifiedTime(file, FileTime.fromMillis(lastModified - 60 * 1000L));
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.mockwebserver.Dispatcher;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
+import com.squareup.okhttp.mockwebserver.SocketPolicy;
+import org.apache.tomcat.util.http.fileupload.util.Streams;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.OkHttpConnector;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Local stand-in for the GitHub REST API serving a single organization with
+ * a configurable number of repositories. Every response is delayed by the
+ * configured latency to make the effect of concurrent requests measurable.
+ * <p>
+ * With a rate limit the stub sends the X-RateLimit headers and answers with
+ * 403 once the requests of the current window are used up. Like GitHub it
+ * counts the requests of every Authorization header separately.
+ * <p>
+ * Faults can be injected for paths, e.g. to test retries and timeouts.
+ * <p>
+ * POST /graphql answers every query with the recorded response given by
+ * {@link #graphQl(String)}.
+ */
+public class GitHubStub extends Dispatcher {
+
+    private static final Pattern REPO_PATH = Pattern.compile("/repos/([^/]+)/([^/?]+)(/[^?]*)?.*");
+
+    private final MockWebServer server = new MockWebServer();
+    private final String organization;
+    private final int repositoryCount;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final List<String> graphQlQueries = new CopyOnWriteArrayList<>();
+
+    private final Map<String, AtomicInteger> requestsByAuthorization = new ConcurrentHashMap<>();
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private final List<InjectedFault> faults = new CopyOnWriteArrayList<>();
+
+    private volatile long latencyMillis;
+    private volatile String graphQlResponse;
+
+    private int rateLimit;
+    private long windowMillis;
+    private final Map<String, Window> windows = new HashMap<>();
+
+    public GitHubStub(String organization, int repositoryCount) {
+        this.organization = organization;
+        this.repositoryCount = repositoryCount;
+        this.server.setDispatcher(this);
+    }
+
+    public GitHubStub latency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * @param limit  requests per window
+     * @param window length of a window in milliseconds, rounded up to whole
+     *               seconds as the reset header has a resolution of seconds
+     */
+    public synchronized GitHubStub rateLimit(int limit, long window) {
+        this.rateLimit = limit;
+        this.windowMillis = window;
+        return this;
+    }
+
+    /**
+     * Lets the next requests of paths ending with the given suffix fail.
+     *
+     * @param count number of requests that fail
+     */
+    public GitHubStub fault(String pathSuffix, int count, Fault fault) {
+        faults.add(new InjectedFault(pathSuffix, count, fault));
+        return this;
+    }
+
+    /**
+     * @param resource class path resource with the recorded response
+     */
+    public GitHubStub graphQl(String resource) throws IOException {
+        try (InputStream response = getClass().getResourceAsStream(resource)) {
+            this.graphQlResponse = Streams.asString(response, "UTF-8");
+        }
+        return this;
+    }
+
+    public GitHubStub start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    public String endpoint() {
+        return "http://" + server.getHostName() + ":" + server.getPort();
+    }
+
+    public GitHub gitHub(OkHttpClient httpClient, ResponseListener... listeners) throws IOException {
+        return new GitHubBuilder()
+                .withEndpoint(endpoint())
+                .withConnector(new ListeningHttpConnector(new OkHttpConnector(new OkUrlFactory(httpClient)), listeners))
+                .build();
+    }
+
+    /**
+     * @return client that sends its requests with the connector of the given
+     * GitHub instance to this stub
+     */
+    public StreamingGitHubClient client(GitHub gitHub, String authorization) {
+        return new StreamingGitHubClient(gitHub.getConnector(), endpoint(), authorization);
+    }
+
+    /**
+     * @return paths of all requests received so far
+     */
+    public List<String> requests() {
+        return requests;
+    }
+
+    /**
+     * @return bodies of all GraphQL requests received so far
+     */
+    public List<String> graphQlQueries() {
+        return graphQlQueries;
+    }
+
+    /**
+     * @param authorization value of the Authorization header, null for
+     *                      anonymous requests
+     * @return number of requests received with the given credentials
+     */
+    public int requestsWith(String authorization) {
+        AtomicInteger requests = requestsByAuthorization.get(String.valueOf(authorization));
+        return requests == null ? 0 : requests.get();
+    }
+
+    /**
+     * @return number of requests answered with 403 because of the rate limit
+     */
+    public int rateLimitedRequests() {
+        return rateLimited.get();
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        requests.add(request.getPath());
+        String authorization = String.valueOf(request.getHeader("Authorization"));
+        requestsByAuthorization.computeIfAbsent(authorization, key -> new AtomicInteger()).incrementAndGet();
+        if ("POST".equals(request.getMethod()) && request.getPath().equals("/graphql")) {
+            graphQlQueries.add(request.getBody().readUtf8());
+        }
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+        String pathWithoutQuery = request.getPath().split("\\?")[0];
+        for (InjectedFault fault : faults) {
+            if (pathWithoutQuery.endsWith(fault.pathSuffix) && fault.remaining.getAndDecrement() > 0) {
+                return fault.fault.response();
+            }
+        }
+        synchronized (this) {
+            if (rateLimit <= 0) {
+                return respond(request.getPath());
+            }
+            Window window = windows.computeIfAbsent(authorization, key -> new Window());
+            long now = System.currentTimeMillis();
+            if (now >= window.resetMillis) {
+                window.remaining = rateLimit;
+                window.resetMillis = ((now + windowMillis + 999) / 1000) * 1000;
+            }
+            MockResponse response;
+            if (window.remaining == 0) {
+                rateLimited.incrementAndGet();
+                response = new MockResponse().setResponseCode(403)
+                        .setBody("{\"message\":\"API rate limit exceeded\"}");
+            } else {
+                window.remaining--;
+                response = respond(request.getPath());
+            }
+            return response
+                    .setHeader("X-RateLimit-Limit", String.valueOf(rateLimit))
+                    .setHeader("X-RateLimit-Remaining", String.valueOf(window.remaining))
+                    .setHeader("X-RateLimit-Reset", String.valueOf(window.resetMillis / 1000));
+        }
+    }
+
+    protected MockResponse respond(String path) {
+        String orgPath = "/orgs/" + organization;
+
+        if (path.equals("/graphql") && graphQlResponse != null) {
+            return json(graphQlResponse);
+        }
+        if (path.equals(orgPath)) {
+            return json(format("{\"login\":\"%s\",\"id\":1,\"public_repos\":%d}", organization, repositoryCount));
+        }
+        if (path.startsWith(orgPath + "/repos") || path.startsWith("/users/" + organization + "/repos")) {
+            StringBuilder repos = new StringBuilder("[");
+            for (int i = 0; i < repositoryCount; i++) {
+                repos.append(i == 0 ? "" : ",").append(repository(i));
+            }
+            return json(repos.append("]").toString());
+        }
+        if (path.startsWith(orgPath + "/members") || path.startsWith(orgPath + "/teams")) {
+            return json("[]");
+        }
+        if (path.equals("/user")) {
+            // requested by Kohsuke GitHub API when a client with a token is built
+            return json("{\"login\":\"crawler\",\"id\":2}");
+        }
+        if (path.startsWith("/users/")) {
+            String login = path.substring("/users/".length());
+            return json(format("{\"login\":\"%s\",\"id\":%d,\"name\":\"%s\",\"public_repos\":3,"
+                    + "\"html_url\":\"https://github.com/%s\"}", login, userId(login), login, login));
+        }
+
+        Matcher matcher = REPO_PATH.matcher(path);
+        if (matcher.matches()) {
+            String tail = matcher.group(3) == null ? "" : matcher.group(3);
+            if (tail.startsWith("/languages")) {
+                return json("{\"Java\":1000,\"Shell\":10}");
+            }
+            if (tail.isEmpty()) {
+                return json(repository(Integer.parseInt(matcher.group(2).substring("repo".length()))));
+            }
+            if (tail.startsWith("/commits")) {
+                return commits(matcher.group(2), path.contains("per_page=1"));
+            }
+            if (tail.startsWith("/contributors")) {
+                return json(format("[{\"login\":\"alice\",\"id\":%d,\"contributions\":5,"
+                        + "\"url\":\"%s/users/alice\",\"html_url\":\"https://github.com/alice\"}]",
+                        userId("alice"), endpoint()));
+            }
+            if (tail.startsWith("/tags")) {
+                return json("[{\"name\":\"v1\"}]");
+            }
+            if (tail.equals("/contents/")) {
+                String repository = matcher.group(2);
+                return json(rootFiles(repository).stream()
+                        .map(name -> format("{\"name\":\"%s\",\"path\":\"%s\",\"type\":\"file\","
+                                + "\"download_url\":\"%s/raw/%s/%s/%s\"}",
+                                name, name, endpoint(), organization, repository, name))
+                        .collect(joining(",", "[", "]")));
+            }
+        }
+        if (path.equals(format("/raw/%s/%s/MAINTAINERS", organization, path.split("/")[3]))) {
+            return new MockResponse().setBody("alice\nbob");
+        }
+
+        return new MockResponse().setResponseCode(404).setBody("{\"message\":\"Not Found\"}");
+    }
+
+    /**
+     * Pages of a single commit carry a Link header to the last page, like
+     * GitHub does.
+     */
+    private MockResponse commits(String repository, boolean singleCommitPerPage) {
+        int commits = commitCount(repository);
+        if (commits == 0) {
+            return new MockResponse().setResponseCode(409).setBody("{\"message\":\"Git Repository is empty.\"}");
+        }
+        if (!singleCommitPerPage || commits == 1) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < commits; i++) {
+                body.append(i == 0 ? "" : ",").append(format("{\"sha\":\"%d\"}", i));
+            }
+            return json(body.append("]").toString());
+        }
+        String url = format("%s/repos/%s/%s/commits?per_page=1", endpoint(), organization, repository);
+        return json("[{\"sha\":\"0\"}]")
+                .setHeader("Link", format("<%s&page=2>; rel=\"next\", <%s&page=%d>; rel=\"last\"", url, url, commits));
+    }
+
+    /**
+     * @return names in the root directory of the repository, MAINTAINERS
+     * contains two lines and is downloaded from /raw/
+     */
+    protected List<String> rootFiles(String repository) {
+        return asList("README.md", "MAINTAINERS");
+    }
+
+    protected int commitCount(String repository) {
+        return 2;
+    }
+
+    protected String repository(int index) {
+        return format("{\"id\":%d,\"name\":\"repo%d\",\"url\":\"%s/repos/%s/repo%d\",\"full_name\":\"%s/repo%d\","
+                        + "\"owner\":{\"login\":\"%s\",\"id\":1},"
+                        + "\"private\":false,\"fork\":false,\"html_url\":\"https://github.com/%s/repo%d\","
+                        + "\"description\":\"repository %d\",\"language\":\"Java\",\"watchers\":%d,\"forks\":%d,"
+                        + "\"size\":100,\"pushed_at\":\"2016-01-01T00:00:00Z\"}",
+                100 + index, index, endpoint(), organization, index, organization, index, organization, organization,
+                index, index, index, index);
+    }
+
+    protected int userId(String login) {
+        return Math.abs(login.hashCode());
+    }
+
+    protected MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(body);
+    }
+
+    private static class Window {
+        int remaining;
+        long resetMillis;
+    }
+
+    public enum Fault {
+
+        /**
+         * 503 Service Unavailable
+         */
+        SERVER_ERROR,
+
+        /**
+         * The connection is closed after the request has been read.
+         */
+        DISCONNECT,
+
+        /**
+         * The request is read but never answered.
+         */
+        NO_RESPONSE;
+
+        MockResponse response() {
+            switch (this) {
+                case SERVER_ERROR:
+                    return new MockResponse().setResponseCode(503).setBody("{\"message\":\"Service Unavailable\"}");
+                case DISCONNECT:
+                    return new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+                default:
+                    return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+            }
+        }
+    }
+
+    private static class InjectedFault {
+
+        final String pathSuffix;
+        final AtomicInteger remaining;
+        final Fault fault;
+
+        InjectedFault(String pathSuffix, int count, Fault fault) {
+            this.pathSuffix = pathSuffix;
+            this.remaining = new AtomicInteger(count);
+            this.fault = fault;
+        }
+    }
+}
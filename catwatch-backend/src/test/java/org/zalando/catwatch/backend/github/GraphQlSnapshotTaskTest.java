@@ -0,0 +1,143 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.extras.OkHttpConnector;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Language;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GraphQlSnapshotTaskTest {
+
+    /**
+     * The recorded response resolves repo0 and repo1 but not repo2.
+     */
+    private static final int REPOSITORIES = 3;
+
+    private final GitHubStub stub = new GitHubStub("stuborg", REPOSITORIES);
+    private final Scorer scorer = mock(Scorer.class);
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() throws Exception {
+        stub.graphQl("/github/graphql-repositories.json").start();
+        when(scorer.score(any(Project.class))).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        stub.shutdown();
+    }
+
+    @Test
+    public void testSnapshotEqualsRestSnapshot() throws Exception {
+
+        // given
+        SnapshotCollector restProjects = new SnapshotCollector();
+        Snapshot rest = restTask(restProjects).call();
+
+        // when
+        SnapshotCollector graphQlProjects = new SnapshotCollector();
+        Snapshot graphQl = graphQlTask(graphQlProjects).call();
+
+        // then
+        for (Function<Project, Object> field : Arrays.<Function<Project, Object>>asList(
+                Project::getName, Project::getGitHubProjectId, Project::getStarsCount, Project::getForksCount,
+                Project::getLastPushed, Project::getLanguageList, Project::getCommitsCount,
+                Project::getContributorsCount, Project::getMaintainers, Project::getTitle, Project::getScore)) {
+            assertThat(map(sorted(graphQlProjects), field), equalTo(map(sorted(restProjects), field)));
+        }
+        assertThat(graphQl.getStatistics().getTagsCount(), equalTo(rest.getStatistics().getTagsCount()));
+        assertThat(graphQl.getStatistics().getAllContributorsCount(),
+                equalTo(rest.getStatistics().getAllContributorsCount()));
+        assertThat(map(graphQl.getLanguages(), Language::getName), equalTo(map(rest.getLanguages(), Language::getName)));
+        assertThat(map(graphQl.getLanguages(), Language::getPercentage),
+                equalTo(map(rest.getLanguages(), Language::getPercentage)));
+        assertThat(map(graphQlProjects.getContributors(), Contributor::getId),
+                equalTo(map(restProjects.getContributors(), Contributor::getId)));
+    }
+
+    @Test
+    public void testRepositoriesAreFetchedInOneQuery() throws Exception {
+
+        // when
+        Snapshot snapshot = graphQlTask(new SnapshotCollector()).call();
+
+        // then
+        assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+        assertThat(stub.graphQlQueries(), hasSize(1));
+        for (int i = 0; i < REPOSITORIES; i++) {
+            assertThat(stub.graphQlQueries().get(0), containsString("repo" + i));
+        }
+
+        // only the repository missing in the response is crawled endpoint by endpoint
+        for (String endpoint : asList("/tags", "/languages", "/commits", "/contents/")) {
+            assertThat(endpoint, requestedRepositories(endpoint), equalTo(asList("repo2")));
+        }
+        assertThat(requestedRepositories("/contributors"), hasSize(REPOSITORIES));
+    }
+
+    private TakeSnapshotTask restTask(SnapshotWriter writer) throws Exception {
+        GitHub gitHub = stub.gitHub(new OkHttpClient());
+        return new TakeSnapshotTask(gitHub, "stuborg", scorer, new Date(), pool, new RateLimitBudget(0),
+                new ApiCallCounter(), stub.client(gitHub, null), emptyList(), writer,
+                ContributorProfileCache.disabled());
+    }
+
+    private TakeSnapshotTask graphQlTask(SnapshotWriter writer) throws Exception {
+        OkHttpClient httpClient = new OkHttpClient();
+        GitHub gitHub = stub.gitHub(httpClient);
+        GraphQlClient graphQlClient = new GraphQlClient(new OkHttpConnector(new OkUrlFactory(httpClient)),
+                stub.endpoint() + "/graphql", "token secret");
+        return new GraphQlSnapshotTask(gitHub, "stuborg", scorer, new Date(), pool, new RateLimitBudget(0),
+                new ApiCallCounter(), stub.client(gitHub, null), emptyList(), writer,
+                ContributorProfileCache.disabled(), graphQlClient);
+    }
+
+    private List<String> requestedRepositories(String endpoint) {
+        return stub.requests().stream()
+                .filter(path -> path.startsWith("/repos/") && path.split("\\?")[0].endsWith(endpoint))
+                .map(path -> path.split("/")[3])
+                .sorted()
+                .collect(toList());
+    }
+
+    /**
+     * @return projects in the order of the repositories, they are written in the order they are finished
+     */
+    private static List<Project> sorted(SnapshotCollector collector) {
+        return collector.getProjects().stream()
+                .sorted(Comparator.comparing(Project::getGitHubProjectId))
+                .collect(toList());
+    }
+
+    private static <T> List<Object> map(Collection<T> items, Function<T, Object> field) {
+        return items.stream().map(field).collect(toList());
+    }
+}
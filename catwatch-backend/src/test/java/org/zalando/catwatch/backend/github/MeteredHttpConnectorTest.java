@@ -0,0 +1,128 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import com.squareup.okhttp.mockwebserver.MockWebServer;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.github.extras.OkHttpConnector;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MeteredHttpConnectorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final CrawlerMetrics metrics = new CrawlerMetrics();
+
+    private MeteredHttpConnector connector;
+
+    @Before
+    public void setUp() throws Exception {
+        server.start();
+        OkHttpClient client = new OkHttpClient().setCache(new Cache(folder.getRoot(), 1024 * 1024));
+        connector = new MeteredHttpConnector(new OkHttpConnector(new OkUrlFactory(client)), metrics);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void testEndpoint() throws Exception {
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/orgs/zalando")), equalTo("orgs"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/orgs/zalando/repos?page=2")),
+                equalTo("orgs.repos"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/repos/zalando/catwatch")),
+                equalTo("repos"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/repos/zalando/catwatch/contents/a/b")),
+                equalTo("repos.contents"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/teams/42/members")),
+                equalTo("teams.members"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://api.github.com/graphql")), equalTo("graphql"));
+        assertThat(CrawlerMetrics.endpoint(new URL("https://raw.githubusercontent.com/zalando/catwatch/master/x")),
+                equalTo("other"));
+    }
+
+    @Test
+    public void testRequestsAreRecorded() throws Exception {
+
+        // given
+        server.enqueue(new MockResponse().setHeader("Cache-Control", "max-age=60").setBody("[1,2,3]"));
+
+        // when
+        read(server.getUrl("/repos/zalando/catwatch/tags"));
+        read(server.getUrl("/repos/zalando/catwatch/tags"));
+
+        // then the second request is served by the cache, its body is not transferred
+        assertThat(metrics.getRequests("repos.tags"), equalTo(2L));
+        assertThat(metrics.getBytes("repos.tags"), equalTo(7L));
+        assertThat(metrics.getNetworkResponses(), equalTo(1L));
+        assertThat(metrics.getCacheResponses(), equalTo(1L));
+
+        Map<String, Number> published = metrics.metrics().stream().collect(toMap(Metric::getName, Metric::getValue));
+        assertThat(published.get("github.endpoint.repos.tags.requests"), equalTo(2L));
+        assertThat(published.get("github.endpoint.repos.tags.latency.le_10000"), equalTo(2L));
+        assertThat(published.get("github.responses.saved.percent"), equalTo(50.0));
+    }
+
+    @Test
+    public void testFailureIsRecorded() throws Exception {
+
+        // given
+        URL url = server.getUrl("/orgs/zalando");
+        server.shutdown();
+
+        // when
+        try {
+            connector.connect(url).getResponseCode();
+        } catch (Exception e) {
+            // expected
+        }
+
+        // then
+        Map<String, Number> published = metrics.metrics().stream().collect(toMap(Metric::getName, Metric::getValue));
+        assertThat(published.get("github.endpoint.orgs.requests"), equalTo(1L));
+        assertThat(published.get("github.endpoint.orgs.failures"), equalTo(1L));
+    }
+
+    @Test
+    public void testRateLimitOfCredentials() throws Exception {
+
+        // given
+        RateLimitBudget budget = new RateLimitBudget(0);
+        budget.update("5000", "4321", "1456826400");
+        metrics.register(Collections.singletonList(GitHubCredential.token("0123456789abcdef", budget)));
+
+        // when
+        Map<String, Number> published = metrics.metrics().stream().collect(toMap(Metric::getName, Metric::getValue));
+
+        // then the token is not published
+        assertThat(published.get("github.ratelimit.token_cdef.remaining"), equalTo(4321));
+    }
+
+    private void read(URL url) throws Exception {
+        HttpURLConnection connection = connector.connect(url);
+        try (InputStream body = connection.getInputStream()) {
+            IOUtils.toByteArray(body);
+        }
+    }
+}
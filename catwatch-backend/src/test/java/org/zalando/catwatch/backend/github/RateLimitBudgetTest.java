@@ -0,0 +1,67 @@
+package org.zalando.catwatch.backend.github;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class RateLimitBudgetTest {
+
+    @Test
+    public void testWaitsAfterResetWhileLimitIsReserved() throws Exception {
+
+        // given the reset has passed, but the full limit is reserved
+        RateLimitBudget budget = new RateLimitBudget(0);
+        budget.update("10", "0", String.valueOf(System.currentTimeMillis() / 1000 - 60));
+        assertThat(budget.tryReserve(10), equalTo(true));
+        assertThat(budget.tryReserve(1), equalTo(false));
+
+        // when
+        long start = System.currentTimeMillis();
+        budget.awaitChange();
+
+        // then
+        assertThat(System.currentTimeMillis() - start, greaterThanOrEqualTo(RateLimitBudget.MIN_WAIT_MILLIS));
+    }
+
+    @Test
+    public void testReleaseEndsWait() throws Exception {
+
+        // given
+        RateLimitBudget budget = new RateLimitBudget(0);
+        budget.update("10", "0", String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+        Thread releasing = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            budget.release(0);
+        });
+
+        // when
+        long start = System.currentTimeMillis();
+        releasing.start();
+        budget.awaitChange();
+
+        // then
+        assertThat(System.currentTimeMillis() - start, lessThan(60 * 1000L));
+        releasing.join();
+    }
+
+    @Test
+    public void testReserveOfAnonymousAccess() throws Exception {
+
+        // given the reserve of four crawler threads and the 60 requests per hour of anonymous access
+        RateLimitBudget budget = new RateLimitBudget(4 * 10);
+        budget.update("60", "50", String.valueOf(System.currentTimeMillis() / 1000 + 3600));
+
+        // when then only a quarter of the limit is kept as reserve
+        assertThat(budget.tryReserve(20), equalTo(true));
+        assertThat(budget.tryReserve(10), equalTo(true));
+        assertThat(budget.tryReserve(10), equalTo(false));
+        assertThat(budget.getHeadroom(), equalTo(20));
+    }
+}
@@ -0,0 +1,58 @@
+package org.zalando.catwatch.backend.github;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RepositoryWrapperTest {
+
+    private final StreamingGitHubClient client = mock(StreamingGitHubClient.class);
+    private final RepositoryWrapper repository = new RepositoryWrapper(
+            new RepositoryRecord(1, "repo", "org/repo", null, null, null, 0, 0, 0, null, null, false, false),
+            "org", client);
+
+    @After
+    public void tearDown() {
+        // clears the interrupt flag
+        Thread.interrupted();
+    }
+
+    @Test
+    public void testFailedEndpointIsEmpty() throws Exception {
+
+        // given
+        when(client.countCommits(any(RepositoryRecord.class))).thenThrow(new IOException("empty repository"));
+
+        // when then
+        assertThat(repository.countCommits(), equalTo(0));
+    }
+
+    @Test
+    public void testInterruptionIsRethrown() throws Exception {
+
+        // given
+        when(client.countCommits(any(RepositoryRecord.class)))
+                .thenThrow(new InterruptedIOException("interrupted"));
+        Thread.currentThread().interrupt();
+
+        // when
+        try {
+            repository.countCommits();
+            fail("UncheckedIOException expected");
+        } catch (UncheckedIOException e) {
+            // then
+            assertThat(e.getCause(), instanceOf(InterruptedIOException.class));
+        }
+    }
+}
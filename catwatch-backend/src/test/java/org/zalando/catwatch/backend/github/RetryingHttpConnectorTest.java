@@ -0,0 +1,168 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.kohsuke.github.GitHubBuilder;
+import org.kohsuke.github.extras.OkHttpConnector;
+import org.zalando.catwatch.backend.github.GitHubStub.Fault;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RetryingHttpConnectorTest {
+
+    private static final int REPOSITORIES = 4;
+
+    private final GitHubStub stub = new GitHubStub("stuborg", REPOSITORIES);
+    private final Scorer scorer = mock(Scorer.class);
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() throws Exception {
+        stub.start();
+        when(scorer.score(any(Project.class))).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        stub.shutdown();
+    }
+
+    @Test
+    public void testTransientFailuresDoNotFailTheSnapshot() throws Exception {
+
+        // given
+        stub.fault("/tags", 2, Fault.SERVER_ERROR).fault("/languages", 1, Fault.DISCONNECT);
+
+        // when
+        SnapshotCollector projects = new SnapshotCollector();
+        Snapshot snapshot = takeSnapshot(new OkHttpClient(), new RetryPolicy(3, 10, 10000, 0), projects);
+
+        // then
+        assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+        assertThat(snapshot.getStatistics().getTagsCount(), equalTo(REPOSITORIES));
+        assertThat(projects.getProjects().stream().map(Project::getLanguageList)
+                .collect(toList()), everyItem(not(empty())));
+        assertThat(requestsTo("/tags"), equalTo(REPOSITORIES + 2L));
+        assertThat(requestsTo("/languages"), equalTo(REPOSITORIES + 1L));
+    }
+
+    @Test
+    public void testStalledRequestIsRetriedAfterReadTimeout() throws Exception {
+
+        // given
+        stub.fault("/languages", 1, Fault.NO_RESPONSE);
+        OkHttpClient httpClient = new OkHttpClient();
+        httpClient.setReadTimeout(200, TimeUnit.MILLISECONDS);
+
+        // when
+        SnapshotCollector projects = new SnapshotCollector();
+        Snapshot snapshot = takeSnapshot(httpClient, new RetryPolicy(1, 10, 10000, 0), projects);
+
+        // then
+        assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+        assertThat(projects.getProjects().stream().map(Project::getLanguageList)
+                .collect(toList()), everyItem(not(empty())));
+        assertThat(requestsTo("/languages"), equalTo(REPOSITORIES + 1L));
+    }
+
+    @Test
+    public void testHedgedRequestIsAnsweredBeforeStalledOne() throws Exception {
+
+        // given a read timeout that would stall the snapshot
+        stub.fault("/languages", 1, Fault.NO_RESPONSE);
+        OkHttpClient httpClient = new OkHttpClient();
+        httpClient.setReadTimeout(30, TimeUnit.SECONDS);
+
+        // when
+        long start = System.currentTimeMillis();
+        SnapshotCollector projects = new SnapshotCollector();
+        Snapshot snapshot = takeSnapshot(httpClient, new RetryPolicy(0, 0, 0, 100), projects);
+
+        // then
+        assertThat(System.currentTimeMillis() - start, lessThan(10000L));
+        assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+        assertThat(projects.getProjects().stream().map(Project::getLanguageList)
+                .collect(toList()), everyItem(not(empty())));
+    }
+
+    @Test
+    public void testLastResponseIsReturnedAfterRetries() throws Exception {
+
+        // given
+        stub.fault("/tags", 10, Fault.SERVER_ERROR);
+
+        // when
+        HttpURLConnection connection = connector(new OkHttpClient(), new RetryPolicy(2, 1, 10000, 0))
+                .connect(new URL(stub.endpoint() + "/repos/stuborg/repo0/tags"));
+
+        // then
+        assertThat(connection.getResponseCode(), equalTo(503));
+        assertThat(requestsTo("/tags"), equalTo(3L));
+    }
+
+    @Test
+    public void testPostIsSentOnce() throws Exception {
+
+        // given
+        stub.fault("/graphql", 1, Fault.SERVER_ERROR);
+
+        // when
+        HttpURLConnection connection = connector(new OkHttpClient(), new RetryPolicy(2, 1, 10000, 0))
+                .connect(new URL(stub.endpoint() + "/graphql"));
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write("{}".getBytes());
+        }
+
+        // then
+        assertThat(connection.getResponseCode(), equalTo(503));
+        assertThat(stub.requests().stream().filter(path -> path.equals("/graphql")).count(), equalTo(1L));
+    }
+
+    private long requestsTo(String endpoint) {
+        return stub.requests().stream()
+                .filter(path -> path.split("\\?")[0].endsWith(endpoint))
+                .count();
+    }
+
+    private RetryingHttpConnector connector(OkHttpClient httpClient, RetryPolicy policy) {
+        return new RetryingHttpConnector(new OkHttpConnector(new OkUrlFactory(httpClient)), policy);
+    }
+
+    private Snapshot takeSnapshot(OkHttpClient httpClient, RetryPolicy policy, SnapshotCollector projects)
+            throws Exception {
+        GitHub gitHub = new GitHubBuilder()
+                .withEndpoint(stub.endpoint())
+                .withConnector(connector(httpClient, policy))
+                .build();
+        return new TakeSnapshotTask(gitHub, "stuborg", scorer, new Date(), pool, new RateLimitBudget(0),
+                new ApiCallCounter(), stub.client(gitHub, null), emptyList(), projects,
+                ContributorProfileCache.disabled()).call();
+    }
+}
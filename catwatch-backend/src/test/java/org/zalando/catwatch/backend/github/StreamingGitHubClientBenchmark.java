@@ -0,0 +1,94 @@
+package org.zalando.catwatch.backend.github;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import org.kohsuke.github.GHRepository;
+import org.kohsuke.github.GitHub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the pages of the repository and contributors listings parsed per
+ * second by the ObjectMapper of Kohsuke GitHub API and by the
+ * {@link StreamingGitHubClient}. Both pages hold 100 entries with all fields
+ * GitHub returns.
+ * <p>
+ * Run with
+ * <pre>
+ * mvn -Pbenchmark clean test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     "-Dexec.args=-cp %classpath org.openjdk.jmh.Main StreamingGitHubClientBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class StreamingGitHubClientBenchmark {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private ObjectMapper kohsukeMapper;
+
+    private byte[] repositoriesPage;
+
+    private byte[] contributorsPage;
+
+    @Setup
+    public void setUp() throws Exception {
+        // the mapper GitHub binds all responses with
+        Field mapper = GitHub.class.getDeclaredField("MAPPER");
+        mapper.setAccessible(true);
+        kohsukeMapper = (ObjectMapper) mapper.get(null);
+
+        repositoriesPage = read("/github/repositories-page.json");
+        contributorsPage = read("/github/contributors-page.json");
+    }
+
+    @Benchmark
+    public GHRepository[] bindRepositories() throws IOException {
+        return kohsukeMapper.readValue(repositoriesPage, GHRepository[].class);
+    }
+
+    @Benchmark
+    public List<RepositoryRecord> streamRepositories() throws IOException {
+        return stream(repositoriesPage, StreamingGitHubClient::readRepository);
+    }
+
+    @Benchmark
+    public GHRepository.Contributor[] bindContributors() throws IOException {
+        return kohsukeMapper.readValue(contributorsPage, GHRepository.Contributor[].class);
+    }
+
+    @Benchmark
+    public List<ContributorRecord> streamContributors() throws IOException {
+        return stream(contributorsPage, StreamingGitHubClient::readContributor);
+    }
+
+    private static <T> List<T> stream(byte[] page, StreamingGitHubClient.EntryReader<T> reader) throws IOException {
+        List<T> entries = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(new ByteArrayInputStream(page))) {
+            StreamingGitHubClient.readEntries(parser, reader, entries);
+        }
+        return entries;
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream in = StreamingGitHubClientBenchmark.class.getResourceAsStream(resource)) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class StreamingGitHubClientTest {
+
+    private final GitHubStub stub = new GitHubStub("stuborg", 2) {
+        @Override
+        protected MockResponse respond(String path) {
+            // the tags of repo0 span two pages
+            if (path.equals("/repos/stuborg/repo0/tags?per_page=100")) {
+                return json("[{\"name\":\"v2\",\"commit\":{\"sha\":\"b\"}},{\"name\":\"v1\"}]")
+                        .setHeader("Link", format("<%s/repos/stuborg/repo0/tags?per_page=100&page=2>; rel=\"next\"",
+                                endpoint()));
+            }
+            return super.respond(path);
+        }
+    };
+
+    private StreamingGitHubClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        client = stub.client(stub.start().gitHub(new OkHttpClient()), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stub.shutdown();
+    }
+
+    @Test
+    public void testListRepositories() throws Exception {
+
+        // when
+        List<RepositoryRecord> repositories = client.listRepositories("stuborg");
+
+        // then
+        assertThat(repositories, hasSize(2));
+        RepositoryRecord repository = repositories.get(1);
+        assertThat(repository.getId(), equalTo(101));
+        assertThat(repository.getName(), equalTo("repo1"));
+        assertThat(repository.getFullName(), equalTo("stuborg/repo1"));
+        assertThat(repository.getUrl(), equalTo(stub.endpoint() + "/repos/stuborg/repo1"));
+        assertThat(repository.getHtmlUrl(), equalTo("https://github.com/stuborg/repo1"));
+        assertThat(repository.getWatchers(), equalTo(1));
+        assertThat(repository.getPushedAt(), equalTo(Date.from(Instant.parse("2016-01-01T00:00:00Z"))));
+        assertThat(stub.requests(), contains("/orgs/stuborg/repos?per_page=100"));
+    }
+
+    @Test
+    public void testRepositoryEndpoints() throws Exception {
+
+        // given
+        RepositoryRecord repository = client.listRepositories("stuborg").get(0);
+
+        // when
+        List<ContributorRecord> contributors = client.listContributors(repository);
+
+        // then
+        assertThat(contributors, hasSize(1));
+        assertThat(contributors.get(0).getLogin(), equalTo("alice"));
+        assertThat(contributors.get(0).getHtmlUrl(), equalTo("https://github.com/alice"));
+        assertThat(contributors.get(0).getContributions(), equalTo(5));
+        assertThat(client.countTags(repository), equalTo(3));
+        assertThat(client.listLanguages(repository).get("Java"), equalTo(1000L));
+        assertThat(client.countCommits(repository), equalTo(2));
+        assertThat(client.listRootFiles(repository).keySet(), contains("README.md", "MAINTAINERS"));
+        assertThat(client.getProfile("alice").getName(), equalTo("alice"));
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void testMissingFile() throws Exception {
+        client.getFileContent(client.listRepositories("stuborg").get(0), ".catwatch.yaml");
+    }
+
+    @Test
+    public void testNextPage() throws Exception {
+        assertThat(StreamingGitHubClient.nextPage("<https://api.github.com/organizations/1/repos?page=2>; rel=\"next\", "
+                + "<https://api.github.com/organizations/1/repos?page=5>; rel=\"last\""),
+                equalTo("https://api.github.com/organizations/1/repos?page=2"));
+        assertThat(StreamingGitHubClient.nextPage("<https://api.github.com/organizations/1/repos?page=1>; "
+                + "rel=\"first\""), nullValue());
+        assertThat(StreamingGitHubClient.nextPage(null), nullValue());
+    }
+
+    @Test
+    public void testDate() throws Exception {
+        assertThat(StreamingGitHubClient.date("2016-02-29T23:59:58Z"),
+                equalTo(Date.from(Instant.parse("2016-02-29T23:59:58Z"))));
+        assertThat(StreamingGitHubClient.date("2016-02-29T23:59:58.123Z"),
+                equalTo(Date.from(Instant.parse("2016-02-29T23:59:58.123Z"))));
+        assertThat(StreamingGitHubClient.date(null), nullValue());
+    }
+}
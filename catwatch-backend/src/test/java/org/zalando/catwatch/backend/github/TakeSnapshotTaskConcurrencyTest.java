@@ -0,0 +1,215 @@
+package org.zalando.catwatch.backend.github;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.mockwebserver.MockResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.github.GitHub;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.util.Scorer;
+
+import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TakeSnapshotTaskConcurrencyTest {
+
+    private static final int REPOSITORIES = 8;
+    private static final int THREADS = 4;
+
+    private final GitHubStub stub = new GitHubStub("stuborg", REPOSITORIES).latency(25);
+    private final Scorer scorer = mock(Scorer.class);
+
+    @Before
+    public void setUp() throws Exception {
+        stub.start();
+        when(scorer.score(any(Project.class))).thenReturn(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        stub.shutdown();
+    }
+
+    @Test
+    public void testWallClockTimeDropsWithWorkerCount() throws Exception {
+
+        // when
+        long sequential = takeSnapshot(1);
+        long concurrent = takeSnapshot(THREADS);
+
+        // then only the organization level requests stay sequential
+        assertThat(concurrent, lessThan(sequential / 2));
+    }
+
+    @Test
+    public void testRateLimitHeadersAreTracked() throws Exception {
+
+        // given
+        RateLimitBudget budget = new RateLimitBudget(0);
+        GitHubStub limitedStub = new GitHubStub("limited", 1) {
+            @Override
+            protected MockResponse json(String body) {
+                return super.json(body)
+                        .setHeader(RateLimitBudget.HEADER_REMAINING, "4711")
+                        .setHeader(RateLimitBudget.HEADER_RESET, "1500000000");
+            }
+        }.start();
+
+        try {
+            // when
+            GitHub gitHub = limitedStub.gitHub(new OkHttpClient(), budget);
+            Snapshot snapshot = new TakeSnapshotTask(gitHub, "limited", scorer, new Date(),
+                    Executors.newSingleThreadExecutor(), budget, new ApiCallCounter(), limitedStub.client(gitHub, null),
+                    emptyList(), new SnapshotCollector(), ContributorProfileCache.disabled())
+                    .call();
+
+            // then
+            assertThat(snapshot.getProjectsCount(), equalTo(1));
+            assertThat(budget.getRemaining(), equalTo(4711));
+            assertThat(budget.getResetMillis(), equalTo(1500000000000L));
+        } finally {
+            limitedStub.shutdown();
+        }
+    }
+
+    @Test
+    public void testEveryRepositoryEndpointIsRequestedOnce() throws Exception {
+
+        // given
+        ApiCallCounter counter = new ApiCallCounter();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        GitHub gitHub = stub.gitHub(new OkHttpClient(), counter);
+        TakeSnapshotTask task = new TakeSnapshotTask(gitHub, "stuborg", scorer, new Date(), pool,
+                new RateLimitBudget(0), counter, stub.client(gitHub, null), emptyList(),
+                new SnapshotCollector(), ContributorProfileCache.disabled());
+
+        // when
+        try {
+            task.call();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // then
+        for (String endpoint : asList("/contributors", "/tags", "/languages", "/commits", "/contents/")) {
+            assertThat(endpoint, requestsTo(endpoint), equalTo((long) REPOSITORIES));
+        }
+        // MAINTAINERS is downloaded from the listing, .catwatch.yaml is not listed
+        assertThat(requestsTo("/contents/MAINTAINERS"), equalTo(0L));
+        assertThat(requestsTo("/contents/.catwatch.yaml"), equalTo(0L));
+        assertThat(stub.requests().stream().filter(path -> path.startsWith("/raw/")).count(),
+                equalTo((long) REPOSITORIES));
+        assertThat(counter.getCalls(), equalTo(stub.requests().size()));
+    }
+
+    @Test
+    public void testCollectedProjectsAreFlushedOnFailure() throws Exception {
+
+        // given the second project cannot be scored
+        GitHubStub failingStub = new GitHubStub("failing", 2).start();
+        Scorer failingScorer = mock(Scorer.class);
+        when(failingScorer.score(any(Project.class))).thenReturn(1).thenThrow(new IllegalStateException("failed"));
+        SnapshotWriter writer = mock(SnapshotWriter.class);
+
+        try {
+            GitHub gitHub = failingStub.gitHub(new OkHttpClient());
+            TakeSnapshotTask task = new TakeSnapshotTask(gitHub, "failing", failingScorer, new Date(),
+                    Executors.newSingleThreadExecutor(), new RateLimitBudget(0), new ApiCallCounter(),
+                    failingStub.client(gitHub, null), emptyList(), writer,
+                    ContributorProfileCache.disabled());
+
+            // when
+            try {
+                task.call();
+                fail("Exception expected");
+            } catch (Exception e) {
+                // expected
+            }
+
+            // then the project of the first repository is kept
+            verify(writer).writeProject(any(Project.class));
+            verify(writer).flush();
+        } finally {
+            failingStub.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancelledSnapshotIsNotWritten() throws Exception {
+
+        // given a snapshot that is cancelled while a repository is crawled
+        GitHubStub slowStub = new GitHubStub("cancelled", 2).latency(300).start();
+        SnapshotWriter writer = mock(SnapshotWriter.class);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        ExecutorService snapshotPool = Executors.newSingleThreadExecutor();
+
+        try {
+            GitHub gitHub = slowStub.gitHub(new OkHttpClient());
+            Future<Snapshot> snapshot = snapshotPool.submit(new TakeSnapshotTask(gitHub, "cancelled", scorer,
+                    new Date(), pool, new RateLimitBudget(0), new ApiCallCounter(), slowStub.client(gitHub, null),
+                    emptyList(), writer, ContributorProfileCache.disabled()));
+            while (slowStub.requests().stream().noneMatch(path -> path.startsWith("/repos/"))) {
+                Thread.sleep(10);
+            }
+
+            // when
+            snapshot.cancel(true);
+            snapshotPool.shutdown();
+            pool.shutdown();
+            assertThat(snapshotPool.awaitTermination(10, TimeUnit.SECONDS), equalTo(true));
+            assertThat(pool.awaitTermination(10, TimeUnit.SECONDS), equalTo(true));
+
+            // then the interrupted repository is neither written nor flushed
+            verify(writer, never()).writeProject(any(Project.class));
+            verify(writer, never()).flush();
+        } finally {
+            snapshotPool.shutdownNow();
+            pool.shutdownNow();
+            slowStub.shutdown();
+        }
+    }
+
+    private long requestsTo(String endpoint) {
+        return stub.requests().stream()
+                .filter(path -> path.startsWith("/repos/") && path.split("\\?")[0].endsWith(endpoint))
+                .count();
+    }
+
+    private long takeSnapshot(int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            OkHttpClient httpClient = new OkHttpClient();
+            GitHub gitHub = stub.gitHub(httpClient);
+            TakeSnapshotTask task = new TakeSnapshotTask(gitHub, "stuborg", scorer, new Date(), pool,
+                    new RateLimitBudget(0), new ApiCallCounter(), stub.client(gitHub, null), emptyList(),
+                    new SnapshotCollector(), ContributorProfileCache.disabled());
+
+            long start = System.nanoTime();
+            Snapshot snapshot = task.call();
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+            assertThat(snapshot.getProjectsCount(), equalTo(REPOSITORIES));
+            assertThat(snapshot.getStatistics().getTagsCount(), equalTo(REPOSITORIES));
+            return elapsedMillis;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -1,9 +1,8 @@
 package org.zalando.catwatch.backend.github;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.kohsuke.github.GHCommit;
-import org.kohsuke.github.GHRepository.Contributor;
 import org.kohsuke.github.GHTeam;
 import org.kohsuke.github.GHUser;
 import org.mockito.InjectMocks;
@@ -16,21 +15,29 @@ import org.zalando.catwatch.backend.model.Statistics;
 import org.zalando.catwatch.backend.model.util.Scorer;
 
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static java.time.Instant.now;
 import static java.util.Arrays.asList;
 import static java.util.Collections.*;
 import static java.util.Date.from;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -53,23 +60,34 @@ public class TakeSnapshotTaskTest {
 
         // given
         RepositoryWrapper repo1 = mock(RepositoryWrapper.class);
-        Contributor c1 = newContributor(11, 22, "http://a.com", 33);
+        ContributorRecord c1 = newContributor(11, 22, "http://a.com", "a");
         when(repo1.listContributors()).thenReturn(asList(c1));
 
         RepositoryWrapper repo2 = mock(RepositoryWrapper.class);
-        Contributor c2 = newContributor(44, 55, "http://b.com", 66);
+        ContributorRecord c2 = newContributor(44, 55, "http://b.com", "b");
         when(repo2.listContributors()).thenReturn(asList(c2));
 
-        List<org.zalando.catwatch.backend.model.Contributor> contributors =
-                new ArrayList<>(
-                        task.collectContributors(org(asList(repo1, repo2))));
+        StreamingGitHubClient client = mock(StreamingGitHubClient.class);
+        when(client.getProfile("a")).thenReturn(new ContributorProfile(11, "a", 33, new Date()));
+        when(client.getProfile("b")).thenReturn(new ContributorProfile(44, "b", 66, new Date()));
 
+        SnapshotCollector collector = new SnapshotCollector();
+        TakeSnapshotTask fetchingTask = new TakeSnapshotTask(null, null, scorer, from(now()),
+                MoreExecutors.newDirectExecutorService(), new RateLimitBudget(0), new ApiCallCounter(), client,
+                emptyList(), collector, ContributorProfileCache.disabled());
+
+        List<RepositoryWrapper> repos = asList(repo1, repo2);
+        int count = fetchingTask.collectContributors(org(repos), aggregate(repos));
+        List<org.zalando.catwatch.backend.model.Contributor> contributors = collector.getContributors();
+
+        assertThat(count, equalTo(2));
         assertThat(contributors, hasSize(2));
 
         org.zalando.catwatch.backend.model.Contributor c1_ = contributors.get(0);
         assertThat(c1_.getId(), equalTo(11L));
         assertThat(c1_.getOrganizationalCommitsCount(), equalTo(22));
         assertThat(c1_.getUrl(), equalTo("http://a.com"));
+        assertThat(c1_.getPersonalProjectsCount(), equalTo(33));
 
         org.zalando.catwatch.backend.model.Contributor c2_ = contributors.get(1);
         assertThat(c2_.getId(), equalTo(44L));
@@ -77,13 +95,38 @@ public class TakeSnapshotTaskTest {
         assertThat(c2_.getUrl(), equalTo("http://b.com"));
     }
 
-    private Contributor newContributor(int id, int contributions, String htmlUrl, int publicRepoCount) throws Exception {
-        Contributor c = mock(Contributor.class);
-        when(c.getId()).thenReturn(id);
-        when(c.getContributions()).thenReturn(contributions);
-        when(c.getHtmlUrl()).thenReturn(new URL(htmlUrl));
-        when(c.getPublicRepoCount()).thenReturn(publicRepoCount);
-        return c;
+    @Test
+    public void testCollectContributorsFromProfileCache() throws Exception {
+
+        // given
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        ContributorRecord cached = newContributor(11, 22, "http://a.com", "a");
+        ContributorRecord fetched = newContributor(44, 55, "http://b.com", "b");
+        when(repo.listContributors()).thenReturn(asList(cached, fetched));
+
+        ContributorProfileCache profileCache = mock(ContributorProfileCache.class);
+        when(profileCache.find(11)).thenReturn(Optional.of(new ContributorProfile(11, "cached", 77, new Date())));
+        when(profileCache.find(44)).thenReturn(Optional.empty());
+        when(profileCache.fetch("b", null)).thenReturn(new ContributorProfile(44, "fetched", 66, new Date()));
+
+        SnapshotCollector collector = new SnapshotCollector();
+        TakeSnapshotTask cachingTask = new TakeSnapshotTask(null, null, scorer, from(now()),
+                MoreExecutors.newDirectExecutorService(), new RateLimitBudget(0), new ApiCallCounter(), null,
+                emptyList(), collector, profileCache);
+
+        // when
+        List<RepositoryWrapper> repos = singletonList(repo);
+        cachingTask.collectContributors(org(repos), aggregate(repos));
+
+        // then
+        assertThat(collector.getContributors().stream().map(c -> c.getName()).collect(toList()),
+                contains("cached", "fetched"));
+        assertThat(collector.getContributors().get(0).getPersonalProjectsCount(), equalTo(77));
+        verify(profileCache, never()).fetch("a", null);
+    }
+
+    private ContributorRecord newContributor(int id, int contributions, String htmlUrl, String login) {
+        return new ContributorRecord(id, login, htmlUrl, contributions);
     }
 
     @Test
@@ -98,7 +141,7 @@ public class TakeSnapshotTaskTest {
         when(org.getLogin()).thenReturn("myLogin");
 
         // when
-        Statistics statistics = task.collectStatistics(org);
+        Statistics statistics = task.collectStatistics(org, new SnapshotAggregate());
 
         // then
         assertThat(statistics.getPublicProjectCount(), equalTo(0));
@@ -121,19 +164,21 @@ public class TakeSnapshotTaskTest {
         when(repo.getLastPushed()).thenReturn(date);
         when(repo.getPrimaryLanguage()).thenReturn("Go");
         when(repo.listLanguages()).thenReturn(toMap("C", 30, "Go", 15, "Java", 4));
-        when(repo.listCommits()).thenReturn(mockList(GHCommit.class, 2));
-        when(repo.listContributors()).thenReturn(mockList(Contributor.class, 2));
-        when(repo.getFileContent("MAINTAINERS")).thenReturn(new ByteArrayInputStream("foo\nbar".getBytes()));
-        when(repo.getFileContent(".catwatch.yaml")).thenReturn(new ByteArrayInputStream("image: test\n".getBytes()));
+        when(repo.countCommits()).thenReturn(2);
+        when(repo.listContributors()).thenReturn(mockList(ContributorRecord.class, 2));
+        Map<String, String> rootFiles = new HashMap<>();
+        rootFiles.put("MAINTAINERS", "http://a.com/raw/MAINTAINERS");
+        rootFiles.put(".catwatch.yaml", "http://a.com/raw/.catwatch.yaml");
+        when(repo.listRootFiles()).thenReturn(rootFiles);
+        when(repo.download("http://a.com/raw/MAINTAINERS")).thenReturn(content("foo\nbar"));
+        when(repo.download("http://a.com/raw/.catwatch.yaml")).thenReturn(content("image: test\n"));
         when(scorer.score(any(Project.class))).thenReturn(55);
 
         // when
-        List<Project> projects = new ArrayList<>(task.collectProjects(org(singletonList(repo))));
+        OrganizationWrapper org = org(singletonList(repo));
+        Project project = task.collectProject(org, task.collectRepository(repo));
 
         // then
-        assertThat(projects, hasSize(1));
-        Project project = projects.get(0);
-
         assertThat(project.getGitHubProjectId(), equalTo(123L));
 
         assertThat(project.getSnapshotDate().getTime(), equalTo(((Date)ReflectionTestUtils.getField(task, "snapshotDate")).getTime()));
@@ -152,6 +197,166 @@ public class TakeSnapshotTaskTest {
         assertThat(project.getImage(), equalTo("test"));
     }
 
+    @Test
+    public void testCollectRepositoryCarriesForwardUnchangedProject() throws Exception {
+
+        // given
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        when(repo.getId()).thenReturn(123);
+        when(repo.getStarsCount()).thenReturn(11);
+        when(repo.getForksCount()).thenReturn(22);
+        when(repo.getLastPushed()).thenReturn(date);
+        when(repo.listContributors()).thenReturn(mockList(ContributorRecord.class, 3));
+
+        Project previous = new Project();
+        previous.setGitHubProjectId(123);
+        previous.setStarsCount(11);
+        previous.setForksCount(22);
+        previous.setLastPushed(date.toString());
+        previous.setCommitsCount(42);
+        previous.setLanguageList(asList("Java", "Go"));
+        previous.setLanguageBytes(toMap("Java", 30L, "Go", 10L));
+        previous.setMaintainers(asList("foo"));
+        previous.setImage("test");
+
+        TakeSnapshotTask incrementalTask = new TakeSnapshotTask(null, null, scorer, from(now()),
+                MoreExecutors.newDirectExecutorService(), new RateLimitBudget(0), new ApiCallCounter(), null,
+                singletonList(previous), new SnapshotCollector(), ContributorProfileCache.disabled());
+
+        // when
+        RepositoryData data = incrementalTask.collectRepository(repo);
+
+        // then
+        assertThat(data.isUnchanged(), equalTo(true));
+        assertThat(data.getCommitsCount(), equalTo(42));
+        assertThat(data.getContributors(), hasSize(3));
+        assertThat(data.getLanguages(), equalTo(toMap("Java", 30L, "Go", 10L)));
+        assertThat(data.getMaintainers(), contains("foo"));
+        assertThat(data.getCatwatchYaml().getImage(), equalTo("test"));
+        verify(repo, never()).countCommits();
+        verify(repo, never()).listLanguages();
+        verify(repo, never()).getFileContent(anyString());
+    }
+
+    @Test
+    public void testCollectRepositoryRequestsLanguagesWithoutStoredBytes() throws Exception {
+
+        // given a project of a snapshot from before the bytes were stored
+        RepositoryWrapper repo = unchangedRepo(123);
+        when(repo.listLanguages()).thenReturn(toMap("Java", 30L, "Go", 10L));
+        Project previous = previous(123);
+        previous.setLanguageList(asList("Java", "Go"));
+
+        // when
+        RepositoryData data = incrementalTask(previous).collectRepository(repo);
+
+        // then
+        assertThat(data.isUnchanged(), equalTo(true));
+        assertThat(data.getLanguages(), equalTo(toMap("Java", 30L, "Go", 10L)));
+        verify(repo, never()).countCommits();
+    }
+
+    @Test
+    public void testCollectLanguagesOfUnchangedRepositories() throws Exception {
+
+        // given every repository is unchanged
+        Project previous1 = previous(1);
+        previous1.setLanguageList(asList("C", "Java"));
+        previous1.setLanguageBytes(toMap("C", 30L, "Java", 10L));
+        Project previous2 = previous(2);
+        previous2.setLanguageList(asList("Java"));
+        previous2.setLanguageBytes(toMap("Java", 60L));
+        TakeSnapshotTask incrementalTask = incrementalTask(previous1, previous2);
+
+        SnapshotAggregate aggregate = new SnapshotAggregate();
+        aggregate.add(incrementalTask.collectRepository(unchangedRepo(1)));
+        aggregate.add(incrementalTask.collectRepository(unchangedRepo(2)));
+
+        // when
+        List<Language> langs = new ArrayList<>(incrementalTask.collectLanguages(aggregate));
+
+        // then
+        sort(langs, (p1, p2) -> p1.getName().compareTo(p2.getName()));
+        assertThat(langs, hasSize(2));
+        assertThat(langs.get(0).getName(), equalTo("C"));
+        assertThat(langs.get(0).getPercentage(), equalTo(30));
+        assertThat(langs.get(1).getName(), equalTo("Java"));
+        assertThat(langs.get(1).getProjectsCount(), equalTo(2));
+        assertThat(langs.get(1).getPercentage(), equalTo(70));
+    }
+
+    @Test
+    public void testCollectLanguagesWithoutBytes() throws Exception {
+
+        // given
+        List<RepositoryWrapper> repos = asList(repo("Java", 0L), repo("Go", 0L));
+
+        // when
+        List<Language> langs = new ArrayList<>(task.collectLanguages(aggregate(repos)));
+
+        // then
+        assertThat(langs, hasSize(2));
+        assertThat(langs.get(0).getPercentage(), equalTo(0));
+        assertThat(langs.get(1).getPercentage(), equalTo(0));
+    }
+
+    @Test
+    public void testMissingMetadataFilesAreNotRequested() throws Exception {
+
+        // given
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        when(repo.listRootFiles()).thenReturn(singletonMap("README.md", "http://a.com/raw/README.md"));
+
+        // when
+        RepositoryData data = task.collectRepository(repo);
+
+        // then
+        assertThat(data.getMaintainers(), empty());
+        assertThat(data.getCatwatchYaml(), nullValue());
+        verify(repo, never()).getFileContent(anyString());
+        verify(repo, never()).download(anyString());
+    }
+
+    @Test
+    public void testMetadataFilesAreRequestedWithoutRootListing() throws Exception {
+
+        // given
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        when(repo.listRootFiles()).thenThrow(new IOException("failed"));
+        when(repo.getFileContent("MAINTAINERS")).thenReturn(new ByteArrayInputStream("foo".getBytes()));
+        when(repo.getFileContent(".catwatch.yaml")).thenThrow(new FileNotFoundException());
+
+        // when
+        RepositoryData data = task.collectRepository(repo);
+
+        // then
+        assertThat(data.getMaintainers(), contains("foo"));
+        assertThat(data.getCatwatchYaml(), nullValue());
+    }
+
+    @Test
+    public void testIsUnchanged() throws Exception {
+
+        // given
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        when(repo.getStarsCount()).thenReturn(11);
+        when(repo.getForksCount()).thenReturn(22);
+        when(repo.getLastPushed()).thenReturn(date);
+
+        Project previous = new Project();
+        previous.setStarsCount(11);
+        previous.setForksCount(22);
+        previous.setLastPushed(date.toString());
+        previous.setCommitsCount(42);
+
+        // when then
+        assertThat(TakeSnapshotTask.isUnchanged(null, repo), equalTo(false));
+        assertThat(TakeSnapshotTask.isUnchanged(previous, repo), equalTo(true));
+
+        previous.setStarsCount(12);
+        assertThat(TakeSnapshotTask.isUnchanged(previous, repo), equalTo(false));
+    }
+
     @Test
     public void testCollectLanguages() throws Exception {
 
@@ -161,7 +366,7 @@ public class TakeSnapshotTaskTest {
                 repo("C", 30, "Go", 15, "Java", 4), //
                 repo("Java", 2));
         // when
-        List<Language> langs = new ArrayList<>(task.collectLanguages(org(repos)));
+        List<Language> langs = new ArrayList<>(task.collectLanguages(aggregate(repos)));
 
         // then
         assertThat(langs, hasSize(3));
@@ -180,6 +385,31 @@ public class TakeSnapshotTaskTest {
         assertThat(langs.get(2).getPercentage(), equalTo(10));
     }
 
+    private RepositoryWrapper unchangedRepo(int id) throws IOException {
+        RepositoryWrapper repo = mock(RepositoryWrapper.class);
+        when(repo.getId()).thenReturn(id);
+        when(repo.getStarsCount()).thenReturn(11);
+        when(repo.getForksCount()).thenReturn(22);
+        when(repo.getLastPushed()).thenReturn(date);
+        return repo;
+    }
+
+    private Project previous(int id) {
+        Project previous = new Project();
+        previous.setGitHubProjectId(id);
+        previous.setStarsCount(11);
+        previous.setForksCount(22);
+        previous.setLastPushed(date.toString());
+        previous.setCommitsCount(42);
+        return previous;
+    }
+
+    private TakeSnapshotTask incrementalTask(Project... previous) {
+        return new TakeSnapshotTask(null, null, scorer, from(now()),
+                MoreExecutors.newDirectExecutorService(), new RateLimitBudget(0), new ApiCallCounter(), null,
+                asList(previous), new SnapshotCollector(), ContributorProfileCache.disabled());
+    }
+
     private OrganizationWrapper org(List<RepositoryWrapper> repos) {
         OrganizationWrapper org = mock(OrganizationWrapper.class);
         when(org.listRepositories()).thenReturn(repos);
@@ -188,6 +418,17 @@ public class TakeSnapshotTaskTest {
         return org;
     }
 
+    /**
+     * @return Returns the sums of repositories without files or tags.
+     */
+    private SnapshotAggregate aggregate(List<RepositoryWrapper> repos) {
+        SnapshotAggregate result = new SnapshotAggregate();
+        for (RepositoryWrapper repo : repos) {
+            result.add(new RepositoryData(repo, repo.listContributors(), 0, repo.listLanguages(), 0, emptyList(), null));
+        }
+        return result;
+    }
+
     private RepositoryWrapper repo(Object... keyAndValuePairs) {
         RepositoryWrapper repo = mock(RepositoryWrapper.class);
         when(repo.listLanguages()).thenReturn(toMap(keyAndValuePairs));
@@ -218,4 +459,8 @@ public class TakeSnapshotTaskTest {
         }
         return result;
     }
+
+    private InputStream content(String text) {
+        return new ByteArrayInputStream(text.getBytes());
+    }
 }
@@ -0,0 +1,76 @@
+package org.zalando.catwatch.backend.model.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+import static java.util.Arrays.asList;
+import static org.zalando.catwatch.backend.util.JavaScriptExecutor.newExecutor;
+
+/**
+ * Compares the scores per second of evaluating the scoring function with a
+ * new script engine per project and of the compiled function of the
+ * {@link Scorer}.
+ * <p>
+ * Run with
+ * <pre>
+ * mvn -Pbenchmark clean test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     "-Dexec.args=-cp %classpath org.openjdk.jmh.Main ScorerBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ScorerBenchmark {
+
+    private String scoringProject;
+
+    private Scorer scorer;
+
+    private Project project;
+
+    @Setup
+    public void setUp() throws IOException {
+        // the default scoring function
+        Properties properties = new Properties();
+        try (InputStream in = ScorerBenchmark.class.getResourceAsStream("/application.properties")) {
+            properties.load(in);
+        }
+        scoringProject = properties.getProperty("scoring.project");
+
+        scorer = new Scorer();
+        scorer.setScoringProject(scoringProject);
+        project = new ProjectBuilder().starsCount(20).forksCount(10).contributorsCount(5).commitsCount(230)
+                .lastPushed("Mon Feb 01 10:00:00 CET 2016").create();
+        project.setMaintainers(new ArrayList<>(asList("alice", "bob")));
+    }
+
+    /**
+     * How {@link Scorer#score(Project)} evaluated the function before.
+     */
+    @Benchmark
+    public int scoreWithNewEngine() {
+        String jsCode = "";
+        jsCode += "var scoring = " + scoringProject + ";\n";
+        jsCode += "result.value = scoring(project);";
+
+        return ((Number) newExecutor(jsCode).bind("project", project).execute()).intValue();
+    }
+
+    @Benchmark
+    public int scoreWithCompiledFunction() {
+        return scorer.score(project);
+    }
+}
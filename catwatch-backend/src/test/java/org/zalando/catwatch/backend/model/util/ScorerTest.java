@@ -30,4 +30,20 @@ public class ScorerTest {
         // then
         assertEquals(0, scorer.score(project));
     }
+
+    @Test
+    public void testScoreWithChangedScoringProject() throws Exception {
+
+        // given
+        Scorer scorer = new Scorer();
+        scorer.setScoringProject("function(project) { return project.starsCount; }");
+        Project project = new ProjectBuilder().starsCount(20).forksCount(10).create();
+        assertEquals(20, scorer.score(project));
+
+        // when
+        scorer.setScoringProject("function(project) { return project.forksCount; }");
+
+        // then
+        assertEquals(10, scorer.score(project));
+    }
 }
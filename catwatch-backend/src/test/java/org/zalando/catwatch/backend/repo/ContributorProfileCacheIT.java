@@ -0,0 +1,81 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.catwatch.backend.github.ContributorProfile;
+import org.zalando.catwatch.backend.github.ContributorProfileCache;
+import org.zalando.catwatch.backend.github.StreamingGitHubClient;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ContributorProfileCacheIT extends AbstractRepositoryIT {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ContributorProfileCache cache;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("delete from contributor_profile");
+        cache = new ContributorProfileCache(jdbcTemplate, 7);
+    }
+
+    @Test
+    public void testFetchAndFind() throws Exception {
+
+        // given
+        StreamingGitHubClient client = mock(StreamingGitHubClient.class);
+        when(client.getProfile("alice")).thenReturn(new ContributorProfile(42, "Alice", 3, new Date()));
+
+        // when
+        cache.fetch("alice", client);
+        when(client.getProfile("alice")).thenReturn(new ContributorProfile(42, "Alice Smith", 3, new Date()));
+        cache.fetch("alice", client);
+
+        // then
+        Optional<ContributorProfile> profile = cache.find(42);
+        assertThat(profile.isPresent(), equalTo(true));
+        assertThat(profile.get().getName(), equalTo("Alice Smith"));
+        assertThat(profile.get().getPublicRepoCount(), equalTo(3));
+        assertThat(cache.find(43).isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void testExpiredProfileIsNotFound() throws Exception {
+
+        // given profiles fetched 6 and 9 days ago
+        insert(1, 6);
+        insert(2, 9);
+
+        // then
+        assertThat(cache.find(1).isPresent(), equalTo(true));
+        assertThat(cache.find(2).isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void testDisabledCacheKeepsNothing() throws Exception {
+
+        // given
+        insert(1, 0);
+
+        // then
+        assertThat(new ContributorProfileCache(jdbcTemplate, 0).find(1).isPresent(), equalTo(false));
+    }
+
+    private void insert(long id, int daysAgo) {
+        jdbcTemplate.update("insert into contributor_profile (id, name, public_repo_count, fetched) values (?, ?, ?, ?)",
+                id, "contributor" + id, 1,
+                new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo)));
+    }
+}
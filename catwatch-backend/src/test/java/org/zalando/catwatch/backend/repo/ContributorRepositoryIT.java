@@ -20,6 +20,9 @@ public class ContributorRepositoryIT extends AbstractRepositoryIT {
 	@Autowired
 	private ContributorRepository repository;
 
+	@Autowired
+	private SnapshotCatalog catalog;
+
 	public ContributorBuilder newContributor() {
 		return new ContributorBuilder(repository);
 	}
@@ -134,6 +137,30 @@ public class ContributorRepositoryIT extends AbstractRepositoryIT {
 		}
 	}
 
+	@Test
+	public void findAllTimeTopContributors_PagesOfPublishedSnapshots() throws Exception {
+
+		// given the top contributors belong to a snapshot that is still being written
+		repository.deleteAll();
+		Contributor ca1 = newContributor().days(1).orgCommits(10).organizationName("published").save();
+		Contributor ca2 = newContributor().days(1).orgCommits(9).organizationName("published").save();
+		/* no var ass. */ newContributor().days(1).orgCommits(30).organizationName("writing").save();
+		/* no var ass. */ newContributor().days(1).orgCommits(20).organizationName("writing").save();
+		catalog.begin("writing", ca1.getSnapshotDate());
+
+		try {
+			// when
+			List<Contributor> contributors = repository.findAllTimeTopContributors(null, ca1.getSnapshotDate(), null,
+					0, 2);
+
+			// then the page is full
+			assertContributors(contributors, ca1, ca2);
+		} finally {
+			// the contributor lookups of the other tests use the catalog as soon as it is not empty
+			catalog.deleteAll();
+		}
+	}
+
 	@Test
 	public void findAllTimeTopContributors_FilterByOrganizationId() throws Exception {
 
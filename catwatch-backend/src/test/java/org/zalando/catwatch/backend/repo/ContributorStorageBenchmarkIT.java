@@ -0,0 +1,185 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.zalando.catwatch.backend.model.Contributor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the size of the stored contributors and the time of the
+ * contributor queries of the contributor table, a row per contributor and
+ * snapshot, and of the {@link ContributorVersions}, a row per change.
+ * <p>
+ * The synthetic history has a daily snapshot over three years, a contributor
+ * joins every day for the first months and changes its counts every 1 to 30
+ * days. Skipped unless started with -Dbenchmark=true, e.g.
+ * <pre>
+ * mvn verify -Dit.test=ContributorStorageBenchmarkIT -Dbenchmark=true
+ * mvn verify -Dit.test=ContributorStorageBenchmarkIT -Dbenchmark=true -Dspring.profiles.active=postgresql
+ * </pre>
+ * The contributor table is queried through the repository like the
+ * application does, i.e. including the mapping of Hibernate. The sizes in
+ * bytes are those of the whole tables, PostgreSQL only. With the delta
+ * storage the contributor table is emptied by the import of
+ * {@link ContributorVersions#importContributors()}, so the versions replace
+ * the table instead of adding to it.
+ */
+public class ContributorStorageBenchmarkIT extends AbstractRepositoryIT {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContributorStorageBenchmarkIT.class);
+
+    private static final long ORGANIZATION_ID = 4711;
+    private static final String ORGANIZATION = "benchmark-contributors";
+    private static final int SNAPSHOTS = 3 * 365;
+    private static final int CONTRIBUTORS = 200;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    private ContributorVersions versions;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+        versions = new ContributorVersions(jdbcTemplate, transactionManager);
+        clean();
+    }
+
+    @After
+    public void clean() {
+        jdbcTemplate.update("delete from contributor where organization_id = ?", ORGANIZATION_ID);
+        jdbcTemplate.update("delete from contributor_version where organization_id = ?", ORGANIZATION_ID);
+        jdbcTemplate.update("delete from contributor_snapshot where organization_id = ?", ORGANIZATION_ID);
+    }
+
+    @Test
+    public void benchmarkContributorStorage() {
+
+        // write
+        long tableNanos = write(bulkWriter::insertContributors);
+        long versionsNanos = write(versions::insertContributors);
+        logger.info("write {} snapshots: table {} ms, versions {} ms", SNAPSHOTS, tableNanos / 1000000,
+                versionsNanos / 1000000);
+
+        // size
+        logger.info("rows: table {}, versions {} and {} snapshots",
+                count("contributor"), count("contributor_version"), count("contributor_snapshot"));
+        if (isPostgreSQL()) {
+            logger.info("bytes: table {}, versions {}", size("contributor"),
+                    size("contributor_version") + size("contributor_snapshot"));
+        }
+
+        // query
+        Date latest = date(SNAPSHOTS - 1);
+        Date yearAgo = date(SNAPSHOTS - 1 - 365);
+        Date monthAgo = date(SNAPSHOTS - 1 - 30);
+        Map<String, Function<ContributorRepositoryCustom, List<Contributor>>> queries = new LinkedHashMap<>();
+        queries.put("top 10 contributors of the latest snapshot",
+                repository -> repository.findAllTimeTopContributors(ORGANIZATION_ID, latest, null, 0, 10));
+        queries.put("all contributors of a snapshot a year ago",
+                repository -> repository.findAllTimeTopContributors(ORGANIZATION_ID, yearAgo, null, null, null));
+        queries.put("time series of the last month",
+                repository -> repository.findContributorsTimeSeries(ORGANIZATION_ID, monthAgo, latest, null));
+        queries.put("time series of the last year",
+                repository -> repository.findContributorsTimeSeries(ORGANIZATION_ID, yearAgo, latest, null));
+        queries.put("contributors of the organization in the last month",
+                repository -> repository.findContributorsByOrganizationAndDate(singletonList(ORGANIZATION),
+                        monthAgo, latest));
+
+        queries.forEach((name, query) -> {
+            List<Contributor> tableResult = query.apply(contributorRepository);
+            List<Contributor> versionsResult = query.apply(versions);
+            assertThat(name, versionsResult.size(), equalTo(tableResult.size()));
+            logger.info("{} ({} rows): table {} ms, versions {} ms", name, tableResult.size(),
+                    millis(() -> query.apply(contributorRepository)), millis(() -> query.apply(versions)));
+        });
+    }
+
+    private long write(Consumer<List<Contributor>> writer) {
+        long start = System.nanoTime();
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            writer.accept(contributors(i));
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return milliseconds of a round on average
+     */
+    private static String millis(Runnable query) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            query.run();
+        }
+        return String.format("%.2f", (System.nanoTime() - start) / 1000000.0 / ROUNDS);
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table + " where organization_id = ?",
+                Integer.class, ORGANIZATION_ID);
+    }
+
+    /**
+     * @return bytes of the table with its indexes and partitions
+     */
+    private long size(String table) {
+        return jdbcTemplate.queryForObject("select pg_total_relation_size(?::regclass)"
+                + " + coalesce((select sum(pg_total_relation_size(inhrelid)) from pg_inherits"
+                + " where inhparent = ?::regclass), 0)", Long.class, table, table);
+    }
+
+    private boolean isPostgreSQL() {
+        return "PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName()));
+    }
+
+    private static List<Contributor> contributors(int i) {
+        List<Contributor> contributors = new ArrayList<>();
+        for (int id = 0; id < CONTRIBUTORS && id <= i; id++) {
+            Contributor contributor = new Contributor(id, ORGANIZATION_ID, date(i));
+            contributor.setName("contributor" + id);
+            contributor.setOrganizationName(ORGANIZATION);
+            contributor.setUrl("https://github.com/contributor" + id);
+            contributor.setOrganizationalCommitsCount(id * 10 + i / (id % 30 + 1));
+            contributor.setOrganizationalProjectsCount(1 + i / 365);
+            contributor.setPersonalProjectsCount(id % 10);
+            contributors.add(contributor);
+        }
+        return contributors;
+    }
+
+    private static Date date(int i) {
+        return Date.from(Instant.parse("2013-01-01T06:00:00Z").plus(i, DAYS));
+    }
+}
@@ -0,0 +1,265 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.zalando.catwatch.backend.model.Contributor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks that the {@link ContributorVersions} return the same contributors
+ * as the contributor table, the application context itself uses the table.
+ */
+public class ContributorVersionsIT extends AbstractRepositoryIT {
+
+    private static final String ORGANIZATION = "versioned";
+    private static final String OTHER_ORGANIZATION = "other-versioned";
+    private static final int SNAPSHOTS = 6;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    private ContributorVersions versions;
+
+    @Before
+    public void setUp() {
+        versions = new ContributorVersions(jdbcTemplate, transactionManager);
+        clean();
+    }
+
+    @After
+    public void clean() {
+        contributorRepository.deleteAll();
+        versions.deleteAll();
+    }
+
+    @Test
+    public void testSameContributorsAsTable() {
+
+        // given
+        insertIntoTable(0, SNAPSHOTS);
+
+        // when
+        int imported = versions.importContributors();
+
+        // then the contributor table is moved to the versions
+        assertThat(imported, equalTo(SNAPSHOTS * 2));
+        assertThat(contributorRepository.count(), equalTo(0L));
+        // alice 1, bob 3, carol 2 (absent in between), dave 6
+        assertThat(jdbcTemplate.queryForObject("select count(*) from contributor_version", Integer.class),
+                equalTo(12));
+
+        // and the versions hold the same contributors
+        insertIntoTable(0, SNAPSHOTS);
+        assertSameContributors();
+    }
+
+    @Test
+    public void testImportOnce() {
+
+        // given
+        insertIntoTable(0, SNAPSHOTS);
+        versions.importContributors();
+
+        // when
+        int imported = versions.importContributors();
+
+        // then
+        assertThat(imported, equalTo(0));
+        insertIntoTable(0, SNAPSHOTS);
+        assertSameContributors();
+    }
+
+    @Test
+    public void testImportOlderSnapshots() {
+
+        // given versions of the later snapshots and a table with the earlier ones
+        for (int i = 3; i < SNAPSHOTS; i++) {
+            versions.insertContributors(snapshot(i));
+        }
+        insertIntoTable(0, 3);
+
+        // when
+        int imported = versions.importContributors();
+
+        // then
+        assertThat(imported, equalTo(3 * 2));
+        insertIntoTable(0, SNAPSHOTS);
+        assertSameContributors();
+    }
+
+    @Test
+    public void testInsertSnapshotsOutOfOrder() {
+
+        // given
+        insertIntoTable(0, SNAPSHOTS);
+
+        // when
+        for (int i : new int[]{5, 0, 3, 1, 4, 2}) {
+            versions.insertContributors(snapshot(i));
+        }
+
+        // then
+        assertSameContributors();
+    }
+
+    @Test
+    public void testInsertSnapshotInBatches() {
+
+        // given
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            bulkWriter.insertContributors(snapshot(i));
+            List<Contributor> snapshot = snapshot(i);
+
+            // when
+            versions.insertContributors(snapshot.subList(0, 2));
+            versions.insertContributors(snapshot.subList(2, snapshot.size()));
+        }
+
+        // then
+        assertSameContributors();
+    }
+
+    @Test
+    public void testDeleteSnapshot() {
+
+        // given
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            bulkWriter.insertContributors(snapshot(i));
+            versions.insertContributors(snapshot(i));
+        }
+
+        // when an interrupted and an expired snapshot are removed
+        int latest = versions.deleteSnapshot(ORGANIZATION, date(SNAPSHOTS - 1));
+        int expired = versions.deleteSnapshot(ORGANIZATION, date(2));
+
+        // then
+        assertThat(latest, equalTo(bulkWriter.deleteContributors(ORGANIZATION, date(SNAPSHOTS - 1))));
+        assertThat(expired, equalTo(bulkWriter.deleteContributors(ORGANIZATION, date(2))));
+        assertSameContributors();
+
+        // when the interrupted snapshot is taken again
+        List<Contributor> snapshot = snapshot(SNAPSHOTS - 1).stream()
+                .filter(contributor -> contributor.getOrganizationName().equals(ORGANIZATION)).collect(toList());
+        bulkWriter.insertContributors(snapshot);
+        versions.insertContributors(snapshot);
+
+        // then
+        assertSameContributors();
+    }
+
+    /**
+     * Inserts the snapshots from first to before last into the contributor
+     * table, the application context does not use the versions.
+     */
+    private void insertIntoTable(int first, int last) {
+        for (int i = first; i < last; i++) {
+            bulkWriter.insertContributors(snapshot(i));
+        }
+    }
+
+    private void assertSameContributors() {
+        Long organizationId = contributorRepository.findOrganizationId(ORGANIZATION);
+        assertThat(versions.findOrganizationId(ORGANIZATION), equalTo(organizationId));
+        assertThat(versions.findOrganizationId("unknown"), equalTo(-1L));
+
+        for (int i = -1; i <= SNAPSHOTS; i++) {
+            Date date = new Date(date(i).getTime() + 1000);
+            assertThat(versions.findPreviousSnapShotDate(date),
+                    equalTo(contributorRepository.findPreviousSnapShotDate(date)));
+            assertThat(versions.findPreviousSnapShotDate(OTHER_ORGANIZATION, date),
+                    equalTo(contributorRepository.findPreviousSnapShotDate(OTHER_ORGANIZATION, date)));
+            assertThat(rows(versions.findAllTimeTopContributors(organizationId, date(i), null, null, null)),
+                    equalTo(rows(contributorRepository.findAllTimeTopContributors(organizationId, date(i), null,
+                            null, null))));
+            assertThat(rows(versions.findAllTimeTopContributors(organizationId, date(i), null, 1, 1)),
+                    equalTo(rows(contributorRepository.findAllTimeTopContributors(organizationId, date(i), null,
+                            1, 1))));
+            assertThat(rows(versions.findAllTimeTopContributors(null, date(i), "a", null, null)),
+                    containsInAnyOrder(rows(contributorRepository.findAllTimeTopContributors(null, date(i), "a",
+                            null, null)).toArray()));
+        }
+        assertThat(versions.findPreviousSnapShotDate(null), equalTo(contributorRepository.findPreviousSnapShotDate(null)));
+
+        assertThat(rows(versions.findContributorsTimeSeries(organizationId, date(1), date(4), null)),
+                equalTo(rows(contributorRepository.findContributorsTimeSeries(organizationId, date(1), date(4),
+                        null))));
+        assertThat(rows(versions.findContributorsTimeSeries(organizationId, null, date(3), "b")),
+                equalTo(rows(contributorRepository.findContributorsTimeSeries(organizationId, null, date(3), "b"))));
+        assertThat(rows(versions.findContributorsTimeSeries(null, date(2), null, null)),
+                containsInAnyOrder(rows(contributorRepository.findContributorsTimeSeries(null, date(2), null, null))
+                        .toArray()));
+
+        List<String> organizations = asList(ORGANIZATION, OTHER_ORGANIZATION);
+        assertThat(rows(versions.findContributorsByOrganizationAndDate(organizations, date(0), date(3))),
+                containsInAnyOrder(rows(contributorRepository.findContributorsByOrganizationAndDate(organizations,
+                        date(0), date(3))).toArray()));
+        assertThat(rows(versions.findContributorsByOrganizationAndDate(asList(ORGANIZATION), date(2), date(5))),
+                containsInAnyOrder(rows(contributorRepository.findContributorsByOrganizationAndDate(
+                        asList(ORGANIZATION), date(2), date(5))).toArray()));
+    }
+
+    /**
+     * Contributors of the i-th snapshot: alice never changes, bob every
+     * other snapshot, carol is absent in the middle snapshots and dave of
+     * the other organization changes every snapshot.
+     */
+    private static List<Contributor> snapshot(int i) {
+        List<Contributor> contributors = new ArrayList<>();
+        contributors.add(contributor(1, 10, ORGANIZATION, i, "alice", 5));
+        contributors.add(contributor(2, 10, ORGANIZATION, i, "bob", 10 + i / 2));
+        if (i < 2 || i > 3) {
+            contributors.add(contributor(3, 10, ORGANIZATION, i, "carol", 7));
+        }
+        contributors.add(contributor(1, 20, OTHER_ORGANIZATION, i, "dave", i));
+        return contributors;
+    }
+
+    private static Contributor contributor(long id, long organizationId, String organizationName, int i,
+                                           String name, int organizationalCommitsCount) {
+        Contributor contributor = new Contributor(id, organizationId, date(i));
+        contributor.setName(name);
+        contributor.setOrganizationName(organizationName);
+        contributor.setUrl("https://github.com/" + name);
+        contributor.setOrganizationalCommitsCount(organizationalCommitsCount);
+        contributor.setOrganizationalProjectsCount(1);
+        contributor.setPersonalProjectsCount(2);
+        return contributor;
+    }
+
+    private static Date date(int i) {
+        return Date.from(Instant.parse("2015-01-01T06:00:00Z").plus(i, DAYS));
+    }
+
+    private static List<String> rows(List<Contributor> contributors) {
+        return contributors.stream()
+                .map(c -> c.getId() + "/" + c.getOrganizationId() + "/" + c.getSnapshotDate().getTime() + "/"
+                        + c.getName() + "/" + c.getOrganizationName() + "/" + c.getUrl() + "/"
+                        + c.getOrganizationalCommitsCount() + "/" + c.getOrganizationalProjectsCount() + "/"
+                        + c.getPersonalCommitsCount() + "/" + c.getPersonalProjectsCount())
+                .collect(toList());
+    }
+}
@@ -0,0 +1,61 @@
+package org.zalando.catwatch.backend.repo;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.catwatch.backend.github.JdbcConditionalRequestStore;
+import org.zalando.catwatch.backend.github.StoredResponse;
+
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JdbcConditionalRequestStoreIT extends AbstractRepositoryIT {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testSaveAndFind() {
+
+        // given
+        JdbcConditionalRequestStore store = new JdbcConditionalRequestStore(jdbcTemplate);
+        jdbcTemplate.update("delete from conditional_request");
+
+        // when
+        store.save("https://api.github.com/orgs/zalando", new StoredResponse("\"v1\"", null, null,
+                "application/json", "old".getBytes()));
+        store.save("https://api.github.com/orgs/zalando", new StoredResponse("\"v2\"", "yesterday", "<next>",
+                "application/json", "new".getBytes()));
+
+        // then
+        Optional<StoredResponse> response = store.find("https://api.github.com/orgs/zalando");
+        assertThat(response.isPresent(), equalTo(true));
+        assertThat(response.get().getEtag(), equalTo("\"v2\""));
+        assertThat(response.get().getLastModified(), equalTo("yesterday"));
+        assertThat(response.get().getLink(), equalTo("<next>"));
+        assertThat(new String(response.get().getBody()), equalTo("new"));
+        assertThat(store.find("https://api.github.com/orgs/unknown").isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void testSaveAndFindLongKey() {
+
+        // given a URL longer than any index limit, followed by the hash of the Authorization header
+        JdbcConditionalRequestStore store = new JdbcConditionalRequestStore(jdbcTemplate);
+        jdbcTemplate.update("delete from conditional_request");
+        String key = "https://api.github.com/search/repositories?q=" + Strings.repeat("a", 5000) + " "
+                + Strings.repeat("0", 64);
+
+        // when
+        store.save(key, new StoredResponse("\"v1\"", null, null, "application/json", "body".getBytes()));
+
+        // then
+        Optional<StoredResponse> response = store.find(key);
+        assertThat(response.isPresent(), equalTo(true));
+        assertThat(response.get().getEtag(), equalTo("\"v1\""));
+        assertThat(store.find(key + "b").isPresent(), equalTo(false));
+    }
+}
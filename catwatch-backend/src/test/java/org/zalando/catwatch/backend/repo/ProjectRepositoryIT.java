@@ -12,6 +12,9 @@ import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
@@ -105,4 +108,33 @@ public class ProjectRepositoryIT extends AbstractRepositoryIT {
         // then
         assertEquals(1, projects.size());
     }
+
+    @Test
+    public void testFindProjectsOfLatestSnapshot() {
+
+        // given
+        repository.deleteAll();
+
+        new ProjectBuilder(repository)
+            .snapshotDate(new Date(1000))
+            .organizationName("test_org")
+            .name("p1")
+            .save();
+
+        new ProjectBuilder(repository)
+            .snapshotDate(new Date(2000))
+            .organizationName("test_org")
+            .name("p1")
+            .languages(asList("Java", "Go"))
+            .save();
+
+        // when
+        List<Project> projects = repository.findProjectsOfLatestSnapshot("test_org");
+
+        // then collections are available outside of the transaction
+        assertEquals(1, projects.size());
+        assertThat(projects.get(0).getSnapshotDate().getTime(), equalTo(2000L));
+        assertThat(projects.get(0).getLanguageList(), containsInAnyOrder("Java", "Go"));
+        assertThat(projects.get(0).getMaintainers(), empty());
+    }
 }
@@ -0,0 +1,235 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.zalando.catwatch.backend.CatWatchBackendApplication;
+import org.zalando.catwatch.backend.repo.StatementRecorder.RecordedStatement;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static java.util.Arrays.asList;
+
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the statements of the read paths use an index once the
+ * history of snapshots grew, i.e. that their plan has no sequential scan of
+ * the tables. The statements are recorded with their parameters while the
+ * repositories, the {@link SnapshotCatalog} and the
+ * {@link ContributorVersions} run, see {@link StatementRecorder}.
+ * <p>
+ * The synthetic history is inserted and analyzed in a transaction that is
+ * rolled back. Skipped unless the database is PostgreSQL, e.g.
+ * <pre>
+ * mvn verify -Dit.test=QueryPlanIT -Dspring.profiles.active=postgresql
+ * </pre>
+ * It is part of the {@link org.zalando.catwatch.backend.PostgresTestSuiteIT} as well.
+ */
+@SpringApplicationConfiguration(classes = {CatWatchBackendApplication.class, StatementRecorder.class})
+public class QueryPlanIT extends AbstractRepositoryIT {
+
+    private static final int ORGANIZATIONS = 20;
+    private static final int SNAPSHOTS = 200;
+    private static final int PROJECTS = 50;
+    private static final int CONTRIBUTORS = 100;
+
+    private static final String TABLES = "project|language_list|language_bytes|maintainers|contributor"
+            + "|contributor_version|contributor_snapshot|statistics|snapshot_catalog";
+
+    private static final String ORGANIZATION = "plan-org-7";
+    private static final long ORGANIZATION_ID = 1000007;
+    private static final Date DATE = Timestamp.valueOf("2015-05-01 00:00:00");
+    private static final Date DATE_PLUS_HALF_DAY = Timestamp.valueOf("2015-05-01 12:00:00");
+    private static final Date DATE_PLUS_TWO_DAYS = Timestamp.valueOf("2015-05-03 00:00:00");
+    private static final Date DATE_PLUS_WEEK = Timestamp.valueOf("2015-05-08 00:00:00");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SnapshotPartitions partitions;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private SnapshotCatalog catalog;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    @Before
+    public void skipUnlessPostgreSQL() {
+        assumeTrue("PostgreSQL".equals(jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName())));
+    }
+
+    @Test
+    public void testReadPathsUseIndexes() {
+
+        // given a history of snapshots and the read paths, the statements are recorded as they are sent
+        List<String> organizations = asList(ORGANIZATION, "plan-org-8");
+        ContributorVersions versions = new ContributorVersions(jdbcTemplate, transactionManager);
+        Map<String, Runnable> readPaths = new LinkedHashMap<>();
+        readPaths.put("projects of the latest snapshot",
+                () -> projectRepository.findProjectsOfLatestSnapshot(ORGANIZATION));
+        readPaths.put("projects of a snapshot", () -> projectRepository.findProjects(ORGANIZATION, DATE,
+                Optional.of("project-1"), Optional.of("Java")));
+        readPaths.put("project of a snapshot by GitHub id",
+                () -> projectRepository.findProjectOfSnapshot(ORGANIZATION, DATE, 17));
+        readPaths.put("projects of organizations and dates",
+                () -> projectRepository.findProjectsByOrganizationNameAndDateRange(organizations, DATE,
+                        DATE_PLUS_TWO_DAYS));
+        readPaths.put("projects of dates",
+                () -> projectRepository.findProjectsByDateRange(DATE, DATE_PLUS_HALF_DAY));
+        readPaths.put("organization id", () -> contributorRepository.findOrganizationId(ORGANIZATION));
+        readPaths.put("previous snapshot of contributors",
+                () -> contributorRepository.findPreviousSnapShotDate(DATE));
+        readPaths.put("previous snapshot of contributors of an organization",
+                () -> contributorRepository.findPreviousSnapShotDate(ORGANIZATION, DATE));
+        readPaths.put("top contributors of a snapshot",
+                () -> contributorRepository.findAllTimeTopContributors(ORGANIZATION_ID, DATE, null, 0, 10));
+        readPaths.put("contributors time series",
+                () -> contributorRepository.findContributorsTimeSeries(ORGANIZATION_ID, DATE, DATE_PLUS_WEEK, null));
+        readPaths.put("contributors of organizations and dates",
+                () -> contributorRepository.findContributorsByOrganizationAndDate(organizations, DATE,
+                        DATE_PLUS_TWO_DAYS));
+        readPaths.put("versions: organization id", () -> versions.findOrganizationId(ORGANIZATION));
+        readPaths.put("versions: previous snapshot of an organization",
+                () -> versions.findPreviousSnapShotDate(ORGANIZATION, DATE));
+        readPaths.put("versions: previous snapshot of uncataloged organizations",
+                () -> versions.findPreviousUncatalogedSnapShotDate(DATE));
+        readPaths.put("versions: top contributors of a snapshot",
+                () -> versions.findAllTimeTopContributors(ORGANIZATION_ID, DATE, null, 0, 10));
+        readPaths.put("versions: contributors time series",
+                () -> versions.findContributorsTimeSeries(ORGANIZATION_ID, DATE, DATE_PLUS_WEEK, null));
+        readPaths.put("versions: contributors of organizations and dates",
+                () -> versions.findContributorsByOrganizationAndDate(organizations, DATE, DATE_PLUS_TWO_DAYS));
+        readPaths.put("latest statistics", () -> statisticsRepository
+                .findByOrganizationNameOrderByKeySnapshotDateDesc(ORGANIZATION, new PageRequest(0, 1)));
+        readPaths.put("statistics of dates",
+                () -> statisticsRepository.findStatisticsByOrganizationAndDate(ORGANIZATION, DATE, DATE_PLUS_WEEK));
+        readPaths.put("statistics before a date",
+                () -> statisticsRepository.getLatestSnaphotDateBefore(ORGANIZATION, DATE));
+        readPaths.put("earliest statistics", () -> statisticsRepository.getEarliestSnaphotDate(ORGANIZATION));
+        readPaths.put("catalog: latest published snapshot", () -> catalog.findLatestPublished(ORGANIZATION));
+        readPaths.put("catalog: latest snapshot being written", () -> catalog.findLatestWriting(ORGANIZATION));
+        readPaths.put("catalog: published snapshot at a date",
+                () -> catalog.findLatestPublishedBefore(ORGANIZATION, DATE));
+        readPaths.put("catalog: published snapshot of any organization at a date",
+                () -> catalog.findLatestPublishedBefore(DATE));
+        readPaths.put("catalog: organization", () -> catalog.contains(ORGANIZATION));
+        // last, they remove a snapshot of the history
+        readPaths.put("projects of a resumed snapshot", () -> bulkWriter.deleteProjects(ORGANIZATION, DATE));
+        readPaths.put("contributors of a resumed snapshot",
+                () -> bulkWriter.deleteContributors(ORGANIZATION, DATE));
+        readPaths.put("versions: contributors of a resumed snapshot",
+                () -> versions.deleteSnapshot(ORGANIZATION, DATE));
+
+        // when
+        Map<String, String> plans = new LinkedHashMap<>();
+        new TransactionTemplate(transactionManager).execute(status -> {
+            insertHistory();
+            readPaths.forEach((name, readPath) -> {
+                Set<String> explained = new HashSet<>();
+                List<RecordedStatement> statements = StatementRecorder.record(readPath);
+                assertThat(name, statements, not(empty()));
+                for (RecordedStatement statement : statements) {
+                    // e.g. the languages of each project
+                    if (explained.add(statement.getSql())) {
+                        plans.put(name + ": " + statement.getSql(), String.join("\n", jdbcTemplate.queryForList(
+                                "explain " + statement.getSql(), String.class, statement.getParameters())));
+                    }
+                }
+            });
+            status.setRollbackOnly();
+            return null;
+        });
+
+        // then
+        List<String> sequentialScans = new ArrayList<>();
+        plans.forEach((name, plan) -> {
+            // the default partitions are empty
+            if (plan.matches("(?s).*Seq Scan on (" + TABLES + ")(_y\\d{4}m\\d{2})? .*")) {
+                sequentialScans.add(name + "\n" + plan);
+            }
+        });
+        assertThat(sequentialScans, empty());
+    }
+
+    private void insertHistory() {
+        if (partitions.isEnabled()) {
+            partitions.createPartitions(YearMonth.of(2015, 1), YearMonth.of(2015, 8));
+        }
+        String days = "timestamp '2015-01-01' + d * interval '1 day'";
+        jdbcTemplate.update("insert into project (id, git_hub_project_id, snapshot_date, name, organization_name,"
+                + " primary_language, stars_count)"
+                + " select 100000000 + o * 1000000 + d * 1000 + p, p, " + days + ", 'project-' || p,"
+                + " 'plan-org-' || o, 'Java', p"
+                + " from generate_series(1, ?) o, generate_series(1, ?) d, generate_series(1, ?) p",
+                ORGANIZATIONS, SNAPSHOTS, PROJECTS);
+        jdbcTemplate.update("insert into language_list (project_id, language)"
+                + " select id, 'Java' from project where id > 100000000");
+        jdbcTemplate.update("insert into language_bytes (project_id, language, bytes)"
+                + " select id, 'Java', 1000 from project where id > 100000000");
+        jdbcTemplate.update("insert into maintainers (project_id, maintainer)"
+                + " select id, 'maintainer' from project where id > 100000000");
+        jdbcTemplate.update("insert into contributor (id, organization_id, snapshot_date, name, organization_name,"
+                + " organizational_commits_count)"
+                + " select c, 1000000 + o, " + days + ", 'contributor-' || c, 'plan-org-' || o, c"
+                + " from generate_series(1, ?) o, generate_series(1, ?) d, generate_series(1, ?) c",
+                ORGANIZATIONS, SNAPSHOTS, CONTRIBUTORS);
+        jdbcTemplate.update("insert into contributor_snapshot (organization_id, snapshot_date, organization_name)"
+                + " select 1000000 + o, " + days + ", 'plan-org-' || o"
+                + " from generate_series(1, ?) o, generate_series(1, ?) d",
+                ORGANIZATIONS, SNAPSHOTS);
+        // a new version of each contributor every ten snapshots
+        jdbcTemplate.update("insert into contributor_version (id, organization_id, valid_from, valid_to, name,"
+                + " organization_name, organizational_commits_count)"
+                + " select c, 1000000 + o, timestamp '2015-01-01' + (v * 10 + 1) * interval '1 day',"
+                + " timestamp '2015-01-01' + (v * 10 + 10) * interval '1 day', 'contributor-' || c,"
+                + " 'plan-org-' || o, c + v"
+                + " from generate_series(1, ?) o, generate_series(0, ?) v, generate_series(1, ?) c",
+                ORGANIZATIONS, SNAPSHOTS / 10 - 1, CONTRIBUTORS);
+        jdbcTemplate.update("insert into statistics (id, snapshot_date, organization_name, public_project_count)"
+                + " select 1000000 + o, " + days + ", 'plan-org-' || o, ?"
+                + " from generate_series(1, ?) o, generate_series(1, ?) d",
+                PROJECTS, ORGANIZATIONS, SNAPSHOTS);
+        jdbcTemplate.update("insert into snapshot_catalog (organization_name, snapshot_date, status, projects_count,"
+                + " contributors_count, published)"
+                + " select 'plan-org-' || o, " + days + ", 'PUBLISHED', ?, ?, " + days
+                + " from generate_series(1, ?) o, generate_series(1, ?) d",
+                PROJECTS, CONTRIBUTORS, ORGANIZATIONS, SNAPSHOTS);
+        for (String table : TABLES.split("\\|")) {
+            jdbcTemplate.execute("analyze " + table);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotBulkWriterIT extends AbstractRepositoryIT {
+
+    private static final String ORGANIZATION = "bulk";
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Before
+    public void setUp() {
+        projectRepository.deleteAll();
+        contributorRepository.deleteAll();
+    }
+
+    @Test
+    public void testInsertProjects() throws Exception {
+
+        // given
+        Date snapshotDate = new Date();
+        Project saved = newProject(snapshotDate, 1);
+        projectRepository.save(saved);
+
+        List<Project> projects = new ArrayList<>();
+        for (int i = 2; i < 2 + SnapshotBulkWriter.ID_BLOCK_SIZE + 1; i++) {
+            projects.add(newProject(snapshotDate, i));
+        }
+        projects.get(0).setLanguageList(new ArrayList<>(asList("Java", "Shell")));
+        projects.get(0).setMaintainers(new ArrayList<>(singletonList("alice")));
+
+        // when
+        bulkWriter.insertProjects(projects);
+
+        // then ids do not collide with the ones Hibernate takes from the same sequence
+        List<Project> loaded = projectRepository.findProjectsOfSnapshot(ORGANIZATION, snapshotDate);
+        assertThat(loaded, hasSize(projects.size() + 1));
+
+        Project loadedProject = loaded.stream()
+                .filter(project -> project.getId() == projects.get(0).getId())
+                .findFirst().get();
+        assertThat(loadedProject.getGitHubProjectId(), equalTo(2L));
+        assertThat(loadedProject.getLanguageList(), containsInAnyOrder("Java", "Shell"));
+        assertThat(loadedProject.getMaintainers(), containsInAnyOrder("alice"));
+    }
+
+    @Test
+    public void testInsertAndDeleteContributors() throws Exception {
+
+        // given
+        Date snapshotDate = new Date();
+        Contributor contributor = new Contributor(1, 2, snapshotDate);
+        contributor.setOrganizationName(ORGANIZATION);
+        contributor.setName("alice");
+        contributor.setOrganizationalCommitsCount(3);
+
+        // when
+        bulkWriter.insertContributors(singletonList(contributor));
+
+        // then
+        List<Contributor> loaded = newArrayList(contributorRepository.findAll());
+        assertThat(loaded, hasSize(1));
+        assertThat(loaded.get(0).getName(), equalTo("alice"));
+        assertThat(loaded.get(0).getOrganizationalCommitsCount(), equalTo(3));
+
+        // when
+        int deleted = bulkWriter.deleteContributors(ORGANIZATION, snapshotDate);
+
+        // then
+        assertThat(deleted, equalTo(1));
+        assertThat(contributorRepository.count(), equalTo(0L));
+    }
+
+    private Project newProject(Date snapshotDate, long gitHubProjectId) {
+        return new ProjectBuilder()
+                .snapshotDate(snapshotDate)
+                .organizationName(ORGANIZATION)
+                .gitHubProjectId(gitHubProjectId)
+                .getProject();
+    }
+}
@@ -0,0 +1,138 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.YearMonth;
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Skipped unless the tables are partitioned, i.e. with PostgreSQL 11 or
+ * later, e.g.
+ * <pre>
+ * mvn verify -Dit.test=SnapshotPartitionsIT -Dspring.profiles.active=postgresql
+ * </pre>
+ * The changes are rolled back.
+ */
+public class SnapshotPartitionsIT extends AbstractRepositoryIT {
+
+    @Autowired
+    private SnapshotPartitions partitions;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Before
+    public void skipUnlessPartitioned() {
+        assumeTrue(partitions.isEnabled());
+    }
+
+    @Test
+    public void testCreatesPartitionsOfTheNextMonths() {
+        assertThat(partitions.findMonths("project"), hasItems(YearMonth.now(), YearMonth.now().plusMonths(1)));
+        assertThat(partitions.findMonths("contributor"), hasItems(YearMonth.now(), YearMonth.now().plusMonths(1)));
+    }
+
+    @Test
+    public void testRangeQueriesReadThePartitionsOfTheirMonths() {
+        inRolledBackTransaction(() -> {
+
+            // given
+            partitions.createPartitions(YearMonth.of(2015, 4), YearMonth.of(2015, 6));
+
+            // when
+            String plan = String.join("\n", jdbcTemplate.queryForList("explain select * from project"
+                    + " where organization_name = 'zalando' and snapshot_date between timestamp '2015-05-01'"
+                    + " and timestamp '2015-05-03'", String.class));
+
+            // then
+            assertThat(plan, containsString("project_y2015m05"));
+            assertThat(plan, not(containsString("project_y2015m04")));
+            assertThat(plan, not(containsString("project_y2015m06")));
+        });
+    }
+
+    @Test
+    public void testDropsHistoryWithItsPartitions() {
+        inRolledBackTransaction(() -> {
+
+            // given
+            partitions.createPartitions(YearMonth.of(2015, 4), YearMonth.of(2015, 5));
+            jdbcTemplate.update("insert into project (id, snapshot_date, organization_name)"
+                    + " values (900000001, timestamp '2015-04-10', 'zalando'),"
+                    + " (900000002, timestamp '2015-05-10', 'zalando')");
+            jdbcTemplate.update("insert into language_list (project_id, language)"
+                    + " values (900000001, 'Java'), (900000002, 'Java')");
+            jdbcTemplate.update("insert into statistics (id, snapshot_date, organization_name)"
+                    + " values (900000001, timestamp '2015-04-10', 'zalando'),"
+                    + " (900000002, timestamp '2015-05-10', 'zalando')");
+            jdbcTemplate.update("insert into snapshot_catalog (organization_name, snapshot_date, status)"
+                    + " values ('zalando', timestamp '2015-04-10', 'PUBLISHED'),"
+                    + " ('zalando', timestamp '2015-05-10', 'PUBLISHED')");
+
+            // when
+            int dropped = partitions.dropBefore(YearMonth.of(2015, 5));
+
+            // then
+            List<YearMonth> months = partitions.findMonths("project");
+            assertThat(months, not(hasItem(YearMonth.of(2015, 4))));
+            assertThat(months, hasItem(YearMonth.of(2015, 5)));
+            assertThat(dropped >= 2, equalTo(true));
+            assertThat(jdbcTemplate.queryForList("select project_id from language_list"
+                    + " where project_id > 900000000", Integer.class), equalTo(singletonList(900000002)));
+
+            // and the dropped snapshots are no longer listed
+            assertThat(jdbcTemplate.queryForList("select id from statistics where id > 900000000", Integer.class),
+                    equalTo(singletonList(900000002)));
+            assertThat(jdbcTemplate.queryForObject("select count(*) from snapshot_catalog"
+                    + " where snapshot_date < timestamp '2015-05-01'", Integer.class), equalTo(0));
+        });
+    }
+
+    @Test
+    public void testMovesRowsOutOfTheDefaultPartition() {
+        inRolledBackTransaction(() -> {
+
+            // given a row of a month without a partition
+            jdbcTemplate.update("insert into project (id, snapshot_date, organization_name)"
+                    + " values (900000003, timestamp '2014-03-10', 'zalando')");
+
+            // when
+            partitions.createPartitions(YearMonth.of(2014, 3), YearMonth.of(2014, 3));
+
+            // then
+            assertThat(partitions.findMonths("project"), hasItem(YearMonth.of(2014, 3)));
+            assertThat(jdbcTemplate.queryForObject("select count(*) from project_y2014m03 where id = 900000003",
+                    Integer.class), equalTo(1));
+            assertThat(jdbcTemplate.queryForObject("select count(*) from project_default where id = 900000003",
+                    Integer.class), equalTo(0));
+        });
+    }
+
+    private void inRolledBackTransaction(Runnable test) {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            try {
+                test.run();
+            } finally {
+                status.setRollbackOnly();
+            }
+            return null;
+        });
+    }
+}
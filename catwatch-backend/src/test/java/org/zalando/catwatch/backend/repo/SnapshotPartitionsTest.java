@@ -0,0 +1,26 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.junit.Test;
+
+import java.time.YearMonth;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotPartitionsTest {
+
+    @Test
+    public void shouldNamePartitionsByMonth() {
+        assertThat(SnapshotPartitions.partitionName("project", YearMonth.of(2015, 7)), equalTo("project_y2015m07"));
+        assertThat(SnapshotPartitions.partitionName("contributor", YearMonth.of(2016, 12)),
+                equalTo("contributor_y2016m12"));
+    }
+
+    @Test
+    public void shouldFindMonthOfPartition() {
+        assertThat(SnapshotPartitions.month("project", "project_y2015m07"), equalTo(Optional.of(YearMonth.of(2015, 7))));
+        assertThat(SnapshotPartitions.month("project", "project_default"), equalTo(Optional.empty()));
+        assertThat(SnapshotPartitions.month("project", "contributor_y2015m07"), equalTo(Optional.empty()));
+    }
+}
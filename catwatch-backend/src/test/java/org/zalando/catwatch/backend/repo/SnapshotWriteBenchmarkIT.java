@@ -0,0 +1,123 @@
+package org.zalando.catwatch.backend.repo;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the rows per second of saving a snapshot with the repositories
+ * and with the {@link SnapshotBulkWriter}.
+ * <p>
+ * Skipped unless started with -Dbenchmark=true, e.g.
+ * <pre>
+ * mvn verify -Dit.test=SnapshotWriteBenchmarkIT -Dbenchmark=true
+ * mvn verify -Dit.test=SnapshotWriteBenchmarkIT -Dbenchmark=true -Dspring.profiles.active=postgresql
+ * </pre>
+ */
+public class SnapshotWriteBenchmarkIT extends AbstractRepositoryIT {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotWriteBenchmarkIT.class);
+
+    private static final int PROJECTS = 2000;
+    private static final int CONTRIBUTORS = 5000;
+    private static final int BATCH_SIZE = 500;
+    private static final int ROUNDS = 3;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    @Before
+    public void skipUnlessBenchmark() {
+        assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void benchmarkRepositories() {
+        benchmark("repositories", projectRepository::save, contributorRepository::save);
+    }
+
+    @Test
+    public void benchmarkBulkWriter() {
+        benchmark("bulk writer", bulkWriter::insertProjects, bulkWriter::insertContributors);
+    }
+
+    private void benchmark(String name, Consumer<List<Project>> projectWriter,
+                           Consumer<List<Contributor>> contributorWriter) {
+        // the first round warms up
+        for (int round = 0; round <= ROUNDS; round++) {
+            Date snapshotDate = new Date(System.currentTimeMillis() + round);
+            List<Project> projects = projects(snapshotDate);
+            List<Contributor> contributors = contributors(snapshotDate);
+            // one project row, three language rows and two maintainer rows per project
+            int rows = projects.size() * 6 + contributors.size();
+
+            long start = System.nanoTime();
+            Lists.partition(projects, BATCH_SIZE).forEach(projectWriter);
+            Lists.partition(contributors, BATCH_SIZE).forEach(contributorWriter);
+            long elapsedNanos = System.nanoTime() - start;
+
+            if (round > 0) {
+                logger.info("{}: {} rows in {} ms, {} rows/sec", name, rows, elapsedNanos / 1000000,
+                        rows * 1000000000L / elapsedNanos);
+            }
+        }
+    }
+
+    private List<Project> projects(Date snapshotDate) {
+        List<Project> projects = new ArrayList<>();
+        for (int i = 0; i < PROJECTS; i++) {
+            Project project = new Project();
+            project.setGitHubProjectId(i);
+            project.setSnapshotDate(snapshotDate);
+            project.setName("project" + i);
+            project.setOrganizationName("benchmark");
+            project.setUrl("https://github.com/benchmark/project" + i);
+            project.setDescription("benchmark project " + i);
+            project.setStarsCount(i);
+            project.setForksCount(i);
+            project.setCommitsCount(i);
+            project.setContributorsCount(i);
+            project.setScore(i);
+            project.setLastPushed(snapshotDate.toString());
+            project.setPrimaryLanguage("Java");
+            project.setLanguageList(new ArrayList<>(asList("Java", "Shell", "JavaScript")));
+            project.setMaintainers(new ArrayList<>(asList("alice", "bob")));
+            projects.add(project);
+        }
+        return projects;
+    }
+
+    private List<Contributor> contributors(Date snapshotDate) {
+        List<Contributor> contributors = new ArrayList<>();
+        for (int i = 0; i < CONTRIBUTORS; i++) {
+            Contributor contributor = new Contributor(i, 1, snapshotDate);
+            contributor.setName("contributor" + i);
+            contributor.setOrganizationName("benchmark");
+            contributor.setUrl("https://github.com/contributor" + i);
+            contributor.setOrganizationalCommitsCount(i);
+            contributor.setOrganizationalProjectsCount(i);
+            contributor.setPersonalProjectsCount(i);
+            contributors.add(contributor);
+        }
+        return contributors;
+    }
+}
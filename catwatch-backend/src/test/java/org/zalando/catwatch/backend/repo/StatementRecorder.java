@@ -0,0 +1,143 @@
+package org.zalando.catwatch.backend.repo;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the data source and records the statements that the current thread
+ * executes with their parameters, those of Hibernate as well as those of the
+ * JdbcTemplate, see {@link #record(Runnable)}.
+ * <p>
+ * Registered as additional configuration of a test, e.g. the QueryPlanIT.
+ */
+public class StatementRecorder implements BeanPostProcessor {
+
+    private static final ThreadLocal<List<RecordedStatement>> recorded = new ThreadLocal<>();
+
+    /**
+     * A statement as sent to the database, with the parameters in the order
+     * of their placeholders.
+     */
+    public static class RecordedStatement {
+
+        private final String sql;
+        private final Object[] parameters;
+
+        RecordedStatement(String sql, Object[] parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Object[] getParameters() {
+            return parameters;
+        }
+    }
+
+    /**
+     * @return the statements the action executed on the current thread
+     */
+    public static List<RecordedStatement> record(Runnable action) {
+        recorded.set(new ArrayList<>());
+        try {
+            action.run();
+            return recorded.get();
+        } finally {
+            recorded.remove();
+        }
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return proxy(DataSource.class, bean, (target, method, args) -> {
+                Object result = method.invoke(target, args);
+                return result instanceof Connection ? connection((Connection) result) : result;
+            });
+        }
+        return bean;
+    }
+
+    private static Connection connection(Connection connection) {
+        return proxy(Connection.class, connection, (target, method, args) -> {
+            Object result = method.invoke(target, args);
+            if (method.getName().equals("prepareStatement")) {
+                return preparedStatement((PreparedStatement) result, (String) args[0]);
+            }
+            if (result instanceof Statement && !(result instanceof PreparedStatement)) {
+                return statement((Statement) result);
+            }
+            return result;
+        });
+    }
+
+    private static PreparedStatement preparedStatement(PreparedStatement statement, String sql) {
+        SortedMap<Integer, Object> parameters = new TreeMap<>();
+        return proxy(PreparedStatement.class, statement, (target, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (name.equals("addBatch") || (name.startsWith("execute") && !name.equals("executeBatch")
+                    && args == null)) {
+                add(sql, () -> parameters.values().toArray());
+            }
+            return method.invoke(target, args);
+        });
+    }
+
+    private static Statement statement(Statement statement) {
+        return proxy(Statement.class, statement, (target, method, args) -> {
+            if ((method.getName().startsWith("execute") || method.getName().equals("addBatch"))
+                    && args != null && args[0] instanceof String) {
+                add((String) args[0], () -> new Object[0]);
+            }
+            return method.invoke(target, args);
+        });
+    }
+
+    private static void add(String sql, Supplier<Object[]> parameters) {
+        List<RecordedStatement> statements = recorded.get();
+        if (statements != null) {
+            statements.add(new RecordedStatement(sql, parameters.get()));
+        }
+    }
+
+    private interface Invocation {
+        Object invoke(Object target, Method method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, Invocation invocation) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                return invocation.invoke(target, method, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(StatementRecorder.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,96 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.Test;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.repo.SnapshotBulkWriter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class BatchingSnapshotWriterTest {
+
+    private final SnapshotBulkWriter bulkWriter = mock(SnapshotBulkWriter.class);
+
+    @Test
+    public void testSavesInBatches() throws Exception {
+
+        // given
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(((List<?>) invocation.getArguments()[0]).size());
+            return null;
+        }).when(bulkWriter).insertProjects(anyListOf(Project.class));
+        BatchingSnapshotWriter writer = new BatchingSnapshotWriter(bulkWriter, 2, emptyList());
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            writer.writeProject(project(i));
+        }
+
+        // then
+        assertThat(batchSizes, contains(2, 2));
+
+        // when
+        writer.flush();
+
+        // then
+        assertThat(batchSizes, contains(2, 2, 1));
+    }
+
+    @Test
+    public void testSkipsSavedProjects() throws Exception {
+
+        // given
+        List<Long> savedIds = new ArrayList<>();
+        doAnswer(invocation -> {
+            for (Object project : (List<?>) invocation.getArguments()[0]) {
+                savedIds.add(((Project) project).getGitHubProjectId());
+            }
+            return null;
+        }).when(bulkWriter).insertProjects(anyListOf(Project.class));
+        BatchingSnapshotWriter writer = new BatchingSnapshotWriter(bulkWriter, 10, singletonList(project(1)));
+
+        // when
+        writer.writeProject(project(1));
+        writer.writeProject(project(2));
+        writer.writeContributor(new Contributor(3, 4, new Date()));
+        writer.flush();
+
+        // then
+        assertThat(savedIds, contains(2L));
+        verify(bulkWriter, times(1)).insertContributors(anyListOf(Contributor.class));
+    }
+
+    @Test
+    public void testFlushWithoutData() throws Exception {
+
+        // given
+        BatchingSnapshotWriter writer = new BatchingSnapshotWriter(bulkWriter, 10, emptyList());
+
+        // when
+        writer.flush();
+
+        // then
+        verify(bulkWriter, never()).insertProjects(anyListOf(Project.class));
+        verify(bulkWriter, never()).insertContributors(anyListOf(Contributor.class));
+    }
+
+    private Project project(long gitHubProjectId) {
+        Project project = new Project();
+        project.setGitHubProjectId(gitHubProjectId);
+        return project;
+    }
+}
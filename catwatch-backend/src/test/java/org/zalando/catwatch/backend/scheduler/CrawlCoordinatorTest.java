@@ -0,0 +1,97 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.After;
+import org.junit.Test;
+import org.zalando.catwatch.backend.github.CrawlerMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CrawlCoordinatorTest {
+
+    private final RetryableFetcher fetcher = mock(RetryableFetcher.class);
+
+    private final CrawlCoordinator coordinator = new CrawlCoordinator(fetcher, new CrawlerMetrics());
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        coordinator.shutdown();
+    }
+
+    @Test
+    public void shouldReturnRunningCrawl() throws Exception {
+
+        // given a crawl that runs until it is released
+        when(fetcher.tryFetchData(any(CrawlProgress.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return true;
+        });
+        CrawlJob first = coordinator.start("schedule");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // when
+        CrawlJob second = coordinator.start("fetch");
+
+        // then
+        assertThat(second.getId(), equalTo(first.getId()));
+        assertThat(second.getTrigger(), equalTo("schedule"));
+        assertThat(second.getState(), equalTo(CrawlJob.State.RUNNING));
+
+        // and a crawl started after the running one finished is a new one
+        release.countDown();
+        awaitFinished(first);
+        assertThat(first.getState(), equalTo(CrawlJob.State.SUCCEEDED));
+        assertThat(first.getFinished(), notNullValue());
+        assertThat(first.getError(), nullValue());
+
+        CrawlJob third = coordinator.start("fetch");
+        assertThat(third.getId(), not(equalTo(first.getId())));
+        awaitFinished(third);
+        verify(fetcher, times(2)).tryFetchData(any(CrawlProgress.class));
+        assertThat(coordinator.find(first.getId()).get(), equalTo(first));
+    }
+
+    @Test
+    public void shouldFailWhenAllAttemptsFailed() throws Exception {
+
+        // given
+        when(fetcher.tryFetchData(any(CrawlProgress.class))).thenReturn(false);
+
+        // when
+        CrawlJob job = coordinator.start("fetch");
+
+        // then
+        awaitFinished(job);
+        assertThat(job.getState(), equalTo(CrawlJob.State.FAILED));
+        assertThat(job.getError(), notNullValue());
+        assertThat(job.getEtaSeconds(), nullValue());
+    }
+
+    @Test
+    public void shouldNotFindUnknownJob() {
+        assertThat(coordinator.find("unknown").isPresent(), equalTo(false));
+    }
+
+    private static void awaitFinished(CrawlJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getState() == CrawlJob.State.RUNNING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.catwatch.backend.github.Snapshot;
+import org.zalando.catwatch.backend.github.SnapshotProvider;
+import org.zalando.catwatch.backend.github.SnapshotWriter;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.Statistics;
+import org.zalando.catwatch.backend.repo.AbstractRepositoryIT;
+import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotBulkWriter;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
+import org.zalando.catwatch.backend.repo.StatisticsRepository;
+import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FetcherIT extends AbstractRepositoryIT {
+
+    private static final String ORGANIZATION = "resumable";
+    private static final long RESUME_MILLIS = 10000;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    @Autowired
+    private SnapshotCatalog catalog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final SnapshotProvider snapshotProvider = mock(SnapshotProvider.class);
+
+    private Fetcher fetcher;
+
+    @Before
+    public void setUp() throws Exception {
+        catalog.deleteAll();
+        jdbcTemplate.update("delete from crawl_lease");
+        jdbcTemplate.update("delete from crawl_run");
+        projectRepository.deleteAll();
+        statisticsRepository.deleteAll();
+        contributorRepository.deleteAll();
+        when(snapshotProvider.takeSnapshot(anyString(), any(Date.class), anyCollectionOf(Project.class),
+                any(SnapshotWriter.class))).thenReturn(new CompletableFuture<>());
+        fetcher = new Fetcher(projectRepository, bulkWriter, catalog, snapshotProvider,
+                new String[]{ORGANIZATION}, true, mock(GaugeService.class), 10, 60000, RESUME_MILLIS, leases(), false);
+    }
+
+    @After
+    public void tearDown() {
+        // the contributor lookups of the other tests use the catalog as soon as it is not empty
+        catalog.deleteAll();
+    }
+
+    @Test
+    public void testResumesInterruptedSnapshot() throws Exception {
+
+        // given a finished snapshot and an interrupted one with one of two projects saved
+        project(new Date(1000), 1);
+        project(new Date(1000), 2);
+        statistics(new Date(1000));
+        catalog.begin(ORGANIZATION, new Date(2000));
+        project(new Date(2000), 1);
+        contributor(new Date(2000));
+
+        // when
+        fetcher.takeSnapshot(ORGANIZATION, new Date(3000));
+
+        // then the interrupted snapshot is continued
+        ArgumentCaptor<Date> snapshotDate = ArgumentCaptor.forClass(Date.class);
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Project>> previousProjects = ArgumentCaptor.forClass((Class) Collection.class);
+        ArgumentCaptor<SnapshotWriter> writer = ArgumentCaptor.forClass(SnapshotWriter.class);
+        verify(snapshotProvider).takeSnapshot(eq(ORGANIZATION), snapshotDate.capture(), previousProjects.capture(),
+                writer.capture());
+
+        assertThat(snapshotDate.getValue().getTime(), equalTo(2000L));
+        assertThat(previousProjects.getValue().stream().map(p -> p.getSnapshotDate().getTime()).collect(toList()),
+                containsInAnyOrder(2000L, 1000L));
+
+        // and the saved project is not saved twice
+        writer.getValue().writeProject(newProject(snapshotDate.getValue(), 1));
+        writer.getValue().writeProject(newProject(snapshotDate.getValue(), 2));
+        writer.getValue().flush();
+
+        assertThat(projectRepository.findProjectsOfUnpublishedSnapshot(ORGANIZATION, new Date(2000)).stream()
+                .map(Project::getGitHubProjectId)
+                .collect(toList()), containsInAnyOrder(1L, 2L));
+
+        // and the contributors are collected again
+        assertThat(contributorRepository.count(), equalTo(0L));
+    }
+
+    @Test
+    public void testDiscardsInterruptedSnapshotTooOldToResume() throws Exception {
+
+        // given a finished snapshot and an interrupted one older than the resume limit
+        project(new Date(1000), 1);
+        statistics(new Date(1000));
+        catalog.begin(ORGANIZATION, new Date(2000));
+        project(new Date(2000), 1);
+        contributor(new Date(2000));
+
+        // when
+        fetcher.takeSnapshot(ORGANIZATION, new Date(2000 + RESUME_MILLIS + 1));
+
+        // then a new snapshot is taken on top of the finished one
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Project>> previousProjects = ArgumentCaptor.forClass((Class) Collection.class);
+        verify(snapshotProvider).takeSnapshot(eq(ORGANIZATION), eq(new Date(2000 + RESUME_MILLIS + 1)),
+                previousProjects.capture(), any(SnapshotWriter.class));
+        assertThat(previousProjects.getValue().stream().map(p -> p.getSnapshotDate().getTime()).collect(toList()),
+                containsInAnyOrder(1000L));
+
+        // and the interrupted one is gone
+        assertThat(projectRepository.count(), equalTo(1L));
+        assertThat(contributorRepository.count(), equalTo(0L));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from snapshot_catalog where snapshot_date = ?",
+                Integer.class, new Timestamp(2000)), equalTo(0));
+    }
+
+    @Test
+    public void testReadersSeePublishedSnapshotsOnly() throws Exception {
+
+        // given a published snapshot
+        project(new Date(1000), 1);
+        contributor(new Date(1000));
+        statistics(new Date(1000));
+
+        // when the next snapshot is written
+        fetcher.takeSnapshot(ORGANIZATION, new Date(3000));
+        ArgumentCaptor<SnapshotWriter> writer = ArgumentCaptor.forClass(SnapshotWriter.class);
+        verify(snapshotProvider).takeSnapshot(eq(ORGANIZATION), any(Date.class), anyCollectionOf(Project.class),
+                writer.capture());
+        writer.getValue().writeProject(newProject(new Date(3000), 2));
+        writer.getValue().flush();
+        contributor(new Date(3000));
+
+        // then the readers see the published one
+        assertThat(projectRepository.findProjects(ORGANIZATION, Optional.empty(), Optional.empty()).stream()
+                .map(Project::getGitHubProjectId)
+                .collect(toList()), containsInAnyOrder(1L));
+        assertThat(projectRepository.findProjects(ORGANIZATION, new Date(4000), Optional.empty(), Optional.empty())
+                .stream().map(Project::getGitHubProjectId).collect(toList()), containsInAnyOrder(1L));
+        assertThat(contributorRepository.findPreviousSnapShotDate(new Date(4000)).getTime(), equalTo(1000L));
+        assertThat(contributorRepository.findPreviousSnapShotDate(ORGANIZATION, new Date(4000)).getTime(),
+                equalTo(1000L));
+        assertThat(projectRepository.findProjectsByOrganizationNameAndDateRange(singletonList(ORGANIZATION),
+                new Date(0), new Date(4000)).stream().map(Project::getGitHubProjectId).collect(toList()),
+                containsInAnyOrder(1L));
+        assertThat(projectRepository.findProjectsByDateRange(new Date(0), new Date(4000)), hasSize(1));
+        assertThat(contributorRepository.findContributorsByOrganizationAndDate(singletonList(ORGANIZATION),
+                new Date(0), new Date(4000)).stream().map(c -> c.getSnapshotDate().getTime()).collect(toList()),
+                containsInAnyOrder(1000L));
+        assertThat(contributorRepository.findContributorsTimeSeries(null, null, null, null), hasSize(1));
+
+        // and the written one as soon as it is published
+        statistics(new Date(3000));
+        assertThat(projectRepository.findProjects(ORGANIZATION, Optional.empty(), Optional.empty()).stream()
+                .map(Project::getGitHubProjectId)
+                .collect(toList()), containsInAnyOrder(2L));
+        assertThat(contributorRepository.findPreviousSnapShotDate(new Date(4000)).getTime(), equalTo(3000L));
+    }
+
+    @Test
+    public void testStartsNewSnapshotAfterFinishedOne() throws Exception {
+
+        // given
+        project(new Date(1000), 1);
+        statistics(new Date(1000));
+
+        // when
+        fetcher.takeSnapshot(ORGANIZATION, new Date(3000));
+
+        // then
+        verify(snapshotProvider).takeSnapshot(eq(ORGANIZATION), eq(new Date(3000)),
+                anyCollectionOf(Project.class), any(SnapshotWriter.class));
+    }
+
+    @Test
+    public void testRetryContinuesUnfinishedOrganizations() throws Exception {
+
+        // given a finished organization, a failing one and one that succeeds after the failure
+        Date snapshotDate = new Date(3000);
+        statistics(snapshotDate);
+        fetcher = new Fetcher(projectRepository, bulkWriter, catalog, snapshotProvider,
+                new String[]{ORGANIZATION, "failing", "succeeding"}, true, mock(GaugeService.class), 10, 60000,
+                RESUME_MILLIS, leases(), false);
+
+        CompletableFuture<Snapshot> failing = new CompletableFuture<>();
+        failing.completeExceptionally(new IOException("failed"));
+        when(snapshotProvider.takeSnapshot(eq("failing"), eq(snapshotDate), anyCollectionOf(Project.class),
+                any(SnapshotWriter.class))).thenReturn(failing);
+
+        Statistics succeedingStatistics = new Statistics(2, snapshotDate);
+        succeedingStatistics.setOrganizationName("succeeding");
+        when(snapshotProvider.takeSnapshot(eq("succeeding"), eq(snapshotDate), anyCollectionOf(Project.class),
+                any(SnapshotWriter.class))).thenReturn(CompletableFuture.completedFuture(
+                new Snapshot(succeedingStatistics, emptyList(), 0, 0, 0, 0)));
+
+        // when
+        try {
+            fetcher.fetchData(snapshotDate);
+            fail("CrawlerRetryException expected");
+        } catch (CrawlerRetryException e) {
+            // expected
+        }
+
+        // then the finished organization is not crawled again
+        verify(snapshotProvider, never()).takeSnapshot(eq(ORGANIZATION), any(Date.class),
+                anyCollectionOf(Project.class), any(SnapshotWriter.class));
+
+        // and the organization after the failed one is saved as finished
+        assertThat(statisticsRepository.findByOrganizationNameOrderByKeySnapshotDateDesc("succeeding",
+                new PageRequest(0, 1)), hasSize(1));
+    }
+
+    @Test
+    public void testCancelsSnapshotAfterTimeout() throws Exception {
+
+        // given a snapshot that never finishes
+        CompletableFuture<Snapshot> hanging = new CompletableFuture<>();
+        when(snapshotProvider.takeSnapshot(eq(ORGANIZATION), any(Date.class), anyCollectionOf(Project.class),
+                any(SnapshotWriter.class))).thenReturn(hanging);
+        fetcher = new Fetcher(projectRepository, bulkWriter, catalog, snapshotProvider,
+                new String[]{ORGANIZATION}, true, mock(GaugeService.class), 10, 100, RESUME_MILLIS, leases(), false);
+
+        // when
+        try {
+            fetcher.fetchData(new Date(3000));
+            fail("CrawlerRetryException expected");
+        } catch (CrawlerRetryException e) {
+            // then
+            assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        assertThat(hanging.isCancelled(), equalTo(true));
+    }
+
+    private void project(Date snapshotDate, long gitHubProjectId) {
+        projectRepository.save(newProject(snapshotDate, gitHubProjectId));
+    }
+
+    private Project newProject(Date snapshotDate, long gitHubProjectId) {
+        return new ProjectBuilder()
+                .snapshotDate(snapshotDate)
+                .organizationName(ORGANIZATION)
+                .gitHubProjectId(gitHubProjectId)
+                .getProject();
+    }
+
+    private void contributor(Date snapshotDate) {
+        Contributor contributor = new Contributor(1, 1, snapshotDate);
+        contributor.setOrganizationName(ORGANIZATION);
+        contributorRepository.save(contributor);
+    }
+
+    private void statistics(Date snapshotDate) {
+        Statistics statistics = new Statistics(1, snapshotDate);
+        statistics.setOrganizationName(ORGANIZATION);
+        catalog.publish(statistics, 0, 0);
+    }
+
+    /**
+     * @return leases of a single node that joins no earlier run
+     */
+    private CrawlLeases leases() {
+        return new CrawlLeases(jdbcTemplate, "node", 60000, 0);
+    }
+}
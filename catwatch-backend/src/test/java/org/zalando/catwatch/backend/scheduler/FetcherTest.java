@@ -1,8 +1,15 @@
 package org.zalando.catwatch.backend.scheduler;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.zalando.catwatch.backend.mail.MailSender;
 
+import java.util.Date;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 public class FetcherTest {
@@ -16,14 +23,28 @@ public class FetcherTest {
     @SuppressWarnings("unchecked")
     @Test
     public void shouldRetryThreeTimes() throws Exception {
-        when(fetcher.fetchData())
+        when(fetcher.fetchData(any(Date.class), any(CrawlProgress.class)))
+                .thenThrow(CrawlerRetryException.class)
                 .thenThrow(CrawlerRetryException.class)
+                .thenReturn(true);
+
+        retryableFetcher.tryFetchData(new CrawlProgress());
+
+        verify(fetcher, times(3)).fetchData(any(Date.class), any(CrawlProgress.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void shouldRetryWithSameSnapshotDate() throws Exception {
+        when(fetcher.fetchData(any(Date.class), any(CrawlProgress.class)))
                 .thenThrow(CrawlerRetryException.class)
                 .thenReturn(true);
 
-        retryableFetcher.tryFetchData();
+        retryableFetcher.tryFetchData(new CrawlProgress());
 
-        verify(fetcher, times(3)).fetchData();
+        ArgumentCaptor<Date> snapshotDate = ArgumentCaptor.forClass(Date.class);
+        verify(fetcher, times(2)).fetchData(snapshotDate.capture(), any(CrawlProgress.class));
+        assertThat(snapshotDate.getAllValues(), everyItem(equalTo(snapshotDate.getAllValues().get(0))));
     }
 
 }
\ No newline at end of file
@@ -14,6 +14,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.zalando.catwatch.backend.CatWatchBackendApplication;
 import org.zalando.catwatch.backend.mail.MailSender;
 
+import java.util.Date;
+
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
 public class MailOnRetryTest {
@@ -27,11 +30,11 @@ public class MailOnRetryTest {
     @Test
     public void shouldSendMailOnCrawlerFailure() throws Exception {
         CrawlerRetryException crawlerRetryException = new CrawlerRetryException(new RuntimeException());
-        when(fetcher.fetchData())
+        when(fetcher.fetchData(any(Date.class), any(CrawlProgress.class)))
                 .thenThrow(crawlerRetryException);
         when(mailSender.send(crawlerRetryException)).thenReturn(true);
 
-        retryableFetcher.tryFetchData();
+        retryableFetcher.tryFetchData(new CrawlProgress());
 
         verify(mailSender, times(1)).send(crawlerRetryException);
     }
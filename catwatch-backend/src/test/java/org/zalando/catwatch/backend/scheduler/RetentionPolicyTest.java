@@ -0,0 +1,62 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertThat;
+
+public class RetentionPolicyTest {
+
+    private static final Date NOW = date("2016-01-31T12:00:00Z");
+
+    private final RetentionPolicy policy = new RetentionPolicy(10, 60);
+
+    @Test
+    public void shouldKeepEverySnapshotOfTheDailyDays() {
+        List<Date> snapshotDates = asList(date("2016-01-25T01:00:00Z"), date("2016-01-25T13:00:00Z"),
+                date("2016-01-30T01:00:00Z"));
+
+        assertThat(policy.findExpired(snapshotDates, NOW), empty());
+    }
+
+    @Test
+    public void shouldKeepLatestSnapshotOfEveryWeek() {
+        // given week 2 and week 3 of 2016
+        List<Date> snapshotDates = asList(date("2016-01-11T01:00:00Z"), date("2016-01-15T01:00:00Z"),
+                date("2016-01-12T01:00:00Z"), date("2016-01-18T01:00:00Z"));
+
+        // when
+        List<Date> expired = policy.findExpired(snapshotDates, NOW);
+
+        // then
+        assertThat(expired, containsInAnyOrder(date("2016-01-11T01:00:00Z"), date("2016-01-12T01:00:00Z")));
+    }
+
+    @Test
+    public void shouldKeepLatestSnapshotOfEveryMonthBeforeWeeklyDays() {
+        // given
+        List<Date> snapshotDates = asList(date("2015-10-05T01:00:00Z"), date("2015-10-20T01:00:00Z"),
+                date("2015-10-12T01:00:00Z"), date("2015-11-01T01:00:00Z"));
+
+        // when
+        List<Date> expired = policy.findExpired(snapshotDates, NOW);
+
+        // then
+        assertThat(expired, containsInAnyOrder(date("2015-10-05T01:00:00Z"), date("2015-10-12T01:00:00Z")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDailyDaysAfterWeeklyDays() {
+        new RetentionPolicy(60, 10);
+    }
+
+    private static Date date(String instant) {
+        return Date.from(Instant.parse(instant));
+    }
+}
@@ -0,0 +1,236 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.zalando.catwatch.backend.github.Snapshot;
+import org.zalando.catwatch.backend.github.SnapshotProvider;
+import org.zalando.catwatch.backend.github.SnapshotWriter;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.Statistics;
+import org.zalando.catwatch.backend.repo.AbstractRepositoryIT;
+import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotBulkWriter;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
+import org.zalando.catwatch.backend.repo.StatisticsRepository;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Several nodes, each with its own fetcher and leases, share the database.
+ */
+public class ShardedFetcherIT extends AbstractRepositoryIT {
+
+    private static final String[] ORGANIZATIONS = {"shard-a", "shard-b", "shard-c", "shard-d"};
+    private static final long RESUME_MILLIS = 3600000;
+
+    private static final long LEASE_MILLIS = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private SnapshotBulkWriter bulkWriter;
+
+    @Autowired
+    private SnapshotCatalog catalog;
+
+    /**
+     * Node that crawled an organization by organization.
+     */
+    private final Map<String, String> crawledBy = new ConcurrentHashMap<>();
+
+    private final AtomicInteger snapshots = new AtomicInteger();
+
+    private final AtomicLong statisticsId = new AtomicLong(100);
+
+    @Before
+    public void setUp() throws Exception {
+        catalog.deleteAll();
+        jdbcTemplate.update("delete from crawl_lease");
+        jdbcTemplate.update("delete from crawl_run");
+        projectRepository.deleteAll();
+        statisticsRepository.deleteAll();
+        contributorRepository.deleteAll();
+    }
+
+    @After
+    public void tearDown() {
+        // the contributor lookups of the other tests use the catalog as soon as it is not empty
+        catalog.deleteAll();
+    }
+
+    @Test
+    public void testNodesSplitTheOrganizations() throws Exception {
+
+        // given two nodes that start a few seconds apart
+        Fetcher first = node("first");
+        Fetcher second = node("second");
+        ExecutorService nodes = Executors.newFixedThreadPool(2);
+
+        // when
+        Future<Boolean> firstRun = nodes.submit(() -> first.fetchData(new Date(100000)));
+        Future<Boolean> secondRun = nodes.submit(() -> second.fetchData(new Date(103000)));
+
+        // then
+        assertThat(firstRun.get(), equalTo(true));
+        assertThat(secondRun.get(), equalTo(true));
+        nodes.shutdown();
+
+        // every organization is crawled once, both nodes took a share
+        assertThat(snapshots.get(), equalTo(ORGANIZATIONS.length));
+        assertThat(crawledBy.keySet(), containsInAnyOrder(ORGANIZATIONS));
+        assertThat(crawledBy.values(), hasItems("first", "second"));
+
+        // and all snapshots are part of the same run
+        List<Date> snapshotDates = StreamSupport.stream(statisticsRepository.findAll().spliterator(), false)
+                .map(statistics -> new Date(statistics.getSnapshotDate().getTime()))
+                .collect(toList());
+        assertThat(snapshotDates, hasSize(ORGANIZATIONS.length));
+        assertThat(snapshotDates, everyItem(equalTo(snapshotDates.get(0))));
+        assertThat(leases("first").findUnfinished(snapshotDates.get(0)), equalTo(emptyList()));
+    }
+
+    @Test
+    public void testExpiredLeaseIsTakenOver() throws Exception {
+
+        // given a node that claimed an organization and died
+        Date snapshotDate = new Date(200000);
+        CrawlLeases dead = leases("dead");
+        dead.join(Arrays.asList(ORGANIZATIONS), snapshotDate);
+        dead.claim("shard-a", snapshotDate);
+        long claimed = System.currentTimeMillis();
+
+        // when
+        node("survivor").fetchData(snapshotDate);
+
+        // then
+        assertThat(crawledBy.get("shard-a"), equalTo("survivor"));
+        assertThat(System.currentTimeMillis() - claimed, greaterThanOrEqualTo(LEASE_MILLIS));
+        assertThat(crawledBy.keySet(), containsInAnyOrder(ORGANIZATIONS));
+    }
+
+    @Test
+    public void testFinishedRunIsJoined() throws Exception {
+
+        // given a run that one node finished
+        assertThat(node("first").fetchData(new Date(300000)), equalTo(true));
+
+        // when another node starts a crawl a few seconds later
+        assertThat(node("second").fetchData(new Date(303000)), equalTo(true));
+
+        // then it crawls nothing
+        assertThat(snapshots.get(), equalTo(ORGANIZATIONS.length));
+        assertThat(crawledBy.values(), everyItem(equalTo("first")));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from crawl_run", Integer.class), equalTo(1));
+    }
+
+    @Test
+    public void testNodesWithoutShardingCrawlOnce() throws Exception {
+
+        // given two nodes without sharding that start at about the same time
+        Fetcher first = node("first", false);
+        Fetcher second = node("second", false);
+        ExecutorService nodes = Executors.newFixedThreadPool(2);
+
+        // when
+        Future<Boolean> firstRun = nodes.submit(() -> first.fetchData(new Date(400000)));
+        Future<Boolean> secondRun = nodes.submit(() -> second.fetchData(new Date(400500)));
+
+        // then every organization is crawled once
+        assertThat(firstRun.get(), equalTo(true));
+        assertThat(secondRun.get(), equalTo(true));
+        nodes.shutdown();
+        assertThat(snapshots.get(), equalTo(ORGANIZATIONS.length));
+        assertThat(crawledBy.keySet(), containsInAnyOrder(ORGANIZATIONS));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from crawl_run", Integer.class), equalTo(1));
+    }
+
+    @Test
+    public void testLaterCrawlStartsNewRun() throws Exception {
+
+        // given a finished run
+        assertThat(node("first").fetchData(new Date(500000)), equalTo(true));
+
+        // when a node starts a crawl after the join interval
+        assertThat(node("second").fetchData(new Date(500000 + 60001)), equalTo(true));
+
+        // then it starts a new run and crawls all organizations again
+        assertThat(snapshots.get(), equalTo(2 * ORGANIZATIONS.length));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from crawl_run where active = ?", Integer.class,
+                true), equalTo(1));
+    }
+
+    private CrawlLeases leases(String node) {
+        return new CrawlLeases(jdbcTemplate, node, LEASE_MILLIS, 60000);
+    }
+
+    /**
+     * @return fetcher of a node whose snapshots take a moment
+     */
+    private Fetcher node(String node) throws Exception {
+        return node(node, true);
+    }
+
+    private Fetcher node(String node, boolean sharding) throws Exception {
+        SnapshotProvider snapshotProvider = mock(SnapshotProvider.class);
+        when(snapshotProvider.takeSnapshot(anyString(), any(Date.class), anyCollectionOf(Project.class),
+                any(SnapshotWriter.class))).thenAnswer(invocation -> {
+            String organizationName = (String) invocation.getArguments()[0];
+            Date snapshotDate = (Date) invocation.getArguments()[1];
+            crawledBy.put(organizationName, node);
+            snapshots.incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                Statistics statistics = new Statistics(statisticsId.incrementAndGet(), snapshotDate);
+                statistics.setOrganizationName(organizationName);
+                return new Snapshot(statistics, emptyList(), 0, 0, 0, 0);
+            });
+        });
+        return new Fetcher(projectRepository, bulkWriter, catalog, snapshotProvider, ORGANIZATIONS,
+                true, mock(GaugeService.class), 10, 60000, RESUME_MILLIS, leases(node), sharding);
+    }
+}
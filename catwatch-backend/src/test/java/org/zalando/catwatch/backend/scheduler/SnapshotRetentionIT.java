@@ -0,0 +1,121 @@
+package org.zalando.catwatch.backend.scheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.zalando.catwatch.backend.model.Contributor;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.Statistics;
+import org.zalando.catwatch.backend.repo.AbstractRepositoryIT;
+import org.zalando.catwatch.backend.repo.ContributorRepository;
+import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
+import org.zalando.catwatch.backend.repo.StatisticsRepository;
+import org.zalando.catwatch.backend.repo.builder.ContributorBuilder;
+import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotRetentionIT extends AbstractRepositoryIT {
+
+    private static final String ORGANIZATION = "retained";
+
+    private static final Date EXPIRED = date("2015-10-05T01:00:00Z");
+    private static final Date MONTHLY = date("2015-10-20T01:00:00Z");
+    private static final Date DAILY = date("2016-01-30T01:00:00Z");
+    private static final Date NOW = date("2016-01-31T12:00:00Z");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private ContributorRepository contributorRepository;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private SnapshotCatalog catalog;
+
+    private SnapshotRetention retention;
+
+    @Before
+    public void setUp() {
+        clean();
+        // batches smaller than a snapshot
+        retention = new SnapshotRetention(jdbcTemplate, transactionManager, Optional.empty(), 10, 60, 2);
+    }
+
+    @After
+    public void clean() {
+        catalog.deleteAll();
+        projectRepository.deleteAll();
+        contributorRepository.deleteAll();
+        statisticsRepository.deleteAll();
+    }
+
+    @Test
+    public void testRemoveExpiredSnapshots() {
+
+        // given
+        long id = 1;
+        for (Date snapshotDate : asList(EXPIRED, MONTHLY, DAILY)) {
+            for (int i = 0; i < 5; i++) {
+                new ProjectBuilder(projectRepository).organizationName(ORGANIZATION).snapshotDate(snapshotDate)
+                        .gitHubProjectId(i).languages(asList("Java", "Go")).save();
+                new ContributorBuilder(contributorRepository).id(i).organizationId(99)
+                        .organizationName(ORGANIZATION).snapshotDate(snapshotDate).save();
+            }
+            Statistics statistics = new Statistics(id++, snapshotDate);
+            statistics.setOrganizationName(ORGANIZATION);
+            catalog.publish(statistics, 5, 5);
+        }
+
+        // when
+        int removed = retention.removeExpiredSnapshots(NOW);
+
+        // then
+        assertThat(removed, equalTo(1));
+        assertThat(snapshotDates(statisticsRepository.findAll(), Statistics::getSnapshotDate),
+                containsInAnyOrder(MONTHLY, DAILY));
+        assertThat(catalog.findLatestPublishedBefore(ORGANIZATION, EXPIRED), equalTo(Optional.empty()));
+        assertThat(snapshotDates(projectRepository.findAll(), Project::getSnapshotDate),
+                containsInAnyOrder(MONTHLY, DAILY));
+        assertThat(projectRepository.count(), equalTo(10L));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from language_list", Integer.class), equalTo(20));
+        assertThat(snapshotDates(contributorRepository.findAll(), Contributor::getSnapshotDate),
+                containsInAnyOrder(MONTHLY, DAILY));
+        assertThat(contributorRepository.count(), equalTo(10L));
+    }
+
+    private static <T> Set<Date> snapshotDates(Iterable<T> entities, Function<T, Date> snapshotDate) {
+        // the timestamps read from the database do not equal a java.util.Date
+        return StreamSupport.stream(entities.spliterator(), false)
+                .map(entity -> new Date(snapshotDate.apply(entity).getTime()))
+                .collect(toSet());
+    }
+
+    private static Date date(String instant) {
+        return Date.from(Instant.parse(instant));
+    }
+}
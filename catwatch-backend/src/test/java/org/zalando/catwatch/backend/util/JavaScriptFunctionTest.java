@@ -0,0 +1,18 @@
+package org.zalando.catwatch.backend.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class JavaScriptFunctionTest {
+
+	@Test
+	public void testCall() throws Exception {
+		JavaScriptFunction function = new JavaScriptFunction("function(a, b) { var c = '!'; return a + ' ' + b + c; }");
+
+		assertThat(function.call("Hello", "world"), equalTo("Hello world!"));
+		assertThat(function.call("Goodbye", "world"), equalTo("Goodbye world!"));
+	}
+
+}
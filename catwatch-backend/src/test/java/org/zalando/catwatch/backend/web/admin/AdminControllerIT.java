@@ -1,14 +1,21 @@
 package org.zalando.catwatch.backend.web.admin;
 
+import org.junit.After;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.OkHttpClientHttpRequestFactory;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.zalando.catwatch.backend.model.Contributor;
 import org.zalando.catwatch.backend.model.Project;
 import org.zalando.catwatch.backend.model.Statistics;
 import org.zalando.catwatch.backend.repo.ContributorRepository;
 import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.SnapshotCatalog;
 import org.zalando.catwatch.backend.repo.StatisticsRepository;
 import org.zalando.catwatch.backend.repo.builder.ContributorBuilder;
 import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
@@ -34,6 +41,9 @@ public class AdminControllerIT extends AbstractCatwatchIT {
 	@Autowired
 	private ProjectRepository projectRepository;
 
+	@Autowired
+	private SnapshotCatalog snapshotCatalog;
+
 	private ProjectBuilder newProject() {
 		return new ProjectBuilder(projectRepository);
 	}
@@ -76,7 +86,7 @@ public class AdminControllerIT extends AbstractCatwatchIT {
 		contributorRepository.deleteAll();
 		statisticsRepository.deleteAll();
 		Contributor c = contributorRepository.findOne(newContributor().save().getKey());
-		Statistics s = statisticsRepository.findOne(newStatistic().save().getKey());
+		Statistics s = statisticsRepository.findOne(newStatistic().organizationName("abc").save().getKey());
 
 		// when
 		DatabaseDto dto = template.getForEntity(exportUrl(), DatabaseDto.class).getBody();
@@ -103,12 +113,58 @@ public class AdminControllerIT extends AbstractCatwatchIT {
 		// differs after the export/import :-(
 		// assertThat(s_.getSnapshotDate().getTime(),
 		// equalTo(s.getSnapshotDate().getTime()));
+
+		// and the imported snapshot is published
+		assertThat(snapshotCatalog.findLatestPublished(s_.getOrganizationName()).isPresent(), equalTo(true));
+	}
+
+	@After
+	public void tearDown() {
+		// the contributor lookups of the other tests use the catalog as soon as it is not empty
+		snapshotCatalog.deleteAll();
 	}
 
 	private String configScoringProjectUrl() {
 		return fromHttpUrl(base.toString() + "config/scoring.project").toUriString();
 	}
 
+	@Test
+	public void testDropPartitionsRequiresToken() throws Exception {
+
+		// given, no token, and a client that reads the 401 of a POST
+		template.setRequestFactory(new OkHttpClientHttpRequestFactory());
+
+		// when
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		form.add("before", "2015-05");
+		ResponseEntity<String> result = template.postForEntity(dropPartitionsUrl(), form, String.class);
+
+		// then
+		assertThat(result.getStatusCode(), equalTo(HttpStatus.UNAUTHORIZED));
+	}
+
+	@Test
+	public void testImportVersionsRequiresToken() throws Exception {
+
+		// given, no token, and a client that reads the 401 of a POST
+		template.setRequestFactory(new OkHttpClientHttpRequestFactory());
+
+		// when
+		ResponseEntity<String> result = template.exchange(importVersionsUrl(), POST,
+				entity("{}", "Content-Type", "application/json"), String.class);
+
+		// then
+		assertThat(result.getStatusCode(), equalTo(HttpStatus.UNAUTHORIZED));
+	}
+
+	private String importVersionsUrl() {
+		return fromHttpUrl(base.toString() + "versions/import").toUriString();
+	}
+
+	private String dropPartitionsUrl() {
+		return fromHttpUrl(base.toString() + "partitions/drop").toUriString();
+	}
+
 	private String exportUrl() {
 		return fromHttpUrl(base.toString() + "export").toUriString();
 	}
@@ -6,6 +6,8 @@ import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.IntegrationTest;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.support.CronSequenceGenerator;
 import org.zalando.catwatch.backend.model.Contributor;
 import org.zalando.catwatch.backend.model.Project;
@@ -17,6 +19,7 @@ import org.zalando.catwatch.backend.web.AbstractCatwatchIT;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.TimeZone.getTimeZone;
@@ -61,10 +64,16 @@ public class FetchControllerIT extends AbstractCatwatchIT {
         projectRepository.deleteAll();
 
         // when
-        String result = template.getForEntity(fetchUrl(), String.class).getBody();
+        ResponseEntity<Map> started = template.getForEntity(fetchUrl(), Map.class);
 
         // then
-        assertThat(result, equalTo("OK"));
+        assertThat(started.getStatusCode(), equalTo(HttpStatus.ACCEPTED));
+        Map<?, ?> job = started.getBody();
+        while ("RUNNING".equals(job.get("state"))) {
+            Thread.sleep(100);
+            job = template.getForObject(started.getHeaders().getLocation(), Map.class);
+        }
+        assertThat(job.get("state"), equalTo("SUCCEEDED"));
 
         List<Statistics> statisticses = newArrayList(statisticsRepository.findAll());
         List<Contributor> contributors = newArrayList(contributorRepository.findAll());
@@ -83,6 +92,16 @@ public class FetchControllerIT extends AbstractCatwatchIT {
         assertThat(contributors.get(1).getName(), equalTo("Rodrigo Witzel"));
     }
 
+    @Test
+    public void testUnknownCrawl() throws Exception {
+
+        // when
+        ResponseEntity<String> response = template.getForEntity(fetchUrl() + "/unknown", String.class);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+    }
+
     private String fetchUrl() {
         return fromHttpUrl(base.toString() + "fetch").toUriString();
     }
@@ -0,0 +1,39 @@
+package org.zalando.catwatch.backend.web.metrics;
+
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.zalando.catwatch.backend.web.AbstractCatwatchIT;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.junit.Assert.assertThat;
+
+public class MetricsEndpointIT extends AbstractCatwatchIT {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCrawlerMetricsArePublished() throws Exception {
+
+        // when
+        ResponseEntity<Map> response = template.getForEntity(base.toString() + "/metrics", Map.class);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        Map<String, Object> metrics = response.getBody();
+        assertThat(metrics, hasKey("github.responses.network"));
+        assertThat(metrics, hasKey("github.conditional.hits"));
+    }
+
+    @Test
+    public void testOtherEndpointsStayDisabled() throws Exception {
+
+        // when
+        ResponseEntity<String> response = template.getForEntity(base.toString() + "/env", String.class);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+    }
+}
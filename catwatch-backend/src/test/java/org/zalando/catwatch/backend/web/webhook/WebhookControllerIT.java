@@ -0,0 +1,183 @@
+package org.zalando.catwatch.backend.web.webhook;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.IntegrationTest;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.zalando.catwatch.backend.model.Project;
+import org.zalando.catwatch.backend.model.Statistics;
+import org.zalando.catwatch.backend.repo.ProjectRepository;
+import org.zalando.catwatch.backend.repo.StatisticsRepository;
+import org.zalando.catwatch.backend.repo.builder.ProjectBuilder;
+import org.zalando.catwatch.backend.repo.builder.StatisticsBuilder;
+import org.zalando.catwatch.backend.web.AbstractCatwatchIT;
+import org.zalando.catwatch.backend.webhook.WebhookSignatureTest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+import static java.lang.String.format;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+import static org.springframework.web.util.UriComponentsBuilder.fromHttpUrl;
+
+@IntegrationTest({ "github.webhook.secret=" + WebhookControllerIT.SECRET, "organization.list=hooked", "server.port=0" })
+public class WebhookControllerIT extends AbstractCatwatchIT {
+
+    static final String SECRET = "It's a Secret to Everybody";
+
+    private static final int REPOSITORY_ID = 4711;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    private Date snapshotDate;
+
+    private Project project;
+
+    @Before
+    public void setUpSnapshot() {
+        projectRepository.deleteAll();
+        statisticsRepository.deleteAll();
+
+        Statistics statistics = new StatisticsBuilder(statisticsRepository).organizationName("hooked").days(1)
+                .allStarsCount(10).allForksCount(3).membersCount(5).save();
+        snapshotDate = statistics.getSnapshotDate();
+        project = new ProjectBuilder(projectRepository).organizationName("hooked").name("hook")
+                .gitHubProjectId(REPOSITORY_ID).snapshotDate(snapshotDate).starsCount(4).forksCount(1).save();
+    }
+
+    @Test
+    public void testStarUpdatesProjectAndStatistics() throws Exception {
+
+        // when
+        ResponseEntity<String> response = deliver("star", repositoryPayload("created", 5, 1), true);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.ACCEPTED));
+        Statistics statistics = awaitStatistics(s -> s.getAllStarsCount() == 11);
+        assertThat(statistics.getAllForksCount(), equalTo(3));
+        assertThat(projectRepository.findOne(project.getId()).getStarsCount(), equalTo(5));
+    }
+
+    @Test
+    public void testMemberAddedUpdatesStatistics() throws Exception {
+
+        // when
+        ResponseEntity<String> response = deliver("organization",
+                "{\"action\":\"member_added\",\"organization\":{\"login\":\"hooked\",\"id\":1}}", true);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.ACCEPTED));
+        awaitStatistics(s -> s.getMembersCount() == 6);
+    }
+
+    @Test
+    public void testRedeliveryIsAppliedOnce() throws Exception {
+
+        // given
+        String payload = "{\"action\":\"member_added\",\"organization\":{\"login\":\"hooked\",\"id\":1}}";
+        deliver("organization", payload, true, "72d3162e-cc78-11e3-81ab-4c9367dc0958");
+
+        // when
+        deliver("organization", payload, true, "72d3162e-cc78-11e3-81ab-4c9367dc0958");
+        deliver("organization", payload, true, "72d3162e-cc78-11e3-81ab-4c9367dc0959");
+
+        // then the second delivery is ignored, the third is another event
+        awaitStatistics(s -> s.getMembersCount() == 7);
+        Thread.sleep(500);
+        assertThat(statisticsRepository.findByOrganizationName("hooked").get(0).getMembersCount(), equalTo(7));
+    }
+
+    @Test
+    public void testStarKeepsPushDate() throws Exception {
+
+        // when the payload has a newer push date than the project
+        deliver("star", repositoryPayload("created", 5, 1), true);
+
+        // then only a refresh may set it, otherwise the next snapshot would skip the repository
+        awaitStatistics(s -> s.getAllStarsCount() == 11);
+        assertThat(projectRepository.findOne(project.getId()).getLastPushed(), equalTo(project.getLastPushed()));
+    }
+
+    @Test
+    public void testDeletedRepositoryIsRemoved() throws Exception {
+
+        // when
+        deliver("repository", repositoryPayload("deleted", 4, 1), true);
+
+        // then
+        Statistics statistics = awaitStatistics(s -> s.getAllStarsCount() == 6);
+        assertThat(statistics.getAllForksCount(), equalTo(2));
+        assertThat(projectRepository.findOne(project.getId()), equalTo(null));
+    }
+
+    @Test
+    public void testInvalidSignatureIsRejected() throws Exception {
+
+        // when
+        ResponseEntity<String> response = deliver("star", repositoryPayload("created", 5, 1), false);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.FORBIDDEN));
+    }
+
+    @Test
+    public void testOtherOrganizationIsIgnored() throws Exception {
+
+        // when
+        ResponseEntity<String> response = deliver("star",
+                "{\"action\":\"created\",\"repository\":{\"id\":1,\"full_name\":\"other/repo\"}}", true);
+
+        // then
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody(), equalTo("\"ignored\""));
+    }
+
+    private String repositoryPayload(String action, int stars, int forks) {
+        return format("{\"action\":\"%s\",\"repository\":{\"id\":%d,\"name\":\"hook\",\"full_name\":\"hooked/hook\","
+                        + "\"owner\":{\"login\":\"hooked\"},\"private\":false,\"fork\":false,"
+                        + "\"html_url\":\"https://github.com/hooked/hook\",\"watchers\":%d,\"forks\":%d,"
+                        + "\"pushed_at\":\"2016-03-01T10:00:00Z\"},\"organization\":{\"login\":\"hooked\"},"
+                        + "\"sender\":{\"login\":\"alice\"}}", action, REPOSITORY_ID, stars, forks);
+    }
+
+    private ResponseEntity<String> deliver(String event, String payload, boolean signed) {
+        return deliver(event, payload, signed, UUID.randomUUID().toString());
+    }
+
+    private ResponseEntity<String> deliver(String event, String payload, boolean signed, String delivery) {
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-GitHub-Event", event);
+        headers.set("X-GitHub-Delivery", delivery);
+        headers.set("X-Hub-Signature-256", "sha256=" + WebhookSignatureTest.sha256(signed ? SECRET : "guess", body));
+        return template.exchange(fromHttpUrl(base.toString() + "webhook").toUriString(), POST,
+                new HttpEntity<>(body, headers), String.class);
+    }
+
+    /**
+     * Events are applied in the background.
+     */
+    private Statistics awaitStatistics(java.util.function.Predicate<Statistics> condition) throws Exception {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            Statistics statistics = statisticsRepository.findByOrganizationName("hooked").get(0);
+            if (condition.test(statistics)) {
+                return statistics;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Webhook event not applied");
+    }
+}
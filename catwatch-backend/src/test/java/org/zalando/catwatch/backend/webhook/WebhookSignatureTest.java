@@ -0,0 +1,56 @@
+package org.zalando.catwatch.backend.webhook;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class WebhookSignatureTest {
+
+    private static final byte[] PAYLOAD = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testSignatureOfGitHubDocumentation() throws Exception {
+        assertThat(sha256("It's a Secret to Everybody", PAYLOAD),
+                equalTo("757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17"));
+    }
+
+    @Test
+    public void testIsValid() throws Exception {
+        String secret = "It's a Secret to Everybody";
+
+        assertThat(WebhookSignature.isValid(secret, PAYLOAD, "sha256=" + sha256(secret, PAYLOAD)), equalTo(true));
+        assertThat(WebhookSignature.isValid(secret, PAYLOAD,
+                "sha1=" + WebhookSignature.sign("HmacSHA1", secret, PAYLOAD)), equalTo(true));
+        assertThat(WebhookSignature.isValid(secret, PAYLOAD, "sha256=" + sha256("guess", PAYLOAD)), equalTo(false));
+        assertThat(WebhookSignature.isValid(secret, PAYLOAD, "md5=00"), equalTo(false));
+        assertThat(WebhookSignature.isValid(secret, PAYLOAD, null), equalTo(false));
+        assertThat(WebhookSignature.isValid("", PAYLOAD, "sha256=" + sha256(secret, PAYLOAD)), equalTo(false));
+    }
+
+    @Test
+    public void testParsePushEvent() throws Exception {
+
+        // given the repository of push events has pushed_at in seconds
+        byte[] payload = ("{\"ref\":\"refs/heads/master\",\"commits\":[{\"id\":\"a\",\"added\":[]}],"
+                + "\"repository\":{\"id\":42,\"name\":\"repo\",\"full_name\":\"org/repo\","
+                + "\"owner\":{\"name\":\"org\"},\"watchers\":3,\"forks\":2,\"pushed_at\":1456826400}}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        // when
+        WebhookEvent event = WebhookEvent.parse("push", "1", payload);
+
+        // then
+        assertThat(event.getOrganization(), equalTo("org"));
+        assertThat(event.getAction(), equalTo(null));
+        assertThat(event.getRepository().getId(), equalTo(42));
+        assertThat(event.getRepository().getWatchers(), equalTo(3));
+        assertThat(event.getRepository().getPushedAt().getTime(), equalTo(1456826400000L));
+    }
+
+    public static String sha256(String secret, byte[] payload) {
+        return WebhookSignature.sign("HmacSHA256", secret, payload);
+    }
+}